@@ -0,0 +1,218 @@
+package com.udacity.catpoint.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.rekognition.RekognitionAsyncClient;
+import software.amazon.awssdk.services.rekognition.RekognitionAsyncClientBuilder;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
+import software.amazon.awssdk.services.rekognition.model.Image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking variant of {@link AwsImageService} built on the async Rekognition client.
+ * <p>
+ * In-flight calls are capped by a semaphore. When a call is still running after the configured
+ * percentile of recent latencies, a hedged duplicate is sent and whichever answers first wins,
+ * which trims the slow outliers off the tail. Hedges only go out when a permit is free, so they
+ * never add load once the service is saturated. A call that finds every permit taken fails at
+ * once rather than blocking its caller. Hedge delays are tuned from the latency of first attempts
+ * only, since the hedges that win are by definition the fast ones.
+ * <p>
+ * As an {@link ImageService} it waits for the answer, so it can stand in for {@link AwsImageService}
+ * with hedging; {@link #detectCat(BufferedImage, float)} is the non-blocking call.
+ * <p>
+ * Reads the same config.properties as {@link AwsImageService}, plus:
+ * <pre>
+ *      aws.async.maxInFlight=32         maximum concurrent DetectLabels calls, hedges included
+ *      aws.async.hedge.percentile=95    latency percentile after which a hedge is sent, 0 disables hedging
+ *      aws.async.timeout.ms=3000        per request timeout
+ * </pre>
+ */
+public class AwsAsyncImageService implements ImageService, AutoCloseable {
+
+    private static final int LATENCY_SAMPLES = 256;
+    private static final int MIN_SAMPLES_BEFORE_HEDGING = 32;
+    private static final int HEDGE_DELAY_REFRESH_INTERVAL = 32;
+
+    private final Logger log = LoggerFactory.getLogger(AwsAsyncImageService.class);
+
+    private RekognitionAsyncClient rekognitionClient;
+    private Semaphore inFlight;
+    private double hedgePercentile;
+    private Duration timeout;
+    private final ScheduledExecutorService hedgeScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "rekognition-hedge");
+        t.setDaemon(true);
+        return t;
+    });
+
+    //ring of recent call latencies used to pick the hedge delay
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private long latencyCount = 0;
+    private volatile long hedgeDelayNanos = Long.MAX_VALUE;
+
+    private final AtomicLong hedgesSent = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+
+    public AwsAsyncImageService() {
+        Properties props = AwsImageService.loadConfig();
+        if (props != null) {
+            initialize(props);
+        }
+    }
+
+    public AwsAsyncImageService(Properties props) {
+        initialize(props);
+    }
+
+    private void initialize(Properties props) {
+        String awsEndpoint = props.getProperty("aws.endpoint");
+        RekognitionAsyncClientBuilder builder = RekognitionAsyncClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(props.getProperty("aws.id"), props.getProperty("aws.secret"))))
+                .region(Region.of(props.getProperty("aws.region")));
+        if (awsEndpoint != null && !awsEndpoint.isBlank()) {
+            builder.endpointOverride(URI.create(awsEndpoint));
+        }
+        ClientOverrideConfiguration overrides = AwsImageService.overrideConfiguration(props);
+        if (overrides != null) {
+            builder.overrideConfiguration(overrides);
+        }
+        rekognitionClient = builder.build();
+
+        inFlight = new Semaphore(Integer.parseInt(props.getProperty("aws.async.maxInFlight", "32")));
+        hedgePercentile = Double.parseDouble(props.getProperty("aws.async.hedge.percentile", "95"));
+        timeout = Duration.ofMillis(Long.parseLong(props.getProperty("aws.async.timeout.ms", "3000")));
+    }
+
+    /**
+     * Asynchronously checks the provided image for a cat.
+     * @param image Image to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat. For example, 90.0f would require 90% confidence minimum
+     * @return a future completing with true if the image contains a cat, or exceptionally on failure or timeout
+     */
+    public CompletableFuture<Boolean> detectCat(BufferedImage image, float confidenceThreshhold) {
+        DetectLabelsRequest request;
+        try {
+            Image awsImage = AwsImageService.toAwsImage(image);
+            request = DetectLabelsRequest.builder()
+                    .image(awsImage)
+                    .minConfidence(confidenceThreshhold)
+                    .overrideConfiguration(AwsRequestOverrideConfiguration.builder().apiCallTimeout(timeout).build())
+                    .build();
+        } catch (IOException ioe) {
+            log.error("Error building image byte array", ioe);
+            return CompletableFuture.completedFuture(false);
+        }
+
+        if (!inFlight.tryAcquire()) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Every Rekognition permit is in use"));
+        }
+
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        ImageClassificationEvent event = ImageClassificationEvent.begin("aws-async", image, confidenceThreshhold);
+        if (event != null) {
+            result.whenComplete((cat, t) -> ImageClassificationEvent.finish(event, t == null && cat, t != null));
+        }
+        CompletableFuture<DetectLabelsResponse> primary = send(request, result, false);
+
+        long delay = hedgeDelayNanos;
+        if (hedgePercentile > 0 && delay != Long.MAX_VALUE) {
+            ScheduledFuture<?> hedge = hedgeScheduler.schedule(() -> {
+                if (!result.isDone() && inFlight.tryAcquire()) {
+                    hedgesSent.incrementAndGet();
+                    CompletableFuture<DetectLabelsResponse> duplicate = send(request, result, true);
+                    result.whenComplete((r, t) -> duplicate.cancel(true));
+                }
+            }, delay, TimeUnit.NANOSECONDS);
+            result.whenComplete((r, t) -> hedge.cancel(false));
+        }
+        result.whenComplete((r, t) -> primary.cancel(true));
+        return result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends one attempt and completes the shared result with whichever attempt finishes first.
+     * A failed attempt only fails the result once no other attempt can still succeed.
+     */
+    private CompletableFuture<DetectLabelsResponse> send(DetectLabelsRequest request, CompletableFuture<Boolean> result, boolean hedged) {
+        long start = System.nanoTime();
+        CompletableFuture<DetectLabelsResponse> attempt = rekognitionClient.detectLabels(request);
+        attempt.whenComplete((response, error) -> {
+            inFlight.release();
+            if (!hedged && (error == null || error instanceof CancellationException)) {
+                //a first attempt cancelled because its hedge won took at least this long
+                recordLatency(System.nanoTime() - start);
+            }
+            if (error == null) {
+                if (result.complete(AwsImageService.containsCat(response)) && hedged) {
+                    hedgesWon.incrementAndGet();
+                }
+            } else if (result.isDone()) {
+                return;
+            } else if (hedged || hedgeDelayNanos == Long.MAX_VALUE || System.nanoTime() - start > timeout.toNanos()) {
+                result.completeExceptionally(error);
+            } else {
+                //give a pending or upcoming hedge the chance to answer before failing the call
+                hedgeScheduler.schedule(() -> result.completeExceptionally(error), hedgeDelayNanos, TimeUnit.NANOSECONDS);
+            }
+        });
+        return attempt;
+    }
+
+    /**
+     * Waits for {@link #detectCat(BufferedImage, float)}.
+     * @throws RuntimeException the failure of the call, as {@link AwsImageService} would throw it
+     */
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        try {
+            return detectCat(image, confidenceThreshhold).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        latencies[(int) (latencyCount++ % LATENCY_SAMPLES)] = nanos;
+        if (latencyCount >= MIN_SAMPLES_BEFORE_HEDGING && latencyCount % HEDGE_DELAY_REFRESH_INTERVAL == 0) {
+            long[] sorted = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_SAMPLES));
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(hedgePercentile / 100.0 * sorted.length) - 1;
+            hedgeDelayNanos = sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+    }
+
+    public long getHedgesSent() {
+        return hedgesSent.get();
+    }
+
+    public long getHedgesWon() {
+        return hedgesWon.get();
+    }
+
+    @Override
+    public void close() {
+        hedgeScheduler.shutdownNow();
+        if (rekognitionClient != null) {
+            rekognitionClient.close();
+        }
+    }
+}
@@ -6,8 +6,11 @@ import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.RekognitionClientBuilder;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
@@ -17,6 +20,7 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.util.Properties;
 import java.util.stream.Collectors;
 
@@ -32,32 +36,52 @@ import java.util.stream.Collectors;
  *      aws.id=[your access key id]
  *      aws.secret=[your Secret access key]
  *      aws.region=[an aws region of choice. For example: us-east-2]
+ * 7. Optionally point the service somewhere other than AWS, such as the local {@link RekognitionStandInServer}
+ *      aws.endpoint=[endpoint url. For example: http://localhost:8088]
+ *    and limit the SDK's retries, 0 to see every throttle and server error
+ *      aws.maxRetries=[retries after the first attempt. The SDK default is 3]
  */
-public class AwsImageService {
+public class AwsImageService implements ImageService {
 
     private Logger log = LoggerFactory.getLogger(AwsImageService.class);
 
-    //aws recommendation is to maintain only a single instance of client objects
-    private static RekognitionClient rekognitionClient;
+    //aws recommendation is to reuse client objects, so each service keeps one for its lifetime
+    private RekognitionClient rekognitionClient;
 
     public AwsImageService() {
-        Properties props = new Properties();
-        try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
-            props.load(is);
-        } catch (IOException ioe ) {
-            log.error("Unable to initialize AWS Rekognition, no properties file found", ioe);
-            return;
+        Properties props = loadConfig();
+        if (props != null) {
+            initialize(props);
         }
+    }
 
+    /**
+     * Creates the service from already loaded properties, using the same keys as config.properties.
+     * @param props aws.id, aws.secret, aws.region and optionally aws.endpoint
+     */
+    public AwsImageService(Properties props) {
+        initialize(props);
+    }
+
+    private void initialize(Properties props) {
         String awsId = props.getProperty("aws.id");
         String awsSecret = props.getProperty("aws.secret");
         String awsRegion = props.getProperty("aws.region");
+        String awsEndpoint = props.getProperty("aws.endpoint");
 
         AwsCredentials awsCredentials = AwsBasicCredentials.create(awsId, awsSecret);
-        rekognitionClient = RekognitionClient.builder()
+        RekognitionClientBuilder builder = RekognitionClient.builder()
                 .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
-                .region(Region.of(awsRegion))
-                .build();
+                .region(Region.of(awsRegion));
+        if (awsEndpoint != null && !awsEndpoint.isBlank()) {
+            log.info("Using Rekognition endpoint override {}", awsEndpoint);
+            builder.endpointOverride(URI.create(awsEndpoint));
+        }
+        ClientOverrideConfiguration overrides = overrideConfiguration(props);
+        if (overrides != null) {
+            builder.overrideConfiguration(overrides);
+        }
+        rekognitionClient = builder.build();
     }
 
     /**
@@ -66,19 +90,28 @@ public class AwsImageService {
      * @param confidenceThreshhold Minimum threshhold to consider for cat. For example, 90.0f would require 90% confidence minimum
      * @return
      */
+    @Override
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
         Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+        try {
+            awsImage = toAwsImage(image);
         } catch (IOException ioe) {
             log.error("Error building image byte array", ioe);
             return false;
         }
         DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
-        DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
+        ImageClassificationEvent event = ImageClassificationEvent.begin("aws", image, confidenceThreshhold);
+        DetectLabelsResponse response;
+        try {
+            response = rekognitionClient.detectLabels(detectLabelsRequest);
+        } catch (RuntimeException e) {
+            ImageClassificationEvent.finish(event, false, true);
+            throw e;
+        }
+        boolean cat = containsCat(response);
+        ImageClassificationEvent.finish(event, cat, false);
         logLabelsForFun(response);
-        return response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
+        return cat;
     }
 
     private void logLabelsForFun(DetectLabelsResponse response) {
@@ -86,4 +119,46 @@ public class AwsImageService {
                 .map(label -> String.format("%s(%.1f%%)", label.name(), label.confidence()))
                 .collect(Collectors.joining(", ")));
     }
+
+    /**
+     * Reads config.properties from the classpath.
+     * @return the loaded properties, or null if there is no config file
+     */
+    static Properties loadConfig() {
+        Properties props = new Properties();
+        try (InputStream is = AwsImageService.class.getClassLoader().getResourceAsStream("config.properties")) {
+            props.load(is);
+        } catch (IOException | NullPointerException ioe ) {
+            LoggerFactory.getLogger(AwsImageService.class).error("Unable to initialize AWS Rekognition, no properties file found", ioe);
+            return null;
+        }
+        return props;
+    }
+
+    /**
+     * @return the client settings aws.maxRetries asks for, or null to keep the SDK defaults
+     */
+    static ClientOverrideConfiguration overrideConfiguration(Properties props) {
+        String maxRetries = props.getProperty("aws.maxRetries");
+        if (maxRetries == null || maxRetries.isBlank()) {
+            return null;
+        }
+        return ClientOverrideConfiguration.builder()
+                .retryPolicy(RetryPolicy.builder().numRetries(Integer.parseInt(maxRetries.trim())).build())
+                .build();
+    }
+
+    /**
+     * Encodes the image as a jpg in the form Rekognition expects.
+     */
+    public static Image toAwsImage(BufferedImage image) throws IOException {
+        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+            ImageIO.write(image, "jpg", os);
+            return Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+        }
+    }
+
+    static boolean containsCat(DetectLabelsResponse response) {
+        return response.labels().stream().anyMatch(l -> l.name().toLowerCase().contains("cat"));
+    }
 }
@@ -0,0 +1,115 @@
+package com.udacity.catpoint.image;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Budget shared by every camera that classifies images remotely: the global token bucket, the
+ * share of it reserved for high priority frames, and usage and cost counters.
+ * <p>
+ * Configured from properties:
+ * <pre>
+ *      ratelimit.global.rps=5            sustained remote calls per second across all cameras
+ *      ratelimit.global.burst=10         calls allowed back to back
+ *      ratelimit.priority.reserve=0.2    fraction of the global burst only high priority frames may use
+ *      ratelimit.cost.per.call=0.001     price of one remote call in USD, used for cost accounting
+ * </pre>
+ * The counters can be read over JMX through {@link ClassificationBudgetMBean}.
+ */
+public class ClassificationBudget implements ClassificationBudgetMBean {
+
+    private static final long MICROS_PER_DOLLAR = 1_000_000;
+
+    private final TokenBucket globalBucket;
+    private final double priorityReserve;
+    private final long costPerCallMicros;
+
+    private final LongAdder remoteCalls = new LongAdder();
+    private final LongAdder priorityCalls = new LongAdder();
+    private final LongAdder cachedVerdicts = new LongAdder();
+    private final LongAdder fallbackVerdicts = new LongAdder();
+    private final LongAdder remoteFailures = new LongAdder();
+
+    public ClassificationBudget(Properties props) {
+        double rate = Double.parseDouble(props.getProperty("ratelimit.global.rps", "5"));
+        double burst = Double.parseDouble(props.getProperty("ratelimit.global.burst", "10"));
+        this.globalBucket = new TokenBucket(rate, burst);
+        this.priorityReserve = burst * Double.parseDouble(props.getProperty("ratelimit.priority.reserve", "0.2"));
+        this.costPerCallMicros = Math.round(Double.parseDouble(props.getProperty("ratelimit.cost.per.call", "0.001")) * MICROS_PER_DOLLAR);
+    }
+
+    /**
+     * Takes a global token. Normal frames must leave the priority reserve in the bucket, high
+     * priority frames may spend it.
+     */
+    boolean tryAcquire(boolean highPriority) {
+        return globalBucket.tryAcquire(highPriority ? 0 : priorityReserve);
+    }
+
+    /**
+     * Returns a global token taken for a call that was never sent.
+     */
+    void release() {
+        globalBucket.release();
+    }
+
+    void recordRemoteCall(boolean highPriority) {
+        remoteCalls.increment();
+        if (highPriority) {
+            priorityCalls.increment();
+        }
+    }
+
+    void recordRemoteFailure() {
+        remoteFailures.increment();
+    }
+
+    void recordCachedVerdict() {
+        cachedVerdicts.increment();
+    }
+
+    void recordFallbackVerdict() {
+        fallbackVerdicts.increment();
+    }
+
+    @Override
+    public long getRemoteCalls() {
+        return remoteCalls.sum();
+    }
+
+    @Override
+    public long getPriorityCalls() {
+        return priorityCalls.sum();
+    }
+
+    /**
+     * @return remote calls that failed, also counted in {@link #getRemoteCalls()}
+     */
+    @Override
+    public long getRemoteFailures() {
+        return remoteFailures.sum();
+    }
+
+    @Override
+    public long getCachedVerdicts() {
+        return cachedVerdicts.sum();
+    }
+
+    @Override
+    public long getFallbackVerdicts() {
+        return fallbackVerdicts.sum();
+    }
+
+    /**
+     * @return the estimated amount spent on remote calls so far, in USD
+     */
+    @Override
+    public double getEstimatedCost() {
+        return (double) remoteCalls.sum() * costPerCallMicros / MICROS_PER_DOLLAR;
+    }
+
+    @Override
+    public double getAvailableTokens() {
+        return globalBucket.getAvailableTokens();
+    }
+}
@@ -0,0 +1,20 @@
+package com.udacity.catpoint.image;
+
+/**
+ * JMX view of a {@link ClassificationBudget}.
+ */
+public interface ClassificationBudgetMBean {
+    long getRemoteCalls();
+
+    long getPriorityCalls();
+
+    long getRemoteFailures();
+
+    long getCachedVerdicts();
+
+    long getFallbackVerdicts();
+
+    double getEstimatedCost();
+
+    double getAvailableTokens();
+}
@@ -0,0 +1,216 @@
+package com.udacity.catpoint.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Frame source that treats a directory as a camera. Images already in the directory are
+ * replayed in name order, after which every image written into the directory becomes the next frame.
+ * <p>
+ * A file only becomes a frame once its size and modification time have stayed the same for the
+ * settle time, so a frame written in several pieces is returned once, whole. Writers that rename
+ * finished files into the directory only wait out the settle time. A file is returned again only
+ * if it is rewritten, however many events its writes fire.
+ */
+public class DirectoryFrameSource implements FrameSource {
+
+    public static final long DEFAULT_SETTLE_MILLIS = 100;
+
+    private final Logger log = LoggerFactory.getLogger(DirectoryFrameSource.class);
+
+    private final Path directory;
+    private final WatchService watchService;
+    private final long settleNanos;
+    //files that may hold a new frame, in the order they were noticed
+    private final Set<Path> pending = new LinkedHashSet<>();
+    //the version each pending file was last seen at, and since when
+    private final Map<Path, Observation> observed = new HashMap<>();
+    //the version of each file that was returned, until the file is deleted
+    private final Map<Path, Version> delivered = new HashMap<>();
+    private volatile boolean closed = false;
+
+    public DirectoryFrameSource(Path directory) throws IOException {
+        this(directory, DEFAULT_SETTLE_MILLIS);
+    }
+
+    /**
+     * @param settleMillis How long a file must stay unchanged before it is read as a frame
+     */
+    public DirectoryFrameSource(Path directory, long settleMillis) throws IOException {
+        this.directory = directory;
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+        this.watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        scan();
+    }
+
+    @Override
+    public ByteBuffer nextFrame() throws IOException, InterruptedException {
+        while (!closed) {
+            ByteBuffer frame = readSettled(System.nanoTime());
+            if (frame != null) {
+                return frame;
+            }
+
+            //poll with a timeout so that close() is noticed without interrupting the caller, and
+            //so files waiting to settle are looked at again
+            long waitMillis = pending.isEmpty() ? 250 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(settleNanos) / 2);
+            WatchKey key;
+            try {
+                key = watchService.poll(waitMillis, TimeUnit.MILLISECONDS);
+            } catch (ClosedWatchServiceException e) {
+                return null;
+            }
+            if (key == null) {
+                continue;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    log.warn("Camera directory {} is producing frames faster than they are read, rescanning it", directory);
+                    scan();
+                    continue;
+                }
+                Path file = directory.resolve((Path) event.context());
+                if (!isImageFile(file)) {
+                    continue;
+                }
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    pending.remove(file);
+                    observed.remove(file);
+                    delivered.remove(file);
+                } else {
+                    pending.add(file);
+                }
+            }
+            key.reset();
+        }
+        return null;
+    }
+
+    /**
+     * Reads the first pending file that has settled at a version not returned yet.
+     * @return the frame, or null if no file is ready
+     */
+    private ByteBuffer readSettled(long now) throws IOException {
+        Iterator<Path> files = pending.iterator();
+        while (files.hasNext()) {
+            Path file = files.next();
+            Version version;
+            try {
+                version = Version.of(Files.readAttributes(file, BasicFileAttributes.class));
+            } catch (NoSuchFileException e) {
+                log.debug("Frame {} removed before it could be read", file);
+                files.remove();
+                observed.remove(file);
+                continue;
+            }
+            //an event for a write already returned, or a file created but not written yet whose
+            //write fires a modify event that brings it back
+            if (version.size == 0 || version.equals(delivered.get(file))) {
+                files.remove();
+                observed.remove(file);
+                continue;
+            }
+            Observation last = observed.get(file);
+            if (last == null || !last.version.equals(version)) {
+                observed.put(file, new Observation(version, now));
+                continue;
+            }
+            if (now - last.since < settleNanos) {
+                continue;
+            }
+
+            files.remove();
+            observed.remove(file);
+            byte[] frame;
+            try {
+                frame = Files.readAllBytes(file);
+            } catch (NoSuchFileException e) {
+                log.debug("Frame {} removed before it could be read", file);
+                continue;
+            }
+            if (frame.length != version.size) {
+                //written to again between the check and the read, wait for it to settle again
+                pending.add(file);
+                return readSettled(now);
+            }
+            delivered.put(file, version);
+            return ByteBuffer.wrap(frame);
+        }
+        return null;
+    }
+
+    /**
+     * Queues every image in the directory that was not returned at its current version, in name order.
+     */
+    private void scan() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(DirectoryFrameSource::isImageFile).sorted().forEach(pending::add);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+    }
+
+    private static boolean isImageFile(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png")
+                || name.endsWith(".gif") || name.endsWith(".bmp");
+    }
+
+    private static final class Version {
+        private final long size;
+        private final FileTime modified;
+
+        Version(long size, FileTime modified) {
+            this.size = size;
+            this.modified = modified;
+        }
+
+        static Version of(BasicFileAttributes attributes) {
+            return new Version(attributes.size(), attributes.lastModifiedTime());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Version)) return false;
+            Version other = (Version) o;
+            return size == other.size && modified.equals(other.modified);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, modified);
+        }
+    }
+
+    private static final class Observation {
+        private final Version version;
+        private final long since;
+
+        Observation(Version version, long since) {
+            this.version = version;
+            this.since = since;
+        }
+    }
+}
@@ -6,10 +6,14 @@ import java.util.Random;
 /**
  * Service that tries to guess if an image displays a cat.
  */
-public class FakeImageService {
+public class FakeImageService implements ImageService {
     private final Random r = new Random();
 
+    @Override
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
-        return r.nextBoolean();
+        ImageClassificationEvent event = ImageClassificationEvent.begin("fake", image, confidenceThreshhold);
+        boolean cat = r.nextBoolean();
+        ImageClassificationEvent.finish(event, cat, false);
+        return cat;
     }
 }
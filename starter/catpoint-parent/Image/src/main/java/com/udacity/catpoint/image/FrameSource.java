@@ -0,0 +1,20 @@
+package com.udacity.catpoint.image;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Source of encoded camera frames. Implementations hand out one encoded image (jpg, png, ...)
+ * at a time so the caller decides how fast frames are consumed and where they get decoded.
+ */
+public interface FrameSource extends AutoCloseable {
+
+    /**
+     * Returns the next encoded frame, blocking until one is available.
+     * @return the encoded frame bytes, or null once the source is exhausted
+     */
+    ByteBuffer nextFrame() throws IOException, InterruptedException;
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,237 @@
+package com.udacity.catpoint.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Pulls encoded frames from a {@link FrameSource} at a fixed frame rate, decodes them on a
+ * background pool and hands the decoded images to a consumer.
+ * <p>
+ * The consumer is always called from a single delivery thread and in frame order, so it may
+ * call into code that is not thread safe. When decoding falls behind, frames are dropped rather
+ * than queued so the stream never drifts away from real time.
+ */
+public class FrameStream implements AutoCloseable {
+
+    private final Logger log = LoggerFactory.getLogger(FrameStream.class);
+
+    private final FrameSource source;
+    private final Consumer<BufferedImage> frameConsumer;
+    private final long frameIntervalNanos;
+    private final int maxDecodesInFlight;
+
+    private final ExecutorService decoderPool;
+    private final ExecutorService deliveryExecutor;
+    private final Thread readerThread;
+
+    //every decoder thread keeps its own jpeg reader, these are remembered so close() can dispose them
+    private final Queue<ImageReader> jpegReaders = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<ImageReader> jpegReader = ThreadLocal.withInitial(this::createJpegReader);
+
+    private final AtomicInteger decodesInFlight = new AtomicInteger();
+    private final AtomicLong framesDelivered = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private long lastDeliveredFrame = -1; //only touched by the delivery thread
+
+    /**
+     * @param source Where encoded frames come from
+     * @param framesPerSecond Maximum rate at which frames are read from the source
+     * @param decoderThreads Number of threads decoding frames in parallel
+     * @param frameConsumer Receives every decoded frame that was not dropped
+     */
+    public FrameStream(FrameSource source, double framesPerSecond, int decoderThreads, Consumer<BufferedImage> frameConsumer) {
+        if (framesPerSecond <= 0 || decoderThreads <= 0) {
+            throw new IllegalArgumentException("Frame rate and decoder threads must be positive");
+        }
+        this.source = source;
+        this.frameConsumer = frameConsumer;
+        this.frameIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / framesPerSecond);
+        this.maxDecodesInFlight = decoderThreads * 2;
+
+        this.decoderPool = Executors.newFixedThreadPool(decoderThreads, daemonThreads("frame-decoder"));
+        this.deliveryExecutor = Executors.newSingleThreadExecutor(daemonThreads("frame-delivery"));
+        this.readerThread = daemonThreads("frame-reader").newThread(this::readFrames);
+    }
+
+    public void start() {
+        readerThread.start();
+    }
+
+    public long getFramesDelivered() {
+        return framesDelivered.get();
+    }
+
+    public long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    /**
+     * Reads one frame per frame interval until the source runs dry or the stream is closed.
+     */
+    private void readFrames() {
+        long frameNumber = 0;
+        long deadline = System.nanoTime();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long wait = deadline - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    continue;
+                }
+                //if the source blocked for a while, restart the schedule instead of bursting to catch up
+                deadline = Math.max(deadline, System.nanoTime() - frameIntervalNanos) + frameIntervalNanos;
+
+                ByteBuffer encoded = source.nextFrame();
+                if (encoded == null) {
+                    break;
+                }
+                if (decodesInFlight.get() >= maxDecodesInFlight) {
+                    framesDropped.incrementAndGet();
+                    continue;
+                }
+                long thisFrame = frameNumber++;
+                decodesInFlight.incrementAndGet();
+                decoderPool.execute(() -> decode(thisFrame, encoded));
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Camera stream stopped, unable to read frame", e);
+        }
+    }
+
+    private void decode(long frameNumber, ByteBuffer encoded) {
+        BufferedImage image = null;
+        try {
+            image = decode(encoded);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Skipping undecodable frame {}", frameNumber, e);
+        } finally {
+            decodesInFlight.decrementAndGet();
+        }
+        if (image == null) {
+            framesDropped.incrementAndGet();
+            return;
+        }
+        BufferedImage decoded = image;
+        try {
+            deliveryExecutor.execute(() -> deliver(frameNumber, decoded));
+        } catch (RejectedExecutionException e) {
+            //stream was closed while this frame was decoding
+        }
+    }
+
+    private BufferedImage decode(ByteBuffer encoded) throws IOException {
+        if (!isJpeg(encoded)) {
+            //non jpeg frames only come from directory sources, which are slow enough to use the generic path
+            return ImageIO.read(new ByteBufferInputStream(encoded));
+        }
+        ImageReader reader = jpegReader.get();
+        try (ImageInputStream in = new MemoryCacheImageInputStream(new ByteBufferInputStream(encoded))) {
+            reader.setInput(in, true, true);
+            return reader.read(0);
+        } finally {
+            reader.setInput(null);
+        }
+    }
+
+    private void deliver(long frameNumber, BufferedImage image) {
+        //frames may finish decoding out of order, a frame older than the last one shown is stale
+        if (frameNumber < lastDeliveredFrame) {
+            framesDropped.incrementAndGet();
+            return;
+        }
+        lastDeliveredFrame = frameNumber;
+        try {
+            frameConsumer.accept(image);
+            framesDelivered.incrementAndGet();
+        } catch (RuntimeException e) {
+            log.error("Frame consumer failed on frame {}", frameNumber, e);
+        }
+    }
+
+    private ImageReader createJpegReader() {
+        Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("jpeg");
+        if (!readers.hasNext()) {
+            throw new IllegalStateException("No jpeg reader available");
+        }
+        ImageReader reader = readers.next();
+        jpegReaders.add(reader);
+        return reader;
+    }
+
+    private static boolean isJpeg(ByteBuffer encoded) {
+        int p = encoded.position();
+        return encoded.remaining() > 2 && (encoded.get(p) & 0xFF) == 0xFF && (encoded.get(p + 1) & 0xFF) == 0xD8;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        readerThread.interrupt();
+        decoderPool.shutdownNow();
+        deliveryExecutor.shutdownNow();
+        try {
+            decoderPool.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        jpegReaders.forEach(ImageReader::dispose);
+        source.close();
+    }
+
+    /**
+     * Reads a ByteBuffer without copying it, so mapped frames stay in the page cache.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate();
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
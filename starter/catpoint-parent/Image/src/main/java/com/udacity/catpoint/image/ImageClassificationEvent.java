@@ -0,0 +1,72 @@
+package com.udacity.catpoint.image;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Flight recorder event for one call to an image classification backend. The event's duration
+ * is the time the backend took to answer.
+ */
+@Name("com.udacity.catpoint.ImageClassification")
+@Label("Image Classification")
+@Category({"Catpoint", "Image"})
+@Description("Call to an image classification backend")
+class ImageClassificationEvent extends Event {
+
+    @Label("Backend")
+    String backend;
+
+    @Label("Image Width")
+    int width;
+
+    @Label("Image Height")
+    int height;
+
+    @Label("Confidence Threshold")
+    float confidenceThreshold;
+
+    @Label("Cat Detected")
+    boolean catDetected;
+
+    @Label("Failed")
+    boolean failed;
+
+    /**
+     * Starts timing a call, or returns null when no recording has the event enabled so callers
+     * skip the bookkeeping entirely.
+     */
+    static ImageClassificationEvent begin(String backend, BufferedImage image, float confidenceThreshold) {
+        ImageClassificationEvent event = new ImageClassificationEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.backend = backend;
+        if (image != null) {
+            event.width = image.getWidth();
+            event.height = image.getHeight();
+        }
+        event.confidenceThreshold = confidenceThreshold;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Records the outcome of a call started with {@link #begin}. Does nothing for a null event.
+     */
+    static void finish(ImageClassificationEvent event, boolean catDetected, boolean failed) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.catDetected = catDetected;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+}
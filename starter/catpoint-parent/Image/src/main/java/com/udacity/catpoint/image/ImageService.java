@@ -0,0 +1,16 @@
+package com.udacity.catpoint.image;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Interface describing a service that can tell whether an image contains a cat.
+ */
+public interface ImageService {
+
+    /**
+     * Returns true if the provided image contains a cat.
+     * @param image Image to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat. For example, 90.0f would require 90% confidence minimum
+     */
+    boolean imageContainsCat(BufferedImage image, float confidenceThreshhold);
+}
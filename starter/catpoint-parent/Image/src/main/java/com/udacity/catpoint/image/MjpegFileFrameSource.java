@@ -0,0 +1,85 @@
+package com.udacity.catpoint.image;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Frame source reading a local MJPEG recording (or any file of concatenated JPEGs). The file
+ * is memory-mapped once and frames are handed out as read-only slices of the mapping, so
+ * nothing is copied until the decoder reads the bytes.
+ * <p>
+ * Frames are found by scanning for the JPEG start (FFD8) and end (FFD9) markers, which is
+ * enough for camera streams but will split JPEGs that carry an embedded thumbnail.
+ */
+public class MjpegFileFrameSource implements FrameSource {
+
+    private static final int MARKER = 0xFF;
+    private static final int START_OF_IMAGE = 0xD8;
+    private static final int END_OF_IMAGE = 0xD9;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+    private final boolean loop;
+    private int position = 0;
+
+    /**
+     * @param file The recording to read
+     * @param loop If true the recording restarts from the beginning when it runs out of frames
+     */
+    public MjpegFileFrameSource(Path file, boolean loop) throws IOException {
+        this.loop = loop;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        if (channel.size() > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Recording is too large to map: " + file);
+        }
+        this.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    @Override
+    public synchronized ByteBuffer nextFrame() {
+        ByteBuffer frame = findFrame(position);
+        if (frame == null && loop && position > 0) {
+            frame = findFrame(0);
+        }
+        return frame;
+    }
+
+    /**
+     * Finds the first complete frame at or after the given offset and advances past it.
+     */
+    private ByteBuffer findFrame(int from) {
+        int start = indexOfMarker(START_OF_IMAGE, from);
+        if (start < 0) {
+            return null;
+        }
+        int end = indexOfMarker(END_OF_IMAGE, start + 2);
+        if (end < 0) {
+            return null;
+        }
+        position = end + 2;
+
+        ByteBuffer frame = mapped.duplicate();
+        frame.position(start).limit(position);
+        return frame.slice().asReadOnlyBuffer();
+    }
+
+    private int indexOfMarker(int marker, int from) {
+        int limit = mapped.limit() - 1;
+        for (int i = from; i < limit; i++) {
+            if ((mapped.get(i) & 0xFF) == MARKER && (mapped.get(i + 1) & 0xFF) == marker) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,122 @@
+package com.udacity.catpoint.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.util.Properties;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Image service decorator that keeps one camera's remote classification calls within its own
+ * token bucket and the {@link ClassificationBudget} shared by all cameras.
+ * <p>
+ * A frame that finds no token never waits. It gets the camera's last remote verdict if that is
+ * still fresh and was given for a frame of the same size, or else the verdict of a local fallback
+ * service. So does a frame whose remote call fails or is rejected: a rejected call gets its tokens
+ * back, a failed one is counted as spent. One instance serves one camera. Wrap it around any {@link RegionOfInterestImageService}
+ * so a frame spends one token however many tiles it is cut into, and the cached verdict is always
+ * that of a whole frame.
+ * <p>
+ * Per camera settings:
+ * <pre>
+ *      ratelimit.camera.rps=1        sustained remote calls per second for one camera
+ *      ratelimit.camera.burst=3      calls one camera may make back to back
+ *      ratelimit.cache.ttl.ms=2000   how long a remote verdict may stand in for new frames
+ * </pre>
+ */
+public class RateLimitedImageService implements ImageService {
+
+    private final Logger log = LoggerFactory.getLogger(RateLimitedImageService.class);
+
+    private final ImageService remote;
+    private final ImageService fallback;
+    private final ClassificationBudget budget;
+    private final TokenBucket cameraBucket;
+    private final BooleanSupplier highPriority;
+    private final long cacheTtlNanos;
+
+    //the last remote verdict, when and for what frame size it was given, null until there is one
+    private volatile Verdict lastVerdict;
+
+    /**
+     * @param remote The paid service
+     * @param fallback Local service used when the budget is spent and no fresh verdict is cached,
+     *                 it must not guess: a random answer raises and clears the alarm at random
+     * @param budget Budget shared with the other cameras
+     * @param highPriority True while frames from this camera should be allowed into the priority
+     *                     reserve, for example while the system is armed-home
+     */
+    public RateLimitedImageService(ImageService remote, ImageService fallback, ClassificationBudget budget,
+                                   Properties props, BooleanSupplier highPriority) {
+        this.remote = remote;
+        this.fallback = fallback;
+        this.budget = budget;
+        this.highPriority = highPriority;
+        this.cameraBucket = new TokenBucket(
+                Double.parseDouble(props.getProperty("ratelimit.camera.rps", "1")),
+                Double.parseDouble(props.getProperty("ratelimit.camera.burst", "3")));
+        this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(props.getProperty("ratelimit.cache.ttl.ms", "2000")));
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        boolean priority = highPriority.getAsBoolean();
+        //priority frames skip the camera's own limit, only the global budget bounds them
+        boolean cameraToken = priority || cameraBucket.tryAcquire();
+        if (cameraToken && budget.tryAcquire(priority)) {
+            try {
+                boolean cat = remote.imageContainsCat(image, confidenceThreshhold);
+                budget.recordRemoteCall(priority);
+                lastVerdict = new Verdict(cat, System.nanoTime(), image.getWidth(), image.getHeight());
+                return cat;
+            } catch (RejectedExecutionException e) {
+                //turned away before anything was sent, so nothing was spent
+                log.debug("Remote classification rejected, answering locally", e);
+                budget.release();
+                if (!priority) {
+                    cameraBucket.release();
+                }
+            } catch (RuntimeException e) {
+                //a call that failed on the way may still have been billed
+                log.debug("Remote classification failed, answering locally", e);
+                budget.recordRemoteCall(priority);
+                budget.recordRemoteFailure();
+            }
+        } else if (cameraToken && !priority) {
+            cameraBucket.release();
+        }
+
+        Verdict cached = lastVerdict;
+        if (cached != null && cached.matches(image) && System.nanoTime() - cached.time < cacheTtlNanos) {
+            budget.recordCachedVerdict();
+            return cached.cat;
+        }
+        budget.recordFallbackVerdict();
+        return fallback.imageContainsCat(image, confidenceThreshhold);
+    }
+
+    private static final class Verdict {
+        private final boolean cat;
+        private final long time;
+        private final int width;
+        private final int height;
+
+        Verdict(boolean cat, long time, int width, int height) {
+            this.cat = cat;
+            this.time = time;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * @return true if the frame could be from the stream this verdict was given for, a frame
+         * of another size comes from somewhere else, such as an uploaded image
+         */
+        boolean matches(BufferedImage image) {
+            return image.getWidth() == width && image.getHeight() == height;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.udacity.catpoint.image;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Image service decorator that only sends the parts of a frame a camera actually cares about.
+ * <p>
+ * Regions are given as fractions of the frame so they survive resolution changes. Each region is
+ * cut out with {@link BufferedImage#getSubimage}, which shares the source raster instead of copying
+ * pixels, and regions larger than the tile size are split into overlapping tiles. The frame contains
+ * a cat if any tile does, so scanning stops at the first positive tile.
+ * <p>
+ * Regions for each camera are read from properties:
+ * <pre>
+ *      roi.[camera].regions=x,y,width,height;x,y,width,height   fractions of the frame, for example 0,0.5,1,0.5
+ *      roi.[camera].mask=[path to an image, non black pixels mark the area to scan]
+ *      roi.tile.size=640                                         largest tile sent in one call, in pixels
+ * </pre>
+ */
+public class RegionOfInterestImageService implements ImageService {
+
+    private static final int DEFAULT_TILE_SIZE = 640;
+    private static final int MASK_GRID_CELLS = 16;
+
+    private final ImageService delegate;
+    private final List<Rectangle2D> regions;
+    private final int tileSize;
+
+    //tiles only depend on frame size, so they are computed once per resolution
+    private volatile TileLayout layout;
+
+    /**
+     * @param delegate The service that classifies each tile
+     * @param regions Areas to scan, as fractions of the frame width and height
+     * @param tileSize Maximum tile width and height in pixels, 0 to never split a region
+     */
+    public RegionOfInterestImageService(ImageService delegate, List<Rectangle2D> regions, int tileSize) {
+        this.delegate = delegate;
+        this.regions = List.copyOf(regions);
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Wraps the delegate with the regions configured for the camera, or returns it unchanged if the
+     * camera has none.
+     */
+    public static ImageService forCamera(Properties props, String camera, ImageService delegate) throws IOException {
+        int tileSize = Integer.parseInt(props.getProperty("roi.tile.size", String.valueOf(DEFAULT_TILE_SIZE)));
+        List<Rectangle2D> regions = new ArrayList<>(parseRegions(props.getProperty("roi." + camera + ".regions", "")));
+
+        String mask = props.getProperty("roi." + camera + ".mask");
+        if (mask != null) {
+            BufferedImage maskImage = ImageIO.read(new File(mask));
+            if (maskImage == null) {
+                throw new IOException("Unreadable region of interest mask " + mask);
+            }
+            regions.addAll(regionsFromMask(maskImage));
+        }
+        return regions.isEmpty() ? delegate : new RegionOfInterestImageService(delegate, regions, tileSize);
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        for (Rectangle tile : tilesFor(image.getWidth(), image.getHeight())) {
+            BufferedImage view = image.getSubimage(tile.x, tile.y, tile.width, tile.height);
+            if (delegate.imageContainsCat(view, confidenceThreshhold)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    List<Rectangle> tilesFor(int width, int height) {
+        TileLayout current = layout;
+        if (current == null || current.width != width || current.height != height) {
+            current = new TileLayout(width, height, computeTiles(width, height));
+            layout = current;
+        }
+        return current.tiles;
+    }
+
+    private List<Rectangle> computeTiles(int width, int height) {
+        Rectangle frame = new Rectangle(0, 0, width, height);
+        List<Rectangle> tiles = new ArrayList<>();
+        for (Rectangle2D region : regions) {
+            Rectangle pixels = new Rectangle(
+                    (int) Math.floor(region.getX() * width), (int) Math.floor(region.getY() * height),
+                    (int) Math.ceil(region.getWidth() * width), (int) Math.ceil(region.getHeight() * height))
+                    .intersection(frame);
+            if (!pixels.isEmpty()) {
+                split(pixels, tiles);
+            }
+        }
+        return Collections.unmodifiableList(tiles);
+    }
+
+    /**
+     * Splits a region into tiles no larger than the tile size. Neighbouring tiles overlap by an
+     * eighth of a tile so a cat sitting on a tile edge is still mostly visible in one of them.
+     */
+    private void split(Rectangle region, List<Rectangle> tiles) {
+        if (tileSize <= 0 || (region.width <= tileSize && region.height <= tileSize)) {
+            tiles.add(region);
+            return;
+        }
+        int step = tileSize - tileSize / 8;
+        for (int y = region.y; y < region.y + region.height; y += step) {
+            for (int x = region.x; x < region.x + region.width; x += step) {
+                tiles.add(new Rectangle(x, y, tileSize, tileSize).intersection(region));
+                if (x + tileSize >= region.x + region.width) {
+                    break;
+                }
+            }
+            if (y + tileSize >= region.y + region.height) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Parses semicolon separated x,y,width,height fractions.
+     */
+    static List<Rectangle2D> parseRegions(String value) {
+        List<Rectangle2D> regions = new ArrayList<>();
+        for (String region : value.split(";")) {
+            if (region.isBlank()) {
+                continue;
+            }
+            String[] parts = region.split(",");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Region of interest must be x,y,width,height: " + region);
+            }
+            regions.add(new Rectangle2D.Double(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()),
+                    Double.parseDouble(parts[2].trim()), Double.parseDouble(parts[3].trim())));
+        }
+        return regions;
+    }
+
+    /**
+     * Turns a mask into rectangular regions by laying a grid over it and keeping every cell that
+     * contains part of the mask. Adjacent cells in a row are merged into runs, and a run spanning
+     * the same columns as one in the row above extends it downwards, so fewer calls are made.
+     */
+    static List<Rectangle2D> regionsFromMask(BufferedImage mask) {
+        List<Rectangle2D> regions = new ArrayList<>();
+        int cellWidth = Math.max(1, mask.getWidth() / MASK_GRID_CELLS);
+        int cellHeight = Math.max(1, mask.getHeight() / MASK_GRID_CELLS);
+        //the last column may be narrower when the width is not a multiple of the cell width
+        int columns = (mask.getWidth() + cellWidth - 1) / cellWidth;
+        //top of each run still growing downwards, by its first and last column
+        Map<Long, Integer> open = new LinkedHashMap<>();
+        for (int y = 0; y < mask.getHeight(); y += cellHeight) {
+            Map<Long, Integer> next = new LinkedHashMap<>();
+            int runStart = -1;
+            //one step past the last column, so a run reaching the right edge is closed too
+            for (int column = 0; column <= columns; column++) {
+                int x = column * cellWidth;
+                boolean covered = column < columns && cellCovered(mask, x, y, cellWidth, cellHeight);
+                if (covered && runStart < 0) {
+                    runStart = x;
+                } else if (!covered && runStart >= 0) {
+                    long run = (long) runStart << 32 | Math.min(x, mask.getWidth());
+                    Integer top = open.remove(run);
+                    next.put(run, top != null ? top : y);
+                    runStart = -1;
+                }
+            }
+            closeRuns(open, y, mask, regions);
+            open = next;
+        }
+        closeRuns(open, mask.getHeight(), mask, regions);
+        return regions;
+    }
+
+    private static void closeRuns(Map<Long, Integer> runs, int bottom, BufferedImage mask, List<Rectangle2D> regions) {
+        for (Map.Entry<Long, Integer> run : runs.entrySet()) {
+            int left = (int) (run.getKey() >>> 32);
+            int right = (int) (long) run.getKey();
+            int top = run.getValue();
+            regions.add(new Rectangle2D.Double((double) left / mask.getWidth(), (double) top / mask.getHeight(),
+                    (double) (right - left) / mask.getWidth(), (double) (bottom - top) / mask.getHeight()));
+        }
+    }
+
+    private static boolean cellCovered(BufferedImage mask, int x0, int y0, int width, int height) {
+        int xEnd = Math.min(x0 + width, mask.getWidth());
+        int yEnd = Math.min(y0 + height, mask.getHeight());
+        for (int y = y0; y < yEnd; y++) {
+            for (int x = x0; x < xEnd; x++) {
+                if ((mask.getRGB(x, y) & 0xFFFFFF) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static class TileLayout {
+        private final int width;
+        private final int height;
+        private final List<Rectangle> tiles;
+
+        TileLayout(int width, int height, List<Rectangle> tiles) {
+            this.width = width;
+            this.height = height;
+            this.tiles = tiles;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.udacity.catpoint.image;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local HTTP stand-in for the Rekognition DetectLabels API, so {@link AwsImageService} can be
+ * exercised and tuned without an AWS account. Point the service at it with aws.endpoint in config.properties.
+ * <p>
+ * Every knob is read from a properties file (or system properties with the same keys):
+ * <pre>
+ *      standin.port=8088
+ *      standin.labels=Cat:97.5,Animal:99.1,Pet:95.0   label name and confidence pairs returned for every image
+ *      standin.latency.median.ms=80                  median of the log-normal latency distribution
+ *      standin.latency.sigma=0.35                    shape of the log-normal, larger means a heavier tail
+ *      standin.latency.spike.rate=0.01               fraction of requests that become slow outliers
+ *      standin.latency.spike.ms=1500                 extra delay added to an outlier
+ *      standin.error.rate=0.0                        fraction of requests failing with InternalServerError
+ *      standin.throttle.rps=0                        requests per second allowed before ThrottlingException, 0 for unlimited
+ * </pre>
+ */
+public class RekognitionStandInServer implements AutoCloseable {
+
+    private static final String DETECT_LABELS_TARGET = "RekognitionService.DetectLabels";
+    private static final String CONTENT_TYPE = "application/x-amz-json-1.1";
+
+    private final Logger log = LoggerFactory.getLogger(RekognitionStandInServer.class);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] labelsResponse;
+    private final double latencyMedianMs;
+    private final double latencySigma;
+    private final double spikeRate;
+    private final long spikeMs;
+    private final double errorRate;
+    private final long throttleRps;
+
+    //simple per-second window for throttling, good enough to produce realistic 400s under load
+    private final AtomicLong throttleWindow = new AtomicLong();
+    private final AtomicLong throttleCount = new AtomicLong();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public RekognitionStandInServer(Properties props) throws IOException {
+        int port = Integer.parseInt(props.getProperty("standin.port", "8088"));
+        this.labelsResponse = buildLabelsResponse(props.getProperty("standin.labels", "Cat:97.5,Animal:99.1,Pet:95.0"));
+        this.latencyMedianMs = Double.parseDouble(props.getProperty("standin.latency.median.ms", "80"));
+        this.latencySigma = Double.parseDouble(props.getProperty("standin.latency.sigma", "0.35"));
+        this.spikeRate = Double.parseDouble(props.getProperty("standin.latency.spike.rate", "0.01"));
+        this.spikeMs = Long.parseLong(props.getProperty("standin.latency.spike.ms", "1500"));
+        this.errorRate = Double.parseDouble(props.getProperty("standin.error.rate", "0.0"));
+        this.throttleRps = Long.parseLong(props.getProperty("standin.throttle.rps", "0"));
+
+        //latency is simulated by sleeping, so every in flight request needs its own thread
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+        log.info("Rekognition stand-in listening on {}", getEndpoint());
+    }
+
+    /**
+     * @return the url to use as aws.endpoint
+     */
+    public String getEndpoint() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            body.readAllBytes();
+            requests.incrementAndGet();
+
+            String target = exchange.getRequestHeaders().getFirst("X-Amz-Target");
+            if (!DETECT_LABELS_TARGET.equals(target)) {
+                respond(exchange, 400, error("UnknownOperationException", "Only DetectLabels is supported"));
+                return;
+            }
+            if (isThrottled()) {
+                throttled.incrementAndGet();
+                respond(exchange, 400, error("ThrottlingException", "Rate exceeded"));
+                return;
+            }
+
+            sleepMillis(nextLatencyMillis());
+
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                failed.incrementAndGet();
+                respond(exchange, 500, error("InternalServerError", "Simulated failure"));
+                return;
+            }
+            respond(exchange, 200, labelsResponse);
+        }
+    }
+
+    private boolean isThrottled() {
+        if (throttleRps <= 0) {
+            return false;
+        }
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        long window = throttleWindow.get();
+        if (window != second && throttleWindow.compareAndSet(window, second)) {
+            throttleCount.set(0);
+        }
+        return throttleCount.incrementAndGet() > throttleRps;
+    }
+
+    /**
+     * Draws a latency from a log-normal distribution, occasionally adding a spike to model slow outliers.
+     */
+    private long nextLatencyMillis() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double latency = latencyMedianMs * Math.exp(latencySigma * random.nextGaussian());
+        if (spikeRate > 0 && random.nextDouble() < spikeRate) {
+            latency += spikeMs;
+        }
+        return Math.round(latency);
+    }
+
+    private static void sleepMillis(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.getResponseHeaders().set("x-amzn-RequestId", Long.toHexString(ThreadLocalRandom.current().nextLong()));
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static byte[] error(String type, String message) {
+        return String.format("{\"__type\":\"%s\",\"message\":\"%s\"}", type, message).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builds the DetectLabels response once, every request gets the same labels.
+     * @param labels comma separated name:confidence pairs
+     */
+    private static byte[] buildLabelsResponse(String labels) {
+        StringBuilder json = new StringBuilder("{\"Labels\":[");
+        String[] pairs = labels.split(",");
+        for (int i = 0; i < pairs.length; i++) {
+            String[] pair = pairs[i].trim().split(":");
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(String.format(Locale.ROOT, "{\"Name\":\"%s\",\"Confidence\":%.3f,\"Instances\":[],\"Parents\":[]}",
+                    pair[0], Float.parseFloat(pair[1])));
+        }
+        json.append("],\"LabelModelVersion\":\"3.0\"}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs the stand-in until the process is killed.
+     * @param args optional path to a properties file, otherwise system properties are used
+     */
+    public static void main(String[] args) throws IOException {
+        Properties props = new Properties(System.getProperties());
+        if (args.length > 0) {
+            try (InputStream is = Files.newInputStream(Paths.get(args[0]))) {
+                props.load(is);
+            }
+        }
+        RekognitionStandInServer server = new RekognitionStandInServer(props);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+    }
+}
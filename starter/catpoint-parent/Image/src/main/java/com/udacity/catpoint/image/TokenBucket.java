@@ -0,0 +1,83 @@
+package com.udacity.catpoint.image;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classic token bucket. Tokens refill continuously at a fixed rate up to the burst size and each
+ * permitted call takes one. Callers never wait, they either get a token or they don't.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param ratePerSecond Sustained number of calls allowed per second
+     * @param burst Number of calls that may be made back to back after an idle period
+     */
+    public TokenBucket(double ratePerSecond, double burst) {
+        this(ratePerSecond, burst, System.nanoTime());
+    }
+
+    TokenBucket(double ratePerSecond, double burst, long now) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate must be positive and burst at least one");
+        }
+        this.capacity = burst;
+        this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = burst;
+        this.lastRefill = now;
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquire(0);
+    }
+
+    /**
+     * Takes a token only if at least the given number of tokens would remain afterwards. This lets
+     * low priority callers leave a reserve untouched for high priority ones.
+     * @param reserve Tokens that must stay in the bucket
+     */
+    public boolean tryAcquire(double reserve) {
+        return tryAcquire(reserve, System.nanoTime());
+    }
+
+    synchronized boolean tryAcquire(double reserve, long now) {
+        refill(now);
+        if (tokens - 1 < reserve) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * Returns a token that was taken but not used, for example when a second bucket refused the call.
+     */
+    public synchronized void release() {
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    public double getAvailableTokens() {
+        return getAvailableTokens(System.nanoTime());
+    }
+
+    synchronized double getAvailableTokens(long now) {
+        refill(now);
+        return tokens;
+    }
+
+    public double getCapacity() {
+        return capacity;
+    }
+
+    private void refill(long now) {
+        if (now - lastRefill <= 0) {
+            return;
+        }
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
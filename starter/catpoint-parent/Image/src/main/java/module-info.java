@@ -1,7 +1,10 @@
 module com.udacity.catpoint.image {
     requires java.desktop;
+    requires jdk.httpserver;
+    requires jdk.jfr;
     requires org.slf4j;
     requires software.amazon.awssdk.auth;
+    requires software.amazon.awssdk.awscore;
     requires software.amazon.awssdk.core;
     requires software.amazon.awssdk.regions;
     requires software.amazon.awssdk.services.rekognition;
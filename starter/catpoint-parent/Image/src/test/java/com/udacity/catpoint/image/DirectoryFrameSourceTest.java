@@ -0,0 +1,103 @@
+package com.udacity.catpoint.image;
+
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DirectoryFrameSourceTest {
+
+    private Path directory;
+
+    @BeforeEach
+    void init() throws IOException {
+        directory = Files.createTempDirectory("camera");
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    @DisplayName("Images already in the directory are replayed in name order, other files skipped")
+    void nextFrame_existingFiles_returnedInNameOrder() throws Exception {
+        Files.write(directory.resolve("b.jpg"), new byte[]{2});
+        Files.write(directory.resolve("notes.txt"), new byte[]{9});
+        Files.write(directory.resolve("a.PNG"), new byte[]{1});
+        Files.write(directory.resolve("c.jpeg"), new byte[]{3});
+        try (DirectoryFrameSource source = new DirectoryFrameSource(directory)) {
+            assertEquals(1, first(source.nextFrame()));
+            assertEquals(2, first(source.nextFrame()));
+            assertEquals(3, first(source.nextFrame()));
+        }
+    }
+
+    @Test
+    @DisplayName("An image written into the directory becomes the next frame")
+    void nextFrame_newFile_returned() throws Exception {
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try (DirectoryFrameSource source = new DirectoryFrameSource(directory)) {
+            Future<ByteBuffer> frame = reader.submit(source::nextFrame);
+            Files.write(directory.resolve("new.jpg"), new byte[]{5});
+            //the JDK's polling watch service can take a few seconds to notice
+            assertEquals(5, first(frame.get(30, TimeUnit.SECONDS)));
+        } finally {
+            reader.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("An image written in several pieces is returned once, whole, and again only when rewritten")
+    void nextFrame_fileAppendedInPieces_returnedOnceWhole() throws Exception {
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        Path file = directory.resolve("slow.jpg");
+        try (DirectoryFrameSource source = new DirectoryFrameSource(directory, 500)) {
+            Future<ByteBuffer> frame = reader.submit(source::nextFrame);
+            for (int piece = 1; piece <= 5; piece++) {
+                Files.write(file, new byte[]{(byte) piece, (byte) piece}, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                Thread.sleep(50);
+            }
+
+            ByteBuffer whole = frame.get(30, TimeUnit.SECONDS);
+            assertEquals(10, whole.remaining());
+            assertEquals(5, whole.get(9));
+
+            //the modify events of the pieces do not bring the file back
+            Future<ByteBuffer> again = reader.submit(source::nextFrame);
+            assertThrows(TimeoutException.class, () -> again.get(1500, TimeUnit.MILLISECONDS));
+
+            Files.write(file, new byte[]{7});
+            assertEquals(7, first(again.get(30, TimeUnit.SECONDS)));
+        } finally {
+            reader.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("A closed source returns no more frames")
+    void nextFrame_afterClose_returnsNull() throws Exception {
+        DirectoryFrameSource source = new DirectoryFrameSource(directory);
+        source.close();
+        assertNull(source.nextFrame());
+    }
+
+    private static int first(ByteBuffer frame) {
+        assertNotNull(frame, "frame");
+        return frame.get(0);
+    }
+}
@@ -0,0 +1,106 @@
+package com.udacity.catpoint.image;
+
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Frame boundaries of MjpegFileFrameSource, on small hand-made recordings: the frames are not
+ * real images, only the start and end markers matter.
+ */
+public class MjpegFileFrameSourceTest {
+
+    private static final byte[] FIRST = {(byte) 0xFF, (byte) 0xD8, 1, 2, 3, (byte) 0xFF, (byte) 0xD9};
+    private static final byte[] SECOND = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 4, (byte) 0xFF, (byte) 0xD9};
+
+    private Path file;
+
+    @BeforeEach
+    void init() throws IOException {
+        file = Files.createTempFile("recording", ".mjpeg");
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    @DisplayName("Frames are cut at their markers, skipping bytes between them")
+    void nextFrame_concatenatedFrames_returnsEachFrameExactly() throws IOException {
+        write(new byte[]{9, 9}, FIRST, new byte[]{7, (byte) 0xFF}, SECOND);
+        try (MjpegFileFrameSource source = new MjpegFileFrameSource(file, false)) {
+            assertArrayEquals(FIRST, bytes(source.nextFrame()));
+            assertArrayEquals(SECOND, bytes(source.nextFrame()));
+            assertNull(source.nextFrame());
+        }
+    }
+
+    @Test
+    @DisplayName("A frame cut off before its end marker is not returned")
+    void nextFrame_truncatedLastFrame_returnsNull() throws IOException {
+        write(FIRST, new byte[]{(byte) 0xFF, (byte) 0xD8, 1, 2});
+        try (MjpegFileFrameSource source = new MjpegFileFrameSource(file, false)) {
+            assertArrayEquals(FIRST, bytes(source.nextFrame()));
+            assertNull(source.nextFrame());
+        }
+    }
+
+    @Test
+    @DisplayName("A file without any start marker has no frames")
+    void nextFrame_noMarkers_returnsNull() throws IOException {
+        write(new byte[]{1, 2, 3, (byte) 0xFF, (byte) 0xD9, 4});
+        try (MjpegFileFrameSource source = new MjpegFileFrameSource(file, true)) {
+            assertNull(source.nextFrame());
+        }
+    }
+
+    @Test
+    @DisplayName("An empty file has no frames")
+    void nextFrame_emptyFile_returnsNull() throws IOException {
+        try (MjpegFileFrameSource source = new MjpegFileFrameSource(file, true)) {
+            assertNull(source.nextFrame());
+        }
+    }
+
+    @Test
+    @DisplayName("A looping source starts over after the last frame")
+    void nextFrame_loop_restartsFromFirstFrame() throws IOException {
+        write(FIRST, SECOND);
+        try (MjpegFileFrameSource source = new MjpegFileFrameSource(file, true)) {
+            assertArrayEquals(FIRST, bytes(source.nextFrame()));
+            assertArrayEquals(SECOND, bytes(source.nextFrame()));
+            assertArrayEquals(FIRST, bytes(source.nextFrame()));
+        }
+    }
+
+    @Test
+    @DisplayName("Frames are read-only views of the recording")
+    void nextFrame_frame_isReadOnly() throws IOException {
+        write(FIRST);
+        try (MjpegFileFrameSource source = new MjpegFileFrameSource(file, false)) {
+            assertTrue(source.nextFrame().isReadOnly());
+        }
+    }
+
+    private void write(byte[]... parts) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part);
+        }
+        Files.write(file, out.toByteArray());
+    }
+
+    private static byte[] bytes(ByteBuffer frame) {
+        assertNotNull(frame, "frame");
+        byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        return bytes;
+    }
+}
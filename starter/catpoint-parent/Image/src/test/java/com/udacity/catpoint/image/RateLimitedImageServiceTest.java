@@ -0,0 +1,195 @@
+package com.udacity.catpoint.image;
+
+import org.junit.jupiter.api.*;
+
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimitedImageServiceTest {
+
+    private static final BufferedImage FRAME = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+
+    private final Properties props = new Properties();
+    private int remoteCalls;
+    private int fallbackCalls;
+    private boolean armedHome;
+
+    private final ImageService remote = (image, confidenceThreshhold) -> {
+        remoteCalls++;
+        return true;
+    };
+    private final ImageService fallback = (image, confidenceThreshhold) -> {
+        fallbackCalls++;
+        return false;
+    };
+
+    @BeforeEach
+    void init() {
+        //refills slowly enough that no token comes back during a test
+        props.setProperty("ratelimit.camera.rps", "0.001");
+        props.setProperty("ratelimit.camera.burst", "2");
+        props.setProperty("ratelimit.global.rps", "0.001");
+        props.setProperty("ratelimit.global.burst", "5");
+        props.setProperty("ratelimit.priority.reserve", "0.4");
+        props.setProperty("ratelimit.cache.ttl.ms", "60000");
+    }
+
+    private RateLimitedImageService camera(ClassificationBudget budget) {
+        return new RateLimitedImageService(remote, fallback, budget, props, () -> armedHome);
+    }
+
+    @Test
+    @DisplayName("Frames over the camera's burst get the cached remote verdict")
+    void imageContainsCat_cameraLimitReached_reusesCachedVerdict() {
+        ClassificationBudget budget = new ClassificationBudget(props);
+        RateLimitedImageService service = camera(budget);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(service.imageContainsCat(FRAME, 50.0f));
+        }
+
+        assertEquals(2, remoteCalls);
+        assertEquals(0, fallbackCalls);
+        assertEquals(2, budget.getRemoteCalls());
+        assertEquals(3, budget.getCachedVerdicts());
+    }
+
+    @Test
+    @DisplayName("A stale cached verdict is not reused, the fallback answers instead")
+    void imageContainsCat_cacheExpired_usesFallback() {
+        props.setProperty("ratelimit.cache.ttl.ms", "0");
+        ClassificationBudget budget = new ClassificationBudget(props);
+        RateLimitedImageService service = camera(budget);
+
+        service.imageContainsCat(FRAME, 50.0f);
+        service.imageContainsCat(FRAME, 50.0f);
+
+        assertFalse(service.imageContainsCat(FRAME, 50.0f));
+        assertEquals(1, fallbackCalls);
+        assertEquals(1, budget.getFallbackVerdicts());
+        assertEquals(0, budget.getCachedVerdicts());
+    }
+
+    @Test
+    @DisplayName("A camera without a verdict yet uses the fallback once the shared budget is spent")
+    void imageContainsCat_budgetExhausted_usesFallback() {
+        ClassificationBudget budget = new ClassificationBudget(props);
+        RateLimitedImageService first = camera(budget);
+        RateLimitedImageService second = camera(budget);
+
+        first.imageContainsCat(FRAME, 50.0f);
+        first.imageContainsCat(FRAME, 50.0f);
+        second.imageContainsCat(FRAME, 50.0f);
+        //the remaining two tokens are the priority reserve
+        assertFalse(camera(budget).imageContainsCat(FRAME, 50.0f));
+
+        assertEquals(3, budget.getRemoteCalls());
+        assertEquals(1, budget.getFallbackVerdicts());
+        assertEquals(0.001 * 3, budget.getEstimatedCost(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Priority frames skip the camera limit and may spend the reserve")
+    void imageContainsCat_highPriority_spendsReserve() {
+        ClassificationBudget budget = new ClassificationBudget(props);
+        RateLimitedImageService service = camera(budget);
+        armedHome = true;
+
+        for (int i = 0; i < 5; i++) {
+            service.imageContainsCat(FRAME, 50.0f);
+        }
+        service.imageContainsCat(FRAME, 50.0f);
+
+        assertEquals(5, remoteCalls);
+        assertEquals(5, budget.getPriorityCalls());
+        assertEquals(1, budget.getCachedVerdicts());
+    }
+
+    @Test
+    @DisplayName("A cached verdict only stands in for frames of the size it was given for")
+    void imageContainsCat_otherFrameSize_usesFallback() {
+        ClassificationBudget budget = new ClassificationBudget(props);
+        RateLimitedImageService service = camera(budget);
+        service.imageContainsCat(FRAME, 50.0f);
+        service.imageContainsCat(FRAME, 50.0f);
+
+        assertFalse(service.imageContainsCat(new BufferedImage(16, 8, BufferedImage.TYPE_INT_RGB), 50.0f));
+        assertTrue(service.imageContainsCat(FRAME, 50.0f));
+
+        assertEquals(1, budget.getFallbackVerdicts());
+        assertEquals(1, budget.getCachedVerdicts());
+    }
+
+    @Test
+    @DisplayName("A frame cut into tiles spends one token, and over the limit gets the whole frame's verdict")
+    void imageContainsCat_regionsOfInterestInside_oneTokenPerFrame() {
+        ClassificationBudget budget = new ClassificationBudget(props);
+        //only the last of four tiles shows a cat
+        int[] tiles = new int[1];
+        ImageService lastTileCat = (image, confidenceThreshhold) -> ++tiles[0] % 4 == 0;
+        ImageService regions = new RegionOfInterestImageService(lastTileCat, List.of(new Rectangle2D.Double(0, 0, 1, 1)), 4);
+        RateLimitedImageService service = new RateLimitedImageService(regions, fallback, budget, props, () -> armedHome);
+
+        assertTrue(service.imageContainsCat(FRAME, 50.0f));
+        assertEquals(4, tiles[0]);
+        assertEquals(1, budget.getRemoteCalls());
+
+        assertTrue(service.imageContainsCat(FRAME, 50.0f));
+        //over the camera's burst of two frames, no tile is sent
+        assertTrue(service.imageContainsCat(FRAME, 50.0f));
+        assertEquals(8, tiles[0]);
+        assertEquals(2, budget.getRemoteCalls());
+        assertEquals(1, budget.getCachedVerdicts());
+    }
+
+    @Test
+    @DisplayName("A call the remote service turns away gets its tokens back and the cached verdict")
+    void imageContainsCat_remoteRejects_tokensReturned() {
+        ClassificationBudget budget = new ClassificationBudget(props);
+        boolean[] saturated = new boolean[1];
+        ImageService busy = (image, confidenceThreshhold) -> {
+            if (saturated[0]) {
+                throw new RejectedExecutionException("Every permit is in use");
+            }
+            return true;
+        };
+        RateLimitedImageService service = new RateLimitedImageService(busy, fallback, budget, props, () -> armedHome);
+        assertTrue(service.imageContainsCat(FRAME, 50.0f));
+        double tokens = budget.getAvailableTokens();
+
+        saturated[0] = true;
+        assertTrue(service.imageContainsCat(FRAME, 50.0f));
+        assertFalse(service.imageContainsCat(new BufferedImage(16, 8, BufferedImage.TYPE_INT_RGB), 50.0f));
+
+        assertEquals(tokens, budget.getAvailableTokens(), 0.01);
+        assertEquals(1, budget.getRemoteCalls());
+        assertEquals(0, budget.getRemoteFailures());
+        assertEquals(1, budget.getCachedVerdicts());
+        assertEquals(1, fallbackCalls);
+        //the camera's second token came back too
+        saturated[0] = false;
+        service.imageContainsCat(FRAME, 50.0f);
+        assertEquals(2, budget.getRemoteCalls());
+    }
+
+    @Test
+    @DisplayName("A failed remote call is counted as spent and answered from the cache or the fallback")
+    void imageContainsCat_remoteFails_countedAndFallsBack() {
+        ClassificationBudget budget = new ClassificationBudget(props);
+        ImageService broken = (image, confidenceThreshhold) -> {
+            throw new IllegalStateException("service unavailable");
+        };
+        RateLimitedImageService service = new RateLimitedImageService(broken, fallback, budget, props, () -> armedHome);
+
+        assertFalse(service.imageContainsCat(FRAME, 50.0f));
+
+        assertEquals(1, budget.getRemoteCalls());
+        assertEquals(1, budget.getRemoteFailures());
+        assertEquals(1, budget.getFallbackVerdicts());
+    }
+}
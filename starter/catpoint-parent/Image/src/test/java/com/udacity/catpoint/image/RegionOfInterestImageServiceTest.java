@@ -0,0 +1,181 @@
+package com.udacity.catpoint.image;
+
+import org.junit.jupiter.api.*;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RegionOfInterestImageServiceTest {
+
+    private final List<Rectangle> classified = new ArrayList<>();
+
+    private ImageService recording(boolean cat) {
+        return (image, confidenceThreshhold) -> {
+            classified.add(new Rectangle(image.getMinX(), image.getMinY(), image.getWidth(), image.getHeight()));
+            return cat;
+        };
+    }
+
+    private static BufferedImage mask(int width, int height, Rectangle... areas) {
+        BufferedImage mask = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = mask.createGraphics();
+        g.setColor(Color.WHITE);
+        for (Rectangle area : areas) {
+            g.fill(area);
+        }
+        g.dispose();
+        return mask;
+    }
+
+    @Test
+    @DisplayName("Regions are parsed from semicolon separated fractions, skipping blanks")
+    void parseRegions_severalRegions_parsesEach() {
+        List<Rectangle2D> regions = RegionOfInterestImageService.parseRegions(" 0, 0.5, 1, 0.5 ;; 0.25,0,0.5,0.25;");
+
+        assertEquals(List.of(new Rectangle2D.Double(0, 0.5, 1, 0.5), new Rectangle2D.Double(0.25, 0, 0.5, 0.25)), regions);
+        assertTrue(RegionOfInterestImageService.parseRegions("").isEmpty());
+    }
+
+    @Test
+    @DisplayName("A region without four numbers is rejected")
+    void parseRegions_wrongArity_throws() {
+        assertThrows(IllegalArgumentException.class, () -> RegionOfInterestImageService.parseRegions("0,0,1"));
+        assertThrows(NumberFormatException.class, () -> RegionOfInterestImageService.parseRegions("0,0,1,wide"));
+    }
+
+    @Test
+    @DisplayName("A region smaller than a tile is sent as is")
+    void tilesFor_smallRegion_oneTile() {
+        RegionOfInterestImageService service = new RegionOfInterestImageService(
+                recording(false), List.of(new Rectangle2D.Double(0, 0.5, 1, 0.5)), 640);
+
+        assertEquals(List.of(new Rectangle(0, 240, 640, 240)), service.tilesFor(640, 480));
+    }
+
+    @Test
+    @DisplayName("A large region is split into overlapping tiles that cover it and stay inside it")
+    void tilesFor_largeRegion_splitIntoOverlappingTiles() {
+        RegionOfInterestImageService service = new RegionOfInterestImageService(
+                recording(false), List.of(new Rectangle2D.Double(0, 0, 1, 1)), 640);
+
+        List<Rectangle> tiles = service.tilesFor(1920, 1080);
+
+        Rectangle frame = new Rectangle(0, 0, 1920, 1080);
+        for (Rectangle tile : tiles) {
+            assertTrue(tile.width <= 640 && tile.height <= 640, tile.toString());
+            assertTrue(frame.contains(tile), tile.toString());
+        }
+        for (int y = 0; y < 1080; y += 7) {
+            for (int x = 0; x < 1920; x += 7) {
+                int px = x;
+                int py = y;
+                assertTrue(tiles.stream().anyMatch(t -> t.contains(px, py)), x + "," + y);
+            }
+        }
+        assertTrue(tiles.get(0).intersects(tiles.get(1)), "neighbouring tiles overlap");
+        assertEquals(8, tiles.size());
+    }
+
+    @Test
+    @DisplayName("Tiles follow the frame size when the resolution changes")
+    void tilesFor_resolutionChange_recomputed() {
+        RegionOfInterestImageService service = new RegionOfInterestImageService(
+                recording(false), List.of(new Rectangle2D.Double(0.5, 0, 0.5, 1)), 0);
+
+        assertEquals(List.of(new Rectangle(320, 0, 320, 480)), service.tilesFor(640, 480));
+        assertEquals(List.of(new Rectangle(160, 0, 160, 240)), service.tilesFor(320, 240));
+    }
+
+    @Test
+    @DisplayName("A fully covered mask becomes a single region")
+    void regionsFromMask_fullMask_oneRegion() {
+        List<Rectangle2D> regions = RegionOfInterestImageService.regionsFromMask(mask(160, 160, new Rectangle(0, 0, 160, 160)));
+
+        assertEquals(List.of(new Rectangle2D.Double(0, 0, 1, 1)), regions);
+    }
+
+    @Test
+    @DisplayName("Separate areas of a mask become separate regions, each merged down its rows")
+    void regionsFromMask_twoAreas_twoRegions() {
+        List<Rectangle2D> regions = RegionOfInterestImageService.regionsFromMask(
+                mask(160, 160, new Rectangle(0, 0, 40, 80), new Rectangle(100, 120, 60, 40)));
+
+        assertEquals(List.of(new Rectangle2D.Double(0, 0, 0.25, 0.5), new Rectangle2D.Double(100 / 160.0, 0.75, 60 / 160.0, 0.25)), regions);
+    }
+
+    @Test
+    @DisplayName("Rows whose runs differ are not merged")
+    void regionsFromMask_lShape_twoRegions() {
+        List<Rectangle2D> regions = RegionOfInterestImageService.regionsFromMask(
+                mask(160, 160, new Rectangle(0, 0, 20, 160), new Rectangle(0, 140, 160, 20)));
+
+        assertEquals(List.of(new Rectangle2D.Double(0, 0, 0.125, 140 / 160.0), new Rectangle2D.Double(0, 140 / 160.0, 1, 20 / 160.0)), regions);
+    }
+
+    @Test
+    @DisplayName("A mask whose width is not a multiple of the cell width keeps the area at its right edge")
+    void regionsFromMask_unevenWidth_rightEdgeKept() {
+        //cells of 6 and 10 pixels leave a narrower last column
+        assertEquals(List.of(new Rectangle2D.Double(0, 0, 1, 1)),
+                RegionOfInterestImageService.regionsFromMask(mask(100, 160, new Rectangle(0, 0, 100, 160))));
+        assertEquals(List.of(new Rectangle2D.Double(0, 0, 1, 1)),
+                RegionOfInterestImageService.regionsFromMask(mask(170, 160, new Rectangle(0, 0, 170, 160))));
+
+        List<Rectangle2D> strip = RegionOfInterestImageService.regionsFromMask(mask(100, 160, new Rectangle(97, 0, 3, 160)));
+        assertEquals(List.of(new Rectangle2D.Double(0.96, 0, 0.04, 1)), strip);
+    }
+
+    @Test
+    @DisplayName("An area touching the right edge of an uneven mask is closed on every row it covers")
+    void regionsFromMask_unevenWidthEdgeArea_oneRegionPerShape() {
+        List<Rectangle2D> regions = RegionOfInterestImageService.regionsFromMask(
+                mask(100, 160, new Rectangle(90, 20, 10, 40), new Rectangle(0, 100, 30, 20)));
+
+        assertEquals(List.of(new Rectangle2D.Double(90 / 100.0, 20 / 160.0, 10 / 100.0, 40 / 160.0),
+                new Rectangle2D.Double(0, 100 / 160.0, 30 / 100.0, 20 / 160.0)), regions);
+    }
+
+    @Test
+    @DisplayName("An empty mask has no regions")
+    void regionsFromMask_emptyMask_none() {
+        assertTrue(RegionOfInterestImageService.regionsFromMask(mask(64, 48)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Scanning stops at the first tile with a cat")
+    void imageContainsCat_catInFirstTile_stopsScanning() {
+        RegionOfInterestImageService service = new RegionOfInterestImageService(
+                recording(true), List.of(new Rectangle2D.Double(0, 0, 0.5, 1), new Rectangle2D.Double(0.5, 0, 0.5, 1)), 0);
+
+        assertTrue(service.imageContainsCat(new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB), 50.0f));
+        assertEquals(1, classified.size());
+    }
+
+    @Test
+    @DisplayName("Every tile is classified when there is no cat")
+    void imageContainsCat_noCat_scansEveryTile() {
+        RegionOfInterestImageService service = new RegionOfInterestImageService(
+                recording(false), List.of(new Rectangle2D.Double(0, 0, 0.5, 1), new Rectangle2D.Double(0.5, 0, 0.5, 1)), 0);
+
+        assertFalse(service.imageContainsCat(new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB), 50.0f));
+        assertEquals(List.of(new Rectangle(0, 0, 320, 480), new Rectangle(0, 0, 320, 480)), classified);
+    }
+
+    @Test
+    @DisplayName("A camera without regions gets the delegate back")
+    void forCamera_noRegions_returnsDelegate() throws IOException {
+        Properties props = new Properties();
+        props.setProperty("roi.garden.regions", "0,0,1,0.5");
+        ImageService delegate = recording(false);
+
+        assertSame(delegate, RegionOfInterestImageService.forCamera(props, "porch", delegate));
+        assertTrue(RegionOfInterestImageService.forCamera(props, "garden", delegate) instanceof RegionOfInterestImageService);
+    }
+}
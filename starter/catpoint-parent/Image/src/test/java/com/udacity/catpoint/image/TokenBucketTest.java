@@ -0,0 +1,74 @@
+package com.udacity.catpoint.image;
+
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    @DisplayName("A full bucket allows its burst back to back and then refuses")
+    void tryAcquire_fullBucket_allowsBurstOnly() {
+        TokenBucket bucket = new TokenBucket(1, 3, 0);
+
+        assertTrue(bucket.tryAcquire(0, 0));
+        assertTrue(bucket.tryAcquire(0, 0));
+        assertTrue(bucket.tryAcquire(0, 0));
+        assertFalse(bucket.tryAcquire(0, 0));
+    }
+
+    @Test
+    @DisplayName("Tokens come back at the configured rate")
+    void tryAcquire_afterWaiting_refilledAtRate() {
+        TokenBucket bucket = new TokenBucket(2, 1, 0);
+        assertTrue(bucket.tryAcquire(0, 0));
+
+        assertFalse(bucket.tryAcquire(0, SECOND / 4));
+        assertTrue(bucket.tryAcquire(0, SECOND / 2));
+        assertEquals(0.5, bucket.getAvailableTokens(SECOND * 3 / 4), 1e-9);
+    }
+
+    @Test
+    @DisplayName("A long idle period refills no more than the burst")
+    void getAvailableTokens_longIdle_cappedAtBurst() {
+        TokenBucket bucket = new TokenBucket(10, 4, 0);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(bucket.tryAcquire(0, 0));
+        }
+
+        assertEquals(4, bucket.getAvailableTokens(60 * SECOND), 1e-9);
+    }
+
+    @Test
+    @DisplayName("A caller leaving a reserve is refused once only the reserve is left")
+    void tryAcquire_withReserve_leavesReserve() {
+        TokenBucket bucket = new TokenBucket(1, 3, 0);
+
+        assertTrue(bucket.tryAcquire(1, 0));
+        assertTrue(bucket.tryAcquire(1, 0));
+        assertFalse(bucket.tryAcquire(1, 0));
+        assertTrue(bucket.tryAcquire(0, 0));
+    }
+
+    @Test
+    @DisplayName("A released token can be taken again but never beyond the burst")
+    void release_cappedAtBurst() {
+        TokenBucket bucket = new TokenBucket(1, 2, 0);
+        assertTrue(bucket.tryAcquire(0, 0));
+        bucket.release();
+        bucket.release();
+
+        assertEquals(2, bucket.getAvailableTokens(0), 1e-9);
+    }
+
+    @Test
+    @DisplayName("A rate of zero or a burst below one is rejected")
+    void constructor_invalidSettings_throws() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0.5));
+    }
+}
@@ -0,0 +1,419 @@
+package com.udacity.catpoint.security.activity;
+
+import com.udacity.catpoint.security.application.ServiceDispatcher;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming stage between a sensor feed and the SecurityService. Every reported state is counted,
+ * but only changes that matter reach the alarm state machine.
+ * <p>
+ * Motion sensors re-trigger every few seconds while someone moves about, and each toggle used to
+ * be a state change with its own rule evaluation, repository write and listener round. Here a
+ * motion sensor that goes quiet is only deactivated once it has stayed quiet for the hold time,
+ * and triggers in the meantime are absorbed, so continuous motion is one activation and one
+ * deactivation. Activations always pass straight through, so the alarm is never delayed. Other
+ * sensor types pass every change straight through.
+ * <p>
+ * Activations are counted in rings of one second buckets, per sensor for the last minute and per
+ * type for the last hour, which answer sliding window counts, aligned tumbling window counts and
+ * rates without keeping any events. Like the SecurityService, use it on the service thread only,
+ * through the {@link ServiceDispatcher}.
+ */
+public class ActivityAggregator implements AutoCloseable {
+
+    public static final long BUCKET_MILLIS = 1000;
+    //powers of two, so the bucket of a time is a mask away
+    private static final int SENSOR_BUCKETS = 64;
+    private static final int TYPE_BUCKETS = 4096;
+    private static final long NOT_HOLDING = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final SensorType[] TYPES = SensorType.values();
+
+    private final Logger log = LoggerFactory.getLogger(ActivityAggregator.class);
+
+    private final SecurityService securityService;
+    private final ServiceDispatcher serviceDispatcher;
+    private final long holdNanos;
+    private final long bucketNanos = TimeUnit.MILLISECONDS.toNanos(BUCKET_MILLIS);
+    private final long startNanos = System.nanoTime();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sensor-activity");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Runnable flush = () -> flush(System.nanoTime());
+
+    //one slot per sensor that has reported
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private Sensor[] sensors = new Sensor[INITIAL_CAPACITY];
+    private boolean[] reportedActive = new boolean[INITIAL_CAPACITY];
+    private long[] holdUntil = new long[INITIAL_CAPACITY];
+    private long[] sensorBucket = new long[INITIAL_CAPACITY];
+    private int[] sensorCounts = new int[INITIAL_CAPACITY * SENSOR_BUCKETS];
+    private int usedSlots = 0;
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount = 0;
+    private int knownSensorCount = -1;
+
+    private final long[] typeBucket = new long[TYPES.length];
+    private final int[] typeCounts = new int[TYPES.length * TYPE_BUCKETS];
+
+    //pending deactivations in deadline order; a slot whose hold was cancelled is skipped when it comes up
+    private int[] queuedSlots = new int[INITIAL_CAPACITY];
+    private long[] queuedDeadlines = new long[INITIAL_CAPACITY];
+    private int queueHead = 0;
+    private int queueSize = 0;
+
+    private long received = 0;
+    private long forwarded = 0;
+    private long absorbed = 0;
+
+    /**
+     * @param holdMillis How long a motion sensor has to stay quiet before it is deactivated, 0 to pass every change
+     */
+    public ActivityAggregator(SecurityService securityService, ServiceDispatcher serviceDispatcher, long holdMillis) {
+        this.securityService = securityService;
+        this.serviceDispatcher = serviceDispatcher;
+        this.holdNanos = TimeUnit.MILLISECONDS.toNanos(holdMillis);
+        Arrays.fill(typeBucket, -1);
+    }
+
+    /**
+     * Starts releasing held deactivations, checked every quarter of the hold time. Without a hold
+     * time nothing is ever held, so nothing is scheduled.
+     */
+    public void start() {
+        if (holdNanos == 0) {
+            log.info("Sensor activity: motion not held");
+            return;
+        }
+        long millis = Math.max(10, Math.min(250, TimeUnit.NANOSECONDS.toMillis(holdNanos) / 4));
+        flusher.scheduleAtFixedRate(this::dispatchFlush, millis, millis, TimeUnit.MILLISECONDS);
+        log.info("Sensor activity: motion held for {} ms", TimeUnit.NANOSECONDS.toMillis(holdNanos));
+    }
+
+    /**
+     * Takes a reported sensor state, which may be the state the sensor already has.
+     * @return true if it changed the sensor in the SecurityService
+     */
+    public boolean report(Sensor sensor, boolean active) {
+        return report(sensor, active, System.nanoTime());
+    }
+
+    boolean report(Sensor sensor, boolean active, long now) {
+        received++;
+        int slot = slotOf(sensor);
+        boolean changed = reportedActive[slot] != active;
+        reportedActive[slot] = active;
+        if (changed && active) {
+            count(slot, sensor.getSensorType(), bucket(now));
+        }
+        boolean passed;
+        if (sensor.getSensorType() != SensorType.MOTION || holdNanos == 0) {
+            passed = forward(sensor, active);
+        } else if (active) {
+            holdUntil[slot] = NOT_HOLDING;
+            passed = forward(sensor, true);
+        } else {
+            if (sensor.getActive() && holdUntil[slot] == NOT_HOLDING) {
+                holdUntil[slot] = now + holdNanos;
+                enqueue(slot, holdUntil[slot]);
+            }
+            passed = false;
+        }
+        if (changed && !passed) {
+            absorbed++;
+        }
+        return passed;
+    }
+
+    private boolean forward(Sensor sensor, boolean active) {
+        if (sensor.getActive() == active) {
+            return false;
+        }
+        securityService.changeSensorActivationStatus(sensor, active);
+        forwarded++;
+        return true;
+    }
+
+    private void dispatchFlush() {
+        try {
+            serviceDispatcher.runAndWait(flush);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            //an exception would cancel the schedule and leave motion sensors active for good
+            log.error("Sensor activity flush failed", e);
+        }
+    }
+
+    /**
+     * Deactivates the motion sensors whose hold has run out. Runs on the service thread.
+     */
+    void flush(long now) {
+        Collection<Sensor> current = securityService.getSensors();
+        if (current.size() != knownSensorCount) {
+            prune(current);
+        }
+        while (queueSize > 0 && queuedDeadlines[queueHead] - now <= 0) {
+            int slot = queuedSlots[queueHead];
+            long deadline = queuedDeadlines[queueHead];
+            queueHead = (queueHead + 1) % queuedSlots.length;
+            queueSize--;
+            if (holdUntil[slot] != deadline) {
+                //reactivated, or the slot was freed, since it was queued
+                continue;
+            }
+            holdUntil[slot] = NOT_HOLDING;
+            if (!reportedActive[slot]) {
+                forward(sensors[slot], false);
+            }
+        }
+    }
+
+    /**
+     * Frees the slots of sensors that are no longer part of the system.
+     */
+    private void prune(Collection<Sensor> current) {
+        knownSensorCount = current.size();
+        for (int slot = 0; slot < usedSlots; slot++) {
+            Sensor sensor = sensors[slot];
+            if (sensor != null && !current.contains(sensor)) {
+                slots.remove(sensor.getSensorId());
+                sensors[slot] = null;
+                holdUntil[slot] = NOT_HOLDING;
+                if (freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                }
+                freeSlots[freeCount++] = slot;
+            }
+        }
+    }
+
+    private int slotOf(Sensor sensor) {
+        Integer known = slots.get(sensor.getSensorId());
+        if (known != null) {
+            int slot = known;
+            sensors[slot] = sensor;
+            return slot;
+        }
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (usedSlots == sensors.length) {
+                grow();
+            }
+            slot = usedSlots++;
+        }
+        sensors[slot] = sensor;
+        //a sensor's first report is not a change of its own
+        reportedActive[slot] = sensor.getActive();
+        holdUntil[slot] = NOT_HOLDING;
+        sensorBucket[slot] = -1;
+        slots.put(sensor.getSensorId(), slot);
+        return slot;
+    }
+
+    private void grow() {
+        int capacity = sensors.length * 2;
+        sensors = Arrays.copyOf(sensors, capacity);
+        reportedActive = Arrays.copyOf(reportedActive, capacity);
+        holdUntil = Arrays.copyOf(holdUntil, capacity);
+        sensorBucket = Arrays.copyOf(sensorBucket, capacity);
+        sensorCounts = Arrays.copyOf(sensorCounts, capacity * SENSOR_BUCKETS);
+    }
+
+    private void enqueue(int slot, long deadline) {
+        if (queueSize == queuedSlots.length) {
+            int[] slotsCopy = new int[queueSize * 2];
+            long[] deadlinesCopy = new long[queueSize * 2];
+            for (int i = 0; i < queueSize; i++) {
+                int from = (queueHead + i) % queuedSlots.length;
+                slotsCopy[i] = queuedSlots[from];
+                deadlinesCopy[i] = queuedDeadlines[from];
+            }
+            queuedSlots = slotsCopy;
+            queuedDeadlines = deadlinesCopy;
+            queueHead = 0;
+        }
+        int tail = (queueHead + queueSize) % queuedSlots.length;
+        queuedSlots[tail] = slot;
+        queuedDeadlines[tail] = deadline;
+        queueSize++;
+    }
+
+    private long bucket(long now) {
+        return (now - startNanos) / bucketNanos;
+    }
+
+    private void count(int slot, SensorType type, long bucket) {
+        sensorBucket[slot] = advance(sensorCounts, slot * SENSOR_BUCKETS, SENSOR_BUCKETS, sensorBucket[slot], bucket);
+        sensorCounts[slot * SENSOR_BUCKETS + (int) (bucket & (SENSOR_BUCKETS - 1))]++;
+        int t = type.ordinal();
+        typeBucket[t] = advance(typeCounts, t * TYPE_BUCKETS, TYPE_BUCKETS, typeBucket[t], bucket);
+        typeCounts[t * TYPE_BUCKETS + (int) (bucket & (TYPE_BUCKETS - 1))]++;
+    }
+
+    /**
+     * Clears the buckets a ring skipped over since it was last written.
+     * @return the new last bucket of the ring
+     */
+    private static long advance(int[] counts, int offset, int size, long last, long bucket) {
+        if (bucket <= last) {
+            return last;
+        }
+        if (last < 0 || bucket - last >= size) {
+            Arrays.fill(counts, offset, offset + size, 0);
+        } else {
+            for (long b = last + 1; b <= bucket; b++) {
+                counts[offset + (int) (b & (size - 1))] = 0;
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * @return the sum of the ring's buckets from first to last, inclusive, as far as the ring still holds them
+     */
+    private static int sum(int[] counts, int offset, int size, long written, long first, long last) {
+        first = Math.max(first, Math.max(0, written - size + 1));
+        last = Math.min(last, written);
+        int total = 0;
+        for (long b = first; b <= last; b++) {
+            total += counts[offset + (int) (b & (size - 1))];
+        }
+        return total;
+    }
+
+    private static long buckets(long windowMillis) {
+        return Math.max(1, (windowMillis + BUCKET_MILLIS - 1) / BUCKET_MILLIS);
+    }
+
+    /**
+     * @return activations of the sensor in the sliding window ending now, up to the last minute
+     */
+    public int getActivations(Sensor sensor, long windowMillis) {
+        return getActivations(sensor, windowMillis, System.nanoTime());
+    }
+
+    int getActivations(Sensor sensor, long windowMillis, long now) {
+        Integer slot = slots.get(sensor.getSensorId());
+        if (slot == null) {
+            return 0;
+        }
+        long current = bucket(now);
+        long first = current - Math.min(buckets(windowMillis), SENSOR_BUCKETS) + 1;
+        return sum(sensorCounts, slot * SENSOR_BUCKETS, SENSOR_BUCKETS, sensorBucket[slot], first, current);
+    }
+
+    /**
+     * @return activations of sensors of the type in the sliding window ending now, up to the last hour
+     */
+    public int getActivations(SensorType type, long windowMillis) {
+        return getActivations(type, windowMillis, System.nanoTime());
+    }
+
+    int getActivations(SensorType type, long windowMillis, long now) {
+        int t = type.ordinal();
+        long current = bucket(now);
+        long first = current - Math.min(buckets(windowMillis), TYPE_BUCKETS) + 1;
+        return sum(typeCounts, t * TYPE_BUCKETS, TYPE_BUCKETS, typeBucket[t], first, current);
+    }
+
+    /**
+     * @return activations per minute of sensors of the type, averaged over the sliding window
+     */
+    public double getActivationsPerMinute(SensorType type, long windowMillis) {
+        long millis = Math.min(buckets(windowMillis), TYPE_BUCKETS) * BUCKET_MILLIS;
+        return getActivations(type, windowMillis) * (double) TimeUnit.MINUTES.toMillis(1) / millis;
+    }
+
+    /**
+     * Tumbling windows: consecutive windows of the given length, aligned to the start of the
+     * aggregator, not counting the one in progress.
+     * @return activations of sensors of the type in each of the last count windows, oldest first
+     */
+    public int[] getWindowCounts(SensorType type, long windowMillis, int count) {
+        return getWindowCounts(type, windowMillis, count, System.nanoTime());
+    }
+
+    int[] getWindowCounts(SensorType type, long windowMillis, int count, long now) {
+        int t = type.ordinal();
+        long width = buckets(windowMillis);
+        long inProgress = bucket(now) / width;
+        int[] windows = new int[count];
+        for (int i = 0; i < count; i++) {
+            long window = inProgress - count + i;
+            if (window >= 0) {
+                windows[i] = sum(typeCounts, t * TYPE_BUCKETS, TYPE_BUCKETS, typeBucket[t],
+                        window * width, (window + 1) * width - 1);
+            }
+        }
+        return windows;
+    }
+
+    /**
+     * @return up to limit sensors with the most activations in the sliding window, busiest first
+     */
+    public List<Sensor> getBusiestSensors(long windowMillis, int limit) {
+        long now = System.nanoTime();
+        List<Sensor> busy = new ArrayList<>();
+        Map<Sensor, Integer> activations = new HashMap<>();
+        for (int slot = 0; slot < usedSlots; slot++) {
+            Sensor sensor = sensors[slot];
+            if (sensor == null) {
+                continue;
+            }
+            int count = getActivations(sensor, windowMillis, now);
+            if (count > 0) {
+                busy.add(sensor);
+                activations.put(sensor, count);
+            }
+        }
+        busy.sort(Comparator.comparing((Sensor s) -> activations.get(s)).reversed());
+        return busy.size() > limit ? new ArrayList<>(busy.subList(0, limit)) : busy;
+    }
+
+    /**
+     * @return every state reported, changed or not
+     */
+    public long getReceived() {
+        return received;
+    }
+
+    /**
+     * @return the changes passed to the SecurityService
+     */
+    public long getForwarded() {
+        return forwarded;
+    }
+
+    /**
+     * @return the state changes reported that never reached the SecurityService
+     */
+    public long getAbsorbed() {
+        return absorbed;
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+    }
+}
@@ -0,0 +1,518 @@
+package com.udacity.catpoint.security.api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.udacity.catpoint.security.application.ServiceDispatcher;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.history.AlarmHistory;
+import com.udacity.catpoint.security.history.HistoryEntry;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Embedded HTTP/JSON API for the security system, bound to localhost only.
+ * <pre>
+ *      GET  /api/state              alarm status, arming status and sensor count
+ *      GET  /api/sensors            every sensor
+ *      PUT  /api/sensors/[id]       {"active": true} activates or deactivates a sensor
+ *      PUT  /api/arming             {"armingStatus": "ARMED_HOME"} changes the arming status
+ *      POST /api/images             an encoded camera image (jpeg, png, ...) of up to 8 MB to scan for cats
+ *      GET  /api/history?from=02:00&amp;to=02:05[&amp;sensor=id]   transitions in a time range
+ * </pre>
+ * History times are epoch milliseconds, local date-times such as 2024-03-01T02:00, or times of day
+ * such as 02:00, meaning today. The range defaults to the last hour. History is only served when
+ * the server is given an {@link AlarmHistory}.
+ * The JDK server accepts and reads connections on its own selector thread and runs handlers on a
+ * small pool. Handlers never wait for the SecurityService: each call is queued on the
+ * {@link ServiceDispatcher} the panels use, so API and GUI calls stay ordered, and the response is
+ * encoded and written back on the pool once the call completes. Decoding JSON and images also
+ * happens on the pool, so the service thread only ever runs the state machine itself. Images are
+ * classified on threads of their own, since the image service may be a slow remote call, and only
+ * the verdict is queued on the service thread. Request bodies over their size limit are refused
+ * with 413 rather than read into memory.
+ */
+public class SecurityApiServer implements AutoCloseable {
+
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String SENSORS_PATH = "/api/sensors";
+    private static final long DEFAULT_HISTORY_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int MAX_HISTORY_ENTRIES = 10_000;
+    private static final int MAX_JSON_BYTES = 64 * 1024;
+    private static final int MAX_IMAGE_BYTES = 8 * 1024 * 1024;
+
+    static {
+        //the JDK server writes headers and body separately, and with Nagle's algorithm on the body
+        //waits for the client's delayed ack: about 40 ms per request. The server reads this setting
+        //once, when the first HttpServer is created, so an explicit -D still wins.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(SecurityApiServer.class);
+
+    private final SecurityService securityService;
+    private final ServiceDispatcher serviceDispatcher;
+    private final AlarmHistory history;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ExecutorService classifier;
+    private final Gson gson = new Gson();
+
+    /**
+     * @param port Port to listen on, 0 picks a free one
+     * @param threads Handler threads; handlers never block, so about one per core is enough
+     */
+    public SecurityApiServer(SecurityService securityService, ServiceDispatcher serviceDispatcher,
+                             int port, int threads) throws IOException {
+        this(securityService, serviceDispatcher, null, port, threads);
+    }
+
+    /**
+     * @param history Served on /api/history, null to leave it out
+     * @param port Port to listen on, 0 picks a free one
+     * @param threads Handler threads; handlers never block, so about one per core is enough. As many
+     *                again classify posted images
+     */
+    public SecurityApiServer(SecurityService securityService, ServiceDispatcher serviceDispatcher,
+                             AlarmHistory history, int port, int threads) throws IOException {
+        this.securityService = securityService;
+        this.serviceDispatcher = serviceDispatcher;
+        this.history = history;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "security-api-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger classifierCount = new AtomicInteger();
+        this.classifier = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "security-api-image-" + classifierCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        server.createContext("/api/state", this::handleState);
+        server.createContext(SENSORS_PATH, this::handleSensors);
+        server.createContext("/api/arming", this::handleArming);
+        server.createContext("/api/images", this::handleImages);
+        if (history != null) {
+            server.createContext("/api/history", this::handleHistory);
+        }
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+        log.info("Security API listening on http://localhost:{}/api", getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleState(HttpExchange exchange) {
+        if (requireMethod(exchange, "GET")) {
+            reply(exchange, () -> new StateView(securityService.getAlarmStatus().toString(),
+                    securityService.getArmingStatus().toString(), securityService.getSensors().size()));
+        }
+    }
+
+    private void handleSensors(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals(SENSORS_PATH) || path.equals(SENSORS_PATH + "/")) {
+            if (requireMethod(exchange, "GET")) {
+                reply(exchange, () -> {
+                    List<SensorView> sensors = new ArrayList<>(securityService.getSensors().size());
+                    for (Sensor sensor : securityService.getSensors()) {
+                        sensors.add(new SensorView(sensor));
+                    }
+                    return sensors;
+                });
+            }
+            return;
+        }
+        if (!requireMethod(exchange, "PUT")) {
+            return;
+        }
+        UUID sensorId;
+        ActiveRequest request;
+        try {
+            sensorId = UUID.fromString(path.substring(SENSORS_PATH.length() + 1));
+            request = readJson(exchange, ActiveRequest.class);
+        } catch (ApiException e) {
+            error(exchange, e.status, e.getMessage());
+            return;
+        } catch (IllegalArgumentException | JsonParseException e) {
+            error(exchange, 400, "Expected PUT /api/sensors/[sensor id] with {\"active\": true|false}");
+            return;
+        }
+        if (request == null || request.active == null) {
+            error(exchange, 400, "Missing \"active\"");
+            return;
+        }
+        boolean active = request.active;
+        reply(exchange, () -> {
+            for (Sensor sensor : securityService.getSensors()) {
+                if (sensor.getSensorId().equals(sensorId)) {
+                    securityService.changeSensorActivationStatus(sensor, active);
+                    return new SensorView(sensor);
+                }
+            }
+            throw new ApiException(404, "No sensor " + sensorId);
+        });
+    }
+
+    private void handleArming(HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "PUT")) {
+            return;
+        }
+        ArmingStatus armingStatus;
+        try {
+            ArmingRequest request = readJson(exchange, ArmingRequest.class);
+            armingStatus = ArmingStatus.valueOf(request.armingStatus);
+        } catch (ApiException e) {
+            error(exchange, e.status, e.getMessage());
+            return;
+        } catch (IllegalArgumentException | NullPointerException | JsonParseException e) {
+            error(exchange, 400, "Expected {\"armingStatus\": \"DISARMED\"|\"ARMED_HOME\"|\"ARMED_AWAY\"}");
+            return;
+        }
+        reply(exchange, () -> {
+            securityService.setArmingStatus(armingStatus);
+            return new StateView(securityService.getAlarmStatus().toString(),
+                    securityService.getArmingStatus().toString(), securityService.getSensors().size());
+        });
+    }
+
+    private void handleImages(HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "POST")) {
+            return;
+        }
+        byte[] body = readBody(exchange, MAX_IMAGE_BYTES);
+        if (body == null) {
+            error(exchange, 413, "Images are limited to " + MAX_IMAGE_BYTES + " bytes");
+            return;
+        }
+        BufferedImage image;
+        try {
+            image = ImageIO.read(new ByteArrayInputStream(body));
+        } catch (IOException e) {
+            //a format ImageIO knows, but damaged or cut short
+            log.debug("Unable to decode posted image", e);
+            error(exchange, 415, "Body is not an image ImageIO can decode");
+            return;
+        }
+        if (image == null) {
+            error(exchange, 415, "Body is not an image format ImageIO can read");
+            return;
+        }
+        CompletableFuture<Boolean> verdict;
+        try {
+            verdict = CompletableFuture.supplyAsync(() -> securityService.classifyImage(image), classifier);
+        } catch (RejectedExecutionException e) {
+            error(exchange, 503, "Image classification unavailable");
+            return;
+        }
+        verdict.whenComplete((cat, failure) -> {
+            if (failure != null) {
+                log.error("Unable to classify posted image", failure);
+                error(exchange, 502, "Image classification failed");
+                return;
+            }
+            reply(exchange, () -> {
+                securityService.applyCatVerdict(cat);
+                return new StateView(securityService.getAlarmStatus().toString(),
+                        securityService.getArmingStatus().toString(), securityService.getSensors().size());
+            });
+        });
+    }
+
+    /**
+     * Reads the whole request body unless it is longer than the limit.
+     * @return the body, or null if it is over the limit
+     */
+    private static byte[] readBody(HttpExchange exchange, int limit) throws IOException {
+        //checked before touching the body: closing it would wait to drain what the client sends
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null) {
+            try {
+                if (Long.parseLong(length.trim()) > limit) {
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                //let the read below enforce the limit
+            }
+        }
+        InputStream body = exchange.getRequestBody();
+        byte[] bytes = body.readNBytes(limit + 1);
+        if (bytes.length > limit) {
+            return null;
+        }
+        body.close();
+        return bytes;
+    }
+
+    /**
+     * Answers from the history directly on the handler thread: the history is safe to read
+     * concurrently and never needs the service thread.
+     */
+    private void handleHistory(HttpExchange exchange) {
+        if (!requireMethod(exchange, "GET")) {
+            return;
+        }
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        long to;
+        long from;
+        UUID sensorId = null;
+        try {
+            to = query.containsKey("to") ? parseTime(query.get("to")) : System.currentTimeMillis();
+            from = query.containsKey("from") ? parseTime(query.get("from")) : to - DEFAULT_HISTORY_MILLIS;
+            if (query.containsKey("sensor")) {
+                sensorId = UUID.fromString(query.get("sensor"));
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            error(exchange, 400, "Expected GET /api/history?from=[time]&to=[time]&sensor=[sensor id]");
+            return;
+        }
+        List<HistoryEntry> entries;
+        try {
+            //one more than is sent tells whether there were more
+            entries = sensorId == null ? history.between(from, to, MAX_HISTORY_ENTRIES + 1)
+                    : history.forSensor(sensorId, from, to, MAX_HISTORY_ENTRIES + 1);
+        } catch (IOException e) {
+            log.error("Unable to read alarm history", e);
+            error(exchange, 500, "Unable to read alarm history");
+            return;
+        }
+        List<HistoryView> views = new ArrayList<>(Math.min(entries.size(), MAX_HISTORY_ENTRIES));
+        for (HistoryEntry entry : entries) {
+            if (views.size() == MAX_HISTORY_ENTRIES) {
+                break;
+            }
+            views.add(new HistoryView(entry));
+        }
+        send(exchange, 200, gson.toJson(new HistoryReply(from, to, entries.size() > views.size(), views)));
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    /**
+     * @return epoch milliseconds for a number, a local date-time, or a time of day today
+     */
+    private static long parseTime(String text) {
+        if (!text.isEmpty() && text.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(text);
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        if (text.endsWith("Z")) {
+            return Instant.parse(text).toEpochMilli();
+        }
+        if (text.contains("T")) {
+            return LocalDateTime.parse(text).atZone(zone).toInstant().toEpochMilli();
+        }
+        return LocalTime.parse(text).atDate(LocalDate.now(zone)).atZone(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Queues the call on the service thread and writes its result as JSON once it is done,
+     * without holding a handler thread in the meantime.
+     */
+    private void reply(HttpExchange exchange, Supplier<Object> call) {
+        CompletableFuture<Object> result;
+        try {
+            result = serviceDispatcher.call(call);
+        } catch (RuntimeException e) {
+            log.error("Unable to queue security service call", e);
+            error(exchange, 503, "Security service unavailable");
+            return;
+        }
+        result.whenCompleteAsync((body, failure) -> {
+            if (failure == null) {
+                send(exchange, 200, gson.toJson(body));
+                return;
+            }
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            if (cause instanceof ApiException) {
+                error(exchange, ((ApiException) cause).status, cause.getMessage());
+            } else {
+                log.error("Security service call failed", cause);
+                error(exchange, 500, "Security service call failed");
+            }
+        }, executor);
+    }
+
+    private boolean requireMethod(HttpExchange exchange, String method) {
+        if (method.equals(exchange.getRequestMethod())) {
+            return true;
+        }
+        exchange.getResponseHeaders().set("Allow", method);
+        error(exchange, 405, "Use " + method);
+        return false;
+    }
+
+    /**
+     * @throws JsonParseException if the body is not the JSON of the type
+     * @throws ApiException 413 if the body is over its limit
+     */
+    private <T> T readJson(HttpExchange exchange, Class<T> type) throws IOException {
+        byte[] body = readBody(exchange, MAX_JSON_BYTES);
+        if (body == null) {
+            throw new ApiException(413, "Request bodies are limited to " + MAX_JSON_BYTES + " bytes");
+        }
+        return gson.fromJson(new String(body, StandardCharsets.UTF_8), type);
+    }
+
+    private void error(HttpExchange exchange, int status, String message) {
+        send(exchange, status, gson.toJson(new ErrorView(message)));
+    }
+
+    private void send(HttpExchange exchange, int status, String json) {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        try (exchange; OutputStream os = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", JSON);
+            exchange.sendResponseHeaders(status, body.length);
+            os.write(body);
+        } catch (IOException e) {
+            //the client went away, nothing left to tell it
+            log.debug("Unable to send API response", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        classifier.shutdownNow();
+    }
+
+    //JSON shapes, read and written by gson
+
+    private static class StateView {
+        private final String alarmStatus;
+        private final String armingStatus;
+        private final int sensors;
+
+        StateView(String alarmStatus, String armingStatus, int sensors) {
+            this.alarmStatus = alarmStatus;
+            this.armingStatus = armingStatus;
+            this.sensors = sensors;
+        }
+    }
+
+    //copied on the service thread, so encoding on a handler thread never races with a sensor change
+    private static class SensorView {
+        private final String id;
+        private final String name;
+        private final String type;
+        private final boolean active;
+
+        SensorView(Sensor sensor) {
+            this.id = sensor.getSensorId().toString();
+            this.name = sensor.getName();
+            this.type = sensor.getSensorType().toString();
+            this.active = sensor.getActive();
+        }
+    }
+
+    private static class HistoryReply {
+        private final String from;
+        private final String to;
+        private final boolean truncated;
+        private final List<HistoryView> entries;
+
+        HistoryReply(long from, long to, boolean truncated, List<HistoryView> entries) {
+            this.from = Instant.ofEpochMilli(from).toString();
+            this.to = Instant.ofEpochMilli(to).toString();
+            this.truncated = truncated;
+            this.entries = entries;
+        }
+    }
+
+    private static class HistoryView {
+        private final String time;
+        private final long epochMillis;
+        private final String kind;
+        private final String sensorId;
+        private final String value;
+
+        HistoryView(HistoryEntry entry) {
+            this.time = Instant.ofEpochMilli(entry.getTime()).toString();
+            this.epochMillis = entry.getTime();
+            this.kind = entry.getKind().toString();
+            this.sensorId = entry.getSensorId() == null ? null : entry.getSensorId().toString();
+            this.value = entry.getValue();
+        }
+    }
+
+    private static class ErrorView {
+        private final String error;
+
+        ErrorView(String error) {
+            this.error = error;
+        }
+    }
+
+    private static class ActiveRequest {
+        private Boolean active;
+    }
+
+    private static class ArmingRequest {
+        private String armingStatus;
+    }
+
+    private static class ApiException extends RuntimeException {
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
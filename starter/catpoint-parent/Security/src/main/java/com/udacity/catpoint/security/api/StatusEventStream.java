@@ -0,0 +1,333 @@
+package com.udacity.catpoint.security.api;
+
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams every status change to any number of localhost subscribers as server-sent events:
+ * <pre>
+ *      curl -N http://localhost:[port]/api/events
+ *
+ *      id: 7
+ *      event: alarm
+ *      data: {"alarmStatus":"PENDING_ALARM"}
+ * </pre>
+ * Event names are alarm, catDetected, sensors and liveness. A liveness event names the sensor
+ * and whether it is online. A sensors event only says that sensors changed, not which ones, so its
+ * data is empty and clients re-fetch GET /api/sensors.
+ * <p>
+ * Register it with SecurityService.addStatusListener. The listener methods run on the service
+ * thread and never block it: each event is encoded once, and a read-only view of the same bytes is
+ * offered to every subscriber's bounded queue. One selector thread does all the socket work with
+ * non-blocking writes, so thousands of subscribers cost a queue each rather than a thread each.
+ * A subscriber whose queue is full is too slow to keep up and is disconnected.
+ */
+public class StatusEventStream implements StatusListener, AutoCloseable {
+
+    private static final byte[] RESPONSE_HEADERS = ("HTTP/1.1 200 OK\r\n"
+            + "Content-Type: text/event-stream\r\n"
+            + "Cache-Control: no-cache\r\n"
+            + "Connection: keep-alive\r\n"
+            + "\r\n"
+            + "retry: 1000\n\n").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NOT_FOUND = ("HTTP/1.1 404 Not Found\r\n"
+            + "Content-Length: 0\r\n"
+            + "Connection: close\r\n"
+            + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    //comment line, keeps idle connections open through proxies and finds dead ones
+    private static final ByteBuffer HEARTBEAT = ByteBuffer.wrap(":\n\n".getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+    private static final long HEARTBEAT_MILLIS = TimeUnit.SECONDS.toMillis(15);
+    private static final int MAX_REQUEST_BYTES = 8 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(StatusEventStream.class);
+
+    private final int maxQueuedEvents;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread selectorThread;
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    //subscribers with newly queued events, picked up by the selector thread
+    private final Queue<Subscriber> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong eventId = new AtomicLong();
+    private final AtomicLong slowConsumersDropped = new AtomicLong();
+    private volatile boolean closed = false;
+
+    /**
+     * @param port Port to listen on, 0 picks a free one
+     * @param maxQueuedEvents Events a subscriber may fall behind by before it is disconnected
+     */
+    public StatusEventStream(int port, int maxQueuedEvents) throws IOException {
+        this.maxQueuedEvents = maxQueuedEvents;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("localhost", port), 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.selectorThread = new Thread(this::run, "status-events");
+        selectorThread.setDaemon(true);
+    }
+
+    public void start() {
+        selectorThread.start();
+        log.info("Status events streaming on http://localhost:{}/api/events", getPort());
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getSlowConsumersDropped() {
+        return slowConsumersDropped.get();
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        publish("alarm", "{\"alarmStatus\":\"" + status + "\"}");
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        publish("catDetected", "{\"catDetected\":" + catDetected + "}");
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        publish("sensors", "{}");
+    }
+
+    @Override
+    public void sensorLivenessChanged(Sensor sensor, boolean online) {
+        publish("liveness", "{\"sensorId\":\"" + sensor.getSensorId() + "\",\"online\":" + online + "}");
+    }
+
+    /**
+     * Encodes the event once and queues it for every subscriber. Never blocks.
+     */
+    private void publish(String event, String json) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        String text = "id: " + eventId.incrementAndGet() + "\nevent: " + event + "\ndata: " + json + "\n\n";
+        ByteBuffer encoded = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+        offerToAll(encoded);
+    }
+
+    private void offerToAll(ByteBuffer encoded) {
+        for (Subscriber subscriber : subscribers) {
+            //duplicate shares the bytes and only gives this subscriber its own position
+            if (!subscriber.queue.offer(encoded.duplicate())) {
+                subscriber.slow = true;
+            }
+            if (subscriber.writePending.compareAndSet(false, true)) {
+                pendingWrites.add(subscriber);
+            }
+        }
+        selector.wakeup();
+    }
+
+    private void run() {
+        long nextHeartbeat = System.currentTimeMillis() + HEARTBEAT_MILLIS;
+        try {
+            while (!closed) {
+                selector.select(HEARTBEAT_MILLIS);
+                for (Subscriber subscriber = pendingWrites.poll(); subscriber != null; subscriber = pendingWrites.poll()) {
+                    subscriber.writePending.set(false);
+                    if (!subscriber.channel.isOpen()) {
+                        continue;
+                    }
+                    if (subscriber.slow) {
+                        slowConsumersDropped.incrementAndGet();
+                        log.debug("Disconnecting slow subscriber {}", subscriber.channel);
+                        disconnect(subscriber);
+                    } else if (!subscriber.waitingForWritable) {
+                        //the socket usually has room, so write now instead of waiting for a select round
+                        try {
+                            write(subscriber);
+                        } catch (IOException e) {
+                            disconnect(subscriber);
+                        }
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        //disconnected above while its readiness was waiting to be handled
+                        continue;
+                    }
+                    try {
+                        handle(key);
+                    } catch (IOException e) {
+                        if (key.attachment() != null) {
+                            disconnect((Subscriber) key.attachment());
+                        }
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextHeartbeat) {
+                    nextHeartbeat = now + HEARTBEAT_MILLIS;
+                    if (!subscribers.isEmpty()) {
+                        offerToAll(HEARTBEAT);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!closed) {
+                log.error("Status event stream stopped", e);
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) throws IOException {
+        if (key.isAcceptable()) {
+            SocketChannel channel = serverChannel.accept();
+            if (channel != null) {
+                channel.configureBlocking(false);
+                Subscriber subscriber = new Subscriber(channel, maxQueuedEvents);
+                subscriber.key = channel.register(selector, SelectionKey.OP_READ, subscriber);
+            }
+            return;
+        }
+        Subscriber subscriber = (Subscriber) key.attachment();
+        if (key.isReadable()) {
+            read(subscriber);
+        }
+        if (key.isValid() && key.isWritable()) {
+            write(subscriber);
+        }
+    }
+
+    /**
+     * Reads the request until its headers are complete, then starts streaming. Subscribers never
+     * send anything afterwards, so later reads only detect the client closing the connection.
+     */
+    private void read(Subscriber subscriber) throws IOException {
+        ByteBuffer request = subscriber.request;
+        if (request == null) {
+            ByteBuffer discard = ByteBuffer.allocate(256);
+            while (true) {
+                int read = subscriber.channel.read(discard);
+                if (read < 0) {
+                    disconnect(subscriber);
+                    return;
+                }
+                if (read == 0) {
+                    return;
+                }
+                discard.clear();
+            }
+        }
+        if (subscriber.channel.read(request) < 0 || !request.hasRemaining()) {
+            disconnect(subscriber);
+            return;
+        }
+        String head = new String(request.array(), 0, request.position(), StandardCharsets.US_ASCII);
+        if (!head.contains("\r\n\r\n")) {
+            return;
+        }
+        subscriber.request = null;
+        if (head.startsWith("GET /api/events ") || head.startsWith("GET /api/events?")) {
+            subscriber.queue.offer(ByteBuffer.wrap(RESPONSE_HEADERS));
+            subscribers.add(subscriber);
+        } else {
+            subscriber.queue.offer(ByteBuffer.wrap(NOT_FOUND));
+            subscriber.closeWhenWritten = true;
+        }
+        write(subscriber);
+    }
+
+    /**
+     * Writes queued events until the queue is empty or the socket buffer is full.
+     */
+    private void write(Subscriber subscriber) throws IOException {
+        for (ByteBuffer next = subscriber.queue.peek(); next != null; next = subscriber.queue.peek()) {
+            subscriber.channel.write(next);
+            if (next.hasRemaining()) {
+                if (!subscriber.waitingForWritable) {
+                    subscriber.waitingForWritable = true;
+                    subscriber.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+                return;
+            }
+            subscriber.queue.poll();
+        }
+        if (subscriber.closeWhenWritten) {
+            disconnect(subscriber);
+        } else if (subscriber.waitingForWritable) {
+            subscriber.waitingForWritable = false;
+            subscriber.key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void disconnect(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.queue.clear();
+        if (subscriber.key != null) {
+            subscriber.key.cancel();
+        }
+        try {
+            subscriber.channel.close();
+        } catch (IOException e) {
+            //already gone
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Subscriber subscriber : subscribers) {
+            disconnect(subscriber);
+        }
+        try {
+            selector.close();
+            serverChannel.close();
+        } catch (IOException e) {
+            log.warn("Unable to close status event stream", e);
+        }
+    }
+
+    private static class Subscriber {
+        private final SocketChannel channel;
+        private final ArrayBlockingQueue<ByteBuffer> queue;
+        private SelectionKey key;
+        private ByteBuffer request = ByteBuffer.allocate(MAX_REQUEST_BYTES);
+        private boolean closeWhenWritten = false;
+        //only touched by the selector thread
+        private boolean waitingForWritable = false;
+        private volatile boolean slow = false;
+        private final AtomicBoolean writePending = new AtomicBoolean();
+
+        Subscriber(SocketChannel channel, int maxQueuedEvents) {
+            this.channel = channel;
+            //one more slot for the response headers
+            this.queue = new ArrayBlockingQueue<>(maxQueuedEvents + 1);
+        }
+    }
+}
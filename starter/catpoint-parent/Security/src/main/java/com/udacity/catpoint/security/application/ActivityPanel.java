@@ -0,0 +1,129 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.activity.ActivityAggregator;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.StyleService;
+import net.miginfocom.swing.MigLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Sensor activity dashboard: activations per sensor type and the busiest sensors, from the
+ * {@link ActivityAggregator}, refreshed every second while the panel is showing.
+ */
+public class ActivityPanel extends JPanel {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final int MINUTES_SHOWN = 10;
+    private static final int BUSIEST_SHOWN = 5;
+
+    private final Logger log = LoggerFactory.getLogger(ActivityPanel.class);
+
+    private ActivityAggregator aggregator;
+    private ServiceDispatcher serviceDispatcher;
+
+    private Timer refreshTimer = new Timer((int) ActivityAggregator.BUCKET_MILLIS, e -> refresh());
+    private boolean refreshing = false;
+    private JLabel busiestLabel = new JLabel(" ");
+    private JLabel summaryLabel = new JLabel(" ");
+    private DefaultTableModel types = new DefaultTableModel(
+            new Object[]{"Type", "Last minute", "Per minute (10 min)", "Each of the last 10 minutes"}, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+
+    public ActivityPanel(ActivityAggregator aggregator, ServiceDispatcher serviceDispatcher) {
+        super();
+        setLayout(new MigLayout());
+        this.aggregator = aggregator;
+        this.serviceDispatcher = serviceDispatcher;
+
+        JLabel panelLabel = new JLabel("Sensor Activity");
+        panelLabel.setFont(StyleService.HEADING_FONT);
+
+        add(panelLabel, "span, wrap");
+        add(new JScrollPane(new JTable(types)), "span, width 560, height 100, wrap");
+        add(busiestLabel, "span, wrap");
+        add(summaryLabel, "span");
+        refresh();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        refreshTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        refreshTimer.stop();
+        super.removeNotify();
+    }
+
+    /**
+     * Copies the figures on the service thread and shows them on the EDT.
+     */
+    private void refresh() {
+        if (refreshing) {
+            return;
+        }
+        refreshing = true;
+        serviceDispatcher.call(Snapshot::new).whenComplete((snapshot, failure) -> SwingUtilities.invokeLater(() -> {
+            refreshing = false;
+            if (failure != null) {
+                log.error("Unable to read sensor activity", failure);
+                summaryLabel.setText("Unable to read sensor activity");
+                return;
+            }
+            show(snapshot);
+        }));
+    }
+
+    private void show(Snapshot snapshot) {
+        types.setRowCount(0);
+        for (int t = 0; t < snapshot.types.length; t++) {
+            types.addRow(new Object[]{
+                    snapshot.types[t],
+                    snapshot.lastMinute[t],
+                    String.format("%.1f", snapshot.perMinute[t]),
+                    Arrays.stream(snapshot.minutes[t]).mapToObj(String::valueOf).collect(Collectors.joining(" "))});
+        }
+        busiestLabel.setText(snapshot.busiest.isEmpty() ? "No activity in the last minute"
+                : "Busiest in the last minute: " + String.join(", ", snapshot.busiest));
+        summaryLabel.setText(String.format("%,d reports, %,d passed on, %,d absorbed",
+                snapshot.received, snapshot.forwarded, snapshot.absorbed));
+    }
+
+    private class Snapshot {
+        private final SensorType[] types = SensorType.values();
+        private final int[] lastMinute = new int[types.length];
+        private final double[] perMinute = new double[types.length];
+        private final int[][] minutes = new int[types.length][];
+        private final List<String> busiest = new ArrayList<>();
+        private final long received = aggregator.getReceived();
+        private final long forwarded = aggregator.getForwarded();
+        private final long absorbed = aggregator.getAbsorbed();
+
+        Snapshot() {
+            for (int t = 0; t < types.length; t++) {
+                lastMinute[t] = aggregator.getActivations(types[t], MINUTE);
+                perMinute[t] = aggregator.getActivationsPerMinute(types[t], MINUTES_SHOWN * MINUTE);
+                minutes[t] = aggregator.getWindowCounts(types[t], MINUTE, MINUTES_SHOWN);
+            }
+            for (Sensor sensor : aggregator.getBusiestSensors(MINUTE, BUSIEST_SHOWN)) {
+                busiest.add(sensor.getName() + " (" + aggregator.getActivations(sensor, MINUTE) + ")");
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.metrics.LatencyHistogram;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Component showing the camera feed. Frames are scaled off the EDT into reused, display-compatible
+ * buffers with a progressive bilinear downscale (halving until close to the target size, then one
+ * final pass), which looks as good as SCALE_SMOOTH at a fraction of the cost. Painting just copies
+ * the prepared buffer to the screen.
+ * <p>
+ * Only the newest frame is ever scaled; frames arriving while the scaler is busy replace each other.
+ * The time from {@link #setFrame} to the first paint showing the frame is recorded as its display latency.
+ */
+public class CameraView extends JComponent {
+
+    private final int width;
+    private final int height;
+    private final LatencyHistogram displayLatency;
+    private final ExecutorService scaler = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "camera-scaler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicReference<PendingFrame> pendingFrame = new AtomicReference<>();
+    private final AtomicBoolean scaling = new AtomicBoolean();
+
+    //scaler draws into back while the EDT paints front, they are swapped under the component lock
+    private BufferedImage front;
+    private BufferedImage back;
+    private long frontSubmitted;
+    private boolean frontPainted = true;
+
+    //intermediate buffers for the halving steps, reused while the source size stays the same
+    private BufferedImage[] steps = new BufferedImage[0];
+    private int stepsSourceWidth;
+    private int stepsSourceHeight;
+
+    /**
+     * @param displayLatency Where the display latency of each frame is recorded
+     */
+    public CameraView(int width, int height, LatencyHistogram displayLatency) {
+        this.width = width;
+        this.height = height;
+        this.displayLatency = displayLatency;
+        setPreferredSize(new Dimension(width, height));
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        front = createBuffer(width, height);
+        back = createBuffer(width, height);
+        clear(front);
+    }
+
+    /**
+     * Shows a new frame. May be called from any thread.
+     */
+    public void setFrame(BufferedImage frame) {
+        pendingFrame.set(new PendingFrame(frame, System.nanoTime()));
+        if (scaling.compareAndSet(false, true)) {
+            scaler.execute(this::scalePending);
+        }
+    }
+
+    private void scalePending() {
+        PendingFrame frame;
+        while ((frame = pendingFrame.getAndSet(null)) != null) {
+            scaleInto(frame.image, back);
+            synchronized (this) {
+                BufferedImage shown = front;
+                front = back;
+                back = shown;
+                frontSubmitted = frame.submitted;
+                frontPainted = false;
+            }
+            repaint();
+        }
+        scaling.set(false);
+        //a frame may have arrived between the last poll and clearing the flag
+        if (pendingFrame.get() != null && scaling.compareAndSet(false, true)) {
+            scaler.execute(this::scalePending);
+        }
+    }
+
+    private void scaleInto(BufferedImage source, BufferedImage target) {
+        BufferedImage current = source;
+        for (BufferedImage step : stepsFor(source.getWidth(), source.getHeight())) {
+            drawScaled(current, step, step.getWidth(), step.getHeight());
+            current = step;
+        }
+        drawScaled(current, target, width, height);
+    }
+
+    /**
+     * Buffers for each halving step between the source size and twice the target size.
+     */
+    private BufferedImage[] stepsFor(int sourceWidth, int sourceHeight) {
+        if (sourceWidth != stepsSourceWidth || sourceHeight != stepsSourceHeight) {
+            int count = 0;
+            for (int w = sourceWidth / 2, h = sourceHeight / 2; w >= width && h >= height; w /= 2, h /= 2) {
+                count++;
+            }
+            steps = new BufferedImage[count];
+            int w = sourceWidth;
+            int h = sourceHeight;
+            for (int i = 0; i < count; i++) {
+                w /= 2;
+                h /= 2;
+                steps[i] = createBuffer(w, h);
+            }
+            stepsSourceWidth = sourceWidth;
+            stepsSourceHeight = sourceHeight;
+        }
+        return steps;
+    }
+
+    private static void drawScaled(Image source, BufferedImage target, int w, int h) {
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+            g.drawImage(source, 0, 0, w, h, null);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private void clear(BufferedImage buffer) {
+        Graphics2D g = buffer.createGraphics();
+        try {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, buffer.getWidth(), buffer.getHeight());
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Creates a buffer in the screen's native pixel layout so painting it needs no conversion.
+     */
+    private static BufferedImage createBuffer(int w, int h) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration().createCompatibleImage(w, h, Transparency.OPAQUE);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+        synchronized (this) {
+            g.drawImage(front, 0, 0, null);
+            if (!frontPainted) {
+                frontPainted = true;
+                displayLatency.recordSince(frontSubmitted);
+            }
+        }
+    }
+
+    private static class PendingFrame {
+        private final BufferedImage image;
+        private final long submitted;
+
+        PendingFrame(BufferedImage image, long submitted) {
+            this.image = image;
+            this.submitted = submitted;
+        }
+    }
+}
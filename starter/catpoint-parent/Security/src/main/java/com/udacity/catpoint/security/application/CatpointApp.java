@@ -1,11 +1,20 @@
 package com.udacity.catpoint.security.application;
 
+import javax.swing.*;
+
 /**
  * This is the main class that launches the application.
  */
 public class CatpointApp {
     public static void main(String[] args) {
-        CatpointGui gui = new CatpointGui();
-        gui.setVisible(true);
+        //EDT tasks slower than this are logged, override with -Dcatpoint.edt.slowTaskMillis
+        SlowEdtTaskMonitor.install(Long.getLong("catpoint.edt.slowTaskMillis", 50));
+
+        StartupTimeline.mark("main");
+        SwingUtilities.invokeLater(() -> {
+            CatpointGui gui = new CatpointGui();
+            gui.setVisible(true);
+            StartupTimeline.mark("frameShown");
+        });
     }
 }
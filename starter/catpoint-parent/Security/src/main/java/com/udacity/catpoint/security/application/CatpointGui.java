@@ -1,26 +1,56 @@
 package com.udacity.catpoint.security.application;
 
+import com.udacity.catpoint.security.activity.ActivityAggregator;
 import com.udacity.catpoint.security.data.*;
+import com.udacity.catpoint.security.history.AlarmHistory;
 import com.udacity.catpoint.image.*;
 import com.udacity.catpoint.security.service.SecurityService;
 
 import net.miginfocom.swing.MigLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * This is the primary JFrame for the application that contains all the top-level JPanels.
 
  * We're not using any dependency injection framework, so this class also handles constructing
- * all our dependencies and providing them to other classes as necessary.
+ * all our dependencies and providing them to other classes as necessary, through a
+ * {@link ServiceAssembly} it shares with the {@link StandbyNode}. The catpoint.* system
+ * properties that configure them are described there.
+ * <p>
+ * Startup is staged so the window appears right away: the frame is shown with placeholders, the
+ * repository is loaded in the background, and each panel replaces its placeholder as soon as it
+ * has been built. Each stage is recorded in the {@link StartupTimeline}.
  */
 public class CatpointGui extends JFrame {
-    private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
-    private FakeImageService imageService = new FakeImageService();
-    private SecurityService securityService = new SecurityService(securityRepository, imageService);
-    private DisplayPanel displayPanel = new DisplayPanel(securityService);
-    private SensorPanel sensorPanel = new SensorPanel(securityService);
-    private ControlPanel controlPanel = new ControlPanel(securityService, sensorPanel);
-    private ImagePanel imagePanel = new ImagePanel(securityService);
+    private static final int UI_FRAMES_PER_SECOND = 60;
+
+    private final Logger log = LoggerFactory.getLogger(CatpointGui.class);
+
+    private final ServiceAssembly assembly = new ServiceAssembly();
+
+    private AlarmHistory history;
+    private ActivityAggregator activity;
+    private SecurityRepository securityRepository;
+    private ImageService imageService;
+    private SecurityService securityService;
+    private ServiceDispatcher serviceDispatcher;
+    private SwingStatusBridge statusBridge;
+
+    private JPanel displaySlot = placeholder("Loading system status...");
+    private JPanel imageSlot = placeholder("Loading camera...");
+    private JPanel controlSlot = placeholder("Loading controls...");
+    private JPanel sensorSlot = placeholder("Loading sensors...");
+
+    private JMenuItem historyItem = new JMenuItem("Alarm History...");
+    private JMenuItem activityItem = new JMenuItem("Sensor Activity...");
+
+    private boolean painted = false;
 
     public CatpointGui() {
         setLocation(100, 100);
@@ -30,12 +60,125 @@ public class CatpointGui extends JFrame {
 
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new MigLayout());
-        mainPanel.add(displayPanel, "wrap");
-        mainPanel.add(imagePanel, "wrap");
-        mainPanel.add(controlPanel, "wrap");
-        mainPanel.add(sensorPanel);
+        mainPanel.add(displaySlot, "wrap");
+        mainPanel.add(imageSlot, "wrap");
+        mainPanel.add(controlSlot, "wrap");
+        mainPanel.add(sensorSlot);
 
         getContentPane().add(mainPanel);
 
+        JMenu viewMenu = new JMenu("View");
+        historyItem.setEnabled(false);
+        historyItem.addActionListener(e -> showHistory());
+        viewMenu.add(historyItem);
+        activityItem.setEnabled(false);
+        activityItem.addActionListener(e -> showActivity());
+        viewMenu.add(activityItem);
+        JMenuBar menuBar = new JMenuBar();
+        menuBar.add(viewMenu);
+        setJMenuBar(menuBar);
+
+        loadServices();
+    }
+
+    /**
+     * Loads the repository and builds the services off the EDT, then builds the panels.
+     */
+    private void loadServices() {
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                history = assembly.openHistory();
+                securityRepository = assembly.wrapRepository(new PretendDatabaseSecurityRepositoryImpl());
+                StartupTimeline.mark("repositoryLoaded");
+                imageService = assembly.createImageService();
+                securityService = assembly.createSecurityService(securityRepository, imageService, assembly.loadRules());
+                assembly.startMetricsReporter();
+                serviceDispatcher = new ServiceDispatcher();
+                statusBridge = new SwingStatusBridge(securityService, UI_FRAMES_PER_SECOND);
+                assembly.startServers(serviceDispatcher);
+                activity = assembly.getActivity();
+                StartupTimeline.mark("servicesReady");
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.error("Interrupted while loading the security system", e);
+                    JOptionPane.showMessageDialog(CatpointGui.this, "Unable to load the security system.");
+                    return;
+                } catch (ExecutionException e) {
+                    log.error("Unable to load the security system", e.getCause());
+                    JOptionPane.showMessageDialog(CatpointGui.this, "Unable to load the security system.");
+                    return;
+                }
+                buildPanels();
+                historyItem.setEnabled(true);
+                activityItem.setEnabled(activity != null);
+            }
+        }.execute();
+    }
+
+    private void showHistory() {
+        JDialog dialog = new JDialog(this, "Alarm History");
+        dialog.getContentPane().add(new HistoryPanel(history, securityService, serviceDispatcher));
+        dialog.pack();
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+
+    private void showActivity() {
+        JDialog dialog = new JDialog(this, "Sensor Activity");
+        dialog.getContentPane().add(new ActivityPanel(activity, serviceDispatcher));
+        dialog.pack();
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+
+    /**
+     * Builds one panel per EDT task so the window repaints between panels instead of waiting for all of them.
+     */
+    private void buildPanels() {
+        SwingUtilities.invokeLater(() -> fill(displaySlot, new DisplayPanel(securityService, statusBridge), "displayPanelReady"));
+        SwingUtilities.invokeLater(() -> fill(imageSlot, new ImagePanel(securityService, serviceDispatcher, statusBridge,
+                assembly.cameraDisplayLatency()), "imagePanelReady"));
+        SwingUtilities.invokeLater(() -> {
+            SensorPanel sensorPanel = new SensorPanel(securityService, serviceDispatcher, statusBridge);
+            fill(sensorSlot, sensorPanel, "sensorPanelReady");
+            fill(controlSlot, new ControlPanel(securityService, serviceDispatcher, sensorPanel), "controlPanelReady");
+        });
+        SwingUtilities.invokeLater(() -> {
+            StartupTimeline.mark("interactive");
+            StartupTimeline.report();
+        });
+    }
+
+    private void fill(JPanel slot, JPanel panel, String stage) {
+        slot.removeAll();
+        slot.add(panel, BorderLayout.CENTER);
+        slot.revalidate();
+        slot.repaint();
+        StartupTimeline.mark(stage);
+    }
+
+    private static JPanel placeholder(String text) {
+        JPanel slot = new JPanel(new BorderLayout());
+        JLabel label = new JLabel(text);
+        label.setForeground(Color.GRAY);
+        slot.add(label, BorderLayout.CENTER);
+        return slot;
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (!painted) {
+            painted = true;
+            StartupTimeline.mark("firstPaint");
+        }
     }
 }
@@ -20,7 +20,7 @@ public class ControlPanel extends JPanel {
     private Map<ArmingStatus, JButton> buttonMap;
 
 
-    public ControlPanel(SecurityService securityService, SensorPanel sensorPanel) {
+    public ControlPanel(SecurityService securityService, ServiceDispatcher serviceDispatcher, SensorPanel sensorPanel) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
@@ -37,11 +37,10 @@ public class ControlPanel extends JPanel {
 
         //add an action listener to each button that applies its arming status and recolors all the buttons
         buttonMap.forEach((k, v) -> {
-            v.addActionListener(e -> {
-                securityService.setArmingStatus(k);
+            v.addActionListener(e -> serviceDispatcher.submit(v, () -> securityService.setArmingStatus(k), () -> {
                 buttonMap.forEach((status, button) -> button.setBackground(status == k ? status.getColor() : null));
                 sensorPanel.sensorStatusChanged();
-            });
+            }));
         });
 
         //map order above is arbitrary, so loop again in order to add buttons in enum-order
@@ -0,0 +1,164 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.history.AlarmHistory;
+import com.udacity.catpoint.security.history.HistoryEntry;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.StyleService;
+import net.miginfocom.swing.MigLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Incident review: lists what happened between two times from the {@link AlarmHistory}. Times are
+ * dates and times such as 2024-03-01 02:00, or times of day meaning today; a range of times of
+ * day that ends before it starts, such as 23:00 to 01:00, began yesterday. At most
+ * {@value #MAX_ROWS} events are listed, like the API returns, oldest first.
+ */
+public class HistoryPanel extends JPanel {
+
+    static final int MAX_ROWS = 10_000;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final DateTimeFormatter INPUT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd[ ]['T']HH:mm[:ss]");
+    private static final Vector<String> COLUMNS = new Vector<>(List.of("Time", "Event", "Sensor", "Value"));
+
+    private final Logger log = LoggerFactory.getLogger(HistoryPanel.class);
+
+    private AlarmHistory history;
+    private SecurityService securityService;
+    private ServiceDispatcher serviceDispatcher;
+
+    private JTextField fromField = new JTextField(12);
+    private JTextField toField = new JTextField(12);
+    private JButton showButton = new JButton("Show");
+    private JLabel summaryLabel = new JLabel(" ");
+    private DefaultTableModel entries = new DefaultTableModel(COLUMNS, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+
+    public HistoryPanel(AlarmHistory history, SecurityService securityService, ServiceDispatcher serviceDispatcher) {
+        super();
+        setLayout(new MigLayout());
+        this.history = history;
+        this.securityService = securityService;
+        this.serviceDispatcher = serviceDispatcher;
+
+        JLabel panelLabel = new JLabel("Alarm History");
+        panelLabel.setFont(StyleService.HEADING_FONT);
+
+        LocalTime now = LocalTime.now().withSecond(0).withNano(0);
+        fromField.setText(now.minusHours(1).toString());
+        toField.setText(now.plusMinutes(1).toString());
+        showButton.addActionListener(e -> showHistory());
+
+        add(panelLabel, "span, wrap");
+        add(new JLabel("From:"));
+        add(fromField);
+        add(new JLabel("To:"));
+        add(toField);
+        add(showButton, "wrap");
+        add(new JScrollPane(new JTable(entries)), "span, width 560, height 400, wrap");
+        add(summaryLabel, "span");
+    }
+
+    /**
+     * @return the range as epoch milliseconds, from inclusive and to exclusive
+     * @throws DateTimeParseException if either is neither a date and time nor a time of day
+     */
+    static long[] parseRange(String fromText, String toText, LocalDate today, ZoneId zone) {
+        LocalDateTime from = parse(fromText.trim(), today);
+        LocalDateTime to = parse(toText.trim(), today);
+        if (isTimeOfDay(fromText) && isTimeOfDay(toText) && !to.isAfter(from)) {
+            from = from.minusDays(1);
+        }
+        return new long[]{from.atZone(zone).toInstant().toEpochMilli(), to.atZone(zone).toInstant().toEpochMilli()};
+    }
+
+    private static LocalDateTime parse(String text, LocalDate today) {
+        return isTimeOfDay(text) ? LocalDateTime.of(today, LocalTime.parse(text)) : LocalDateTime.parse(text, INPUT_FORMAT);
+    }
+
+    private static boolean isTimeOfDay(String text) {
+        return !text.contains("-");
+    }
+
+    /**
+     * Runs the query, and formats the rows, off the EDT, since older records may have to be read
+     * back from disk. The EDT only swaps the finished rows in.
+     */
+    private void showHistory() {
+        ZoneId zone = ZoneId.systemDefault();
+        long from;
+        long to;
+        try {
+            long[] range = parseRange(fromField.getText(), toField.getText(), LocalDate.now(zone), zone);
+            from = range[0];
+            to = range[1];
+        } catch (DateTimeParseException e) {
+            summaryLabel.setText("Enter times as HH:mm or yyyy-MM-dd HH:mm, for example 02:00");
+            return;
+        }
+        showButton.setEnabled(false);
+        new SwingWorker<Vector<Vector<Object>>, Void>() {
+            private boolean truncated;
+
+            @Override
+            protected Vector<Vector<Object>> doInBackground() throws Exception {
+                Map<UUID, String> sensorNames = serviceDispatcher.call(() -> {
+                    Map<UUID, String> names = new HashMap<>();
+                    for (Sensor sensor : securityService.getSensors()) {
+                        names.put(sensor.getSensorId(), sensor.getName());
+                    }
+                    return names;
+                }).get();
+                List<HistoryEntry> found = history.between(from, to, MAX_ROWS + 1);
+                truncated = found.size() > MAX_ROWS;
+                Vector<Vector<Object>> rows = new Vector<>(Math.min(found.size(), MAX_ROWS));
+                for (HistoryEntry entry : found.subList(0, Math.min(found.size(), MAX_ROWS))) {
+                    UUID sensorId = entry.getSensorId();
+                    rows.add(new Vector<>(List.of(
+                            TIME_FORMAT.format(Instant.ofEpochMilli(entry.getTime()).atZone(zone)),
+                            entry.getKind(),
+                            sensorId == null ? "" : sensorNames.getOrDefault(sensorId, sensorId.toString()),
+                            entry.getValue())));
+                }
+                return rows;
+            }
+
+            @Override
+            protected void done() {
+                showButton.setEnabled(true);
+                try {
+                    Vector<Vector<Object>> rows = get();
+                    entries.setDataVector(rows, COLUMNS);
+                    summaryLabel.setText(truncated
+                            ? "First " + MAX_ROWS + " events, narrow the range to see the rest"
+                            : rows.size() + " events");
+                } catch (InterruptedException | ExecutionException e) {
+                    entries.setRowCount(0);
+                    log.error("Unable to read alarm history", e);
+                    summaryLabel.setText("Unable to read alarm history");
+                }
+            }
+        }.execute();
+    }
+}
@@ -1,7 +1,12 @@
 package com.udacity.catpoint.security.application;
 
+import com.udacity.catpoint.image.DirectoryFrameSource;
+import com.udacity.catpoint.image.FrameSource;
+import com.udacity.catpoint.image.FrameStream;
+import com.udacity.catpoint.image.MjpegFileFrameSource;
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.metrics.LatencyHistogram;
 import com.udacity.catpoint.security.service.*;
 import net.miginfocom.swing.MigLayout;
 
@@ -11,33 +16,39 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /** Panel containing the 'camera' output. Allows users to 'refresh' the camera
  * by uploading their own picture, and 'scan' the picture, sending it for image analysis
  */
 public class ImagePanel extends JPanel implements StatusListener {
     private SecurityService securityService;
+    private ServiceDispatcher serviceDispatcher;
 
     private JLabel cameraHeader;
-    private JLabel cameraLabel;
-    private BufferedImage currentCameraImage;
+    private CameraView cameraView;
+    private volatile BufferedImage currentCameraImage;
+    private FrameStream cameraStream;
 
     private int IMAGE_WIDTH = 300;
     private int IMAGE_HEIGHT = 225;
+    private double STREAM_FRAMES_PER_SECOND = 5;
+    private int STREAM_DECODER_THREADS = 2;
 
-    public ImagePanel(SecurityService securityService) {
+    public ImagePanel(SecurityService securityService, ServiceDispatcher serviceDispatcher, SwingStatusBridge statusBridge,
+                      LatencyHistogram displayLatency) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
-        securityService.addStatusListener(this);
+        this.serviceDispatcher = serviceDispatcher;
+        statusBridge.addStatusListener(this);
 
         cameraHeader = new JLabel("Camera Feed");
         cameraHeader.setFont(StyleService.HEADING_FONT);
 
-        cameraLabel = new JLabel();
-        cameraLabel.setBackground(Color.WHITE);
-        cameraLabel.setPreferredSize(new Dimension(IMAGE_WIDTH, IMAGE_HEIGHT));
-        cameraLabel.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
+        cameraView = new CameraView(IMAGE_WIDTH, IMAGE_HEIGHT, displayLatency);
+        cameraView.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
 
         //button allowing users to select a file to be the current camera image
         JButton addPictureButton = new JButton("Refresh Camera");
@@ -50,25 +61,82 @@ public class ImagePanel extends JPanel implements StatusListener {
                 return;
             }
             try {
-                currentCameraImage = ImageIO.read(chooser.getSelectedFile());
-                Image tmp = new ImageIcon(currentCameraImage).getImage();
-                cameraLabel.setIcon(new ImageIcon(tmp.getScaledInstance(IMAGE_WIDTH, IMAGE_HEIGHT, Image.SCALE_SMOOTH)));
+                showCameraImage(ImageIO.read(chooser.getSelectedFile()));
             } catch (IOException |NullPointerException ioe) {
                 JOptionPane.showMessageDialog(null, "Invalid image selected.");
             }
             repaint();
         });
 
+        //button that starts or stops a continuous feed from a folder of images or an mjpeg recording
+        JButton streamButton = new JButton("Start Stream");
+        streamButton.addActionListener(e -> {
+            if(cameraStream != null) {
+                stopStream();
+                streamButton.setText("Start Stream");
+                return;
+            }
+            JFileChooser chooser = new JFileChooser();
+            chooser.setCurrentDirectory(new File("."));
+            chooser.setDialogTitle("Select Image Folder or MJPEG Recording");
+            chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+            if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            try {
+                startStream(chooser.getSelectedFile().toPath());
+                streamButton.setText("Stop Stream");
+            } catch (IOException ioe) {
+                JOptionPane.showMessageDialog(null, "Unable to open camera stream.");
+            }
+        });
+
         //button that sends the image to the image service
         JButton scanPictureButton = new JButton("Scan Picture");
         scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+            BufferedImage image = currentCameraImage;
+            serviceDispatcher.submit(scanPictureButton, () -> securityService.processImage(image), null);
         });
 
         add(cameraHeader, "span 3, wrap");
-        add(cameraLabel, "span 3, wrap");
+        add(cameraView, "span 3, wrap");
         add(addPictureButton);
         add(scanPictureButton);
+        add(streamButton);
+    }
+
+    /**
+     * Makes the image the current camera image. Scaling happens off the EDT, so this may be called from any thread.
+     */
+    private void showCameraImage(BufferedImage image) {
+        currentCameraImage = image;
+        cameraView.setFrame(image);
+    }
+
+    /**
+     * Streams frames from the given folder or recording, scanning each one and showing it in the camera feed.
+     * @param path A directory to watch for new images, or an MJPEG file to replay in a loop
+     */
+    private void startStream(Path path) throws IOException {
+        FrameSource source = Files.isDirectory(path) ? new DirectoryFrameSource(path) : new MjpegFileFrameSource(path, true);
+        cameraStream = new FrameStream(source, STREAM_FRAMES_PER_SECOND, STREAM_DECODER_THREADS, frame -> {
+            showCameraImage(frame);
+            try {
+                serviceDispatcher.runAndWait(() -> securityService.processImage(frame));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        cameraStream.start();
+    }
+
+    private void stopStream() {
+        try {
+            cameraStream.close();
+        } catch (IOException ioe) {
+            JOptionPane.showMessageDialog(null, "Camera stream did not close cleanly.");
+        }
+        cameraStream = null;
     }
 
     @Override
@@ -9,6 +9,9 @@ import com.udacity.catpoint.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
@@ -17,6 +20,7 @@ import javax.swing.*;
 public class SensorPanel extends JPanel implements StatusListener {
 
     private SecurityService securityService;
+    private ServiceDispatcher serviceDispatcher;
 
     private JLabel panelLabel = new JLabel("Sensor Management");
     private JLabel newSensorName = new JLabel("Name:");
@@ -25,29 +29,35 @@ public class SensorPanel extends JPanel implements StatusListener {
     private JComboBox newSensorTypeDropdown = new JComboBox(SensorType.values());
     private JButton addNewSensorButton = new JButton("Add New Sensor");
 
-    private JPanel sensorListPanel;
+    private JButton removeSensorButton = new JButton("Remove Selected");
+
+    private SensorTableModel sensorTableModel = new SensorTableModel(this::setSensorActivity);
+    private JTable sensorTable;
     private JPanel newSensorPanel;
 
-    public SensorPanel(SecurityService securityService) {
+    public SensorPanel(SecurityService securityService, ServiceDispatcher serviceDispatcher, SwingStatusBridge statusBridge) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
-        securityService.addStatusListener(this);
+        this.serviceDispatcher = serviceDispatcher;
+        statusBridge.addStatusListener(this);
 
         panelLabel.setFont(StyleService.HEADING_FONT);
         addNewSensorButton.addActionListener(e ->
                 addSensor(new Sensor(newSensorNameField.getText(),
                         SensorType.valueOf(newSensorTypeDropdown.getSelectedItem().toString()))));
 
+        removeSensorButton.addActionListener(e -> removeSelectedSensors());
+
         newSensorPanel = buildAddSensorPanel();
-        sensorListPanel = new JPanel();
-        sensorListPanel.setLayout(new MigLayout());
+        JScrollPane sensorListPane = buildSensorListPane();
 
-        updateSensorList(sensorListPanel);
+        updateSensorList();
 
         add(panelLabel, "wrap");
-        add(newSensorPanel, "span");
-        add(sensorListPanel, "span");
+        add(newSensorPanel, "span, wrap");
+        add(sensorListPane, "span, wrap");
+        add(removeSensorButton);
     }
 
     /**
@@ -65,60 +75,60 @@ public class SensorPanel extends JPanel implements StatusListener {
     }
 
     /**
-     * Requests the current list of sensors and updates the provided panel to display them. Sensors
-     * will display in the order that they are created.
-     * @param p The Panel to populate with the current list of sensors
+     * Builds the scrollable sensor table. JTable only paints the rows in view and shares one
+     * renderer per column, so the cost of a repaint does not grow with the number of sensors.
+     */
+    private JScrollPane buildSensorListPane() {
+        sensorTable = new JTable(sensorTableModel);
+        sensorTable.setFillsViewportHeight(true);
+        sensorTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.NAME_COLUMN).setPreferredWidth(300);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.TYPE_COLUMN).setPreferredWidth(100);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.ACTIVE_COLUMN).setPreferredWidth(100);
+
+        JScrollPane scrollPane = new JScrollPane(sensorTable);
+        scrollPane.setPreferredSize(new Dimension(520, 200));
+        return scrollPane;
+    }
+
+    /**
+     * Reloads every sensor from the securityService. Used when the change could affect any number
+     * of sensors; single sensor changes update just their own row.
      */
-    private void updateSensorList(JPanel p) {
-        p.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-            JButton sensorRemoveButton = new JButton("Remove Sensor");
-
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
-
-            //hard code some sizes, tsk tsk
-            p.add(sensorLabel, "width 300:300:300");
-            p.add(sensorToggleButton, "width 100:100:100");
-            p.add(sensorRemoveButton, "wrap");
-        });
-
-        repaint();
-        revalidate();
+    private void updateSensorList() {
+        serviceDispatcher.submit(null, () -> new ArrayList<>(securityService.getSensors()), sensorTableModel::setSensors);
     }
 
     /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
+     * Asks the securityService to change a sensor activation status and then refreshes that sensor's row
      * @param sensor The sensor to update
      * @param isActive The sensor's activation status
      */
-    private void setSensorActivity(Sensor sensor, Boolean isActive) {
-        securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
+    private void setSensorActivity(Sensor sensor, boolean isActive) {
+        serviceDispatcher.submit(null, () -> securityService.changeSensorActivationStatus(sensor, isActive),
+                () -> sensorTableModel.sensorUpdated(sensor));
     }
 
     /**
-     * Adds a sensor to the securityService and then rebuilds the sensor list
+     * Adds a sensor to the securityService and then inserts its row
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
-        if(securityService.getSensors().size() < 4) {
-            securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
-        } else {
-            JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
-        }
+        serviceDispatcher.submit(addNewSensorButton, () -> securityService.addSensor(sensor),
+                () -> sensorTableModel.sensorAdded(sensor));
     }
 
     /**
-     * Remove a sensor from the securityService and then rebuild the sensor list
-     * @param sensor The sensor to remove
+     * Removes every selected sensor from the securityService and deletes their rows
      */
-    private void removeSensor(Sensor sensor) {
-        securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
+    private void removeSelectedSensors() {
+        int[] selected = sensorTable.getSelectedRows();
+        List<Sensor> sensors = new ArrayList<>(selected.length);
+        for (int row : selected) {
+            sensors.add(sensorTableModel.getSensorAt(sensorTable.convertRowIndexToModel(row)));
+        }
+        serviceDispatcher.submit(removeSensorButton, () -> sensors.forEach(securityService::removeSensor),
+                () -> sensors.forEach(sensorTableModel::sensorRemoved));
     }
 
     @Override
@@ -133,6 +143,11 @@ public class SensorPanel extends JPanel implements StatusListener {
 
     @Override
     public void sensorStatusChanged() {
-        updateSensorList(sensorListPanel);
+        updateSensorList();
+    }
+
+    @Override
+    public void sensorLivenessChanged(Sensor sensor, boolean online) {
+        sensorTableModel.sensorUpdated(sensor);
     }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.data.Sensor;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Table model backing the sensor list. Rows are kept sorted in the sensors' natural order, so
+ * a single sensor can be found, inserted or removed with a binary search and only the affected
+ * row is repainted.
+ */
+public class SensorTableModel extends AbstractTableModel {
+
+    static final int NAME_COLUMN = 0;
+    static final int TYPE_COLUMN = 1;
+    static final int ACTIVE_COLUMN = 2;
+
+    private static final String[] COLUMN_NAMES = {"Name", "Type", "Active"};
+
+    private final List<Sensor> rows = new ArrayList<>();
+    private final BiConsumer<Sensor, Boolean> activationToggled;
+
+    /**
+     * @param activationToggled Called when the user ticks or clears a sensor's active check box
+     */
+    public SensorTableModel(BiConsumer<Sensor, Boolean> activationToggled) {
+        this.activationToggled = activationToggled;
+    }
+
+    /**
+     * Replaces every row. Only needed when many sensors may have changed at once, such as after
+     * the system is armed.
+     */
+    public void setSensors(Collection<Sensor> sensors) {
+        rows.clear();
+        rows.addAll(sensors);
+        Collections.sort(rows);
+        fireTableDataChanged();
+    }
+
+    public void sensorAdded(Sensor sensor) {
+        int index = Collections.binarySearch(rows, sensor);
+        if (index >= 0) {
+            sensorUpdated(sensor);
+            return;
+        }
+        int insertAt = -index - 1;
+        rows.add(insertAt, sensor);
+        fireTableRowsInserted(insertAt, insertAt);
+    }
+
+    public void sensorRemoved(Sensor sensor) {
+        int index = Collections.binarySearch(rows, sensor);
+        if (index >= 0) {
+            rows.remove(index);
+            fireTableRowsDeleted(index, index);
+        }
+    }
+
+    /**
+     * Repaints the row of a sensor whose activation status or liveness changed.
+     */
+    public void sensorUpdated(Sensor sensor) {
+        int index = Collections.binarySearch(rows, sensor);
+        if (index >= 0) {
+            rows.set(index, sensor);
+            fireTableRowsUpdated(index, index);
+        }
+    }
+
+    public Sensor getSensorAt(int row) {
+        return rows.get(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        //Boolean makes the table use its shared check box renderer and editor for the active column
+        return column == ACTIVE_COLUMN ? Boolean.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Sensor sensor = rows.get(row);
+        return switch (column) {
+            case NAME_COLUMN -> sensor.isOffline() ? sensor.getName() + " (offline)" : sensor.getName();
+            case TYPE_COLUMN -> sensor.getSensorType().toString();
+            default -> sensor.getActive();
+        };
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == ACTIVE_COLUMN;
+    }
+
+    /**
+     * Ticking the active check box does not change the sensor itself, it asks the owner of the
+     * table to do so. The row is repainted once the owner calls {@link #sensorUpdated}.
+     */
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        if (column == ACTIVE_COLUMN) {
+            activationToggled.accept(rows.get(row), (Boolean) value);
+        }
+    }
+}
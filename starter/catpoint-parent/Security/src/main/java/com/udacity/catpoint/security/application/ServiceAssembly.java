@@ -0,0 +1,309 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.image.*;
+import com.udacity.catpoint.security.activity.ActivityAggregator;
+import com.udacity.catpoint.security.api.SecurityApiServer;
+import com.udacity.catpoint.security.api.StatusEventStream;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.history.AlarmHistory;
+import com.udacity.catpoint.security.history.RecordingSecurityRepository;
+import com.udacity.catpoint.security.ingest.SensorIngestServer;
+import com.udacity.catpoint.security.liveness.HeartbeatMonitor;
+import com.udacity.catpoint.security.metrics.*;
+import com.udacity.catpoint.security.replication.FencingToken;
+import com.udacity.catpoint.security.replication.ReplicatingSecurityRepository;
+import com.udacity.catpoint.security.rules.AlarmRules;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.timeseries.ActivationStore;
+import com.udacity.catpoint.security.timeseries.ArchivingSecurityRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the services behind the {@link CatpointGui} from catpoint.* system properties, each
+ * described where it is read. Every feature beyond the GUI itself is off until its property is set.
+ * The {@link StandbyNode} builds its services here too, so a standby that takes over runs with the
+ * same rules, history, liveness monitoring and activity aggregation as the primary.
+ */
+class ServiceAssembly {
+
+    private final Logger log = LoggerFactory.getLogger(ServiceAssembly.class);
+
+    private final Metrics metrics = new Metrics();
+
+    private AlarmHistory history;
+    private SecurityService securityService;
+    private ActivityAggregator activity;
+
+    AlarmHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * @return the aggregator of ingested sensor activity, null until sensor ingest has started
+     */
+    ActivityAggregator getActivity() {
+        return activity;
+    }
+
+    /**
+     * @return the histogram the camera feed records how long frames take to reach the screen in
+     */
+    LatencyHistogram cameraDisplayLatency() {
+        return metrics.histogram("camera.display");
+    }
+
+    /**
+     * Opens the history of the last -Dcatpoint.history.capacity (65536) transitions, which keeps
+     * older ones on disk in -Dcatpoint.history.dir if set instead of dropping them.
+     */
+    AlarmHistory openHistory() throws IOException {
+        String dir = System.getProperty("catpoint.history.dir");
+        history = new AlarmHistory(Integer.getInteger("catpoint.history.capacity", 65536),
+                dir == null ? null : Paths.get(dir));
+        //write out what is still in memory when the process exits
+        Runtime.getRuntime().addShutdownHook(new Thread(history::close, "alarm-history-close"));
+        return history;
+    }
+
+    /**
+     * Wraps the stored state with replication, history recording, archiving and timing, in that
+     * order outwards. Needs {@link #openHistory()} first.
+     */
+    SecurityRepository wrapRepository(SecurityRepository stored) throws IOException {
+        return new TimedSecurityRepository(archived(new RecordingSecurityRepository(replicated(stored), history)), metrics);
+    }
+
+    SecurityService createSecurityService(SecurityRepository repository, ImageService imageService, AlarmRules rules) {
+        securityService = new InstrumentedSecurityService(repository, imageService, rules, metrics);
+        return securityService;
+    }
+
+    /**
+     * The image service named by catpoint.image.service: fake, aws, or aws-hedged for
+     * {@link AwsAsyncImageService}, which hedges slow Rekognition calls. Paid services are limited
+     * per frame, outside the regions of interest.
+     */
+    ImageService createImageService() {
+        String name = System.getProperty("catpoint.image.service", "fake");
+        ImageService service;
+        switch (name) {
+            case "aws":
+                service = rateLimited(regionsOfInterest(new AwsImageService()));
+                break;
+            case "aws-hedged":
+                AwsAsyncImageService hedged = new AwsAsyncImageService();
+                Runtime.getRuntime().addShutdownHook(new Thread(hedged::close, "image-service-close"));
+                service = rateLimited(regionsOfInterest(hedged));
+                break;
+            default:
+                if (!name.equals("fake")) {
+                    log.warn("Unknown image service {}, using the fake one", name);
+                    name = "fake";
+                }
+                service = regionsOfInterest(new FakeImageService());
+        }
+        return new TimedImageService(service, metrics, name);
+    }
+
+    /**
+     * Keeps paid calls within the limits in -Dcatpoint.ratelimit.file, or the defaults, answering
+     * frames over the limit from the last verdict. Without a fresh one the camera keeps the verdict
+     * the system last acted on, so a spent budget neither raises nor clears the alarm. Frames get
+     * the priority reserve while the system is armed-home. Spending shows up over JMX as
+     * com.udacity.catpoint:type=ClassificationBudget.
+     */
+    private ImageService rateLimited(ImageService remote) {
+        Properties props = new Properties();
+        String file = System.getProperty("catpoint.ratelimit.file");
+        if (file != null) {
+            try (Reader reader = Files.newBufferedReader(Paths.get(file))) {
+                props.load(reader);
+            } catch (IOException e) {
+                log.error("Unable to load rate limits from {}, using the defaults", file, e);
+            }
+        }
+        ClassificationBudget budget = metrics.expose("ClassificationBudget", "image", new ClassificationBudget(props));
+        ImageService keepCurrent = (image, confidenceThreshhold) -> securityService != null && securityService.isCatDetected();
+        return new RateLimitedImageService(remote, keepCurrent, budget, props,
+                () -> securityService != null && securityService.getArmingStatus() == ArmingStatus.ARMED_HOME);
+    }
+
+    /**
+     * Limits the service to the regions configured for -Dcatpoint.roi.camera (main) in
+     * -Dcatpoint.roi.file, if set.
+     */
+    private ImageService regionsOfInterest(ImageService service) {
+        String file = System.getProperty("catpoint.roi.file");
+        if (file == null) {
+            return service;
+        }
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(Paths.get(file))) {
+            props.load(reader);
+            return RegionOfInterestImageService.forCamera(props, System.getProperty("catpoint.roi.camera", "main"), service);
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Unable to load regions of interest from {}, scanning whole frames", file, e);
+            return service;
+        }
+    }
+
+    /**
+     * Keeps every sensor activation in an {@link ActivationStore} in -Dcatpoint.archive.dir, if set.
+     */
+    private SecurityRepository archived(SecurityRepository repository) throws IOException {
+        String dir = System.getProperty("catpoint.archive.dir");
+        if (dir == null) {
+            return repository;
+        }
+        ActivationStore store = new ActivationStore(Paths.get(dir));
+        Runtime.getRuntime().addShutdownHook(new Thread(store::close, "activation-store-close"));
+        return new ArchivingSecurityRepository(repository, store);
+    }
+
+    /**
+     * @return the default rules, or those in -Dcatpoint.rules.file, reloaded whenever it changes
+     */
+    AlarmRules loadRules() {
+        AlarmRules rules = AlarmRules.defaults();
+        String file = System.getProperty("catpoint.rules.file");
+        if (file != null) {
+            try {
+                rules.watch(Paths.get(file));
+            } catch (IOException e) {
+                log.error("Unable to load alarm rules from {}, using the defaults", file, e);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * @return where the {@link FencingToken}s of replication ports are kept,
+     * -Dcatpoint.replication.fenceDir or the temp directory
+     */
+    static Path fenceDirectory() {
+        String dir = System.getProperty("catpoint.replication.fenceDir");
+        return dir == null ? FencingToken.DEFAULT_DIRECTORY : Paths.get(dir);
+    }
+
+    /**
+     * Streams every write to a {@link StandbyNode} on -Dcatpoint.replication.port, if set.
+     */
+    private SecurityRepository replicated(SecurityRepository repository) {
+        Integer port = Integer.getInteger("catpoint.replication.port");
+        if (port == null) {
+            return repository;
+        }
+        try {
+            ReplicatingSecurityRepository replicating = new ReplicatingSecurityRepository(repository, port, fenceDirectory());
+            replicating.start();
+            return replicating;
+        } catch (IOException e) {
+            log.error("Unable to replicate on port {}, running without a standby", port, e);
+            return repository;
+        }
+    }
+
+    /**
+     * Logs the metrics every -Dcatpoint.metrics.reportSeconds, if set, and appends them to
+     * -Dcatpoint.metrics.csv too if that is set.
+     */
+    void startMetricsReporter() {
+        long seconds = Long.getLong("catpoint.metrics.reportSeconds", 0);
+        if (seconds <= 0) {
+            return;
+        }
+        String csv = System.getProperty("catpoint.metrics.csv");
+        new MetricsReporter(metrics, csv == null ? null : Paths.get(csv)).start(seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Starts the API, event stream and sensor ingest that have a port configured. Needs
+     * {@link #createSecurityService} first.
+     */
+    void startServers(ServiceDispatcher serviceDispatcher) {
+        startApiServer(serviceDispatcher);
+        startEventStream();
+        startSensorIngest(serviceDispatcher);
+    }
+
+    /**
+     * Serves the {@link SecurityApiServer} on localhost:-Dcatpoint.api.port, if set.
+     */
+    private void startApiServer(ServiceDispatcher serviceDispatcher) {
+        Integer port = Integer.getInteger("catpoint.api.port");
+        if (port == null) {
+            return;
+        }
+        try {
+            new SecurityApiServer(securityService, serviceDispatcher, history, port, Runtime.getRuntime().availableProcessors()).start();
+        } catch (IOException e) {
+            //the GUI works without the API, so don't fail startup over it
+            log.error("Unable to start the security API on port {}", port, e);
+        }
+    }
+
+    /**
+     * Streams status changes on -Dcatpoint.events.port, if set, queueing up to
+     * -Dcatpoint.events.maxQueued (256) events for each subscriber.
+     */
+    private void startEventStream() {
+        Integer port = Integer.getInteger("catpoint.events.port");
+        if (port == null) {
+            return;
+        }
+        try {
+            StatusEventStream eventStream = new StatusEventStream(port, Integer.getInteger("catpoint.events.maxQueued", 256));
+            eventStream.start();
+            securityService.addStatusListener(eventStream);
+        } catch (IOException e) {
+            log.error("Unable to start the status event stream on port {}", port, e);
+        }
+    }
+
+    /**
+     * Takes sensor state from hubs on -Dcatpoint.ingest.port, if set, through an aggregator that
+     * holds motion sensors active until quiet for -Dcatpoint.activity.holdMillis (5000).
+     */
+    private void startSensorIngest(ServiceDispatcher serviceDispatcher) {
+        Integer port = Integer.getInteger("catpoint.ingest.port");
+        if (port == null) {
+            return;
+        }
+        try {
+            SensorIngestServer ingestServer = new SensorIngestServer(securityService, serviceDispatcher, port);
+            ingestServer.setHeartbeatMonitor(startHeartbeatMonitor(serviceDispatcher));
+            activity = new ActivityAggregator(securityService, serviceDispatcher, Long.getLong("catpoint.activity.holdMillis", 5000));
+            activity.start();
+            ingestServer.setActivityAggregator(activity);
+            ingestServer.start();
+        } catch (IOException e) {
+            log.error("Unable to start sensor ingest on port {}", port, e);
+        }
+    }
+
+    /**
+     * Marks sensors offline once they stay silent for -Dcatpoint.liveness.timeoutSeconds, if set,
+     * checked every -Dcatpoint.liveness.tickMillis (1000).
+     * @return the started monitor, or null when liveness monitoring is off
+     */
+    private HeartbeatMonitor startHeartbeatMonitor(ServiceDispatcher serviceDispatcher) {
+        long timeoutSeconds = Long.getLong("catpoint.liveness.timeoutSeconds", 0);
+        if (timeoutSeconds <= 0) {
+            return null;
+        }
+        HeartbeatMonitor monitor = new HeartbeatMonitor(securityService, serviceDispatcher,
+                TimeUnit.SECONDS.toMillis(timeoutSeconds), Long.getLong("catpoint.liveness.tickMillis", 1000));
+        monitor.start();
+        return monitor;
+    }
+}
@@ -0,0 +1,103 @@
+package com.udacity.catpoint.security.application;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs SecurityService calls for the panels on a background thread so persistence and image
+ * analysis never block the EDT. All calls share one worker thread, which keeps them in the order
+ * they were made and means the SecurityService is only ever used by one thread at a time.
+ * <p>
+ * While a call is running the component that started it is disabled and shows a wait cursor,
+ * and the result is handed back on the EDT.
+ */
+public class ServiceDispatcher {
+
+    private final Logger log = LoggerFactory.getLogger(ServiceDispatcher.class);
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "security-service");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Runs the call in the background and then hands its result to the callback on the EDT.
+     * Must be called from the EDT.
+     * @param busyComponent Component to disable while the call runs, may be null
+     * @param call The service call
+     * @param onDone Receives the call's result on the EDT, may be null
+     */
+    public <T> void submit(JComponent busyComponent, Supplier<T> call, Consumer<T> onDone) {
+        setBusy(busyComponent, true);
+        worker.execute(() -> {
+            T result;
+            try {
+                result = call.get();
+            } catch (RuntimeException e) {
+                log.error("Security service call failed", e);
+                SwingUtilities.invokeLater(() -> {
+                    setBusy(busyComponent, false);
+                    JOptionPane.showMessageDialog(null, "The security system could not complete that request.");
+                });
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                setBusy(busyComponent, false);
+                if (onDone != null) {
+                    onDone.accept(result);
+                }
+            });
+        });
+    }
+
+    /**
+     * Variant of {@link #submit(JComponent, Supplier, Consumer)} for calls without a result.
+     */
+    public void submit(JComponent busyComponent, Runnable call, Runnable onDone) {
+        submit(busyComponent, () -> {
+            call.run();
+            return null;
+        }, onDone == null ? null : result -> onDone.run());
+    }
+
+    /**
+     * Runs the call on the worker thread and waits for it, for background producers such as the
+     * camera stream that must not race with calls made from the panels. Never call from the EDT.
+     */
+    public void runAndWait(Runnable call) throws InterruptedException {
+        Future<?> future = worker.submit(call);
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            log.error("Security service call failed", e.getCause());
+        }
+    }
+
+    /**
+     * Runs the call on the worker thread without waiting for it, for callers outside Swing such
+     * as the network API. The returned future completes on the worker thread, so chain any slow
+     * follow-up work with an async variant and an executor of your own.
+     */
+    public <T> CompletableFuture<T> call(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(call, worker);
+    }
+
+    private static void setBusy(JComponent component, boolean busy) {
+        if (component == null) {
+            return;
+        }
+        component.setEnabled(!busy);
+        component.setCursor(busy ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : null);
+    }
+}
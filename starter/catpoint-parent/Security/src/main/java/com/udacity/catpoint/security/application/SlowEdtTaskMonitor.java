@@ -0,0 +1,58 @@
+package com.udacity.catpoint.security.application;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Event queue that times every task the EDT runs and logs the ones slower than a threshold,
+ * so work that belongs on a background thread is easy to spot.
+ */
+public class SlowEdtTaskMonitor extends EventQueue {
+
+    private final Logger log = LoggerFactory.getLogger(SlowEdtTaskMonitor.class);
+
+    private final long thresholdNanos;
+    private final AtomicLong slowTasks = new AtomicLong();
+
+    private SlowEdtTaskMonitor(long thresholdMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * Replaces the system event queue with a monitored one.
+     * @param thresholdMillis EDT tasks taking longer than this are logged
+     */
+    public static SlowEdtTaskMonitor install(long thresholdMillis) {
+        SlowEdtTaskMonitor monitor = new SlowEdtTaskMonitor(thresholdMillis);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(monitor);
+        return monitor;
+    }
+
+    public long getSlowTaskCount() {
+        return slowTasks.get();
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        long start = System.nanoTime();
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (elapsed > thresholdNanos) {
+                slowTasks.incrementAndGet();
+                log.warn("EDT task took {} ms: {}", TimeUnit.NANOSECONDS.toMillis(elapsed), describe(event));
+            }
+        }
+    }
+
+    private static String describe(AWTEvent event) {
+        //invokeLater events only say which Runnable they wrap through their paramString
+        return event.getClass().getSimpleName() + " from " + event.getSource().getClass().getName()
+                + " [" + event.paramString() + "]";
+    }
+}
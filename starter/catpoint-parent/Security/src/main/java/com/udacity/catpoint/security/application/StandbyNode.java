@@ -0,0 +1,94 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.image.FakeImageService;
+import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.security.api.SecurityApiServer;
+import com.udacity.catpoint.security.data.InMemorySecurityRepository;
+import com.udacity.catpoint.security.replication.FencingToken;
+import com.udacity.catpoint.security.replication.StandbyReplica;
+import com.udacity.catpoint.security.rules.AlarmRules;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless hot standby for a primary started with -Dcatpoint.replication.port=[port]:
+ * <pre>
+ *      java -Dcatpoint.standby.primary=localhost:[port] -Dcatpoint.api.port=[port] \
+ *           -cp Security.jar com.udacity.catpoint.security.application.StandbyNode
+ * </pre>
+ * It replicates the primary's repository into memory, and once the primary is lost fences it off
+ * through the port's {@link FencingToken}, builds a SecurityService on that state and starts the
+ * API, event stream and sensor ingest. Services are assembled by the same {@link ServiceAssembly}
+ * and properties as {@link CatpointGui}, so the rules file, history, liveness monitoring and
+ * activity aggregation carry over. Everything that doesn't depend on the replicated state is
+ * built and warmed up beforehand, so taking over takes milliseconds. With
+ * -Dcatpoint.replication.port set as well it in turn replicates to a standby of its own.
+ * <p>
+ * -Dcatpoint.standby.timeoutMillis (3000) is how long the primary may stay silent before it is
+ * considered hung. It is far above the heartbeat interval so that GC pauses don't cause takeovers;
+ * a primary that dies closes the connection and is noticed at once regardless.
+ */
+public class StandbyNode {
+
+    private static final Logger log = LoggerFactory.getLogger(StandbyNode.class);
+
+    public static void main(String[] args) throws Exception {
+        String primary = System.getProperty("catpoint.standby.primary", "localhost:7070");
+        int separator = primary.lastIndexOf(':');
+        InetSocketAddress primaryAddress = new InetSocketAddress(
+                primary.substring(0, separator), Integer.parseInt(primary.substring(separator + 1)));
+        StandbyReplica replica = new StandbyReplica(primaryAddress,
+                Integer.getInteger("catpoint.standby.timeoutMillis", 3000));
+
+        ServiceAssembly assembly = new ServiceAssembly();
+        assembly.openHistory();
+        ImageService imageService = assembly.createImageService();
+        AlarmRules rules = assembly.loadRules();
+        ServiceDispatcher serviceDispatcher = new ServiceDispatcher();
+        if (Integer.getInteger("catpoint.api.port") != null) {
+            warmUpApi(serviceDispatcher);
+        }
+
+        long lostAt = replica.replicateUntilPrimaryLost();
+
+        long epoch;
+        try (FencingToken fence = FencingToken.open(ServiceAssembly.fenceDirectory(), primaryAddress.getPort())) {
+            epoch = fence.acquire();
+        }
+        SecurityService securityService = assembly.createSecurityService(
+                assembly.wrapRepository(replica.getRepository()), imageService, rules);
+        assembly.startMetricsReporter();
+        assembly.startServers(serviceDispatcher);
+        log.info("Took over as primary at sequence {}, epoch {}, {} us after losing the primary",
+                replica.getAppliedSequence(), epoch, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - lostAt));
+
+        //the servers run on daemon threads
+        new CountDownLatch(1).await();
+    }
+
+    /**
+     * Serves one request from a throwaway API server on a free port. Loading the server's classes
+     * otherwise takes most of the time it takes to take over.
+     */
+    private static void warmUpApi(ServiceDispatcher serviceDispatcher) {
+        SecurityService scratch = new SecurityService(new InMemorySecurityRepository(), new FakeImageService());
+        try (SecurityApiServer server = new SecurityApiServer(scratch, serviceDispatcher, 0, 1)) {
+            server.start();
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                socket.getOutputStream().write("GET /api/state HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                        .getBytes(StandardCharsets.US_ASCII));
+                socket.getInputStream().readAllBytes();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to warm up the API server", e);
+        }
+    }
+}
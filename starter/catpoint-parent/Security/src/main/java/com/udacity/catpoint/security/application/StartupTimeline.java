@@ -0,0 +1,94 @@
+package com.udacity.catpoint.security.application;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Records how long each stage of application startup took, measured from JVM start.
+ * <p>
+ * The timeline is logged once the GUI is fully interactive. Set -Dcatpoint.startup.timeline=[file]
+ * to also append it as a CSV row, so startup time can be tracked across builds. The CSV columns are
+ * the {@link #STAGES} in their declared order, whatever order the stages happened to finish in on
+ * this run; a stage that did not happen leaves its cell empty.
+ */
+public final class StartupTimeline {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTimeline.class);
+
+    private static final long JVM_START_MILLIS = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli)
+            .orElse(System.currentTimeMillis());
+    /**
+     * CSV columns, in order. Add new stages at the end so older files keep lining up.
+     */
+    static final List<String> STAGES = List.of("main", "frameShown", "firstPaint", "repositoryLoaded",
+            "servicesReady", "displayPanelReady", "imagePanelReady", "sensorPanelReady", "controlPanelReady",
+            "interactive");
+    private static final Map<String, Long> marks = new LinkedHashMap<>();
+
+    private StartupTimeline() {
+    }
+
+    /**
+     * Records that a stage finished now. Only the first mark of each stage counts.
+     */
+    public static synchronized void mark(String stage) {
+        marks.putIfAbsent(stage, System.currentTimeMillis() - JVM_START_MILLIS);
+    }
+
+    /**
+     * Logs the timeline and appends it to the configured CSV file, if any.
+     */
+    public static synchronized void report() {
+        log.info("Startup timeline (ms since JVM start): {}", marks.entrySet().stream()
+                .map(e -> e.getKey() + "=" + e.getValue())
+                .collect(Collectors.joining(", ")));
+
+        String file = System.getProperty("catpoint.startup.timeline");
+        if (file == null) {
+            return;
+        }
+        Path path = Paths.get(file);
+        StringBuilder csv = new StringBuilder();
+        if (!Files.exists(path)) {
+            csv.append(header()).append(System.lineSeparator());
+        }
+        csv.append(row(Instant.now())).append(System.lineSeparator());
+        try {
+            Files.write(path, csv.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.warn("Unable to write startup timeline to {}", path, e);
+        }
+    }
+
+    static String header() {
+        return "timestamp," + String.join(",", STAGES);
+    }
+
+    static synchronized String row(Instant timestamp) {
+        for (String stage : marks.keySet()) {
+            if (!STAGES.contains(stage)) {
+                log.warn("Startup stage {} has no CSV column, add it to StartupTimeline.STAGES", stage);
+            }
+        }
+        return timestamp + "," + STAGES.stream()
+                .map(stage -> marks.containsKey(stage) ? String.valueOf(marks.get(stage)) : "")
+                .collect(Collectors.joining(","));
+    }
+
+    static synchronized void clear() {
+        marks.clear();
+    }
+}
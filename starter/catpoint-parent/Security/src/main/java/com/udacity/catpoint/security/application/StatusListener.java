@@ -2,6 +2,7 @@ package com.udacity.catpoint.security.application;
 
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
 
 /**
  * Identifies a component that should be notified whenever the system status changes
@@ -10,4 +11,10 @@ public interface StatusListener {
     void notify(AlarmStatus status);
     void catDetected(boolean catDetected);
     void sensorStatusChanged();
+
+    /**
+     * A sensor stopped reporting, or reports again. Only listeners that care need to implement it.
+     */
+    default void sensorLivenessChanged(Sensor sensor, boolean online) {
+    }
 }
@@ -0,0 +1,199 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Sits between the SecurityService and the Swing panels. Status changes may arrive on any thread
+ * and at any rate; the bridge keeps only the latest value of each kind and hands them to the
+ * panels on the EDT at most once per frame. Liveness is kept per sensor, so a frame updates only
+ * the rows that changed; a storm of more changes than that is worth is applied as one reload instead.
+ * <p>
+ * The time between posting a frame and the EDT running it is tracked, so a UI that cannot keep up
+ * during an event storm shows up in the logs instead of as a frozen window.
+ */
+public class SwingStatusBridge implements StatusListener {
+
+    private static final long SLOW_QUEUE_WARNING_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    //beyond this many rows a single reload of the table is cheaper than updating each row
+    static final int MAX_LIVENESS_CHANGES_PER_FRAME = 256;
+
+    private final Logger log = LoggerFactory.getLogger(SwingStatusBridge.class);
+
+    private final List<StatusListener> listeners = new CopyOnWriteArrayList<>();
+    private final long frameIntervalNanos;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ui-update-bridge");
+        t.setDaemon(true);
+        return t;
+    });
+
+    //latest value of each kind of update, null (or false) when nothing is pending
+    private final AtomicReference<AlarmStatus> pendingAlarmStatus = new AtomicReference<>();
+    private final AtomicReference<Boolean> pendingCatDetected = new AtomicReference<>();
+    private final AtomicBoolean pendingSensorChange = new AtomicBoolean();
+    private final ConcurrentMap<Sensor, Boolean> pendingLiveness = new ConcurrentHashMap<>();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    private volatile long lastFrameNanos = System.nanoTime();
+
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong framesApplied = new AtomicLong();
+    private final AtomicLong totalQueueLatencyNanos = new AtomicLong();
+    private final LongAccumulator maxQueueLatencyNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Registers the bridge with the securityService.
+     * @param framesPerSecond Maximum number of times per second updates are applied to the panels
+     */
+    public SwingStatusBridge(SecurityService securityService, int framesPerSecond) {
+        this.frameIntervalNanos = TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+        securityService.addStatusListener(this);
+        scheduler.scheduleAtFixedRate(this::reportQueueLatency, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Register a panel to receive coalesced updates on the EDT.
+     */
+    public void addStatusListener(StatusListener statusListener) {
+        listeners.add(statusListener);
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        pendingAlarmStatus.set(status);
+        scheduleFrame();
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        pendingCatDetected.set(catDetected);
+        scheduleFrame();
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        pendingSensorChange.set(true);
+        scheduleFrame();
+    }
+
+    @Override
+    public void sensorLivenessChanged(Sensor sensor, boolean online) {
+        pendingLiveness.put(sensor, online);
+        scheduleFrame();
+    }
+
+    public long getEventsReceived() {
+        return eventsReceived.get();
+    }
+
+    public long getFramesApplied() {
+        return framesApplied.get();
+    }
+
+    /**
+     * @return the highest EDT queue latency since the last once-a-second report
+     */
+    public long getMaxQueueLatencyNanos() {
+        return maxQueueLatencyNanos.get();
+    }
+
+    public long getAverageQueueLatencyNanos() {
+        long frames = framesApplied.get();
+        return frames == 0 ? 0 : totalQueueLatencyNanos.get() / frames;
+    }
+
+    /**
+     * Makes sure exactly one frame is on its way while updates are pending, no sooner than one
+     * frame interval after the previous one.
+     */
+    private void scheduleFrame() {
+        eventsReceived.incrementAndGet();
+        if (!frameScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        long delay = lastFrameNanos + frameIntervalNanos - System.nanoTime();
+        if (delay <= 0) {
+            postFrame();
+        } else {
+            scheduler.schedule(this::postFrame, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void postFrame() {
+        long posted = System.nanoTime();
+        SwingUtilities.invokeLater(() -> applyFrame(posted));
+    }
+
+    private void applyFrame(long posted) {
+        long now = System.nanoTime();
+        long queueLatency = now - posted;
+        totalQueueLatencyNanos.addAndGet(queueLatency);
+        maxQueueLatencyNanos.accumulate(queueLatency);
+        framesApplied.incrementAndGet();
+
+        lastFrameNanos = now;
+        //cleared before draining so an update arriving while the panels run schedules the next frame
+        frameScheduled.set(false);
+
+        AlarmStatus alarmStatus = pendingAlarmStatus.getAndSet(null);
+        Boolean catDetected = pendingCatDetected.getAndSet(null);
+        boolean sensorsChanged = pendingSensorChange.getAndSet(false);
+        List<Map.Entry<Sensor, Boolean>> liveness = drainLiveness();
+        if (liveness.size() > MAX_LIVENESS_CHANGES_PER_FRAME) {
+            sensorsChanged = true;
+            liveness = List.of();
+        }
+        for (StatusListener listener : listeners) {
+            if (alarmStatus != null) {
+                listener.notify(alarmStatus);
+            }
+            if (catDetected != null) {
+                listener.catDetected(catDetected);
+            }
+            if (sensorsChanged) {
+                listener.sensorStatusChanged();
+            }
+            for (Map.Entry<Sensor, Boolean> change : liveness) {
+                listener.sensorLivenessChanged(change.getKey(), change.getValue());
+            }
+        }
+    }
+
+    private List<Map.Entry<Sensor, Boolean>> drainLiveness() {
+        if (pendingLiveness.isEmpty()) {
+            return List.of();
+        }
+        List<Map.Entry<Sensor, Boolean>> changes = new ArrayList<>();
+        for (Map.Entry<Sensor, Boolean> change : pendingLiveness.entrySet()) {
+            //a change that arrives meanwhile stays pending for the next frame
+            if (pendingLiveness.remove(change.getKey(), change.getValue())) {
+                changes.add(Map.entry(change.getKey(), change.getValue()));
+            }
+        }
+        return changes;
+    }
+
+    private void reportQueueLatency() {
+        long max = maxQueueLatencyNanos.getThenReset();
+        if (max > SLOW_QUEUE_WARNING_NANOS) {
+            log.warn("UI is falling behind, EDT queue latency reached {} ms ({} events in {} frames so far)",
+                    TimeUnit.NANOSECONDS.toMillis(max), eventsReceived.get(), framesApplied.get());
+        } else if (log.isDebugEnabled() && max > 0) {
+            log.debug("EDT queue latency max {} us, average {} us", TimeUnit.NANOSECONDS.toMicros(max),
+                    TimeUnit.NANOSECONDS.toMicros(getAverageQueueLatencyNanos()));
+        }
+    }
+}
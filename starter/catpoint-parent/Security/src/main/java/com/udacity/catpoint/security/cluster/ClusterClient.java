@@ -0,0 +1,218 @@
+package com.udacity.catpoint.security.cluster;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.List;
+
+import static com.udacity.catpoint.security.cluster.ClusterProtocol.*;
+
+/**
+ * Connection to one {@link ClusterNode}. Events are buffered and sent on {@link #flush()} or
+ * when the buffer fills; requests flush first and wait for their answer. Not thread-safe.
+ */
+public class ClusterClient implements AutoCloseable {
+
+    private final String member;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    /**
+     * @param member The node's address, host:port
+     */
+    public ClusterClient(String member) throws IOException {
+        this.member = member;
+        int separator = member.lastIndexOf(':');
+        this.socket = new Socket(member.substring(0, separator), Integer.parseInt(member.substring(separator + 1)));
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+    }
+
+    public String getMember() {
+        return member;
+    }
+
+    public void sensor(String premisesId, long sensorHigh, long sensorLow, SensorType sensorType, boolean active) throws IOException {
+        writeSensor(out, 0, premisesId, sensorHigh, sensorLow, sensorType, active);
+    }
+
+    public void arming(String premisesId, ArmingStatus armingStatus) throws IOException {
+        writeArming(out, 0, premisesId, armingStatus);
+    }
+
+    /**
+     * @param image An encoded image, in any format ImageIO reads, of at most 8 MB
+     */
+    public void image(String premisesId, byte[] image) throws IOException {
+        if (image.length > MAX_IMAGE_BYTES) {
+            throw new IllegalArgumentException("Image of " + image.length + " bytes is over the limit of " + MAX_IMAGE_BYTES);
+        }
+        writeImage(out, 0, premisesId, image);
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Asks the node for a premises' state, following one redirect if another node owns it.
+     */
+    public PremisesState state(String premisesId) throws IOException {
+        out.writeByte(STATE);
+        out.writeUTF(premisesId);
+        out.flush();
+        byte reply = in.readByte();
+        if (reply == MOVED) {
+            try (ClusterClient owner = new ClusterClient(in.readUTF())) {
+                return owner.state(premisesId);
+            }
+        }
+        expect(STATE_REPLY, reply);
+        return new PremisesState(member, alarmStatus(in.readUnsignedByte()), armingStatus(in.readUnsignedByte()),
+                in.readInt(), in.readInt());
+    }
+
+    public NodeStats stats() throws IOException {
+        out.writeByte(STATS);
+        out.flush();
+        expect(STATS_REPLY, in.readByte());
+        return new NodeStats(member, in.readInt(), in.readLong(), in.readLong(), in.readInt(), in.readInt(),
+                in.readLong(), in.readLong(), in.readBoolean());
+    }
+
+    /**
+     * Announces a membership change. It has to be sent to every previous and every new member.
+     */
+    public void membership(int epoch, List<String> previousMembers, List<String> members) throws IOException {
+        writeMembership(out, epoch, previousMembers, members);
+        out.flush();
+        expect(OK, in.readByte());
+    }
+
+    private static void expect(byte expected, byte reply) throws IOException {
+        if (reply != expected) {
+            throw new IOException("Unexpected cluster reply " + reply);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.flush();
+        } finally {
+            socket.close();
+        }
+    }
+
+    public static class PremisesState {
+        private final String owner;
+        private final AlarmStatus alarmStatus;
+        private final ArmingStatus armingStatus;
+        private final int sensors;
+        private final int activeSensors;
+
+        PremisesState(String owner, AlarmStatus alarmStatus, ArmingStatus armingStatus, int sensors, int activeSensors) {
+            this.owner = owner;
+            this.alarmStatus = alarmStatus;
+            this.armingStatus = armingStatus;
+            this.sensors = sensors;
+            this.activeSensors = activeSensors;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public AlarmStatus getAlarmStatus() {
+            return alarmStatus;
+        }
+
+        public ArmingStatus getArmingStatus() {
+            return armingStatus;
+        }
+
+        public int getSensors() {
+            return sensors;
+        }
+
+        public int getActiveSensors() {
+            return activeSensors;
+        }
+    }
+
+    public static class NodeStats {
+        private final String member;
+        private final int epoch;
+        private final long applied;
+        private final long forwarded;
+        private final int premises;
+        private final int sensors;
+        private final long transfersIn;
+        private final long transfersOut;
+        private final boolean rebalancing;
+
+        NodeStats(String member, int epoch, long applied, long forwarded, int premises, int sensors,
+                  long transfersIn, long transfersOut, boolean rebalancing) {
+            this.member = member;
+            this.epoch = epoch;
+            this.applied = applied;
+            this.forwarded = forwarded;
+            this.premises = premises;
+            this.sensors = sensors;
+            this.transfersIn = transfersIn;
+            this.transfersOut = transfersOut;
+            this.rebalancing = rebalancing;
+        }
+
+        public String getMember() {
+            return member;
+        }
+
+        public int getEpoch() {
+            return epoch;
+        }
+
+        /**
+         * @return events applied to premises owned by the node
+         */
+        public long getApplied() {
+            return applied;
+        }
+
+        public long getForwarded() {
+            return forwarded;
+        }
+
+        public int getPremises() {
+            return premises;
+        }
+
+        public int getSensors() {
+            return sensors;
+        }
+
+        public long getTransfersIn() {
+            return transfersIn;
+        }
+
+        public long getTransfersOut() {
+            return transfersOut;
+        }
+
+        /**
+         * @return true while the node still waits for premises moved to it by the last membership change
+         */
+        public boolean isRebalancing() {
+            return rebalancing;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.udacity.catpoint.security.cluster;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.util.List;
+
+/**
+ * A message received by a {@link ClusterNode}, decoded on the connection's thread and handled on
+ * the node's thread. Only the fields of its type are set.
+ */
+class ClusterMessage {
+    byte type;
+    //membership epoch of the sender, 0 from clients
+    int epoch;
+    String premisesId;
+
+    //SENSOR
+    long sensorHigh;
+    long sensorLow;
+    SensorType sensorType;
+    boolean active;
+
+    //ARMING
+    ArmingStatus armingStatus;
+
+    //IMAGE
+    byte[] image;
+
+    //TRANSFER
+    AlarmStatus alarmStatus;
+    List<Sensor> sensors;
+
+    //TRANSFER_DONE
+    String from;
+
+    //MEMBERSHIP
+    List<String> previousMembers;
+    List<String> members;
+}
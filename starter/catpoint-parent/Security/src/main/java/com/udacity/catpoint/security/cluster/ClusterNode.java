@@ -0,0 +1,640 @@
+package com.udacity.catpoint.security.cluster;
+
+import com.udacity.catpoint.image.FakeImageService;
+import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.security.data.InMemorySecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.rules.AlarmRules;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.udacity.catpoint.security.cluster.ClusterProtocol.*;
+
+/**
+ * One member of a cluster that spreads premises over several processes. Every premises has its
+ * own SecurityService on an in-memory repository, hosted by the member the {@link HashRing} assigns
+ * it to. Any member accepts sensor, arming and image events for any premises and forwards those
+ * it doesn't own to the owner; state queries for premises owned elsewhere are answered with the
+ * owner's address instead.
+ * <p>
+ * All premises of a node share one thread, like the SecurityService of the desktop app, so a
+ * node scales with the number of nodes rather than with cores. Connection threads only decode;
+ * forwarded events are buffered per peer and sent whenever the node thread runs out of work.
+ * <p>
+ * Membership changes arrive as a new epoch with the old and new member lists, sent to every old
+ * and new member. Each member hands the premises it no longer owns to their new owners with their
+ * full state and then tells every new member it is done. Until all old members are done, a node
+ * holds back events for premises it now owns but hasn't received yet. Messages stamped with a
+ * later epoch than the node has seen wait until the membership change reaches it, so a node
+ * never acts on a ring older than its sender's.
+ * <p>
+ * Transfers and the final TRANSFER_DONE to each member are kept for the epoch and sent again on a
+ * new link if the link to that member breaks; receivers ignore premises they already have. A
+ * member that dies mid-change never finishes, so after {@value #TRANSFER_TIMEOUT_MILLIS} ms a node
+ * stops waiting, releases the events it held back and starts the premises it never received
+ * afresh.
+ * <p>
+ * Every premises decides its alarm with the same {@link AlarmRules}; run from main, those are the
+ * rules in -Dcatpoint.rules.file, reloaded whenever the file changes, or the defaults.
+ */
+public class ClusterNode implements AutoCloseable {
+
+    private static final int MAX_QUEUED_TASKS = 4 * 1024;
+    static final long TRANSFER_TIMEOUT_MILLIS = 10_000;
+    //events held back while transfers are outstanding, beyond which further events are dropped
+    private static final int MAX_HELD = 64 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(ClusterNode.class);
+
+    private final String self;
+    private final int virtualNodes;
+    private final ServerSocket serverSocket;
+    private final ImageService imageService = new FakeImageService();
+    //shared by every hosted premises
+    private final AlarmRules alarmRules;
+    //membership changes and stats requests go to the front; everything else to the back, and only
+    //while fewer than MAX_QUEUED_TASKS are waiting, so connections that send faster than the node
+    //keeps up are held back by TCP flow control rather than queueing without limit
+    private final BlockingDeque<Runnable> tasks = new LinkedBlockingDeque<>();
+    private final Semaphore queueSlots = new Semaphore(MAX_QUEUED_TASKS);
+    private final Thread nodeThread;
+    private final Thread acceptThread;
+    private volatile boolean closed = false;
+
+    //everything below is only touched on the node thread
+    private int epoch;
+    private HashRing ring;
+    private final Map<String, Premises> premises = new HashMap<>();
+    private final Map<String, PeerLink> links = new HashMap<>();
+    private final Set<PeerLink> dirtyLinks = new HashSet<>();
+    private final Set<String> awaitingTransfers = new HashSet<>();
+    //events for premises whose state is still on its way from the previous owner
+    private final List<ClusterMessage> heldForTransfer = new ArrayList<>();
+    //transfers and TRANSFER_DONE sent to each member this epoch, sent again if its link breaks
+    private final Map<String, ByteArrayOutputStream> handoffs = new HashMap<>();
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    private final DataOutputStream encoder = new DataOutputStream(encoded);
+    //System.nanoTime() after which outstanding transfers of this epoch are given up
+    private long transferDeadline;
+    //messages from members that already moved to a later epoch
+    private final List<ClusterMessage> parked = new ArrayList<>();
+    private long applied;
+    private long forwarded;
+    private long transfersIn;
+    private long transfersOut;
+
+    /**
+     * @param self This member's address, host:port; the node listens on that port
+     * @param members The initial members, including this one, all at epoch 1
+     */
+    public ClusterNode(String self, List<String> members, int virtualNodes) throws IOException {
+        this(self, members, virtualNodes, AlarmRules.defaults());
+    }
+
+    /**
+     * @param alarmRules The rules every premises hosted here decides its alarm with
+     */
+    public ClusterNode(String self, List<String> members, int virtualNodes, AlarmRules alarmRules) throws IOException {
+        this.self = self;
+        this.alarmRules = alarmRules;
+        this.virtualNodes = virtualNodes;
+        this.epoch = 1;
+        this.ring = new HashRing(members, virtualNodes);
+        int separator = self.lastIndexOf(':');
+        this.serverSocket = new ServerSocket(Integer.parseInt(self.substring(separator + 1)), 256,
+                InetAddress.getByName(self.substring(0, separator)));
+        this.nodeThread = new Thread(this::runTasks, "cluster-node");
+        this.acceptThread = new Thread(this::acceptConnections, "cluster-accept");
+    }
+
+    public void start() {
+        nodeThread.start();
+        acceptThread.start();
+        log.info("Cluster member {} of {}", self, ring.getMembers());
+    }
+
+    public static void main(String[] args) throws IOException {
+        String self = System.getProperty("catpoint.cluster.listen", "localhost:7100");
+        List<String> members = Arrays.asList(System.getProperty("catpoint.cluster.members", self).split(","));
+        AlarmRules rules = AlarmRules.defaults();
+        String rulesFile = System.getProperty("catpoint.rules.file");
+        if (rulesFile != null) {
+            //every member should decide with the same rules, so don't start on a file that doesn't load
+            rules.watch(Paths.get(rulesFile));
+        }
+        new ClusterNode(self, members, Integer.getInteger("catpoint.cluster.virtualNodes", 128), rules).start();
+    }
+
+    private void runTasks() {
+        try {
+            while (!closed) {
+                boolean transferring = !awaitingTransfers.isEmpty() || !handoffs.isEmpty();
+                Runnable task = transferring
+                        ? tasks.poll(transferDeadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+                        : tasks.take();
+                try {
+                    if (task != null) {
+                        task.run();
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Cluster member {} failed to handle a message", self, e);
+                }
+                if (transferring && System.nanoTime() - transferDeadline >= 0) {
+                    expireTransfers();
+                }
+                if (tasks.isEmpty()) {
+                    flushLinks();
+                }
+            }
+        } catch (InterruptedException e) {
+            //closing
+        }
+    }
+
+    private void acceptConnections() {
+        int connections = 0;
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!closed) {
+                    log.error("Cluster member {} stopped accepting connections", self, e);
+                }
+                return;
+            }
+            Thread reader = new Thread(() -> readConnection(socket), "cluster-connection-" + (++connections));
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    private void readConnection(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (!closed) {
+                ClusterMessage message = ClusterProtocol.read(in);
+                if (message.type == MEMBERSHIP || message.type == STATS) {
+                    tasks.addFirst(() -> handle(message, out));
+                } else {
+                    queueSlots.acquire();
+                    tasks.addLast(() -> {
+                        queueSlots.release();
+                        handle(message, out);
+                    });
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Cluster connection closed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Handles one message. Runs on the node thread.
+     * @param out Where replies go
+     */
+    private void handle(ClusterMessage message, DataOutputStream out) {
+        try {
+            switch (message.type) {
+                case MEMBERSHIP:
+                    changeMembership(message);
+                    out.writeByte(OK);
+                    out.flush();
+                    break;
+                case STATE:
+                    replyState(message.premisesId, out);
+                    break;
+                case STATS:
+                    replyStats(out);
+                    break;
+                default:
+                    handle(message);
+            }
+        } catch (IOException e) {
+            log.debug("Unable to reply on a cluster connection", e);
+        }
+    }
+
+    private void handle(ClusterMessage message) {
+        if (message.epoch > epoch) {
+            parked.add(message);
+            return;
+        }
+        switch (message.type) {
+            case TRANSFER:
+                receiveTransfer(message);
+                return;
+            case TRANSFER_DONE:
+                if (message.epoch == epoch && awaitingTransfers.remove(message.from) && awaitingTransfers.isEmpty()) {
+                    releaseHeld();
+                }
+                return;
+            default:
+                applyOrForward(message);
+        }
+    }
+
+    private void applyOrForward(ClusterMessage message) {
+        String owner = ring.ownerOf(message.premisesId);
+        if (!owner.equals(self)) {
+            PeerLink link = link(owner);
+            try {
+                ClusterProtocol.forward(link.out, epoch, message);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Writing to memory failed", e);
+            }
+            link.sendIfFull();
+            dirtyLinks.add(link);
+            forwarded++;
+            return;
+        }
+        Premises target = premises.get(message.premisesId);
+        if (target == null) {
+            if (!awaitingTransfers.isEmpty()) {
+                if (heldForTransfer.size() < MAX_HELD) {
+                    heldForTransfer.add(message);
+                } else {
+                    log.warn("Cluster member {} dropped an event for {}, too many held back", self, message.premisesId);
+                }
+                return;
+            }
+            target = new Premises();
+            premises.put(message.premisesId, target);
+        }
+        target.apply(message);
+        applied++;
+    }
+
+    private void changeMembership(ClusterMessage message) {
+        if (message.epoch <= epoch) {
+            return;
+        }
+        epoch = message.epoch;
+        ring = new HashRing(message.members, virtualNodes);
+        log.info("Cluster member {} moved to epoch {}: {}", self, epoch, ring.getMembers());
+
+        handoffs.clear();
+        transferDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TRANSFER_TIMEOUT_MILLIS);
+        awaitingTransfers.clear();
+        if (message.members.contains(self)) {
+            awaitingTransfers.addAll(message.previousMembers);
+            awaitingTransfers.remove(self);
+        }
+        for (Iterator<Map.Entry<String, Premises>> it = premises.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Premises> entry = it.next();
+            String owner = ring.ownerOf(entry.getKey());
+            if (!owner.equals(self)) {
+                transfer(entry.getKey(), entry.getValue(), owner);
+                it.remove();
+            }
+        }
+        for (String member : ring.getMembers()) {
+            if (!member.equals(self)) {
+                encoded.reset();
+                try {
+                    ClusterProtocol.writeTransferDone(encoder, epoch, self);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Writing to memory failed", e);
+                }
+                handOff(member);
+            }
+        }
+        flushLinks();
+
+        List<ClusterMessage> ready = new ArrayList<>(parked);
+        parked.clear();
+        for (ClusterMessage parkedMessage : ready) {
+            handle(parkedMessage);
+        }
+        if (awaitingTransfers.isEmpty()) {
+            releaseHeld();
+        }
+    }
+
+    private void transfer(String premisesId, Premises moving, String owner) {
+        encoded.reset();
+        try {
+            ClusterProtocol.writeTransfer(encoder, epoch, premisesId, moving.repository.getAlarmStatus(),
+                    moving.repository.getArmingStatus(), moving.repository.getSensors());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Writing to memory failed", e);
+        }
+        handOff(owner);
+        transfersOut++;
+    }
+
+    /**
+     * Sends what was just encoded to the member, keeping a copy in case its link breaks.
+     */
+    private void handOff(String member) {
+        PeerLink link = link(member);
+        try {
+            encoded.writeTo(handoffs.computeIfAbsent(member, m -> new ByteArrayOutputStream()));
+            encoded.writeTo(link.out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Writing to memory failed", e);
+        }
+        link.sendIfFull();
+        dirtyLinks.add(link);
+    }
+
+    /**
+     * Sends this epoch's transfers to a member again after its link broke. Those that did arrive
+     * the first time are ignored by the member.
+     */
+    private void resendHandoff(String member) {
+        ByteArrayOutputStream handoff = handoffs.get(member);
+        if (handoff == null) {
+            return;
+        }
+        log.info("Cluster member {} sending premises to {} again after losing the link", self, member);
+        PeerLink link = link(member);
+        try {
+            handoff.writeTo(link.out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Writing to memory failed", e);
+        }
+        link.sendIfFull();
+        dirtyLinks.add(link);
+    }
+
+    /**
+     * Stops waiting for members that didn't finish handing over premises in time, most likely
+     * because they died, and stops sending transfers again to members that can't be reached.
+     */
+    private void expireTransfers() {
+        if (!awaitingTransfers.isEmpty()) {
+            log.warn("Cluster member {} gave up waiting for premises from {} at epoch {}", self, awaitingTransfers, epoch);
+            awaitingTransfers.clear();
+            releaseHeld();
+        }
+        handoffs.clear();
+    }
+
+    private void receiveTransfer(ClusterMessage message) {
+        Premises received = new Premises();
+        received.repository.setAlarmStatus(message.alarmStatus);
+        received.repository.setArmingStatus(message.armingStatus);
+        for (Sensor sensor : message.sensors) {
+            received.add(sensor);
+        }
+        transfersIn++;
+        String owner = ring.ownerOf(message.premisesId);
+        if (!owner.equals(self)) {
+            //membership moved on again while the premises was on its way
+            transfer(message.premisesId, received, owner);
+            return;
+        }
+        if (premises.putIfAbsent(message.premisesId, received) != null) {
+            log.debug("Cluster member {} already has {}, ignoring a repeated transfer", self, message.premisesId);
+        }
+    }
+
+    private void releaseHeld() {
+        List<ClusterMessage> held = new ArrayList<>(heldForTransfer);
+        heldForTransfer.clear();
+        for (ClusterMessage message : held) {
+            handle(message);
+        }
+    }
+
+    private void replyState(String premisesId, DataOutputStream out) throws IOException {
+        String owner = ring.ownerOf(premisesId);
+        if (!owner.equals(self)) {
+            out.writeByte(MOVED);
+            out.writeUTF(owner);
+        } else {
+            Premises target = premises.get(premisesId);
+            InMemorySecurityRepository repository = target == null ? new InMemorySecurityRepository() : target.repository;
+            int active = 0;
+            for (Sensor sensor : repository.getSensors()) {
+                if (sensor.getActive()) {
+                    active++;
+                }
+            }
+            out.writeByte(STATE_REPLY);
+            out.writeByte(repository.getAlarmStatus().ordinal());
+            out.writeByte(repository.getArmingStatus().ordinal());
+            out.writeInt(repository.getSensors().size());
+            out.writeInt(active);
+        }
+        out.flush();
+    }
+
+    private void replyStats(DataOutputStream out) throws IOException {
+        int sensors = 0;
+        for (Premises hosted : premises.values()) {
+            sensors += hosted.repository.getSensors().size();
+        }
+        out.writeByte(STATS_REPLY);
+        out.writeInt(epoch);
+        out.writeLong(applied);
+        out.writeLong(forwarded);
+        out.writeInt(premises.size());
+        out.writeInt(sensors);
+        out.writeLong(transfersIn);
+        out.writeLong(transfersOut);
+        out.writeBoolean(!awaitingTransfers.isEmpty());
+        out.flush();
+    }
+
+    private PeerLink link(String member) {
+        PeerLink link = links.get(member);
+        if (link == null || link.broken) {
+            link = new PeerLink(member);
+            links.put(member, link);
+        }
+        return link;
+    }
+
+    private void flushLinks() {
+        for (PeerLink link : dirtyLinks) {
+            link.send();
+        }
+        dirtyLinks.clear();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        nodeThread.interrupt();
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            log.warn("Unable to close cluster member {}", self, e);
+        }
+    }
+
+    /**
+     * One hosted premises.
+     */
+    private class Premises {
+        private final InMemorySecurityRepository repository = new InMemorySecurityRepository();
+        private final SecurityService securityService = new SecurityService(repository, imageService, alarmRules);
+        private final Map<UUID, Sensor> sensorsById = new HashMap<>();
+
+        void add(Sensor sensor) {
+            sensorsById.put(sensor.getSensorId(), sensor);
+            securityService.addSensor(sensor);
+        }
+
+        void apply(ClusterMessage message) {
+            switch (message.type) {
+                case SENSOR:
+                    UUID id = new UUID(message.sensorHigh, message.sensorLow);
+                    Sensor sensor = sensorsById.get(id);
+                    if (sensor == null) {
+                        //sensors are registered by their first event
+                        sensor = new Sensor(message.sensorType + " " + id.toString().substring(0, 8), message.sensorType);
+                        sensor.setSensorId(id);
+                        add(sensor);
+                    }
+                    if (sensor.getActive() != message.active) {
+                        securityService.changeSensorActivationStatus(sensor, message.active);
+                    }
+                    break;
+                case ARMING:
+                    securityService.setArmingStatus(message.armingStatus);
+                    break;
+                case IMAGE:
+                    try {
+                        BufferedImage image = ImageIO.read(new ByteArrayInputStream(message.image));
+                        if (image != null) {
+                            securityService.processImage(image);
+                        }
+                    } catch (IOException e) {
+                        log.debug("Dropping an undecodable image for {}", message.premisesId, e);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Not an event: " + message.type);
+            }
+        }
+    }
+
+    /**
+     * Outgoing connection to another member, carrying forwarded events and transfers. The node
+     * thread encodes into a buffer and hands full or flushed buffers to the link's own writer
+     * thread, so the node never waits on the network: two nodes forwarding to each other while
+     * both are busy would otherwise block each other for good.
+     * <p>
+     * At most {@value #MAX_OUTGOING} buffers wait for the writer. A member that falls further behind
+     * loses its link and the events on it, as if the connection had broken; transfers are sent
+     * again on the next link.
+     */
+    private class PeerLink {
+        private static final int SEND_BYTES = 64 * 1024;
+        private static final int MAX_OUTGOING = 1024;
+        private static final long RELINK_MILLIS = 200;
+
+        private final String member;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(SEND_BYTES);
+        private final DataOutputStream out = new DataOutputStream(buffer);
+        private final BlockingQueue<byte[]> outgoing = new LinkedBlockingQueue<>(MAX_OUTGOING);
+        private final Socket socket = new Socket();
+        private volatile boolean broken = false;
+
+        PeerLink(String member) {
+            this.member = member;
+            Thread writer = new Thread(this::write, "cluster-link-" + member);
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        /**
+         * Hands the buffer to the writer once enough has been encoded. Node thread only.
+         */
+        void sendIfFull() {
+            if (buffer.size() >= SEND_BYTES) {
+                send();
+            }
+        }
+
+        void send() {
+            if (buffer.size() > 0) {
+                if (!broken && !outgoing.offer(buffer.toByteArray())) {
+                    log.warn("Cluster member {} is too far behind, dropping the link to it", member);
+                    broken = true;
+                    try {
+                        //fails the writer's pending write
+                        socket.close();
+                    } catch (IOException e) {
+                        log.debug("Unable to close the link to {}", member, e);
+                    }
+                }
+                buffer.reset();
+            }
+        }
+
+        private void write() {
+            int separator = member.lastIndexOf(':');
+            try (socket) {
+                socket.connect(new InetSocketAddress(member.substring(0, separator), Integer.parseInt(member.substring(separator + 1))));
+                socket.setTcpNoDelay(true);
+                OutputStream stream = new BufferedOutputStream(socket.getOutputStream(), SEND_BYTES);
+                while (!closed && !broken) {
+                    stream.write(outgoing.take());
+                    if (outgoing.isEmpty()) {
+                        stream.flush();
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Lost the link from {} to {}: {}", self, member, e.toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                //the next message for this member opens a new link
+                broken = true;
+                outgoing.clear();
+            }
+            try {
+                //don't spin on a member that refuses connections
+                Thread.sleep(RELINK_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!closed) {
+                tasks.addFirst(() -> resendHandoff(member));
+            }
+        }
+    }
+}
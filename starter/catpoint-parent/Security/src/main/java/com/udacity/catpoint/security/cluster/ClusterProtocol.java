@@ -0,0 +1,238 @@
+package com.udacity.catpoint.security.cluster;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Messages between cluster clients and nodes, and between nodes. Each is a type byte followed by
+ * its fields in DataOutput encoding; strings are modified UTF-8.
+ * <pre>
+ *      SENSOR          epoch, premises, sensor id as two longs, type ordinal, active
+ *      ARMING          epoch, premises, arming ordinal
+ *      IMAGE           epoch, premises, int length, encoded image
+ *      TRANSFER        epoch, premises, alarm ordinal, arming ordinal, int count, count sensors
+ *      TRANSFER_DONE   epoch, sending member
+ *      MEMBERSHIP      epoch, int count, previous members, int count, members; answered with OK
+ *      STATE           premises; answered with STATE_REPLY or MOVED
+ *      STATS           answered with STATS_REPLY
+ *
+ *      STATE_REPLY     alarm ordinal, arming ordinal, int sensors, int active sensors
+ *      MOVED           owning member
+ *      STATS_REPLY     epoch, long applied, long forwarded, int premises, int sensors,
+ *                      long transfers in, long transfers out, boolean rebalancing
+ *
+ *      sensor          id as two longs, name, type ordinal, active
+ * </pre>
+ * Events are fire and forget; only STATE, STATS and MEMBERSHIP are answered, in order, on the
+ * connection they arrived on. Lengths and counts are checked against the limits below before
+ * anything is allocated for them.
+ */
+final class ClusterProtocol {
+
+    static final byte SENSOR = 1;
+    static final byte ARMING = 2;
+    static final byte IMAGE = 3;
+    static final byte TRANSFER = 4;
+    static final byte TRANSFER_DONE = 5;
+    static final byte MEMBERSHIP = 6;
+    static final byte STATE = 7;
+    static final byte STATS = 8;
+
+    static final byte OK = 20;
+    static final byte STATE_REPLY = 21;
+    static final byte MOVED = 22;
+    static final byte STATS_REPLY = 23;
+
+    static final int MAX_IMAGE_BYTES = 8 * 1024 * 1024;
+    static final int MAX_SENSORS = 64 * 1024;
+    static final int MAX_MEMBERS = 1024;
+
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+
+    private ClusterProtocol() {
+    }
+
+    static void writeSensor(DataOutputStream out, int epoch, String premisesId, long sensorHigh, long sensorLow,
+                            SensorType sensorType, boolean active) throws IOException {
+        out.writeByte(SENSOR);
+        out.writeInt(epoch);
+        out.writeUTF(premisesId);
+        out.writeLong(sensorHigh);
+        out.writeLong(sensorLow);
+        out.writeByte(sensorType.ordinal());
+        out.writeBoolean(active);
+    }
+
+    static void writeArming(DataOutputStream out, int epoch, String premisesId, ArmingStatus armingStatus) throws IOException {
+        out.writeByte(ARMING);
+        out.writeInt(epoch);
+        out.writeUTF(premisesId);
+        out.writeByte(armingStatus.ordinal());
+    }
+
+    static void writeImage(DataOutputStream out, int epoch, String premisesId, byte[] image) throws IOException {
+        out.writeByte(IMAGE);
+        out.writeInt(epoch);
+        out.writeUTF(premisesId);
+        out.writeInt(image.length);
+        out.write(image);
+    }
+
+    static void writeTransfer(DataOutputStream out, int epoch, String premisesId, AlarmStatus alarmStatus,
+                              ArmingStatus armingStatus, Collection<Sensor> sensors) throws IOException {
+        out.writeByte(TRANSFER);
+        out.writeInt(epoch);
+        out.writeUTF(premisesId);
+        out.writeByte(alarmStatus.ordinal());
+        out.writeByte(armingStatus.ordinal());
+        out.writeInt(sensors.size());
+        for (Sensor sensor : sensors) {
+            UUID id = sensor.getSensorId();
+            out.writeLong(id.getMostSignificantBits());
+            out.writeLong(id.getLeastSignificantBits());
+            out.writeUTF(sensor.getName());
+            out.writeByte(sensor.getSensorType().ordinal());
+            out.writeBoolean(sensor.getActive());
+        }
+    }
+
+    static void writeTransferDone(DataOutputStream out, int epoch, String from) throws IOException {
+        out.writeByte(TRANSFER_DONE);
+        out.writeInt(epoch);
+        out.writeUTF(from);
+    }
+
+    static void writeMembership(DataOutputStream out, int epoch, List<String> previousMembers, List<String> members) throws IOException {
+        out.writeByte(MEMBERSHIP);
+        out.writeInt(epoch);
+        writeStrings(out, previousMembers);
+        writeStrings(out, members);
+    }
+
+    /**
+     * Forwards an event, stamped with the forwarding node's epoch.
+     */
+    static void forward(DataOutputStream out, int epoch, ClusterMessage message) throws IOException {
+        switch (message.type) {
+            case SENSOR:
+                writeSensor(out, epoch, message.premisesId, message.sensorHigh, message.sensorLow, message.sensorType, message.active);
+                break;
+            case ARMING:
+                writeArming(out, epoch, message.premisesId, message.armingStatus);
+                break;
+            case IMAGE:
+                writeImage(out, epoch, message.premisesId, message.image);
+                break;
+            default:
+                throw new IllegalArgumentException("Only events are forwarded, not " + message.type);
+        }
+    }
+
+    /**
+     * Reads a message sent to a node.
+     */
+    static ClusterMessage read(DataInputStream in) throws IOException {
+        ClusterMessage message = new ClusterMessage();
+        message.type = in.readByte();
+        switch (message.type) {
+            case SENSOR:
+                message.epoch = in.readInt();
+                message.premisesId = in.readUTF();
+                message.sensorHigh = in.readLong();
+                message.sensorLow = in.readLong();
+                message.sensorType = SENSOR_TYPES[in.readUnsignedByte()];
+                message.active = in.readBoolean();
+                break;
+            case ARMING:
+                message.epoch = in.readInt();
+                message.premisesId = in.readUTF();
+                message.armingStatus = ARMING_STATUSES[in.readUnsignedByte()];
+                break;
+            case IMAGE:
+                message.epoch = in.readInt();
+                message.premisesId = in.readUTF();
+                message.image = new byte[readCount(in, MAX_IMAGE_BYTES, "image bytes")];
+                in.readFully(message.image);
+                break;
+            case TRANSFER:
+                message.epoch = in.readInt();
+                message.premisesId = in.readUTF();
+                message.alarmStatus = ALARM_STATUSES[in.readUnsignedByte()];
+                message.armingStatus = ARMING_STATUSES[in.readUnsignedByte()];
+                int count = readCount(in, MAX_SENSORS, "sensors");
+                message.sensors = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    UUID id = new UUID(in.readLong(), in.readLong());
+                    Sensor sensor = new Sensor(in.readUTF(), SENSOR_TYPES[in.readUnsignedByte()]);
+                    sensor.setSensorId(id);
+                    sensor.setActive(in.readBoolean());
+                    message.sensors.add(sensor);
+                }
+                break;
+            case TRANSFER_DONE:
+                message.epoch = in.readInt();
+                message.from = in.readUTF();
+                break;
+            case MEMBERSHIP:
+                message.epoch = in.readInt();
+                message.previousMembers = readStrings(in);
+                message.members = readStrings(in);
+                break;
+            case STATE:
+                message.premisesId = in.readUTF();
+                break;
+            case STATS:
+                break;
+            default:
+                throw new IOException("Unknown cluster message " + message.type);
+        }
+        return message;
+    }
+
+    /**
+     * @throws IOException if the count is negative or above the limit
+     */
+    private static int readCount(DataInputStream in, int limit, String what) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > limit) {
+            throw new IOException("Too many " + what + ": " + count);
+        }
+        return count;
+    }
+
+    static AlarmStatus alarmStatus(int ordinal) {
+        return ALARM_STATUSES[ordinal];
+    }
+
+    static ArmingStatus armingStatus(int ordinal) {
+        return ARMING_STATUSES[ordinal];
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = readCount(in, MAX_MEMBERS, "members");
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(in.readUTF());
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,85 @@
+package com.udacity.catpoint.security.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Consistent hash ring that assigns premises to cluster members. Every member is placed on the
+ * ring at a number of virtual node positions, so premises spread evenly and a membership change
+ * only moves the premises between the changed member's positions and their neighbours.
+ * <p>
+ * Immutable. The tokens live in one sorted primitive array next to the index of the member that
+ * owns each, so a lookup is a binary search without allocation.
+ */
+public class HashRing {
+
+    private final List<String> members;
+    private final long[] tokens;
+    private final int[] owners;
+
+    /**
+     * @param members Member addresses, host:port
+     * @param virtualNodes Positions per member
+     */
+    public HashRing(List<String> members, int virtualNodes) {
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("A ring needs at least one member");
+        }
+        List<String> sorted = new ArrayList<>(members);
+        Collections.sort(sorted);
+        this.members = Collections.unmodifiableList(sorted);
+        long[] unsorted = new long[sorted.size() * virtualNodes];
+        for (int m = 0; m < sorted.size(); m++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                unsorted[m * virtualNodes + v] = hash(sorted.get(m) + "#" + v);
+            }
+        }
+        //sort token and owner together by sorting the tokens and looking each owner up afterwards
+        long[] sortedTokens = unsorted.clone();
+        Arrays.sort(sortedTokens);
+        this.tokens = sortedTokens;
+        this.owners = new int[sortedTokens.length];
+        for (int i = 0; i < unsorted.length; i++) {
+            owners[Arrays.binarySearch(sortedTokens, unsorted[i])] = i / virtualNodes;
+        }
+    }
+
+    public List<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * @return the address of the member that owns the premises
+     */
+    public String ownerOf(String premisesId) {
+        int index = Arrays.binarySearch(tokens, hash(premisesId));
+        if (index < 0) {
+            //first token after the hash, wrapping around the ring
+            index = -index - 1;
+            if (index == tokens.length) {
+                index = 0;
+            }
+        }
+        return members.get(owners[index]);
+    }
+
+    /**
+     * 64 bit FNV-1a over the chars, finished with the MurmurHash3 mixer so that similar keys such
+     * as "node#1" and "node#2" land far apart. Stable across JVMs, so every node builds the same ring.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
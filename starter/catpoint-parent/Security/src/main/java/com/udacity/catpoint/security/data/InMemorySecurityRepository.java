@@ -0,0 +1,60 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Repository implementation that only keeps state in memory. Nothing survives a restart, which
+ * makes it the right choice for benchmarks, load tests and anywhere the state is owned elsewhere.
+ */
+public class InMemorySecurityRepository implements SecurityRepository {
+
+    private final TreeSet<Sensor> sensors = new TreeSet<>();
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        sensors.add(sensor);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        sensors.remove(sensor);
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        //the stored instance already carries its new state; re-inserting it would allocate a tree node
+        if (sensors.floor(sensor) == sensor) {
+            return;
+        }
+        sensors.remove(sensor);
+        sensors.add(sensor);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensors;
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+}
@@ -4,14 +4,21 @@ import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
 
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
 /**
  * Fake repository implementation for demo purposes. Stores state information in local
  * memory and writes it to user preferences between app loads. This implementation is
  * intentionally a little hard to use in unit tests, so watch out!
+ * <p>
+ * Each sensor is its own preference under a sensors child node, keyed by its id, so a write
+ * only serializes the sensor that changed and no value comes near
+ * {@link Preferences#MAX_VALUE_LENGTH} however many sensors there are. Sensors stored the old way,
+ * as one JSON array, are moved over on load.
  */
 public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository{
 
@@ -21,58 +28,105 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
 
     //preference keys
     private static final String SENSORS = "SENSORS";
+    private static final String SENSOR_NODE = "sensors";
     private static final String ALARM_STATUS = "ALARM_STATUS";
     private static final String ARMING_STATUS = "ARMING_STATUS";
 
-    private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
     private static final Gson gson = new Gson(); //used to serialize objects into JSON
 
+    private final Preferences prefs;
+    private final Preferences sensorPrefs;
+
     public PretendDatabaseSecurityRepositoryImpl() {
+        this(Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class));
+    }
+
+    /**
+     * @param prefs Node to keep the state in, for example a throwaway node in tests and benchmarks
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Preferences prefs) {
+        this.prefs = prefs;
+        this.sensorPrefs = prefs.node(SENSOR_NODE);
+
         //load system state from prefs, or else default
         alarmStatus = AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString()));
         armingStatus = ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString()));
 
         //we've serialized our sensor objects for storage, which should be a good warning sign that
         // this is likely an impractical solution for a real system
-        String sensorString = prefs.get(SENSORS, null);
-        if(sensorString == null) {
-            sensors = new TreeSet<>();
-        } else {
+        sensors = new TreeSet<>();
+        try {
+            for (String key : sensorPrefs.keys()) {
+                sensors.add(gson.fromJson(sensorPrefs.get(key, null), Sensor.class));
+            }
+        } catch (BackingStoreException e) {
+            throw new IllegalStateException("Unable to read the stored sensors", e);
+        }
+        String legacy = prefs.get(SENSORS, null);
+        if (legacy != null) {
             Type type = new TypeToken<Set<Sensor>>() {
             }.getType();
-            sensors = gson.fromJson(sensorString, type);
+            Set<Sensor> stored = gson.fromJson(legacy, type);
+            for (Sensor sensor : stored) {
+                sensors.add(sensor);
+                writeSensor(sensor);
+            }
+            prefs.remove(SENSORS);
         }
     }
 
     @Override
     public void addSensor(Sensor sensor) {
         sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        writeSensor(sensor);
     }
 
     @Override
     public void removeSensor(Sensor sensor) {
         sensors.remove(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        sensorPrefs.remove(sensor.getSensorId().toString());
     }
 
     @Override
     public void updateSensor(Sensor sensor) {
         sensors.remove(sensor);
         sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        writeSensor(sensor);
     }
 
     @Override
     public void setAlarmStatus(AlarmStatus alarmStatus) {
         this.alarmStatus = alarmStatus;
-        prefs.put(ALARM_STATUS, this.alarmStatus.toString());
+        flush(ALARM_STATUS, this.alarmStatus.toString());
     }
 
     @Override
     public void setArmingStatus(ArmingStatus armingStatus) {
         this.armingStatus = armingStatus;
-        prefs.put(ARMING_STATUS, this.armingStatus.toString());
+        flush(ARMING_STATUS, this.armingStatus.toString());
+    }
+
+    private void writeSensor(Sensor sensor) {
+        flush(sensorPrefs, sensor.getSensorId().toString(), gson.toJson(sensor));
+    }
+
+    private void flush(String key, String value) {
+        flush(prefs, key, value);
+    }
+
+    /**
+     * Writes one value to the preferences store, recording a flight recorder event when enabled.
+     */
+    private static void flush(Preferences node, String key, String value) {
+        RepositoryFlushEvent event = new RepositoryFlushEvent();
+        event.begin();
+        node.put(key, value);
+        event.end();
+        if (event.shouldCommit()) {
+            event.key = key;
+            event.bytesWritten = value.getBytes(StandardCharsets.UTF_8).length;
+            event.commit();
+        }
     }
 
     @Override
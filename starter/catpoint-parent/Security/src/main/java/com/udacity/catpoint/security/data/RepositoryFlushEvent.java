@@ -0,0 +1,25 @@
+package com.udacity.catpoint.security.data;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for one write of repository state to the preferences store.
+ */
+@Name("com.udacity.catpoint.RepositoryFlush")
+@Label("Repository Flush")
+@Category({"Catpoint", "Persistence"})
+@Description("Repository state written to storage")
+class RepositoryFlushEvent extends Event {
+
+    @Label("Key")
+    String key;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytesWritten;
+}
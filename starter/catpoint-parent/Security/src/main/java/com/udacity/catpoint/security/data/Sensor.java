@@ -1,26 +1,28 @@
 package com.udacity.catpoint.security.data;
 
-
-import com.google.common.collect.ComparisonChain;
-
-import java.util.Objects;
 import java.util.UUID;
 
 /**
  * Sensor POJO. Needs to know how to sort itself for display purposes.
+ * <p>
+ * Sensors sit on the sensor event hot path, so equality, hashing and ordering never allocate:
+ * the activation flag is a primitive and the hash of the id is computed once.
  */
 public class Sensor implements Comparable<Sensor> {
     private UUID sensorId;
     private String name;
-    private Boolean active;
+    private boolean active;
+    //set when the sensor stopped reporting; false for sensors stored before it existed
+    private boolean offline;
     private SensorType sensorType;
+    private transient int hash; //0 until first computed, not serialized
     public Sensor() {};
 
     public Sensor(String name, SensorType sensorType) {
         this.name = name;
         this.sensorType = sensorType;
         this.sensorId = UUID.randomUUID();
-        this.active = Boolean.FALSE;
+        this.active = false;
     }
 
     @Override
@@ -33,7 +35,12 @@ public class Sensor implements Comparable<Sensor> {
 
     @Override
     public int hashCode() {
-        return Objects.hash(sensorId);
+        int h = hash;
+        if (h == 0 && sensorId != null) {
+            h = sensorId.hashCode();
+            hash = h;
+        }
+        return h;
     }
 
     public String getName() {
@@ -44,14 +51,22 @@ public class Sensor implements Comparable<Sensor> {
         this.name = name;
     }
 
-    public Boolean getActive() {
+    public boolean getActive() {
         return active;
     }
 
-    public void setActive(Boolean active) {
+    public void setActive(boolean active) {
         this.active = active;
     }
 
+    public boolean isOffline() {
+        return offline;
+    }
+
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
     public SensorType getSensorType() {
         return sensorType;
     }
@@ -66,14 +81,20 @@ public class Sensor implements Comparable<Sensor> {
 
     public void setSensorId(UUID sensorId) {
         this.sensorId = sensorId;
+        this.hash = 0;
     }
 
     @Override
     public int compareTo(Sensor o) {
-        return ComparisonChain.start()
-                .compare(this.name, o.name)
-                .compare(this.sensorType.toString(), o.sensorType.toString())
-                .compare(this.sensorId, o.sensorId)
-                .result();
+        int result = this.name.compareTo(o.name);
+        if (result != 0) {
+            return result;
+        }
+        //same order as comparing toString(), without going through a method an enum may override
+        result = this.sensorType.name().compareTo(o.sensorType.name());
+        if (result != 0) {
+            return result;
+        }
+        return this.sensorId.compareTo(o.sensorId);
     }
 }
@@ -0,0 +1,331 @@
+package com.udacity.catpoint.security.history;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only log of every alarm, arming and sensor transition, for answering questions such as
+ * "what happened between 02:00 and 02:05".
+ * <p>
+ * Recent records live in a ring of preallocated primitive columns, so recording a transition
+ * stores a few numbers and allocates nothing. Timestamps never go backwards, which keeps every
+ * column sorted by time and lets queries binary search for the start of a range instead of
+ * scanning. When the ring fills up its oldest quarter is copied out as a chunk and deflated to a
+ * file in the history directory by a background thread; without a directory those records are
+ * dropped. Chunk files are found again on the next start, so the history survives restarts.
+ * <p>
+ * Queries for one sensor skip every chunk whose header doesn't list the sensor, so they only
+ * inflate the chunks that have its records. Within the ring and the remaining chunks they filter
+ * the time range record by record; the ring is at most the capacity, which scans in well under a
+ * millisecond, so a per-sensor index there would cost more on every record than it saves.
+ * <p>
+ * Recording and queries may run on different threads.
+ */
+public class AlarmHistory implements AutoCloseable {
+
+    private static final String CHUNK_PREFIX = "history-";
+    private static final String CHUNK_SUFFIX = ".chunk";
+    //records without a sensor store a zero id
+    private static final long NO_SENSOR = 0;
+
+    private final Logger log = LoggerFactory.getLogger(AlarmHistory.class);
+
+    private final int mask;
+    private final int chunkRecords;
+    private final long[] times;
+    private final byte[] kinds;
+    private final byte[] values;
+    private final long[] sensorHigh;
+    private final long[] sensorLow;
+    //records appended so far; the ring holds [spilled, next)
+    private long next = 0;
+    private long spilled = 0;
+    private long lastTime = Long.MIN_VALUE;
+
+    private final Path directory;
+    //sorted by time, since chunks are cut from the ring in order
+    private final List<HistoryChunk> chunks = new ArrayList<>();
+    private final ExecutorService writer;
+    private long chunkSequence = 0;
+
+    /**
+     * @param capacity Records kept in memory, rounded up to a power of two
+     * @param directory Where older records are spilled, null to drop them instead
+     */
+    public AlarmHistory(int capacity, Path directory) throws IOException {
+        int size = Integer.highestOneBit(Math.max(capacity, 64) - 1) << 1;
+        this.mask = size - 1;
+        this.chunkRecords = size / 4;
+        this.times = new long[size];
+        this.kinds = new byte[size];
+        this.values = new byte[size];
+        this.sensorHigh = new long[size];
+        this.sensorLow = new long[size];
+        this.directory = directory;
+        if (directory == null) {
+            this.writer = null;
+            return;
+        }
+        Files.createDirectories(directory);
+        //names sort by first timestamp, so the directory listing is already the chunk order
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, CHUNK_PREFIX + "*" + CHUNK_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        for (Path file : files) {
+            try {
+                HistoryChunk chunk = HistoryChunk.open(file);
+                chunks.add(chunk);
+                lastTime = Math.max(lastTime, chunk.lastTime);
+            } catch (IOException e) {
+                log.warn("Skipping unreadable history chunk {}", file, e);
+            }
+        }
+        this.chunkSequence = files.size();
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "alarm-history-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("Alarm history in {}: {} chunks on disk", directory, chunks.size());
+    }
+
+    public void recordAlarmStatus(AlarmStatus alarmStatus) {
+        record(System.currentTimeMillis(), HistoryEntry.Kind.ALARM_STATUS, alarmStatus.ordinal(), NO_SENSOR, NO_SENSOR);
+    }
+
+    public void recordArmingStatus(ArmingStatus armingStatus) {
+        record(System.currentTimeMillis(), HistoryEntry.Kind.ARMING_STATUS, armingStatus.ordinal(), NO_SENSOR, NO_SENSOR);
+    }
+
+    /**
+     * @param kind One of the sensor kinds
+     */
+    public void recordSensor(HistoryEntry.Kind kind, Sensor sensor) {
+        UUID id = sensor.getSensorId();
+        record(System.currentTimeMillis(), kind, sensor.getActive() ? 1 : 0, id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    synchronized void record(long time, HistoryEntry.Kind kind, int value, long high, long low) {
+        if (next - spilled == times.length) {
+            spillOldest();
+        }
+        //a clock step backwards must not unsort the columns
+        lastTime = Math.max(lastTime, time);
+        int slot = (int) next & mask;
+        times[slot] = lastTime;
+        kinds[slot] = (byte) kind.ordinal();
+        values[slot] = (byte) value;
+        sensorHigh[slot] = high;
+        sensorLow[slot] = low;
+        next++;
+    }
+
+    /**
+     * Cuts the oldest quarter of the ring into a chunk and hands it to the writer.
+     */
+    private void spillOldest() {
+        if (directory == null) {
+            spilled += chunkRecords;
+            return;
+        }
+        HistoryChunk.Columns columns = new HistoryChunk.Columns(chunkRecords);
+        int from = (int) spilled & mask;
+        System.arraycopy(times, from, columns.times, 0, chunkRecords);
+        System.arraycopy(kinds, from, columns.kinds, 0, chunkRecords);
+        System.arraycopy(values, from, columns.values, 0, chunkRecords);
+        System.arraycopy(sensorHigh, from, columns.sensorHigh, 0, chunkRecords);
+        System.arraycopy(sensorLow, from, columns.sensorLow, 0, chunkRecords);
+        spilled += chunkRecords;
+        addChunk(columns);
+    }
+
+    private void addChunk(HistoryChunk.Columns columns) {
+        String name = String.format("%s%019d-%010d%s", CHUNK_PREFIX, columns.times[0], chunkSequence++, CHUNK_SUFFIX);
+        HistoryChunk chunk = new HistoryChunk(directory.resolve(name), columns);
+        chunks.add(chunk);
+        writer.execute(() -> {
+            try {
+                chunk.write();
+            } catch (IOException e) {
+                //the chunk stays in memory, so it is still queryable until the next restart
+                log.error("Unable to write history chunk {}", chunk.file, e);
+            }
+        });
+    }
+
+    /**
+     * @param from Start of the range in epoch milliseconds, inclusive
+     * @param to End of the range in epoch milliseconds, exclusive
+     * @return every transition in the range, oldest first
+     */
+    public List<HistoryEntry> between(long from, long to) throws IOException {
+        return between(from, to, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param limit Most entries to return
+     * @return the oldest transitions in the range, up to the limit, oldest first
+     */
+    public List<HistoryEntry> between(long from, long to, int limit) throws IOException {
+        return query(from, to, false, 0, 0, limit);
+    }
+
+    /**
+     * @return the transitions of one sensor in the range, oldest first
+     */
+    public List<HistoryEntry> forSensor(UUID sensorId, long from, long to) throws IOException {
+        return forSensor(sensorId, from, to, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param limit Most entries to return
+     * @return the oldest transitions of one sensor in the range, up to the limit, oldest first
+     */
+    public List<HistoryEntry> forSensor(UUID sensorId, long from, long to, int limit) throws IOException {
+        return query(from, to, true, sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits(), limit);
+    }
+
+    private List<HistoryEntry> query(long from, long to, boolean oneSensor, long high, long low, int limit) throws IOException {
+        List<HistoryChunk> overlapping = new ArrayList<>();
+        List<HistoryEntry> recent = new ArrayList<>();
+        synchronized (this) {
+            for (int i = firstChunkEndingAtOrAfter(from); i < chunks.size() && chunks.get(i).firstTime < to; i++) {
+                if (!oneSensor || chunks.get(i).mayContain(high, low)) {
+                    overlapping.add(chunks.get(i));
+                }
+            }
+            for (long i = lowerBound(from); i < next && times[(int) i & mask] < to && recent.size() < limit; i++) {
+                int slot = (int) i & mask;
+                if (!oneSensor || (sensorHigh[slot] == high && sensorLow[slot] == low)) {
+                    recent.add(new HistoryEntry(times[slot], kinds[slot], values[slot], sensorHigh[slot], sensorLow[slot]));
+                }
+            }
+        }
+        //chunk files are read without holding the lock, so recording never waits for the disk
+        List<HistoryEntry> result = new ArrayList<>();
+        for (HistoryChunk chunk : overlapping) {
+            if (result.size() == limit) {
+                return result;
+            }
+            HistoryChunk.Columns columns = chunk.load();
+            for (int i = lowerBound(columns.times, chunk.count, from); i < chunk.count && columns.times[i] < to && result.size() < limit; i++) {
+                if (!oneSensor || (columns.sensorHigh[i] == high && columns.sensorLow[i] == low)) {
+                    result.add(new HistoryEntry(columns.times[i], columns.kinds[i], columns.values[i],
+                            columns.sensorHigh[i], columns.sensorLow[i]));
+                }
+            }
+        }
+        result.addAll(recent.subList(0, Math.min(recent.size(), limit - result.size())));
+        return result;
+    }
+
+    /**
+     * @return the first record in the ring at or after the time, as a record number
+     */
+    private long lowerBound(long time) {
+        long lo = spilled;
+        long hi = next;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (times[(int) mid & mask] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static int lowerBound(long[] times, int count, long time) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int firstChunkEndingAtOrAfter(long time) {
+        int lo = 0;
+        int hi = chunks.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (chunks.get(mid).lastTime < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return transitions recorded since this history was created
+     */
+    public synchronized long getRecorded() {
+        return next;
+    }
+
+    /**
+     * @return chunks on disk or on their way there
+     */
+    public synchronized int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Spills whatever is still in memory and waits for the writer, so nothing recorded is lost
+     * on a clean shutdown.
+     */
+    @Override
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        synchronized (this) {
+            int remaining = (int) (next - spilled);
+            if (remaining > 0) {
+                HistoryChunk.Columns columns = new HistoryChunk.Columns(remaining);
+                for (int i = 0; i < remaining; i++) {
+                    int slot = (int) (spilled + i) & mask;
+                    columns.times[i] = times[slot];
+                    columns.kinds[i] = kinds[slot];
+                    columns.values[i] = values[slot];
+                    columns.sensorHigh[i] = sensorHigh[slot];
+                    columns.sensorLow[i] = sensorLow[slot];
+                }
+                spilled = next;
+                addChunk(columns);
+            }
+        }
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Alarm history writer did not finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
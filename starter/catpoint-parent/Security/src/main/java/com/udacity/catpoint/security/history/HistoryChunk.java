@@ -0,0 +1,226 @@
+package com.udacity.catpoint.security.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A run of older history records, spilled from the ring to a compressed file. The header, with
+ * the time range, count and the ids of the sensors the chunk mentions, is plain so the chunk
+ * index can be rebuilt, and chunks without a sensor skipped by per-sensor queries, without
+ * inflating anything;
+ * the records follow column by column through a deflater, timestamps as deltas, which compresses
+ * the mostly repeated kinds, values and sensor ids very well. Columns are encoded and decoded in
+ * bulk through one buffer, so reading a chunk costs little more than inflating it.
+ * <p>
+ * A chunk keeps its columns in memory until its file is written, so queries never miss records
+ * that are on their way to disk.
+ */
+class HistoryChunk {
+
+    //version 1 chunks have no sensor ids in their header
+    private static final int MAGIC_V1 = 0x43504831;
+    private static final int MAGIC = 0x43504832;
+    private static final int FIXED_HEADER_BYTES = 4 + 4 + 8 + 8;
+    private static final Comparator<UUID> ID_ORDER = Comparator.comparingLong(UUID::getMostSignificantBits)
+            .thenComparingLong(UUID::getLeastSignificantBits);
+    //time delta, kind, value, sensor id
+    private static final int RECORD_BYTES = 8 + 1 + 1 + 16;
+
+    final Path file;
+    final long firstTime;
+    final long lastTime;
+    final int count;
+    private volatile Columns columns;
+    //distinct sensor ids as high, low pairs in ID_ORDER; null while unknown
+    private volatile long[] sensorIds;
+    private int bodyOffset;
+
+    HistoryChunk(Path file, Columns columns) {
+        this.file = file;
+        this.columns = columns;
+        this.count = columns.times.length;
+        this.firstTime = columns.times[0];
+        this.lastTime = columns.times[count - 1];
+    }
+
+    private HistoryChunk(Path file, long firstTime, long lastTime, int count, long[] sensorIds, int bodyOffset) {
+        this.file = file;
+        this.firstTime = firstTime;
+        this.lastTime = lastTime;
+        this.count = count;
+        this.sensorIds = sensorIds;
+        this.bodyOffset = bodyOffset;
+    }
+
+    /**
+     * Reads the header of a chunk written earlier.
+     */
+    static HistoryChunk open(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int magic = in.readInt();
+            if (magic != MAGIC && magic != MAGIC_V1) {
+                throw new IOException("Not a history chunk: " + file);
+            }
+            int count = in.readInt();
+            long firstTime = in.readLong();
+            long lastTime = in.readLong();
+            if (magic == MAGIC_V1) {
+                return new HistoryChunk(file, firstTime, lastTime, count, null, FIXED_HEADER_BYTES);
+            }
+            int sensors = in.readInt();
+            if (sensors < 0 || sensors > count) {
+                throw new IOException("Corrupt history chunk header: " + file);
+            }
+            long[] sensorIds = new long[sensors * 2];
+            for (int i = 0; i < sensorIds.length; i++) {
+                sensorIds[i] = in.readLong();
+            }
+            return new HistoryChunk(file, firstTime, lastTime, count, sensorIds, FIXED_HEADER_BYTES + 4 + sensorIds.length * Long.BYTES);
+        }
+    }
+
+    /**
+     * @return false only if the chunk has no record of the sensor
+     */
+    boolean mayContain(long high, long low) {
+        long[] ids = sensorIds;
+        if (ids == null) {
+            return true;
+        }
+        int lo = 0;
+        int hi = ids.length / 2;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int order = Long.compare(ids[2 * mid], high);
+            if (order == 0) {
+                order = Long.compare(ids[2 * mid + 1], low);
+            }
+            if (order == 0) {
+                return true;
+            } else if (order < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return false;
+    }
+
+    private static long[] distinctSensors(Columns columns) {
+        Set<UUID> distinct = new TreeSet<>(ID_ORDER);
+        for (int i = 0; i < columns.times.length; i++) {
+            distinct.add(new UUID(columns.sensorHigh[i], columns.sensorLow[i]));
+        }
+        long[] ids = new long[distinct.size() * 2];
+        int i = 0;
+        for (UUID id : distinct) {
+            ids[i++] = id.getMostSignificantBits();
+            ids[i++] = id.getLeastSignificantBits();
+        }
+        return ids;
+    }
+
+    /**
+     * Writes the columns to the chunk's file and lets go of them.
+     */
+    void write() throws IOException {
+        Columns written = columns;
+        long[] ids = distinctSensors(written);
+        ByteBuffer body = ByteBuffer.allocate(count * RECORD_BYTES);
+        long previous = firstTime;
+        for (long time : written.times) {
+            body.putLong(time - previous);
+            previous = time;
+        }
+        body.put(written.kinds);
+        body.put(written.values);
+        body.asLongBuffer().put(written.sensorHigh).put(written.sensorLow);
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(count);
+            out.writeLong(firstTime);
+            out.writeLong(lastTime);
+            out.writeInt(ids.length / 2);
+            for (long id : ids) {
+                out.writeLong(id);
+            }
+            DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater, 64 * 1024);
+            deflated.write(body.array());
+            deflated.finish();
+        } finally {
+            deflater.end();
+        }
+        Files.move(temporary, file);
+        bodyOffset = FIXED_HEADER_BYTES + 4 + ids.length * Long.BYTES;
+        sensorIds = ids;
+        columns = null;
+    }
+
+    /**
+     * @return the chunk's records, from memory if not yet written, otherwise inflated from its file
+     */
+    Columns load() throws IOException {
+        Columns inMemory = columns;
+        if (inMemory != null) {
+            return inMemory;
+        }
+        byte[] bytes = new byte[count * RECORD_BYTES];
+        Inflater inflater = new Inflater();
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file))) {
+            raw.skipNBytes(bodyOffset);
+            new DataInputStream(new InflaterInputStream(raw, inflater, 64 * 1024)).readFully(bytes);
+        } finally {
+            inflater.end();
+        }
+        ByteBuffer body = ByteBuffer.wrap(bytes);
+        Columns loaded = new Columns(count);
+        body.asLongBuffer().get(loaded.times);
+        long time = firstTime;
+        for (int i = 0; i < count; i++) {
+            time += loaded.times[i];
+            loaded.times[i] = time;
+        }
+        body.position(count * Long.BYTES);
+        body.get(loaded.kinds);
+        body.get(loaded.values);
+        body.asLongBuffer().get(loaded.sensorHigh).get(loaded.sensorLow);
+        return loaded;
+    }
+
+    /**
+     * History records as parallel primitive arrays, in time order.
+     */
+    static class Columns {
+        final long[] times;
+        final byte[] kinds;
+        final byte[] values;
+        final long[] sensorHigh;
+        final long[] sensorLow;
+
+        Columns(int count) {
+            times = new long[count];
+            kinds = new byte[count];
+            values = new byte[count];
+            sensorHigh = new long[count];
+            sensorLow = new long[count];
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.udacity.catpoint.security.history;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+
+import java.util.UUID;
+
+/**
+ * One recorded transition, as returned by {@link AlarmHistory} queries. The history itself stores
+ * transitions as primitive columns; entries only exist for query results.
+ */
+public class HistoryEntry {
+
+    public enum Kind {
+        ALARM_STATUS,
+        ARMING_STATUS,
+        SENSOR_ACTIVE,
+        SENSOR_ADDED,
+        SENSOR_REMOVED
+    }
+
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+    private static final Kind[] KINDS = Kind.values();
+
+    private final long time;
+    private final Kind kind;
+    private final int value;
+    private final UUID sensorId;
+
+    HistoryEntry(long time, int kind, int value, long sensorHigh, long sensorLow) {
+        this.time = time;
+        this.kind = KINDS[kind];
+        this.value = value;
+        this.sensorId = this.kind == Kind.ALARM_STATUS || this.kind == Kind.ARMING_STATUS ? null : new UUID(sensorHigh, sensorLow);
+    }
+
+    /**
+     * @return milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the sensor the entry is about, null for alarm and arming changes
+     */
+    public UUID getSensorId() {
+        return sensorId;
+    }
+
+    /**
+     * @return the new alarm status, for ALARM_STATUS entries
+     */
+    public AlarmStatus getAlarmStatus() {
+        return kind == Kind.ALARM_STATUS ? ALARM_STATUSES[value] : null;
+    }
+
+    /**
+     * @return the new arming status, for ARMING_STATUS entries
+     */
+    public ArmingStatus getArmingStatus() {
+        return kind == Kind.ARMING_STATUS ? ARMING_STATUSES[value] : null;
+    }
+
+    /**
+     * @return whether the sensor is active afterwards, for sensor entries
+     */
+    public boolean isActive() {
+        return value != 0;
+    }
+
+    /**
+     * @return the new value in words: a status name, or active or inactive for sensors
+     */
+    public String getValue() {
+        switch (kind) {
+            case ALARM_STATUS:
+                return ALARM_STATUSES[value].toString();
+            case ARMING_STATUS:
+                return ARMING_STATUSES[value].toString();
+            default:
+                return value != 0 ? "active" : "inactive";
+        }
+    }
+}
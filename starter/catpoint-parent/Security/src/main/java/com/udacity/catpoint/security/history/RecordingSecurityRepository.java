@@ -0,0 +1,95 @@
+package com.udacity.catpoint.security.history;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * SecurityRepository decorator that records every transition the SecurityService writes in an
+ * {@link AlarmHistory}. Only actual changes are recorded: arming the system writes every sensor
+ * back as inactive, but only the sensors that were active show up in the history.
+ * <p>
+ * Like the service, it is meant to be called from one thread at a time.
+ */
+public class RecordingSecurityRepository implements SecurityRepository {
+
+    private final SecurityRepository delegate;
+    private final AlarmHistory history;
+    //the last recorded state of each sensor, since sensors are updated after they have changed
+    private final Map<UUID, Boolean> lastActive = new HashMap<>();
+
+    public RecordingSecurityRepository(SecurityRepository delegate, AlarmHistory history) {
+        this.delegate = delegate;
+        this.history = history;
+        for (Sensor sensor : delegate.getSensors()) {
+            lastActive.put(sensor.getSensorId(), sensor.getActive());
+        }
+    }
+
+    public AlarmHistory getHistory() {
+        return history;
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        delegate.addSensor(sensor);
+        lastActive.put(sensor.getSensorId(), sensor.getActive());
+        history.recordSensor(HistoryEntry.Kind.SENSOR_ADDED, sensor);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        delegate.removeSensor(sensor);
+        lastActive.remove(sensor.getSensorId());
+        history.recordSensor(HistoryEntry.Kind.SENSOR_REMOVED, sensor);
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        delegate.updateSensor(sensor);
+        boolean active = sensor.getActive();
+        Boolean previous = lastActive.put(sensor.getSensorId(), active);
+        if (previous == null || previous != active) {
+            history.recordSensor(HistoryEntry.Kind.SENSOR_ACTIVE, sensor);
+        }
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        AlarmStatus previous = delegate.getAlarmStatus();
+        delegate.setAlarmStatus(alarmStatus);
+        if (previous != alarmStatus) {
+            history.recordAlarmStatus(alarmStatus);
+        }
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        ArmingStatus previous = delegate.getArmingStatus();
+        delegate.setArmingStatus(armingStatus);
+        if (previous != armingStatus) {
+            history.recordArmingStatus(armingStatus);
+        }
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return delegate.getSensors();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return delegate.getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return delegate.getArmingStatus();
+    }
+}
@@ -0,0 +1,12 @@
+package com.udacity.catpoint.security.ingest;
+
+import java.io.IOException;
+
+/**
+ * Thrown when bytes received by the ingest server are not a valid {@link SensorFrame}.
+ */
+public class MalformedFrameException extends IOException {
+    public MalformedFrameException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,62 @@
+package com.udacity.catpoint.security.ingest;
+
+/**
+ * The contents of one frame. A batch is decoded into over and over again, so the ingest path
+ * allocates nothing per message.
+ */
+public class SensorBatch {
+    long hubId;
+    long session;
+    long sequence;
+    int count;
+    final long[] idHigh = new long[SensorFrame.MAX_MESSAGES];
+    final long[] idLow = new long[SensorFrame.MAX_MESSAGES];
+    final byte[] states = new byte[SensorFrame.MAX_MESSAGES];
+
+    public long getHubId() {
+        return hubId;
+    }
+
+    public void setHubId(long hubId) {
+        this.hubId = hubId;
+    }
+
+    public long getSession() {
+        return session;
+    }
+
+    public void setSession(long session) {
+        this.session = session;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Appends a message.
+     * @return false if the batch is already full
+     */
+    public boolean add(long idHigh, long idLow, boolean active) {
+        if (count == SensorFrame.MAX_MESSAGES) {
+            return false;
+        }
+        this.idHigh[count] = idHigh;
+        this.idLow[count] = idLow;
+        this.states[count] = active ? SensorFrame.ACTIVE : SensorFrame.INACTIVE;
+        count++;
+        return true;
+    }
+}
@@ -0,0 +1,101 @@
+package com.udacity.catpoint.security.ingest;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary wire format for sensor state messages pushed by sensor hubs. All values are big-endian.
+ * <pre>
+ *      frame header, 30 bytes
+ *          short  magic     0xCA75
+ *          byte   version   2
+ *          byte   flags     0, reserved
+ *          long   hub id    identifies the sending hub
+ *          long   session   per hub, never lower than before, for example the hub's boot time in
+ *                           epoch milliseconds
+ *          long   sequence  per hub session, every frame must be greater than the last one accepted
+ *          short  count     messages that follow, 0 to {@link #MAX_MESSAGES}
+ *      message, 17 bytes each
+ *          long   sensor id, most significant bits
+ *          long   sensor id, least significant bits
+ *          byte   state     0 inactive, 1 active
+ * </pre>
+ * Over TCP frames follow each other back to back, over UDP each datagram carries one frame.
+ * <p>
+ * A hub that restarts starts a new session and may count its sequence from the start again.
+ * Version 1 frames had no session, so a restarted hub's frames looked like replays until its
+ * counter caught up; they are no longer accepted.
+ */
+public final class SensorFrame {
+
+    public static final short MAGIC = (short) 0xCA75;
+    public static final byte VERSION = 2;
+    public static final int HEADER_BYTES = 30;
+    public static final int MESSAGE_BYTES = 17;
+    //keeps a full frame well inside one UDP datagram
+    public static final int MAX_MESSAGES = 1024;
+    public static final int MAX_FRAME_BYTES = HEADER_BYTES + MAX_MESSAGES * MESSAGE_BYTES;
+
+    public static final byte INACTIVE = 0;
+    public static final byte ACTIVE = 1;
+
+    private SensorFrame() {
+    }
+
+    /**
+     * Reads a frame header into the batch.
+     * @return the number of message bytes that follow
+     * @throws MalformedFrameException if the header is not a valid version 2 header
+     */
+    public static int decodeHeader(ByteBuffer buffer, SensorBatch batch) throws MalformedFrameException {
+        if (buffer.getShort() != MAGIC) {
+            throw new MalformedFrameException("Bad magic");
+        }
+        if (buffer.get() != VERSION) {
+            throw new MalformedFrameException("Unsupported version");
+        }
+        buffer.get();
+        batch.hubId = buffer.getLong();
+        batch.session = buffer.getLong();
+        batch.sequence = buffer.getLong();
+        int count = buffer.getShort() & 0xFFFF;
+        if (count > MAX_MESSAGES) {
+            throw new MalformedFrameException("Too many messages: " + count);
+        }
+        batch.count = count;
+        return count * MESSAGE_BYTES;
+    }
+
+    /**
+     * Reads the messages announced by the header into the batch.
+     * @throws MalformedFrameException if a message has an unknown state
+     */
+    public static void decodeMessages(ByteBuffer buffer, SensorBatch batch) throws MalformedFrameException {
+        for (int i = 0; i < batch.count; i++) {
+            batch.idHigh[i] = buffer.getLong();
+            batch.idLow[i] = buffer.getLong();
+            byte state = buffer.get();
+            if (state != INACTIVE && state != ACTIVE) {
+                throw new MalformedFrameException("Unknown state " + state);
+            }
+            batch.states[i] = state;
+        }
+    }
+
+    /**
+     * Writes the batch as one frame.
+     */
+    public static void encode(ByteBuffer buffer, SensorBatch batch) {
+        buffer.putShort(MAGIC)
+                .put(VERSION)
+                .put((byte) 0)
+                .putLong(batch.hubId)
+                .putLong(batch.session)
+                .putLong(batch.sequence)
+                .putShort((short) batch.count);
+        for (int i = 0; i < batch.count; i++) {
+            buffer.putLong(batch.idHigh[i])
+                    .putLong(batch.idLow[i])
+                    .put(batch.states[i]);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.udacity.catpoint.security.ingest;
+
+import com.udacity.catpoint.security.data.Sensor;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Finds sensors by the two halves of their id, so a decoded message never has to be turned into
+ * a UUID first. Open addressing over parallel arrays, rebuilt whenever the set of sensors changes.
+ * Not thread-safe; the ingest server only uses it on the service thread.
+ */
+class SensorIndex {
+    private long[] idHigh = new long[0];
+    private long[] idLow = new long[0];
+    private Sensor[] sensors = new Sensor[0];
+    private int mask = -1;
+    private int size = 0;
+
+    void rebuild(Collection<Sensor> all) {
+        //keep the table at most half full so probes stay short
+        int capacity = Integer.highestOneBit(Math.max(2, all.size()) * 2 - 1) << 1;
+        idHigh = new long[capacity];
+        idLow = new long[capacity];
+        sensors = new Sensor[capacity];
+        mask = capacity - 1;
+        size = 0;
+        for (Sensor sensor : all) {
+            UUID id = sensor.getSensorId();
+            int slot = slot(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            while (sensors[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            idHigh[slot] = id.getMostSignificantBits();
+            idLow[slot] = id.getLeastSignificantBits();
+            sensors[slot] = sensor;
+            size++;
+        }
+    }
+
+    /**
+     * @return the sensor with that id, or null if there is none
+     */
+    Sensor get(long high, long low) {
+        if (size == 0) {
+            return null;
+        }
+        for (int slot = slot(high, low); sensors[slot] != null; slot = (slot + 1) & mask) {
+            if (idHigh[slot] == high && idLow[slot] == low) {
+                return sensors[slot];
+            }
+        }
+        return null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(long high, long low) {
+        long h = (high ^ low) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+}
@@ -0,0 +1,320 @@
+package com.udacity.catpoint.security.ingest;
+
+import com.udacity.catpoint.security.activity.ActivityAggregator;
+import com.udacity.catpoint.security.application.ServiceDispatcher;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.liveness.HeartbeatMonitor;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Receives {@link SensorFrame}s from sensor hubs on localhost, over TCP and over UDP on the same
+ * port number, and applies them to the SecurityService.
+ * <p>
+ * Every TCP connection gets a thread of its own that reads frames with blocking reads, and a
+ * single thread receives all UDP datagrams. Frames are decoded into a {@link SensorBatch} owned by
+ * the reading thread, so the only per-frame cost on the service thread is one queued call that
+ * applies the whole batch. The reading thread waits for that call, which pushes back on hubs that
+ * send faster than the service can keep up, through TCP flow control or the UDP receive buffer.
+ * <p>
+ * Messages carry sensor state rather than edges: a message only reaches
+ * SecurityService.changeSensorActivationStatus when it differs from the sensor's current state,
+ * so a hub may resend its full state as often as it likes. With an {@link ActivityAggregator} set,
+ * every message goes through it instead, which counts it and decides what reaches the service. Frames whose sequence is not greater
+ * than the last one accepted from the same hub session are duplicates or late and are dropped
+ * whole, as are frames from a session older than the hub's current one.
+ * <p>
+ * Every message in an accepted frame also counts as a heartbeat of its sensor for the
+ * {@link HeartbeatMonitor}, when one is set.
+ */
+public class SensorIngestServer implements AutoCloseable {
+
+    //how often an unknown sensor id may trigger a fresh look at the repository's sensors
+    private static final long INDEX_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Logger log = LoggerFactory.getLogger(SensorIngestServer.class);
+
+    private final SecurityService securityService;
+    private final ServiceDispatcher serviceDispatcher;
+    private final ServerSocketChannel serverChannel;
+    private final DatagramChannel datagramChannel;
+    private final Thread acceptThread;
+    private final Thread datagramThread;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private final SequenceTracker sequences = new SequenceTracker();
+
+    //only touched on the service thread
+    private final SensorIndex index = new SensorIndex();
+    private long lastIndexRefresh = System.nanoTime() - INDEX_REFRESH_NANOS;
+    private final Sensor[] reported = new Sensor[SensorFrame.MAX_MESSAGES];
+    private volatile HeartbeatMonitor heartbeatMonitor;
+    private volatile ActivityAggregator activityAggregator;
+
+    private final LongAdder framesAccepted = new LongAdder();
+    private final LongAdder framesRejected = new LongAdder();
+    private final LongAdder framesMalformed = new LongAdder();
+    private final LongAdder messagesReceived = new LongAdder();
+    private final LongAdder sensorsChanged = new LongAdder();
+    private final LongAdder unknownSensors = new LongAdder();
+    private volatile boolean closed = false;
+
+    /**
+     * @param port Port to listen on for both TCP and UDP, 0 picks a free one
+     */
+    public SensorIngestServer(SecurityService securityService, ServiceDispatcher serviceDispatcher, int port) throws IOException {
+        this.securityService = securityService;
+        this.serviceDispatcher = serviceDispatcher;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("localhost", port), 256);
+        this.datagramChannel = DatagramChannel.open();
+        datagramChannel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+        datagramChannel.bind(new InetSocketAddress("localhost", getPort()));
+        this.acceptThread = new Thread(this::acceptConnections, "sensor-ingest-accept");
+        acceptThread.setDaemon(true);
+        this.datagramThread = new Thread(this::receiveDatagrams, "sensor-ingest-udp");
+        datagramThread.setDaemon(true);
+    }
+
+    public void start() {
+        acceptThread.start();
+        datagramThread.start();
+        log.info("Sensor ingest listening on localhost:{}, TCP and UDP", getPort());
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public long getFramesAccepted() {
+        return framesAccepted.sum();
+    }
+
+    /**
+     * @return frames dropped as duplicates or out of order
+     */
+    public long getFramesRejected() {
+        return framesRejected.sum();
+    }
+
+    public long getFramesMalformed() {
+        return framesMalformed.sum();
+    }
+
+    public long getMessagesReceived() {
+        return messagesReceived.sum();
+    }
+
+    /**
+     * @return messages that changed a sensor's state
+     */
+    public long getSensorsChanged() {
+        return sensorsChanged.sum();
+    }
+
+    public long getUnknownSensors() {
+        return unknownSensors.sum();
+    }
+
+    private void acceptConnections() {
+        int connectionCount = 0;
+        while (!closed) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                if (!closed) {
+                    log.error("Sensor ingest stopped accepting connections", e);
+                }
+                return;
+            }
+            connections.add(channel);
+            Thread reader = new Thread(() -> readConnection(channel), "sensor-ingest-" + (++connectionCount));
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    private void readConnection(SocketChannel channel) {
+        ByteBuffer buffer = ByteBuffer.allocate(SensorFrame.MAX_FRAME_BYTES);
+        SensorBatch batch = new SensorBatch();
+        Runnable applyBatch = () -> apply(batch);
+        try (channel) {
+            while (!closed) {
+                buffer.clear().limit(SensorFrame.HEADER_BYTES);
+                if (!readFully(channel, buffer, true)) {
+                    return;
+                }
+                buffer.flip();
+                int bodyBytes = SensorFrame.decodeHeader(buffer, batch);
+                buffer.clear().limit(bodyBytes);
+                readFully(channel, buffer, false);
+                buffer.flip();
+                SensorFrame.decodeMessages(buffer, batch);
+                accept(batch, applyBatch);
+            }
+        } catch (MalformedFrameException e) {
+            //the stream can't be resynchronised, so the hub has to reconnect
+            framesMalformed.increment();
+            log.warn("Closing sensor ingest connection {}: {}", channel, e.getMessage());
+        } catch (IOException e) {
+            log.debug("Sensor ingest connection closed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connections.remove(channel);
+        }
+    }
+
+    /**
+     * Fills the buffer up to its limit.
+     * @return false if the connection ended cleanly before the first byte
+     */
+    private static boolean readFully(SocketChannel channel, ByteBuffer buffer, boolean atFrameStart) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (atFrameStart && buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Connection closed mid-frame");
+            }
+        }
+        return true;
+    }
+
+    private void receiveDatagrams() {
+        ByteBuffer buffer = ByteBuffer.allocate(SensorFrame.MAX_FRAME_BYTES);
+        SensorBatch batch = new SensorBatch();
+        Runnable applyBatch = () -> apply(batch);
+        while (!closed) {
+            try {
+                buffer.clear();
+                datagramChannel.receive(buffer);
+                buffer.flip();
+                if (buffer.remaining() < SensorFrame.HEADER_BYTES) {
+                    framesMalformed.increment();
+                    continue;
+                }
+                int bodyBytes = SensorFrame.decodeHeader(buffer, batch);
+                if (buffer.remaining() != bodyBytes) {
+                    framesMalformed.increment();
+                    continue;
+                }
+                SensorFrame.decodeMessages(buffer, batch);
+                accept(batch, applyBatch);
+            } catch (MalformedFrameException e) {
+                //a datagram is a frame of its own, so only this one is lost
+                framesMalformed.increment();
+            } catch (IOException e) {
+                if (!closed) {
+                    log.error("Sensor ingest stopped receiving datagrams", e);
+                }
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void accept(SensorBatch batch, Runnable applyBatch) throws InterruptedException {
+        if (!sequences.accept(batch.hubId, batch.session, batch.sequence)) {
+            framesRejected.increment();
+            return;
+        }
+        framesAccepted.increment();
+        messagesReceived.add(batch.count);
+        if (batch.count > 0) {
+            serviceDispatcher.runAndWait(applyBatch);
+        }
+    }
+
+    /**
+     * Applies a decoded batch. Runs on the service thread.
+     */
+    private void apply(SensorBatch batch) {
+        int reportedCount = 0;
+        ActivityAggregator aggregator = activityAggregator;
+        Collection<Sensor> sensors = securityService.getSensors();
+        if (index.size() != sensors.size()) {
+            refreshIndex(sensors);
+        }
+        for (int i = 0; i < batch.count; i++) {
+            Sensor sensor = index.get(batch.idHigh[i], batch.idLow[i]);
+            if (sensor == null && System.nanoTime() - lastIndexRefresh >= INDEX_REFRESH_NANOS) {
+                //a sensor may have been replaced by another with the same count
+                refreshIndex(sensors);
+                sensor = index.get(batch.idHigh[i], batch.idLow[i]);
+            }
+            if (sensor == null) {
+                unknownSensors.increment();
+                continue;
+            }
+            reported[reportedCount++] = sensor;
+            boolean active = batch.states[i] == SensorFrame.ACTIVE;
+            if (aggregator != null) {
+                if (aggregator.report(sensor, active)) {
+                    sensorsChanged.increment();
+                }
+            } else if (sensor.getActive() != active) {
+                securityService.changeSensorActivationStatus(sensor, active);
+                sensorsChanged.increment();
+            }
+        }
+        HeartbeatMonitor monitor = heartbeatMonitor;
+        if (monitor != null) {
+            monitor.heartbeat(reported, reportedCount);
+        }
+    }
+
+    /**
+     * @param heartbeatMonitor Receives a heartbeat for every sensor in every accepted frame, may be null
+     */
+    public void setHeartbeatMonitor(HeartbeatMonitor heartbeatMonitor) {
+        this.heartbeatMonitor = heartbeatMonitor;
+    }
+
+    /**
+     * @param activityAggregator Takes every message in place of the SecurityService, may be null
+     */
+    public void setActivityAggregator(ActivityAggregator activityAggregator) {
+        this.activityAggregator = activityAggregator;
+    }
+
+    private void refreshIndex(Collection<Sensor> sensors) {
+        index.rebuild(sensors);
+        lastIndexRefresh = System.nanoTime();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverChannel.close();
+            datagramChannel.close();
+        } catch (IOException e) {
+            log.warn("Unable to close sensor ingest", e);
+        }
+        for (SocketChannel channel : connections) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //already gone
+            }
+        }
+    }
+}
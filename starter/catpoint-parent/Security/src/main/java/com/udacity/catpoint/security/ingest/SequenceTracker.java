@@ -0,0 +1,73 @@
+package com.udacity.catpoint.security.ingest;
+
+/**
+ * Remembers the session and last accepted frame sequence of every hub, so frames that are
+ * replayed or arrive after a newer one can be rejected. A frame from a later session means the
+ * hub restarted, so its sequence starts over; a frame from an earlier session is left over from
+ * before the restart. Keyed by hub id in a primitive open addressing table.
+ */
+class SequenceTracker {
+    private long[] hubs = new long[64];
+    private long[] sessions = new long[64];
+    private long[] sequences = new long[64];
+    private boolean[] used = new boolean[64];
+    private int size = 0;
+
+    /**
+     * Accepts the frame if it is from a later session than the hub's last accepted frame, or from
+     * the same session with a greater sequence.
+     * @return false if the frame is a duplicate, out of order or from an earlier session
+     */
+    synchronized boolean accept(long hubId, long session, long sequence) {
+        int slot = find(hubId);
+        if (used[slot]) {
+            if (session < sessions[slot] || (session == sessions[slot] && sequence <= sequences[slot])) {
+                return false;
+            }
+            sessions[slot] = session;
+            sequences[slot] = sequence;
+            return true;
+        }
+        used[slot] = true;
+        hubs[slot] = hubId;
+        sessions[slot] = session;
+        sequences[slot] = sequence;
+        if (++size * 2 > hubs.length) {
+            grow();
+        }
+        return true;
+    }
+
+    synchronized int hubCount() {
+        return size;
+    }
+
+    private int find(long hubId) {
+        int mask = hubs.length - 1;
+        int slot = (int) ((hubId * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while (used[slot] && hubs[slot] != hubId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldHubs = hubs;
+        long[] oldSessions = sessions;
+        long[] oldSequences = sequences;
+        boolean[] oldUsed = used;
+        hubs = new long[oldHubs.length * 2];
+        sessions = new long[oldHubs.length * 2];
+        sequences = new long[oldHubs.length * 2];
+        used = new boolean[oldHubs.length * 2];
+        for (int i = 0; i < oldHubs.length; i++) {
+            if (oldUsed[i]) {
+                int slot = find(oldHubs[i]);
+                used[slot] = true;
+                hubs[slot] = oldHubs[i];
+                sessions[slot] = oldSessions[i];
+                sequences[slot] = oldSequences[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package com.udacity.catpoint.security.liveness;
+
+import com.udacity.catpoint.security.application.ServiceDispatcher;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notices sensors that stop reporting, from a dead battery to an offline hub, and marks them
+ * offline through {@link SecurityService#changeSensorLiveness(Sensor, boolean)}; a sensor that
+ * reports again is marked online. A sensor is monitored from its first heartbeat on, so sensors
+ * that never report, such as those only toggled in the GUI, are never flagged.
+ * <p>
+ * Built for a million sensors. Each sensor is a slot in a set of primitive columns (id, last
+ * heartbeat tick, wheel links) found through an open addressing index, so a heartbeat is a hash
+ * lookup and a store. Deadlines are kept in a hashed timing wheel: each monitored sensor sits in
+ * the bucket of the tick its deadline was last known to fall on, and each tick only walks the one
+ * bucket that is due. Heartbeats don't move sensors between buckets; a sensor found in a due bucket
+ * with a later heartbeat is simply moved on to its new deadline, so a sensor costs about one visit
+ * per timeout however often it reports.
+ * <p>
+ * Each liveness change writes only the sensor that changed through the repository, which with
+ * the preferences store, one preference per sensor, costs about 10 us whatever the sensor count:
+ * half of a million sensors going offline at once holds the service thread for about 5 s.
+ * <p>
+ * Heartbeats may come from any thread. Liveness changes are applied on the service thread,
+ * through the {@link ServiceDispatcher}.
+ */
+public class HeartbeatMonitor implements AutoCloseable {
+
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_WHEEL_SIZE = 4096;
+
+    private final Logger log = LoggerFactory.getLogger(HeartbeatMonitor.class);
+
+    private final SecurityService securityService;
+    private final ServiceDispatcher serviceDispatcher;
+    private final long tickNanos;
+    private final long timeoutTicks;
+    private final long startNanos = System.nanoTime();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sensor-liveness");
+        t.setDaemon(true);
+        return t;
+    });
+
+    //one slot per monitored sensor
+    private Sensor[] sensors = new Sensor[INITIAL_CAPACITY];
+    private long[] idHigh = new long[INITIAL_CAPACITY];
+    private long[] idLow = new long[INITIAL_CAPACITY];
+    private long[] lastSeen = new long[INITIAL_CAPACITY];
+    private boolean[] offline = new boolean[INITIAL_CAPACITY];
+    //wheel bucket lists; free slots are chained through next
+    private int[] next = new int[INITIAL_CAPACITY];
+    private int[] prev = new int[INITIAL_CAPACITY];
+    private int[] bucketOf = new int[INITIAL_CAPACITY];
+    private int usedSlots = 0;
+    private int freeSlot = NONE;
+    private int monitored = 0;
+    private int offlineCount = 0;
+    //slot + 1 by hash of the id, 0 when empty; linear probing, at most half full
+    private int[] index = new int[INITIAL_CAPACITY * 2];
+
+    private final int[] buckets;
+    private final int wheelMask;
+    private long processedTick = 0;
+
+    //liveness changes waiting for the next tick to be applied, swapped with the dispatched ones
+    private List<Sensor> wentOffline = new ArrayList<>();
+    private List<Sensor> cameOnline = new ArrayList<>();
+    private List<Sensor> dispatchOffline = new ArrayList<>();
+    private List<Sensor> dispatchOnline = new ArrayList<>();
+    private final Runnable applyChanges = this::applyChanges;
+
+    private long lastTickNanos;
+
+    /**
+     * @param timeoutMillis How long a sensor may stay silent before it is marked offline
+     * @param tickMillis Resolution of the timeout
+     */
+    public HeartbeatMonitor(SecurityService securityService, ServiceDispatcher serviceDispatcher,
+                            long timeoutMillis, long tickMillis) {
+        this.securityService = securityService;
+        this.serviceDispatcher = serviceDispatcher;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.timeoutTicks = Math.max(1, (timeoutMillis + tickMillis - 1) / tickMillis);
+        //big enough that most deadlines land in their own bucket on the first lap
+        int wheelSize = Integer.highestOneBit((int) Math.min(MAX_WHEEL_SIZE, timeoutTicks + 1) - 1) << 1;
+        this.buckets = new int[Math.max(wheelSize, 2)];
+        this.wheelMask = buckets.length - 1;
+        Arrays.fill(buckets, NONE);
+    }
+
+    public void start() {
+        long millis = TimeUnit.NANOSECONDS.toMillis(tickNanos);
+        ticker.scheduleAtFixedRate(this::tick, millis, millis, TimeUnit.MILLISECONDS);
+        log.info("Sensor liveness: offline after {} ticks of {} ms", timeoutTicks, millis);
+    }
+
+    /**
+     * Records that the sensor has just reported.
+     */
+    public synchronized void heartbeat(Sensor sensor) {
+        record(sensor, currentTick());
+    }
+
+    /**
+     * @param now The current tick
+     */
+    synchronized void heartbeat(Sensor sensor, long now) {
+        record(sensor, now);
+    }
+
+    /**
+     * Records that the first count sensors have just reported, taking the lock once for all of them.
+     */
+    public synchronized void heartbeat(Sensor[] batch, int count) {
+        long now = currentTick();
+        for (int i = 0; i < count; i++) {
+            record(batch[i], now);
+        }
+    }
+
+    private void record(Sensor sensor, long now) {
+        UUID id = sensor.getSensorId();
+        long high = id.getMostSignificantBits();
+        long low = id.getLeastSignificantBits();
+        int slot = find(high, low);
+        if (slot == NONE) {
+            slot = add(sensor, high, low);
+            lastSeen[slot] = now;
+            link(slot, now + timeoutTicks);
+            if (sensor.isOffline()) {
+                //offline before a restart
+                cameOnline.add(sensor);
+            }
+            return;
+        }
+        sensors[slot] = sensor;
+        lastSeen[slot] = now;
+        if (offline[slot]) {
+            offline[slot] = false;
+            offlineCount--;
+            link(slot, now + timeoutTicks);
+            cameOnline.add(sensor);
+        }
+    }
+
+    /**
+     * Stops monitoring a sensor, for example one that was removed.
+     */
+    public synchronized void forget(Sensor sensor) {
+        UUID id = sensor.getSensorId();
+        int position = indexPosition(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (position == NONE) {
+            return;
+        }
+        int slot = index[position] - 1;
+        removeFromIndex(position);
+        if (offline[slot]) {
+            offline[slot] = false;
+            offlineCount--;
+        } else {
+            unlink(slot);
+        }
+        sensors[slot] = null;
+        next[slot] = freeSlot;
+        freeSlot = slot;
+        monitored--;
+    }
+
+    /**
+     * Runs the buckets that have come due and applies the liveness changes found since the last tick.
+     */
+    void tick() {
+        tick(currentTick());
+    }
+
+    /**
+     * @param now The current tick
+     */
+    void tick(long now) {
+        try {
+            synchronized (this) {
+                long start = System.nanoTime();
+                while (processedTick < now) {
+                    processedTick++;
+                    expire(processedTick);
+                }
+                lastTickNanos = System.nanoTime() - start;
+                if (wentOffline.isEmpty() && cameOnline.isEmpty()) {
+                    return;
+                }
+                List<Sensor> swap = dispatchOffline;
+                dispatchOffline = wentOffline;
+                wentOffline = swap;
+                swap = dispatchOnline;
+                dispatchOnline = cameOnline;
+                cameOnline = swap;
+            }
+            serviceDispatcher.runAndWait(applyChanges);
+            dispatchOffline.clear();
+            dispatchOnline.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            //an exception would cancel the schedule and stop all further detection
+            log.error("Sensor liveness tick failed", e);
+        }
+    }
+
+    /**
+     * Walks one due bucket: sensors past their deadline go offline, the others move on to
+     * the bucket of their current deadline.
+     */
+    private void expire(long tick) {
+        int bucket = (int) tick & wheelMask;
+        int slot = buckets[bucket];
+        while (slot != NONE) {
+            int following = next[slot];
+            long deadline = lastSeen[slot] + timeoutTicks;
+            if (deadline <= tick) {
+                unlink(slot);
+                offline[slot] = true;
+                offlineCount++;
+                wentOffline.add(sensors[slot]);
+            } else if (((int) dueTick(deadline) & wheelMask) != bucket) {
+                unlink(slot);
+                link(slot, deadline);
+            }
+            slot = following;
+        }
+    }
+
+    /**
+     * Runs on the service thread.
+     */
+    private void applyChanges() {
+        for (Sensor sensor : dispatchOffline) {
+            if (!securityService.changeSensorLiveness(sensor, false)) {
+                forget(sensor);
+            }
+        }
+        for (Sensor sensor : dispatchOnline) {
+            if (!securityService.changeSensorLiveness(sensor, true)) {
+                forget(sensor);
+            }
+        }
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startNanos) / tickNanos;
+    }
+
+    /**
+     * @return the tick whose bucket a deadline goes in: the deadline itself if the wheel reaches
+     * that far, otherwise the last tick it does reach, to be looked at again from there
+     */
+    private long dueTick(long deadline) {
+        return Math.max(processedTick + 1, Math.min(deadline, processedTick + buckets.length));
+    }
+
+    private void link(int slot, long deadline) {
+        int bucket = (int) dueTick(deadline) & wheelMask;
+        int head = buckets[bucket];
+        next[slot] = head;
+        prev[slot] = NONE;
+        if (head != NONE) {
+            prev[head] = slot;
+        }
+        buckets[bucket] = slot;
+        bucketOf[slot] = bucket;
+    }
+
+    private void unlink(int slot) {
+        int before = prev[slot];
+        int after = next[slot];
+        if (before == NONE) {
+            buckets[bucketOf[slot]] = after;
+        } else {
+            next[before] = after;
+        }
+        if (after != NONE) {
+            prev[after] = before;
+        }
+    }
+
+    private int add(Sensor sensor, long high, long low) {
+        int slot;
+        if (freeSlot != NONE) {
+            slot = freeSlot;
+            freeSlot = next[slot];
+        } else {
+            if (usedSlots == sensors.length) {
+                grow();
+            }
+            slot = usedSlots++;
+        }
+        sensors[slot] = sensor;
+        idHigh[slot] = high;
+        idLow[slot] = low;
+        offline[slot] = false;
+        insertIntoIndex(slot);
+        monitored++;
+        return slot;
+    }
+
+    private void grow() {
+        int capacity = sensors.length * 2;
+        sensors = Arrays.copyOf(sensors, capacity);
+        idHigh = Arrays.copyOf(idHigh, capacity);
+        idLow = Arrays.copyOf(idLow, capacity);
+        lastSeen = Arrays.copyOf(lastSeen, capacity);
+        offline = Arrays.copyOf(offline, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        bucketOf = Arrays.copyOf(bucketOf, capacity);
+        index = new int[capacity * 2];
+        for (int slot = 0; slot < usedSlots; slot++) {
+            if (sensors[slot] != null) {
+                insertIntoIndex(slot);
+            }
+        }
+    }
+
+    private static int hash(long high, long low) {
+        long h = (high ^ low) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int find(long high, long low) {
+        int position = indexPosition(high, low);
+        return position == NONE ? NONE : index[position] - 1;
+    }
+
+    private int indexPosition(long high, long low) {
+        int mask = index.length - 1;
+        for (int i = hash(high, low) & mask; index[i] != 0; i = (i + 1) & mask) {
+            int slot = index[i] - 1;
+            if (idHigh[slot] == high && idLow[slot] == low) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    private void insertIntoIndex(int slot) {
+        int mask = index.length - 1;
+        int i = hash(idHigh[slot], idLow[slot]) & mask;
+        while (index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = slot + 1;
+    }
+
+    /**
+     * Deletes without tombstones by shifting later entries of the probe run back into the gap.
+     */
+    private void removeFromIndex(int position) {
+        int mask = index.length - 1;
+        int gap = position;
+        index[gap] = 0;
+        for (int i = (gap + 1) & mask; index[i] != 0; i = (i + 1) & mask) {
+            int slot = index[i] - 1;
+            int home = hash(idHigh[slot], idLow[slot]) & mask;
+            //the entry may move into the gap unless its home lies cyclically in (gap, i]
+            boolean homeAfterGap = gap <= i ? (home > gap && home <= i) : (home > gap || home <= i);
+            if (!homeAfterGap) {
+                index[gap] = index[i];
+                index[i] = 0;
+                gap = i;
+            }
+        }
+    }
+
+    public synchronized int getMonitoredCount() {
+        return monitored;
+    }
+
+    public synchronized int getOfflineCount() {
+        return offlineCount;
+    }
+
+    /**
+     * @return how long the last tick held the lock, in nanoseconds
+     */
+    public synchronized long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+}
@@ -0,0 +1,8 @@
+package com.udacity.catpoint.security.metrics;
+
+/**
+ * JMX view of a {@link Counter}.
+ */
+public interface CounterMBean {
+    long getCount();
+}
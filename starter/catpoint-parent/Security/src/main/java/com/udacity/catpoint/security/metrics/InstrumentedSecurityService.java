@@ -0,0 +1,135 @@
+package com.udacity.catpoint.security.metrics;
+
+import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.rules.AlarmRules;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * SecurityService that records how long its entry points take. It can be used anywhere a
+ * SecurityService is expected, so only the code that constructs the service has to change.
+ * <p>
+ * Sensor events are timed from the call until the alarm decision has been persisted and every
+ * listener notified. Listeners added through {@link #addStatusListener(StatusListener)} are
+ * wrapped so the time spent in each notification is recorded as well.
+ */
+public class InstrumentedSecurityService extends SecurityService {
+
+    private final LatencyHistogram sensorEvents;
+    private final LatencyHistogram processImage;
+    private final LatencyHistogram catVerdict;
+    private final LatencyHistogram setArmingStatus;
+    private final LatencyHistogram listenerDispatch;
+    private final Counter[] alarmTransitions;
+
+    public InstrumentedSecurityService(SecurityRepository securityRepository, ImageService imageService, Metrics metrics) {
+        this(securityRepository, imageService, AlarmRules.defaults(), metrics);
+    }
+
+    public InstrumentedSecurityService(SecurityRepository securityRepository, ImageService imageService,
+                                       AlarmRules alarmRules, Metrics metrics) {
+        super(securityRepository, imageService, alarmRules);
+        this.sensorEvents = metrics.histogram("service.sensorEvent");
+        this.processImage = metrics.histogram("service.processImage");
+        this.catVerdict = metrics.histogram("service.applyCatVerdict");
+        this.setArmingStatus = metrics.histogram("service.setArmingStatus");
+        this.listenerDispatch = metrics.histogram("listener.dispatch");
+        AlarmStatus[] statuses = AlarmStatus.values();
+        this.alarmTransitions = new Counter[statuses.length];
+        for (AlarmStatus status : statuses) {
+            alarmTransitions[status.ordinal()] = metrics.counter("alarm." + status.name());
+        }
+    }
+
+    @Override
+    public void changeSensorActivationStatus(Sensor sensor, boolean active) {
+        long start = System.nanoTime();
+        super.changeSensorActivationStatus(sensor, active);
+        sensorEvents.recordSince(start);
+    }
+
+    @Override
+    public void processImage(BufferedImage currentCameraImage) {
+        long start = System.nanoTime();
+        super.processImage(currentCameraImage);
+        processImage.recordSince(start);
+    }
+
+    @Override
+    public void applyCatVerdict(boolean cat) {
+        long start = System.nanoTime();
+        super.applyCatVerdict(cat);
+        catVerdict.recordSince(start);
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        long start = System.nanoTime();
+        super.setArmingStatus(armingStatus);
+        setArmingStatus.recordSince(start);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus status) {
+        alarmTransitions[status.ordinal()].increment();
+        super.setAlarmStatus(status);
+    }
+
+    @Override
+    public void addStatusListener(StatusListener statusListener) {
+        super.addStatusListener(new TimedStatusListener(statusListener));
+    }
+
+    private class TimedStatusListener implements StatusListener {
+        private final StatusListener delegate;
+
+        TimedStatusListener(StatusListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void notify(AlarmStatus status) {
+            long start = System.nanoTime();
+            delegate.notify(status);
+            listenerDispatch.recordSince(start);
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            long start = System.nanoTime();
+            delegate.catDetected(catDetected);
+            listenerDispatch.recordSince(start);
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            long start = System.nanoTime();
+            delegate.sensorStatusChanged();
+            listenerDispatch.recordSince(start);
+        }
+
+        @Override
+        public void sensorLivenessChanged(Sensor sensor, boolean online) {
+            long start = System.nanoTime();
+            delegate.sensorLivenessChanged(sensor, online);
+            listenerDispatch.recordSince(start);
+        }
+
+        //the service skips a listener equal to one it already has, so wrapping the same listener twice must not register it twice
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TimedStatusListener && ((TimedStatusListener) o).delegate.equals(delegate);
+        }
+
+        @Override
+        public int hashCode() {
+            return delegate.hashCode();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.udacity.catpoint.security.metrics;
+
+/**
+ * JMX view of a {@link LatencyHistogram}. All values cover everything recorded since startup.
+ */
+public interface LatencyHistogramMBean {
+    long getCount();
+    double getMeanMicros();
+    double getP50Micros();
+    double getP90Micros();
+    double getP99Micros();
+    double getP999Micros();
+    double getMaxMicros();
+}
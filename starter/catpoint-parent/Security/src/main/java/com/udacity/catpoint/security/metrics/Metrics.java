@@ -0,0 +1,75 @@
+package com.udacity.catpoint.security.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Registry of the application's latency histograms and counters. Every metric is registered
+ * with the platform MBean server when it is first created, under
+ * com.udacity.catpoint:type=Latency|Counter,name=[metric name], so it can be read from
+ * JConsole or any other JMX client.
+ * <p>
+ * Look metrics up once and keep the reference; the lookup itself is not meant for the hot path.
+ */
+public class Metrics {
+
+    private static final String DOMAIN = "com.udacity.catpoint";
+
+    private final Logger log = LoggerFactory.getLogger(Metrics.class);
+
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentSkipListMap<>();
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> register("Latency", n, new LatencyHistogram(n)));
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> register("Counter", n, new Counter(n)));
+    }
+
+    /**
+     * Registers a component's own MBean under com.udacity.catpoint:type=[type],name=[name], for
+     * figures it keeps itself rather than in a histogram or counter.
+     */
+    public <T> T expose(String type, String name, T mBean) {
+        return register(type, name, mBean);
+    }
+
+    /**
+     * @return all histograms, sorted by name
+     */
+    public Collection<LatencyHistogram> getHistograms() {
+        return histograms.values();
+    }
+
+    /**
+     * @return all counters, sorted by name
+     */
+    public Collection<Counter> getCounters() {
+        return counters.values();
+    }
+
+    private <T> T register(String type, String name, T mBean) {
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(mBean, objectName);
+        } catch (JMException e) {
+            //the metric still works, it just isn't visible over JMX
+            log.warn("Unable to register {} metric {} with JMX", type, name, e);
+        }
+        return mBean;
+    }
+}
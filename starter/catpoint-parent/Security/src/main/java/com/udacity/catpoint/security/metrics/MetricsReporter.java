@@ -0,0 +1,106 @@
+package com.udacity.catpoint.security.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically logs every metric and, when a file is given, appends them to it as CSV rows.
+ * Latencies are reported for the last interval only, counters as running totals.
+ */
+public class MetricsReporter implements AutoCloseable {
+
+    private static final String CSV_HEADER = "timestamp,metric,count,meanMicros,p50Micros,p90Micros,p99Micros,p999Micros,maxMicros";
+
+    private final Logger log = LoggerFactory.getLogger(MetricsReporter.class);
+
+    private final Metrics metrics;
+    private final Path csvFile;
+    private final Map<String, LatencyHistogram.Snapshot> previous = new HashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "metrics-reporter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param csvFile File to append CSV rows to, may be null
+     */
+    public MetricsReporter(Metrics metrics, Path csvFile) {
+        this.metrics = metrics;
+        this.csvFile = csvFile;
+    }
+
+    public void start(long interval, TimeUnit unit) {
+        scheduler.scheduleAtFixedRate(this::report, interval, interval, unit);
+    }
+
+    /**
+     * Reports everything recorded since the previous report.
+     */
+    public synchronized void report() {
+        String now = Instant.now().toString();
+        StringBuilder csv = new StringBuilder();
+        for (LatencyHistogram histogram : metrics.getHistograms()) {
+            LatencyHistogram.Snapshot total = histogram.snapshot();
+            LatencyHistogram.Snapshot last = previous.put(histogram.getName(), total);
+            LatencyHistogram.Snapshot interval = last == null ? total : total.minus(last);
+            if (interval.getCount() == 0) {
+                continue;
+            }
+            log.info("{}: count={} mean={}us p50={}us p90={}us p99={}us p99.9={}us max={}us", histogram.getName(),
+                    interval.getCount(), micros(interval.getMean()), micros(interval.getPercentile(50)),
+                    micros(interval.getPercentile(90)), micros(interval.getPercentile(99)),
+                    micros(interval.getPercentile(99.9)), micros(interval.getMax()));
+            csv.append(now).append(',').append(histogram.getName()).append(',').append(interval.getCount())
+                    .append(',').append(micros(interval.getMean()))
+                    .append(',').append(micros(interval.getPercentile(50)))
+                    .append(',').append(micros(interval.getPercentile(90)))
+                    .append(',').append(micros(interval.getPercentile(99)))
+                    .append(',').append(micros(interval.getPercentile(99.9)))
+                    .append(',').append(micros(interval.getMax()))
+                    .append(System.lineSeparator());
+        }
+        for (Counter counter : metrics.getCounters()) {
+            log.info("{}: {}", counter.getName(), counter.getCount());
+            csv.append(now).append(',').append(counter.getName()).append(',').append(counter.getCount())
+                    .append(",,,,,,").append(System.lineSeparator());
+        }
+        writeCsv(csv);
+    }
+
+    private void writeCsv(StringBuilder rows) {
+        if (csvFile == null || rows.length() == 0) {
+            return;
+        }
+        try {
+            if (!Files.exists(csvFile)) {
+                rows.insert(0, CSV_HEADER + System.lineSeparator());
+            }
+            Files.write(csvFile, rows.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.warn("Unable to write metrics to {}", csvFile, e);
+        }
+    }
+
+    private static long micros(double nanos) {
+        return Math.round(nanos / 1000);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        report();
+    }
+}
@@ -0,0 +1,44 @@
+package com.udacity.catpoint.security.metrics;
+
+import com.udacity.catpoint.image.ImageService;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * ImageService decorator that records how long the backend takes to classify each image,
+ * and counts calls that failed or found a cat.
+ */
+public class TimedImageService implements ImageService {
+
+    private final ImageService delegate;
+    private final LatencyHistogram calls;
+    private final Counter catsFound;
+    private final Counter failures;
+
+    /**
+     * @param backend Short backend name used in the metric names, e.g. "aws" or "fake"
+     */
+    public TimedImageService(ImageService delegate, Metrics metrics, String backend) {
+        this.delegate = delegate;
+        this.calls = metrics.histogram("image." + backend + ".imageContainsCat");
+        this.catsFound = metrics.counter("image." + backend + ".catsFound");
+        this.failures = metrics.counter("image." + backend + ".failures");
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        long start = System.nanoTime();
+        try {
+            boolean cat = delegate.imageContainsCat(image, confidenceThreshhold);
+            if (cat) {
+                catsFound.increment();
+            }
+            return cat;
+        } catch (RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            calls.recordSince(start);
+        }
+    }
+}
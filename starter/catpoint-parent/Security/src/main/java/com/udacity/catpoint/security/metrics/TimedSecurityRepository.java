@@ -0,0 +1,81 @@
+package com.udacity.catpoint.security.metrics;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+
+import java.util.Set;
+
+/**
+ * SecurityRepository decorator that records how long each write takes to persist.
+ * Reads are served from memory by every implementation and are not timed.
+ */
+public class TimedSecurityRepository implements SecurityRepository {
+
+    private final SecurityRepository delegate;
+    private final LatencyHistogram addSensor;
+    private final LatencyHistogram removeSensor;
+    private final LatencyHistogram updateSensor;
+    private final LatencyHistogram setAlarmStatus;
+    private final LatencyHistogram setArmingStatus;
+
+    public TimedSecurityRepository(SecurityRepository delegate, Metrics metrics) {
+        this.delegate = delegate;
+        this.addSensor = metrics.histogram("repository.addSensor");
+        this.removeSensor = metrics.histogram("repository.removeSensor");
+        this.updateSensor = metrics.histogram("repository.updateSensor");
+        this.setAlarmStatus = metrics.histogram("repository.setAlarmStatus");
+        this.setArmingStatus = metrics.histogram("repository.setArmingStatus");
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        long start = System.nanoTime();
+        delegate.addSensor(sensor);
+        addSensor.recordSince(start);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        long start = System.nanoTime();
+        delegate.removeSensor(sensor);
+        removeSensor.recordSince(start);
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        long start = System.nanoTime();
+        delegate.updateSensor(sensor);
+        updateSensor.recordSince(start);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        long start = System.nanoTime();
+        delegate.setAlarmStatus(alarmStatus);
+        setAlarmStatus.recordSince(start);
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        long start = System.nanoTime();
+        delegate.setArmingStatus(armingStatus);
+        setArmingStatus.recordSince(start);
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return delegate.getSensors();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return delegate.getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return delegate.getArmingStatus();
+    }
+}
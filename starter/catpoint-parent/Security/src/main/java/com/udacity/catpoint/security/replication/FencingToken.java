@@ -0,0 +1,69 @@
+package com.udacity.catpoint.security.replication;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * The epoch of the primary replicating on a port, kept in a small memory-mapped file that every
+ * process on the machine sees. Replication only binds localhost, so primary and standby always
+ * share it.
+ * <p>
+ * A node that becomes primary takes the next epoch, which fences off the one before it: a primary
+ * that was only hung, in a long GC pause for example, finds its epoch is no longer current when
+ * it wakes up and refuses to write, instead of diverging from the standby that took over. Checking
+ * is a single memory read, so the primary does it before every write.
+ */
+public final class FencingToken implements AutoCloseable {
+
+    public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("java.io.tmpdir"));
+
+    private static final VarHandle EPOCH = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+
+    private FencingToken(Path file) throws IOException {
+        channel = FileChannel.open(file, READ, WRITE, CREATE);
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+    }
+
+    /**
+     * @return the token shared by every primary and standby of the given replication port
+     */
+    public static FencingToken open(Path directory, int port) throws IOException {
+        Files.createDirectories(directory);
+        return new FencingToken(directory.resolve("catpoint-replication-" + port + ".fence"));
+    }
+
+    /**
+     * Takes the next epoch, fencing off whoever held the current one.
+     * @return the epoch now held by the caller
+     */
+    public long acquire() throws IOException {
+        try (FileLock lock = channel.lock()) {
+            long next = current() + 1;
+            EPOCH.setVolatile(mapped, 0, next);
+            mapped.force();
+            return next;
+        }
+    }
+
+    public long current() {
+        return (long) EPOCH.getVolatile(mapped, 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,398 @@
+package com.udacity.catpoint.security.replication;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.metrics.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static com.udacity.catpoint.security.replication.ReplicationProtocol.*;
+
+/**
+ * SecurityRepository decorator for the primary of a primary/standby pair. Every write is applied
+ * to the delegate and then streamed to the one {@link StandbyReplica} connected on localhost,
+ * which keeps an in-memory copy of the state and can take over as soon as the primary is gone.
+ * <p>
+ * Replication is asynchronous, so writes never wait for the standby. Records are appended to a
+ * buffer under the repository's lock and a sender thread swaps that buffer for an empty one and
+ * writes it out, so records written while the previous batch was on the wire go out together.
+ * The standby acknowledges in batches too, and the time from a write to its acknowledgement is
+ * recorded as the replication lag. When no writes happen the sender sends heartbeats, so a hung
+ * primary is noticed as quickly as a dead one.
+ * <p>
+ * A newly connected standby first receives a snapshot of the whole state. A standby that falls so
+ * far behind that the buffer fills up gets a fresh snapshot in place of the backlog.
+ * <p>
+ * Starting takes the next epoch of the port's {@link FencingToken}, and every write checks it is
+ * still current first. Once a standby has taken over, this primary throws IllegalStateException
+ * on writes and stops replicating, so it cannot diverge from the new primary.
+ */
+public class ReplicatingSecurityRepository implements SecurityRepository, AutoCloseable {
+
+    static final long HEARTBEAT_MILLIS = 50;
+    private static final int BUFFER_BYTES = 1024 * 1024;
+    //writes remembered for measuring lag; older ones are no longer sampled once acknowledged
+    private static final int LAG_SAMPLES = 1 << 16;
+
+    private final Logger log = LoggerFactory.getLogger(ReplicatingSecurityRepository.class);
+
+    private final SecurityRepository delegate;
+    private final ServerSocketChannel serverChannel;
+    private final Thread senderThread;
+    private final LatencyHistogram lag = new LatencyHistogram("replication.lag");
+    private final FencingToken fence;
+    private final long epoch;
+
+    //guarded by this
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_BYTES);
+    private ByteBuffer sending = ByteBuffer.allocate(BUFFER_BYTES);
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+    private boolean standbyConnected = false;
+    private long sequence = 0;
+    private long resyncs = 0;
+    private final long[] sampleSequences = new long[LAG_SAMPLES];
+    private final long[] sampleNanos = new long[LAG_SAMPLES];
+
+    private volatile long acknowledgedSequence = 0;
+    private volatile boolean closed = false;
+    private volatile boolean fenced = false;
+
+    /**
+     * @param port Port the standby connects to, 0 picks a free one
+     */
+    public ReplicatingSecurityRepository(SecurityRepository delegate, int port) throws IOException {
+        this(delegate, port, FencingToken.DEFAULT_DIRECTORY);
+    }
+
+    /**
+     * @param port Port the standby connects to, 0 picks a free one
+     * @param fenceDirectory Where the port's {@link FencingToken} is kept, the same for the standby
+     */
+    public ReplicatingSecurityRepository(SecurityRepository delegate, int port, Path fenceDirectory) throws IOException {
+        this.delegate = delegate;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("localhost", port), 1);
+        this.fence = FencingToken.open(fenceDirectory, getPort());
+        this.epoch = fence.acquire();
+        this.senderThread = new Thread(this::run, "replication-sender");
+        senderThread.setDaemon(true);
+    }
+
+    public void start() {
+        senderThread.start();
+        log.info("Replicating to a standby connecting on localhost:{}, epoch {}", getPort(), epoch);
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * @return time from a write on the primary until the standby acknowledged it
+     */
+    public LatencyHistogram getLag() {
+        return lag;
+    }
+
+    public synchronized boolean isStandbyConnected() {
+        return standbyConnected;
+    }
+
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return true once a standby has taken over from this primary
+     */
+    public boolean isFenced() {
+        return fenced || fence.current() != epoch;
+    }
+
+    public long getAcknowledgedSequence() {
+        return acknowledgedSequence;
+    }
+
+    /**
+     * @return how often the standby fell so far behind that it was sent a snapshot instead
+     */
+    public synchronized long getResyncs() {
+        return resyncs;
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        checkFence();
+        ByteBuffer encoded = encode(sensor);
+        delegate.addSensor(sensor);
+        if (reserve(RECORD_HEADER_BYTES + encoded.remaining())) {
+            appendHeader(ADD_SENSOR);
+            pending.put(encoded);
+        }
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        checkFence();
+        delegate.removeSensor(sensor);
+        if (reserve(RECORD_HEADER_BYTES + SENSOR_ID_BYTES)) {
+            appendHeader(REMOVE_SENSOR);
+            putSensorId(pending, sensor);
+        }
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        checkFence();
+        ByteBuffer encoded = encode(sensor);
+        delegate.updateSensor(sensor);
+        if (reserve(RECORD_HEADER_BYTES + encoded.remaining())) {
+            appendHeader(UPDATE_SENSOR);
+            pending.put(encoded);
+        }
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        checkFence();
+        delegate.setAlarmStatus(alarmStatus);
+        if (reserve(RECORD_HEADER_BYTES + 1)) {
+            appendHeader(ALARM_STATUS);
+            pending.put((byte) alarmStatus.ordinal());
+        }
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        checkFence();
+        delegate.setArmingStatus(armingStatus);
+        if (reserve(RECORD_HEADER_BYTES + 1)) {
+            appendHeader(ARMING_STATUS);
+            pending.put((byte) armingStatus.ordinal());
+        }
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return delegate.getSensors();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return delegate.getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return delegate.getArmingStatus();
+    }
+
+    /**
+     * @throws IllegalStateException if a standby has taken over since this primary started
+     */
+    private void checkFence() {
+        if (fenced) {
+            throw new IllegalStateException("Fenced off by a newer primary");
+        }
+        long current = fence.current();
+        if (current != epoch) {
+            fenced = true;
+            notifyAll();
+            log.error("A standby took over at epoch {}, this primary at epoch {} no longer accepts writes", current, epoch);
+            throw new IllegalStateException("Fenced off by a newer primary");
+        }
+    }
+
+    /**
+     * Encodes the sensor into the scratch buffer, so a sensor that cannot be replicated is
+     * rejected before it is written or any of its record is appended.
+     */
+    private ByteBuffer encode(Sensor sensor) {
+        int bytes = sensorBytes(sensor);
+        if (scratch.capacity() < bytes) {
+            scratch = ByteBuffer.allocate(bytes);
+        }
+        scratch.clear();
+        putSensor(scratch, sensor);
+        return scratch.flip();
+    }
+
+    /**
+     * Makes room for a record of the given size.
+     * @return false if the record should not be appended, because there is no standby or because
+     * a snapshot that already includes the write replaced the backlog
+     */
+    private boolean reserve(int bytes) {
+        if (!standbyConnected) {
+            return false;
+        }
+        if (pending.remaining() < bytes) {
+            resyncs++;
+            appendSnapshot();
+            return false;
+        }
+        return true;
+    }
+
+    private void appendHeader(byte type) {
+        if (pending.position() == 0) {
+            //the sender may be waiting for something to send
+            notifyAll();
+        }
+        long next = ++sequence;
+        pending.put(type).putLong(next);
+        int sample = (int) next & (LAG_SAMPLES - 1);
+        sampleSequences[sample] = next;
+        sampleNanos[sample] = System.nanoTime();
+    }
+
+    /**
+     * Replaces anything not yet sent with a snapshot of the whole state.
+     */
+    private void appendSnapshot() {
+        Set<Sensor> sensors = delegate.getSensors();
+        int bytes = RECORD_HEADER_BYTES + 2 + 4;
+        for (Sensor sensor : sensors) {
+            bytes += sensorBytes(sensor);
+        }
+        if (pending.capacity() < bytes) {
+            pending = ByteBuffer.allocate(bytes + BUFFER_BYTES);
+        }
+        pending.clear();
+        appendHeader(SNAPSHOT);
+        pending.put((byte) delegate.getAlarmStatus().ordinal())
+                .put((byte) delegate.getArmingStatus().ordinal())
+                .putInt(sensors.size());
+        for (Sensor sensor : sensors) {
+            putSensor(pending, sensor);
+        }
+    }
+
+    private void run() {
+        while (!closed && !isFenced()) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                if (!closed) {
+                    log.error("Replication stopped accepting standbys", e);
+                }
+                return;
+            }
+            try (channel) {
+                channel.socket().setTcpNoDelay(true);
+                synchronized (this) {
+                    standbyConnected = true;
+                    appendSnapshot();
+                }
+                log.info("Standby connected from {}", channel.getRemoteAddress());
+                Thread ackReader = new Thread(() -> readAcknowledgements(channel), "replication-acks");
+                ackReader.setDaemon(true);
+                ackReader.start();
+                send(channel);
+            } catch (IOException e) {
+                if (!closed && !isFenced()) {
+                    log.warn("Standby disconnected: {}", e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                synchronized (this) {
+                    standbyConnected = false;
+                    pending.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes batches of records, or a heartbeat when there was nothing to write for a while.
+     */
+    private void send(SocketChannel channel) throws IOException, InterruptedException {
+        while (!closed) {
+            ByteBuffer batch;
+            synchronized (this) {
+                if (isFenced()) {
+                    //the standby has taken over, so stop heartbeats and let it go
+                    return;
+                }
+                if (pending.position() == 0) {
+                    wait(HEARTBEAT_MILLIS);
+                }
+                if (isFenced()) {
+                    return;
+                }
+                if (pending.position() == 0) {
+                    pending.put(HEARTBEAT).putLong(sequence);
+                }
+                batch = pending;
+                pending = sending;
+                sending = batch;
+            }
+            batch.flip();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    private void readAcknowledgements(SocketChannel channel) {
+        ByteBuffer ack = ByteBuffer.allocate(ACK_BYTES);
+        try {
+            while (true) {
+                ack.clear();
+                while (ack.hasRemaining()) {
+                    if (channel.read(ack) < 0) {
+                        return;
+                    }
+                }
+                long acknowledged = ack.getLong(0);
+                long appendedAt = -1;
+                synchronized (this) {
+                    int sample = (int) acknowledged & (LAG_SAMPLES - 1);
+                    if (sampleSequences[sample] == acknowledged) {
+                        appendedAt = sampleNanos[sample];
+                    }
+                }
+                acknowledgedSequence = acknowledged;
+                if (appendedAt >= 0) {
+                    lag.recordSince(appendedAt);
+                }
+            }
+        } catch (IOException e) {
+            //the sender notices the broken connection as well and waits for the next standby
+        }
+    }
+
+    /**
+     * Stops replicating. The standby sees the connection close exactly as if this process had
+     * died, and takes over.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        senderThread.interrupt();
+        try {
+            serverChannel.close();
+            fence.close();
+        } catch (IOException e) {
+            log.warn("Unable to close replication", e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.udacity.catpoint.security.replication;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * The replication stream from primary to standby is a sequence of records, each a type byte and
+ * a sequence number followed by its body. The standby answers with the sequence number of the
+ * last record it has applied, as one long, whenever it has caught up with what it has received.
+ * <pre>
+ *      HEARTBEAT      nothing, repeats the last sequence number
+ *      SNAPSHOT       alarm ordinal, arming ordinal, int count, count sensors; replaces all state
+ *      ADD_SENSOR     sensor
+ *      UPDATE_SENSOR  sensor
+ *      REMOVE_SENSOR  sensor id as two longs
+ *      ALARM_STATUS   ordinal
+ *      ARMING_STATUS  ordinal
+ *
+ *      sensor         id as two longs, unsigned short name length, name chars, type ordinal, flags
+ *      flags          1 when active, 2 when offline
+ * </pre>
+ */
+final class ReplicationProtocol {
+
+    static final byte HEARTBEAT = 0;
+    static final byte SNAPSHOT = 1;
+    static final byte ADD_SENSOR = 2;
+    static final byte UPDATE_SENSOR = 3;
+    static final byte REMOVE_SENSOR = 4;
+    static final byte ALARM_STATUS = 5;
+    static final byte ARMING_STATUS = 6;
+
+    //sensor flags
+    static final int ACTIVE = 1;
+    static final int OFFLINE = 2;
+
+    static final int RECORD_HEADER_BYTES = 9;
+    static final int SENSOR_ID_BYTES = 16;
+    static final int ACK_BYTES = 8;
+
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+
+    private ReplicationProtocol() {
+    }
+
+    static int sensorBytes(Sensor sensor) {
+        return SENSOR_ID_BYTES + 2 + 2 * sensor.getName().length() + 1 + 1;
+    }
+
+    /**
+     * Writes the name char by char rather than encoding it first, so replicating a sensor change
+     * allocates nothing on the primary.
+     */
+    static void putSensor(ByteBuffer buffer, Sensor sensor) {
+        String name = sensor.getName();
+        if (name.length() > 0xFFFF) {
+            throw new IllegalArgumentException("Sensor name too long to replicate");
+        }
+        putSensorId(buffer, sensor);
+        buffer.putShort((short) name.length());
+        for (int i = 0; i < name.length(); i++) {
+            buffer.putChar(name.charAt(i));
+        }
+        buffer.put((byte) sensor.getSensorType().ordinal());
+        buffer.put((byte) ((sensor.getActive() ? ACTIVE : 0) | (sensor.isOffline() ? OFFLINE : 0)));
+    }
+
+    static void putSensorId(ByteBuffer buffer, Sensor sensor) {
+        UUID id = sensor.getSensorId();
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+    }
+
+    static Sensor readSensor(DataInputStream in) throws IOException {
+        UUID id = readSensorId(in);
+        char[] name = new char[in.readUnsignedShort()];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = in.readChar();
+        }
+        Sensor sensor = new Sensor(new String(name), SENSOR_TYPES[in.readUnsignedByte()]);
+        sensor.setSensorId(id);
+        int flags = in.readUnsignedByte();
+        sensor.setActive((flags & ACTIVE) != 0);
+        sensor.setOffline((flags & OFFLINE) != 0);
+        return sensor;
+    }
+
+    static UUID readSensorId(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+}
@@ -0,0 +1,189 @@
+package com.udacity.catpoint.security.replication;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepository;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.udacity.catpoint.security.replication.ReplicationProtocol.*;
+
+/**
+ * Standby side of replication. Connects to a {@link ReplicatingSecurityRepository} and applies its
+ * stream to an in-memory repository, acknowledging once it has caught up with everything received
+ * so far, or every {@value #ACK_EVERY} records while the stream keeps coming.
+ * <p>
+ * The primary is considered lost when the connection closes, which is immediate when its process
+ * dies, or when nothing, not even a heartbeat, arrives within the timeout. At that point the
+ * repository holds every write the primary managed to send and is ready to back a SecurityService.
+ */
+public class StandbyReplica {
+
+    private static final int ACK_EVERY = 256;
+    private static final long RECONNECT_MILLIS = 100;
+
+    private final Logger log = LoggerFactory.getLogger(StandbyReplica.class);
+
+    private final InetSocketAddress primary;
+    private final int timeoutMillis;
+    private final InMemorySecurityRepository repository = new InMemorySecurityRepository();
+    private final Map<UUID, Sensor> sensorsById = new HashMap<>();
+    private final AlarmStatus[] alarmStatuses = AlarmStatus.values();
+    private final ArmingStatus[] armingStatuses = ArmingStatus.values();
+    private volatile long appliedSequence = 0;
+    private boolean synced = false;
+
+    /**
+     * @param timeoutMillis Silence after which the primary is considered lost. Keep it well above
+     *                      the longest GC pause either side may see, not just the primary's 50 ms
+     *                      heartbeat interval; a primary that was only paused is fenced off by the
+     *                      {@link FencingToken} anyway, but each false takeover is a failover
+     */
+    public StandbyReplica(InetSocketAddress primary, int timeoutMillis) {
+        this.primary = primary;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * The replicated state. Only safe to use once {@link #replicateUntilPrimaryLost()} has returned.
+     */
+    public SecurityRepository getRepository() {
+        return repository;
+    }
+
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Connects to the primary, retrying until it is up, and replicates until it is lost. A
+     * connection lost before the first snapshot arrived is retried, as there is nothing to take
+     * over with yet.
+     * @return System.nanoTime() at which the loss of the primary was detected
+     */
+    public long replicateUntilPrimaryLost() throws InterruptedException {
+        while (true) {
+            Socket socket;
+            try {
+                socket = new Socket(primary.getAddress(), primary.getPort());
+            } catch (IOException e) {
+                Thread.sleep(RECONNECT_MILLIS);
+                continue;
+            }
+            try (socket) {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(timeoutMillis);
+                log.info("Replicating from {}", primary);
+                replicate(new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024)),
+                        new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), ACK_BYTES)));
+            } catch (IOException e) {
+                long lostAt = System.nanoTime();
+                if (synced) {
+                    log.warn("Lost the primary at sequence {}: {}", appliedSequence, e.toString());
+                    return lostAt;
+                }
+                log.info("Primary went away before sending its state, reconnecting");
+            }
+        }
+    }
+
+    private void replicate(DataInputStream in, DataOutputStream out) throws IOException {
+        int unacknowledged = 0;
+        while (true) {
+            byte type = in.readByte();
+            long sequence = in.readLong();
+            apply(type, in);
+            if (sequence > appliedSequence) {
+                appliedSequence = sequence;
+                unacknowledged++;
+            }
+            if (unacknowledged > 0 && (unacknowledged >= ACK_EVERY || in.available() == 0)) {
+                out.writeLong(appliedSequence);
+                out.flush();
+                unacknowledged = 0;
+            }
+        }
+    }
+
+    private void apply(byte type, DataInputStream in) throws IOException {
+        switch (type) {
+            case HEARTBEAT:
+                break;
+            case SNAPSHOT:
+                for (Sensor sensor : new ArrayList<>(sensorsById.values())) {
+                    repository.removeSensor(sensor);
+                }
+                sensorsById.clear();
+                repository.setAlarmStatus(alarmStatuses[in.readUnsignedByte()]);
+                repository.setArmingStatus(armingStatuses[in.readUnsignedByte()]);
+                for (int count = in.readInt(); count > 0; count--) {
+                    add(readSensor(in));
+                }
+                synced = true;
+                break;
+            case ADD_SENSOR:
+                add(readSensor(in));
+                break;
+            case UPDATE_SENSOR:
+                update(readSensor(in));
+                break;
+            case REMOVE_SENSOR:
+                Sensor removed = sensorsById.remove(readSensorId(in));
+                if (removed != null) {
+                    repository.removeSensor(removed);
+                }
+                break;
+            case ALARM_STATUS:
+                repository.setAlarmStatus(alarmStatuses[in.readUnsignedByte()]);
+                break;
+            case ARMING_STATUS:
+                repository.setArmingStatus(armingStatuses[in.readUnsignedByte()]);
+                break;
+            default:
+                throw new IOException("Unknown replication record " + type);
+        }
+    }
+
+    private void add(Sensor sensor) {
+        Sensor existing = sensorsById.get(sensor.getSensorId());
+        if (existing != null) {
+            update(sensor);
+            return;
+        }
+        sensorsById.put(sensor.getSensorId(), sensor);
+        repository.addSensor(sensor);
+    }
+
+    private void update(Sensor sensor) {
+        Sensor existing = sensorsById.get(sensor.getSensorId());
+        if (existing == null) {
+            add(sensor);
+            return;
+        }
+        if (existing.getName().equals(sensor.getName()) && existing.getSensorType() == sensor.getSensorType()) {
+            existing.setActive(sensor.getActive());
+            repository.updateSensor(existing);
+            return;
+        }
+        //name and type decide where the sensor sorts, so take it out before changing them
+        repository.removeSensor(existing);
+        existing.setName(sensor.getName());
+        existing.setSensorType(sensor.getSensorType());
+        existing.setActive(sensor.getActive());
+        repository.addSensor(existing);
+    }
+}
@@ -0,0 +1,130 @@
+package com.udacity.catpoint.security.rules;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The rules a SecurityService decides with, replaceable while it runs. New rules are parsed and
+ * compiled on the caller's thread and then swapped in with one atomic write, so the service thread
+ * never waits for a reload: each decision uses either the old table or the new one, never a mix.
+ * <p>
+ * {@link #watch(Path)} reloads a rules file whenever it changes. A file that does not parse is
+ * logged and ignored, and the rules in use stay in place.
+ */
+public class AlarmRules implements AutoCloseable {
+
+    private static final long QUIET_MILLIS = 200;
+
+    private final Logger log = LoggerFactory.getLogger(AlarmRules.class);
+
+    private final AtomicReference<CompiledRules> current;
+    private WatchService watchService;
+
+    public AlarmRules(CompiledRules rules) {
+        this.current = new AtomicReference<>(rules);
+    }
+
+    /**
+     * @return rules holding the {@link CompiledRules#defaults() defaults}
+     */
+    public static AlarmRules defaults() {
+        return new AlarmRules(CompiledRules.defaults());
+    }
+
+    public CompiledRules current() {
+        return current.get();
+    }
+
+    /**
+     * Puts the rules in use from the next decision on.
+     * @return the rules they replace
+     */
+    public CompiledRules swap(CompiledRules rules) {
+        return current.getAndSet(rules);
+    }
+
+    /**
+     * Compiles the file and swaps it in.
+     * @throws InvalidRulesException if the file does not parse; the rules in use are kept
+     */
+    public CompiledRules reload(Path file) throws IOException {
+        CompiledRules rules = CompiledRules.load(file);
+        swap(rules);
+        log.info("Alarm rules now {}", rules);
+        return rules;
+    }
+
+    /**
+     * Loads the file and keeps reloading it whenever it changes, on a background thread.
+     */
+    public synchronized void watch(Path file) throws IOException {
+        if (watchService != null) {
+            throw new IllegalStateException("Already watching a rules file");
+        }
+        Path absolute = file.toAbsolutePath();
+        reload(absolute);
+        watchService = FileSystems.getDefault().newWatchService();
+        //editors often replace the file rather than write to it, so watch the directory
+        absolute.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        WatchService watching = watchService;
+        Thread watcher = new Thread(() -> watchLoop(watching, absolute), "alarm-rules-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchLoop(WatchService watching, Path file) {
+        try {
+            while (true) {
+                boolean changed = changed(watching.take(), file);
+                //a write shows up as several events, the first often for the truncated file,
+                //so only reload once the file has been left alone for a moment
+                for (WatchKey key = watching.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS); key != null;
+                     key = watching.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) {
+                    changed |= changed(key, file);
+                }
+                if (changed) {
+                    try {
+                        reload(file);
+                    } catch (IOException e) {
+                        log.error("Keeping the current alarm rules, unable to load {}", file, e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //closed
+        }
+    }
+
+    private static boolean changed(WatchKey key, Path file) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            changed |= file.getFileName().equals(event.context());
+        }
+        key.reset();
+        return changed;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("Unable to stop watching the alarm rules", e);
+        }
+        watchService = null;
+    }
+}
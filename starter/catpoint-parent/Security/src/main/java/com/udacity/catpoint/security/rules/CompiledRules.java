@@ -0,0 +1,194 @@
+package com.udacity.catpoint.security.rules;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * A rules file compiled into a lookup table with one cell per combination of trigger, arming
+ * status, alarm status, cat detection, sensor type and active sensor count. Compiling matches the
+ * rules against every cell in file order, first match wins, so deciding is a few multiplications
+ * and an array load: about what the equivalent hand-written switch costs, and allocation free.
+ * <p>
+ * Active sensor counts are grouped into ranges bounded by the counts the rules mention, so the
+ * table stays small however many sensors there are. A null status or sensor type has a cell of
+ * its own, which matches != conditions and no == condition.
+ * <p>
+ * Instances are immutable and may be shared between services.
+ */
+public final class CompiledRules {
+
+    //inputs a trigger's rules read, see usesInput
+    public static final int ARMING = 1;
+    public static final int ALARM = 2;
+    public static final int CAT = 4;
+    public static final int SENSOR_TYPE = 8;
+    public static final int ACTIVE_SENSORS = 16;
+
+    private static final Trigger[] TRIGGERS = Trigger.values();
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    //one more slot each for null
+    private static final int ARMING_SLOTS = ArmingStatus.values().length + 1;
+    private static final int ALARM_SLOTS = ALARM_STATUSES.length + 1;
+    private static final int SENSOR_TYPE_SLOTS = SensorType.values().length + 1;
+    private static final byte KEEP = -1;
+
+    private static volatile CompiledRules defaults;
+
+    private final String source;
+    private final int ruleCount;
+    //first count of each active sensor range, ascending and starting at 0
+    private final int[] activeRangeStarts;
+    private final int[] inputs;
+    //action per cell: an alarm status ordinal, or KEEP
+    private final byte[] table;
+
+    private CompiledRules(String source, List<Rule> rules) {
+        this.source = source;
+        this.ruleCount = rules.size();
+        //the outcome of a count condition can only change at its value and the count after it
+        TreeSet<Integer> starts = new TreeSet<>();
+        starts.add(0);
+        this.inputs = new int[TRIGGERS.length];
+        for (Rule rule : rules) {
+            for (Rule.Condition condition : rule.conditions) {
+                inputs[rule.trigger.ordinal()] |= condition.input.bit;
+                if (condition.input == Rule.Input.ACTIVE_SENSORS) {
+                    starts.add(condition.value);
+                    starts.add(condition.value + 1);
+                }
+            }
+        }
+        this.activeRangeStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+
+        this.table = new byte[TRIGGERS.length * ARMING_SLOTS * ALARM_SLOTS * 2 * SENSOR_TYPE_SLOTS * activeRangeStarts.length];
+        int[] facts = new int[Rule.Input.values().length];
+        int cell = 0;
+        for (Trigger trigger : TRIGGERS) {
+            for (int arming = 0; arming < ARMING_SLOTS; arming++) {
+                for (int alarm = 0; alarm < ALARM_SLOTS; alarm++) {
+                    for (int cat = 0; cat < 2; cat++) {
+                        for (int sensorType = 0; sensorType < SENSOR_TYPE_SLOTS; sensorType++) {
+                            for (int range = 0; range < activeRangeStarts.length; range++) {
+                                facts[Rule.Input.ARMING.ordinal()] = arming;
+                                facts[Rule.Input.ALARM.ordinal()] = alarm;
+                                facts[Rule.Input.CAT.ordinal()] = cat;
+                                facts[Rule.Input.SENSOR_TYPE.ordinal()] = sensorType;
+                                facts[Rule.Input.ACTIVE_SENSORS.ordinal()] = activeRangeStarts[range];
+                                table[cell++] = firstMatch(rules, trigger, facts);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static byte firstMatch(List<Rule> rules, Trigger trigger, int[] facts) {
+        for (Rule rule : rules) {
+            if (rule.trigger == trigger && rule.matches(facts)) {
+                return rule.action == null ? KEEP : (byte) rule.action.ordinal();
+            }
+        }
+        return KEEP;
+    }
+
+    /**
+     * @param source Name of the rules, for error messages
+     */
+    public static CompiledRules compile(Reader rules, String source) throws IOException {
+        return new CompiledRules(source, RuleParser.parse(rules, source));
+    }
+
+    public static CompiledRules compile(String rules, String source) throws IOException {
+        return compile(new StringReader(rules), source);
+    }
+
+    public static CompiledRules load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return compile(reader, file.toString());
+        }
+    }
+
+    /**
+     * @return the rules the system ships with, which implement the numbered alarm requirements
+     */
+    public static CompiledRules defaults() {
+        CompiledRules compiled = defaults;
+        if (compiled == null) {
+            try (InputStream in = CompiledRules.class.getResourceAsStream("default.rules")) {
+                if (in == null) {
+                    throw new IllegalStateException("default.rules is missing");
+                }
+                compiled = compile(new InputStreamReader(in, StandardCharsets.UTF_8), "default.rules");
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to load the default rules", e);
+            }
+            defaults = compiled;
+        }
+        return compiled;
+    }
+
+    /**
+     * @param input One of ARMING, ALARM, CAT, SENSOR_TYPE or ACTIVE_SENSORS
+     * @return whether any rule for the trigger tests the input; if not, callers may skip looking
+     * it up and pass null, false or 0
+     */
+    public boolean usesInput(Trigger trigger, int input) {
+        return (inputs[trigger.ordinal()] & input) != 0;
+    }
+
+    /**
+     * @return the alarm status to set, or null to leave the alarm alone
+     */
+    public AlarmStatus decide(Trigger trigger, ArmingStatus arming, AlarmStatus alarm, boolean cat,
+                              SensorType sensorType, int activeSensors) {
+        int cell = trigger.ordinal();
+        cell = cell * ARMING_SLOTS + (arming == null ? ARMING_SLOTS - 1 : arming.ordinal());
+        cell = cell * ALARM_SLOTS + (alarm == null ? ALARM_SLOTS - 1 : alarm.ordinal());
+        cell = cell * 2 + (cat ? 1 : 0);
+        cell = cell * SENSOR_TYPE_SLOTS + (sensorType == null ? SENSOR_TYPE_SLOTS - 1 : sensorType.ordinal());
+        cell = cell * activeRangeStarts.length + activeRange(activeSensors);
+        byte action = table[cell];
+        return action == KEEP ? null : ALARM_STATUSES[action];
+    }
+
+    /**
+     * @return the smallest active sensor count the rules treat like every larger count
+     */
+    public int getActiveSensorsLimit() {
+        return activeRangeStarts[activeRangeStarts.length - 1];
+    }
+
+    private int activeRange(int activeSensors) {
+        int range = 0;
+        while (range + 1 < activeRangeStarts.length && activeRangeStarts[range + 1] <= activeSensors) {
+            range++;
+        }
+        return range;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    @Override
+    public String toString() {
+        return source + " (" + ruleCount + " rules, " + table.length + " cells)";
+    }
+}
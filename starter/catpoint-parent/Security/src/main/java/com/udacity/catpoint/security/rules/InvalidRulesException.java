@@ -0,0 +1,12 @@
+package com.udacity.catpoint.security.rules;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a rules file cannot be parsed. The message names the file and line.
+ */
+public class InvalidRulesException extends IOException {
+    public InvalidRulesException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,101 @@
+package com.udacity.catpoint.security.rules;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+
+import java.util.List;
+
+/**
+ * One parsed rule: when its trigger fires and every condition holds, the alarm is set to its
+ * action, or left alone when the action is null. Rules are only matched one by one while
+ * compiling; the SecurityService only ever sees the {@link CompiledRules} table.
+ */
+class Rule {
+
+    /**
+     * The facts a condition can test.
+     */
+    enum Input {
+        ARMING("arming", CompiledRules.ARMING),
+        ALARM("alarm", CompiledRules.ALARM),
+        CAT("cat", CompiledRules.CAT),
+        SENSOR_TYPE("sensorType", CompiledRules.SENSOR_TYPE),
+        ACTIVE_SENSORS("activeSensors", CompiledRules.ACTIVE_SENSORS);
+
+        final String ruleName;
+        final int bit;
+
+        Input(String ruleName, int bit) {
+            this.ruleName = ruleName;
+            this.bit = bit;
+        }
+    }
+
+    enum Operator {
+        EQUAL("=="),
+        NOT_EQUAL("!="),
+        LESS("<"),
+        LESS_OR_EQUAL("<="),
+        GREATER(">"),
+        GREATER_OR_EQUAL(">=");
+
+        final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        boolean test(int actual, int expected) {
+            switch (this) {
+                case EQUAL:
+                    return actual == expected;
+                case NOT_EQUAL:
+                    return actual != expected;
+                case LESS:
+                    return actual < expected;
+                case LESS_OR_EQUAL:
+                    return actual <= expected;
+                case GREATER:
+                    return actual > expected;
+                default:
+                    return actual >= expected;
+            }
+        }
+    }
+
+    /**
+     * Compares one input, as an enum ordinal, 0 or 1 for cat, or a count, to a constant.
+     */
+    static class Condition {
+        final Input input;
+        final Operator operator;
+        final int value;
+
+        Condition(Input input, Operator operator, int value) {
+            this.input = input;
+            this.operator = operator;
+            this.value = value;
+        }
+    }
+
+    final Trigger trigger;
+    final List<Condition> conditions;
+    final AlarmStatus action;
+
+    Rule(Trigger trigger, List<Condition> conditions, AlarmStatus action) {
+        this.trigger = trigger;
+        this.conditions = conditions;
+        this.action = action;
+    }
+
+    /**
+     * @param facts Input values indexed by {@link Input} ordinal
+     */
+    boolean matches(int[] facts) {
+        for (Condition condition : conditions) {
+            if (!condition.operator.test(facts[condition.input.ordinal()], condition.value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
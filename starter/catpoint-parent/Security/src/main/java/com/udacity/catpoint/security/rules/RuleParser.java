@@ -0,0 +1,128 @@
+package com.udacity.catpoint.security.rules;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads rules files, one rule per line:
+ * <pre>
+ *      # comment
+ *      on [trigger] [if [condition] and [condition] ...] then [alarm status | keep]
+ *      on sensorActivated if arming != DISARMED and alarm == NO_ALARM then PENDING_ALARM
+ * </pre>
+ * A condition compares arming, alarm or sensorType to a constant with == or !=, cat to true or
+ * false, or activeSensors to a count with any of == != &lt; &lt;= &gt; &gt;=.
+ */
+final class RuleParser {
+
+    private static final Pattern RULE = Pattern.compile("on\\s+(\\w+)(?:\\s+if\\s+(.+?))?\\s+then\\s+(\\w+)");
+    private static final Pattern AND = Pattern.compile("\\s+and\\s+");
+    private static final Pattern CONDITION = Pattern.compile("(\\w+)\\s*(==|!=|<=|>=|<|>)\\s*(\\w+)");
+    private static final String KEEP = "keep";
+
+    private RuleParser() {
+    }
+
+    /**
+     * @param source Name of the file, for error messages
+     */
+    static List<Rule> parse(Reader reader, String source) throws IOException {
+        List<Rule> rules = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        int lineNumber = 0;
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            String text = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (text.isEmpty()) {
+                continue;
+            }
+            try {
+                rules.add(parseRule(text));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidRulesException(source + ":" + lineNumber + ": " + e.getMessage());
+            }
+        }
+        return rules;
+    }
+
+    private static Rule parseRule(String text) {
+        Matcher rule = RULE.matcher(text);
+        if (!rule.matches()) {
+            throw new IllegalArgumentException("expected on [trigger] [if [conditions]] then [alarm status|keep]");
+        }
+        Trigger trigger = trigger(rule.group(1));
+        List<Rule.Condition> conditions = new ArrayList<>();
+        if (rule.group(2) != null) {
+            for (String condition : AND.split(rule.group(2))) {
+                conditions.add(parseCondition(condition));
+            }
+        }
+        String action = rule.group(3);
+        return new Rule(trigger, conditions, action.equals(KEEP) ? null : AlarmStatus.valueOf(action));
+    }
+
+    private static Trigger trigger(String name) {
+        for (Trigger trigger : Trigger.values()) {
+            if (trigger.getRuleName().equals(name)) {
+                return trigger;
+            }
+        }
+        throw new IllegalArgumentException("unknown trigger " + name);
+    }
+
+    private static Rule.Condition parseCondition(String text) {
+        Matcher condition = CONDITION.matcher(text);
+        if (!condition.matches()) {
+            throw new IllegalArgumentException("expected [input] [operator] [value], not " + text);
+        }
+        Rule.Input input = input(condition.group(1));
+        Rule.Operator operator = operator(condition.group(2));
+        String value = condition.group(3);
+        if (input != Rule.Input.ACTIVE_SENSORS && operator != Rule.Operator.EQUAL && operator != Rule.Operator.NOT_EQUAL) {
+            throw new IllegalArgumentException(input.ruleName + " can only be compared with == or !=");
+        }
+        switch (input) {
+            case ARMING:
+                return new Rule.Condition(input, operator, ArmingStatus.valueOf(value).ordinal());
+            case ALARM:
+                return new Rule.Condition(input, operator, AlarmStatus.valueOf(value).ordinal());
+            case SENSOR_TYPE:
+                return new Rule.Condition(input, operator, SensorType.valueOf(value).ordinal());
+            case CAT:
+                if (!value.equals("true") && !value.equals("false")) {
+                    throw new IllegalArgumentException("cat is true or false, not " + value);
+                }
+                return new Rule.Condition(input, operator, value.equals("true") ? 1 : 0);
+            default:
+                return new Rule.Condition(input, operator, Integer.parseInt(value));
+        }
+    }
+
+    private static Rule.Input input(String name) {
+        for (Rule.Input input : Rule.Input.values()) {
+            if (input.ruleName.equals(name)) {
+                return input;
+            }
+        }
+        throw new IllegalArgumentException("unknown input " + name);
+    }
+
+    private static Rule.Operator operator(String symbol) {
+        for (Rule.Operator operator : Rule.Operator.values()) {
+            if (operator.symbol.equals(symbol)) {
+                return operator;
+            }
+        }
+        throw new IllegalArgumentException("unknown operator " + symbol);
+    }
+}
@@ -0,0 +1,25 @@
+package com.udacity.catpoint.security.rules;
+
+/**
+ * The moments at which the SecurityService asks the rules what the alarm should do.
+ */
+public enum Trigger {
+    SENSOR_ACTIVATED("sensorActivated"),
+    SENSOR_DEACTIVATED("sensorDeactivated"),
+    CAT_DETECTED("catDetected"),
+    CAT_CLEARED("catCleared"),
+    ARMING_CHANGED("armingChanged");
+
+    private final String ruleName;
+
+    Trigger(String ruleName) {
+        this.ruleName = ruleName;
+    }
+
+    /**
+     * @return the name rules files use for the trigger
+     */
+    public String getRuleName() {
+        return ruleName;
+    }
+}
@@ -0,0 +1,24 @@
+package com.udacity.catpoint.security.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for an alarm status change. The duration covers persisting the new
+ * status and notifying every listener.
+ */
+@Name("com.udacity.catpoint.AlarmStatus")
+@Label("Alarm Status Change")
+@Category({"Catpoint", "Security"})
+@Description("Alarm status set by the security service")
+class AlarmStatusEvent extends Event {
+
+    @Label("Previous Status")
+    String previousStatus;
+
+    @Label("Status")
+    String status;
+}
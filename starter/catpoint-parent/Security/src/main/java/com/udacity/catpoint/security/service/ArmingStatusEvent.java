@@ -0,0 +1,27 @@
+package com.udacity.catpoint.security.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for an arming status change. The duration includes resetting the sensors
+ * when the system is armed.
+ */
+@Name("com.udacity.catpoint.ArmingStatus")
+@Label("Arming Status Change")
+@Category({"Catpoint", "Security"})
+@Description("Arming status set by the user")
+class ArmingStatusEvent extends Event {
+
+    @Label("Previous Status")
+    String previousStatus;
+
+    @Label("Status")
+    String status;
+
+    @Label("Sensors Reset")
+    int sensorsReset;
+}
@@ -2,11 +2,12 @@ package com.udacity.catpoint.security.service;
 
 import com.udacity.catpoint.security.application.StatusListener;
 import com.udacity.catpoint.security.data.*;
-import com.udacity.catpoint.image.FakeImageService;
+import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.security.rules.AlarmRules;
+import com.udacity.catpoint.security.rules.CompiledRules;
+import com.udacity.catpoint.security.rules.Trigger;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Set;
 
 /**
@@ -15,17 +16,46 @@ import java.util.Set;
  * <p>
  * This is the class that should contain most of the business logic for our system, and it is the
  * class you will be writing unit tests for.
+ * <p>
+ * Alarm, arming and sensor changes are recorded as flight recorder events when a recording has
+ * them enabled; otherwise the events are never filled in or committed.
+ * <p>
+ * A sensor toggle must not allocate: listeners are kept in a plain array and every loop on the
+ * sensor event path is an indexed or enhanced for loop rather than a stream or lambda.
+ * <p>
+ * What the alarm does on each sensor change, camera image and arming change is decided by
+ * {@link AlarmRules}; the default rules implement the numbered requirements. Only the inputs the
+ * rules for a trigger actually test are looked up, so deciding costs what the hand-written checks did.
  */
 public class SecurityService {
 
-    private FakeImageService imageService;
+    private ImageService imageService;
     private SecurityRepository securityRepository;
-    private Set<StatusListener> statusListeners = new HashSet<>();
-    private boolean isCatDetected = false;
+    //volatile so a listener added from another thread is seen by the next event without a lock
+    private volatile StatusListener[] statusListeners = new StatusListener[0];
+    //volatile so it may be read while images are classified on other threads
+    private volatile boolean isCatDetected = false;
+    private AlarmRules alarmRules;
 
-    public SecurityService(SecurityRepository securityRepository, FakeImageService imageService) {
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService) {
+        this(securityRepository, imageService, AlarmRules.defaults());
+    }
+
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService, AlarmRules alarmRules) {
         this.securityRepository = securityRepository;
         this.imageService = imageService;
+        this.alarmRules = alarmRules;
+    }
+
+    public AlarmRules getAlarmRules() {
+        return alarmRules;
+    }
+
+    /**
+     * @return true if the last camera verdict applied was a cat
+     */
+    public boolean isCatDetected() {
+        return isCatDetected;
     }
 
     /**
@@ -33,27 +63,27 @@ public class SecurityService {
      * may update both the alarm status.
      * @param armingStatus
      */
-//    This method satisfy the 9th requirement
-//    9th: If the system is disarmed, set the status to no alarm.
-//    This method does not satisfy the 10th requirement
+//    This method satisfies the 10th requirement; the alarm rules decide the 9th and the 11th
 //    10th: If the system is armed, reset all sensors to inactive.
     public void setArmingStatus(ArmingStatus armingStatus) {
-        if (armingStatus == ArmingStatus.DISARMED) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
-        } else {
+        ArmingStatusEvent event = new ArmingStatusEvent();
+        if (event.isEnabled()) {
+            event.previousStatus = String.valueOf(securityRepository.getArmingStatus());
+            event.status = armingStatus.toString();
+            event.begin();
+        }
+        if (armingStatus != ArmingStatus.DISARMED) {
             // Deactivate all sensors if system is armed (home or away)
-            List<Sensor> sensors = new ArrayList<>(securityRepository.getSensors());
-            sensors.forEach(sensor -> {
+            Sensor[] sensors = securityRepository.getSensors().toArray(new Sensor[0]);
+            event.sensorsReset = sensors.length;
+            for (Sensor sensor : sensors) {
                 sensor.setActive(false);
                 securityRepository.updateSensor(sensor);
-            });
-
-            // If a cat is detected and system is armed home, set alarm to ALARM
-            if (isCatDetected && armingStatus == ArmingStatus.ARMED_HOME) {
-                setAlarmStatus(AlarmStatus.ALARM);
             }
         }
+        applyRules(Trigger.ARMING_CHANGED, armingStatus, null);
         securityRepository.setArmingStatus(armingStatus);
+        event.commit();
     }
 
     /**
@@ -61,35 +91,35 @@ public class SecurityService {
      * the camera currently shows a cat.
      * @param cat True if a cat is detected, otherwise false.
      */
-//    This method satisfies the 7th and the 11th requirement
+//    The alarm rules decide the 7th, 8th and 11th requirement
 //    7th: If the image service identifies an image containing a cat while the system is armed-home, put the system into alarm status.
-//    11th: If the system is armed-home while the camera shows a cat, set the alarm status to alarm.
-//    This method does not satisfy the 8th requirement
-//    If the image service identifies an image that does not contain a cat, change the status to no alarm as long as the sensors are not active.
-//
-    private void catDetected(Boolean cat) {
+//    8th: If the image service identifies an image that does not contain a cat, change the status to no alarm as long as the sensors are not active.
+    private void catDetected(boolean cat) {
         isCatDetected = cat;
-        statusListeners.forEach(listener -> listener.catDetected(isCatDetected));
+        for (StatusListener listener : statusListeners) {
+            listener.catDetected(isCatDetected);
+        }
 
-        if (isCatDetected) {
-            switch (securityRepository.getArmingStatus()){
-                case DISARMED, ARMED_AWAY -> {return;}
-                case ARMED_HOME -> setAlarmStatus(AlarmStatus.ALARM);
-            }
-        } else {
-            if (allSensorsInactive()) {
-                setAlarmStatus(AlarmStatus.NO_ALARM);
-            }
+        applyRules(isCatDetected ? Trigger.CAT_DETECTED : Trigger.CAT_CLEARED, null, null);
+        for (StatusListener sl : statusListeners) {
+            sl.catDetected(cat);
         }
-        statusListeners.forEach(sl -> sl.catDetected(cat));
     }
 
     /**
      * Register the StatusListener for alarm system updates from within the SecurityService.
      * @param statusListener
      */
-    public void addStatusListener(StatusListener statusListener) {
-        statusListeners.add(statusListener);
+    public synchronized void addStatusListener(StatusListener statusListener) {
+        for (StatusListener existing : statusListeners) {
+            if (existing.equals(statusListener)) {
+                return;
+            }
+        }
+        //copied on write: listeners are added a handful of times, but iterated on every event
+        StatusListener[] listeners = Arrays.copyOf(statusListeners, statusListeners.length + 1);
+        listeners[listeners.length - 1] = statusListener;
+        statusListeners = listeners;
     }
 //
 //    public void removeStatusListener(StatusListener statusListener) {
@@ -101,44 +131,50 @@ public class SecurityService {
      * @param status
      */
     public void setAlarmStatus(AlarmStatus status) {
+        AlarmStatusEvent event = new AlarmStatusEvent();
+        if (event.isEnabled()) {
+            event.previousStatus = String.valueOf(securityRepository.getAlarmStatus());
+            event.status = status.toString();
+            event.begin();
+        }
         securityRepository.setAlarmStatus(status);
-        statusListeners.forEach(sl -> sl.notify(status));
+        for (StatusListener sl : statusListeners) {
+            sl.notify(status);
+        }
+        event.commit();
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been activated.
+     * Asks the alarm rules what the trigger means for the alarm and applies the answer. Inputs
+     * the rules for the trigger don't test are not looked up.
+     * @param armingStatus The arming status to decide with, null for the current one
+     * @param sensorType The type of the sensor that changed, null when no sensor changed
      */
-//    This method satisfy the 1st and 2nd requirement:
-//    1st: If alarm is armed and a sensor becomes activated, put the system into pending alarm status.
-//    2nd: If alarm is armed and a sensor becomes activated and the system is already pending alarm, set the alarm status to alarm.
-
-    private void handleSensorActivated() {
-        if(securityRepository.getArmingStatus() == ArmingStatus.DISARMED) {
-            return; //no problem if the system is disarmed
+    private void applyRules(Trigger trigger, ArmingStatus armingStatus, SensorType sensorType) {
+        CompiledRules rules = alarmRules.current();
+        if (armingStatus == null && rules.usesInput(trigger, CompiledRules.ARMING)) {
+            armingStatus = securityRepository.getArmingStatus();
         }
-        switch(securityRepository.getAlarmStatus()) {
-            case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.ALARM);
+        AlarmStatus alarmStatus = rules.usesInput(trigger, CompiledRules.ALARM) ? securityRepository.getAlarmStatus() : null;
+        int activeSensors = rules.usesInput(trigger, CompiledRules.ACTIVE_SENSORS) ? countActiveSensors(rules.getActiveSensorsLimit()) : 0;
+        AlarmStatus decision = rules.decide(trigger, armingStatus, alarmStatus, isCatDetected, sensorType, activeSensors);
+        if (decision != null) {
+            setAlarmStatus(decision);
         }
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been deactivated
+     * Helper method to count the active sensors.
+     * @param limit Count at which to stop, since the rules can't tell larger counts apart
      */
-
-    private void handleSensorDeactivated() {
-        if (securityRepository.getAlarmStatus() == AlarmStatus.PENDING_ALARM) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+    private int countActiveSensors(int limit) {
+        int active = 0;
+        for (Sensor sensor : securityRepository.getSensors()) {
+            if (sensor.getActive() && ++active == limit) {
+                break;
+            }
         }
-    }
-
-    /**
-     * Helper method to check if all sensors are inactive.
-     * @return True if all sensors are inactive, false otherwise.
-     */
-    private boolean allSensorsInactive() {
-        return securityRepository.getSensors().stream()
-                .allMatch(sensor -> !sensor.getActive());
+        return active;
     }
 
 
@@ -147,15 +183,44 @@ public class SecurityService {
      * @param sensor
      * @param active
      */
-//    This method does not satisfy the 5th requirement:
+//    The alarm rules decide the 1st to 6th requirement, for example
+//    1st: If alarm is armed and a sensor becomes activated, put the system into pending alarm status.
 //    5th: If a sensor is activated while already active and the system is in pending state, change it to alarm state.
-    public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
-        if (active) {
-            handleSensorActivated();
-        } else {handleSensorDeactivated();}
+    public void changeSensorActivationStatus(Sensor sensor, boolean active) {
+        SensorActivationEvent event = new SensorActivationEvent();
+        event.begin();
+        applyRules(active ? Trigger.SENSOR_ACTIVATED : Trigger.SENSOR_DEACTIVATED, null, sensor.getSensorType());
 
         sensor.setActive(active);
         securityRepository.updateSensor(sensor);
+        event.end();
+        if (event.shouldCommit()) {
+            event.sensor = sensor.getName();
+            event.sensorType = String.valueOf(sensor.getSensorType());
+            event.active = active;
+            event.alarmStatus = String.valueOf(securityRepository.getAlarmStatus());
+            event.commit();
+        }
+    }
+
+    /**
+     * Marks a sensor offline when it has stopped reporting, or online again, and notifies the
+     * listeners. Liveness does not change the alarm: an offline sensor keeps its last state.
+     * @return false if the sensor is no longer part of the system
+     */
+    public boolean changeSensorLiveness(Sensor sensor, boolean online) {
+        if (!securityRepository.getSensors().contains(sensor)) {
+            return false;
+        }
+        if (sensor.isOffline() == !online) {
+            return true;
+        }
+        sensor.setOffline(!online);
+        securityRepository.updateSensor(sensor);
+        for (StatusListener sl : statusListeners) {
+            sl.sensorLivenessChanged(sensor, online);
+        }
+        return true;
     }
 
     /**
@@ -164,8 +229,23 @@ public class SecurityService {
      * @param currentCameraImage
      */
     public void processImage(BufferedImage currentCameraImage) {
-        isCatDetected = imageService.imageContainsCat(currentCameraImage, 50.0f);
-        catDetected(isCatDetected);
+        applyCatVerdict(classifyImage(currentCameraImage));
+    }
+
+    /**
+     * The first half of {@link #processImage}: asks the image service whether the image shows a
+     * cat without touching any state, so it may run on any thread while the service thread goes on
+     * with other work.
+     */
+    public boolean classifyImage(BufferedImage currentCameraImage) {
+        return imageService.imageContainsCat(currentCameraImage, 50.0f);
+    }
+
+    /**
+     * The second half of {@link #processImage}: acts on a verdict from {@link #classifyImage}.
+     */
+    public void applyCatVerdict(boolean cat) {
+        catDetected(cat);
     }
 
     public AlarmStatus getAlarmStatus() {return securityRepository.getAlarmStatus();}
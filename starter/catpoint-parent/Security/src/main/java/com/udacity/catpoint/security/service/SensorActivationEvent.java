@@ -0,0 +1,30 @@
+package com.udacity.catpoint.security.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a sensor activation change. The duration runs from the call until
+ * the resulting alarm decision has been made and the sensor persisted.
+ */
+@Name("com.udacity.catpoint.SensorActivation")
+@Label("Sensor Activation")
+@Category({"Catpoint", "Security"})
+@Description("Sensor activated or deactivated")
+class SensorActivationEvent extends Event {
+
+    @Label("Sensor")
+    String sensor;
+
+    @Label("Sensor Type")
+    String sensorType;
+
+    @Label("Active")
+    boolean active;
+
+    @Label("Alarm Status")
+    String alarmStatus;
+}
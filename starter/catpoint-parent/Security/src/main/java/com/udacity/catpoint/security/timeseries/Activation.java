@@ -0,0 +1,43 @@
+package com.udacity.catpoint.security.timeseries;
+
+import java.util.UUID;
+
+/**
+ * One recorded sensor activation or deactivation, as returned by {@link ActivationStore} range
+ * scans. The store itself keeps activations as encoded columns; these only exist for results.
+ */
+public class Activation {
+
+    private final UUID sensorId;
+    private final long time;
+    private final boolean active;
+
+    Activation(UUID sensorId, long time, boolean active) {
+        this.sensorId = sensorId;
+        this.time = time;
+        this.active = active;
+    }
+
+    public UUID getSensorId() {
+        return sensorId;
+    }
+
+    /**
+     * @return milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return true for an activation, false for a deactivation
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public String toString() {
+        return time + " " + sensorId + (active ? " active" : " inactive");
+    }
+}
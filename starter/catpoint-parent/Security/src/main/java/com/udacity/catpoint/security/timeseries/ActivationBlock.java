@@ -0,0 +1,319 @@
+package com.udacity.catpoint.security.timeseries;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Up to a block's worth of activations, as columns, and their encoding in a segment file.
+ * <pre>
+ *      int     magic
+ *      int     count
+ *      long    min time, long max time      so a query can skip the block without decoding it
+ *      int     body bytes
+ *      int     CRC32 of the body
+ *      body    varint dictionary size, then each sensor id in the block as two longs
+ *              first time as a long, then varint zigzag delta of the second, then varint zigzag
+ *                  delta-of-delta of each following time
+ *              varint dictionary index of each record's sensor
+ *              first state as a byte, varint run count, varint length of each run; runs alternate
+ * </pre>
+ * Activations arrive at a fairly steady pace, so most delta-of-deltas fit in one or two bytes,
+ * and a premises has few enough sensors that an index is a single byte.
+ * <p>
+ * Blocks written before the checksum was added have the version 1 magic and no CRC field, and
+ * are still read.
+ */
+final class ActivationBlock {
+
+    static final int MAGIC_V1 = 0x43505453;
+    static final int MAGIC = 0x43505432;
+    static final int HEADER_BYTES_V1 = 4 + 4 + 8 + 8 + 4;
+    static final int HEADER_BYTES = HEADER_BYTES_V1 + 4;
+    //header field offsets
+    static final int MIN_TIME = 8;
+    static final int MAX_TIME = 16;
+    static final int BODY_BYTES = 24;
+    static final int CHECKSUM = 28;
+    static final int MAX_RECORDS = 65536;
+
+    final long[] times = new long[MAX_RECORDS];
+    final long[] idHigh = new long[MAX_RECORDS];
+    final long[] idLow = new long[MAX_RECORDS];
+    final boolean[] states = new boolean[MAX_RECORDS];
+    int count;
+    long day;
+
+    boolean isFull() {
+        return count == MAX_RECORDS;
+    }
+
+    void add(long time, long high, long low, boolean active) {
+        times[count] = time;
+        idHigh[count] = high;
+        idLow[count] = low;
+        states[count] = active;
+        count++;
+    }
+
+    /**
+     * @return the header length of a block starting with the magic, -1 if it doesn't start a block
+     */
+    static int headerBytes(int magic) {
+        return magic == MAGIC ? HEADER_BYTES : magic == MAGIC_V1 ? HEADER_BYTES_V1 : -1;
+    }
+
+    /**
+     * @param start Position of the block's header
+     * @return whether the block's body matches its checksum; version 1 blocks have none and always do
+     */
+    static boolean checksumMatches(ByteBuffer blocks, int start, CRC32 crc) {
+        if (blocks.getInt(start) == MAGIC_V1) {
+            return true;
+        }
+        int bodyStart = start + HEADER_BYTES;
+        ByteBuffer body = blocks.duplicate();
+        body.limit(bodyStart + blocks.getInt(start + BODY_BYTES));
+        body.position(bodyStart);
+        crc.reset();
+        crc.update(body);
+        return (int) crc.getValue() == blocks.getInt(start + CHECKSUM);
+    }
+
+    /**
+     * Turns columns into the bytes of one block, reusing the encoder's buffers. Not thread-safe.
+     */
+    static final class Encoder {
+        private ByteBuffer buffer = ByteBuffer.allocate(0);
+        //open addressing from sensor id to dictionary index, -1 when empty
+        private int[] table = new int[0];
+        private final long[] dictHigh = new long[MAX_RECORDS];
+        private final long[] dictLow = new long[MAX_RECORDS];
+        private final int[] codes = new int[MAX_RECORDS];
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * @return the encoded block, from position 0 to its limit
+         */
+        ByteBuffer encode(ActivationBlock block) {
+            int count = block.count;
+            int dictSize = buildDictionary(block);
+            //worst case: every varint at its longest
+            int capacity = HEADER_BYTES + 5 + dictSize * 16 + 8 + count * 10 + count * 5 + 1 + 5 + count * 5;
+            if (buffer.capacity() < capacity) {
+                buffer = ByteBuffer.allocate(capacity);
+            }
+            ByteBuffer out = buffer;
+            out.clear();
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                min = Math.min(min, block.times[i]);
+                max = Math.max(max, block.times[i]);
+            }
+            out.putInt(MAGIC).putInt(count).putLong(min).putLong(max).putInt(0).putInt(0);
+
+            putVarint(out, dictSize);
+            for (int d = 0; d < dictSize; d++) {
+                out.putLong(dictHigh[d]).putLong(dictLow[d]);
+            }
+
+            out.putLong(block.times[0]);
+            long previousDelta = 0;
+            for (int i = 1; i < count; i++) {
+                long delta = block.times[i] - block.times[i - 1];
+                putVarlong(out, zigzag(delta - previousDelta));
+                previousDelta = delta;
+            }
+
+            for (int i = 0; i < count; i++) {
+                putVarint(out, codes[i]);
+            }
+
+            out.put((byte) (block.states[0] ? 1 : 0));
+            int runs = 1;
+            for (int i = 1; i < count; i++) {
+                if (block.states[i] != block.states[i - 1]) {
+                    runs++;
+                }
+            }
+            putVarint(out, runs);
+            int runStart = 0;
+            for (int i = 1; i <= count; i++) {
+                if (i == count || block.states[i] != block.states[i - 1]) {
+                    putVarint(out, i - runStart);
+                    runStart = i;
+                }
+            }
+
+            int bodyBytes = out.position() - HEADER_BYTES;
+            out.putInt(BODY_BYTES, bodyBytes);
+            crc.reset();
+            crc.update(out.array(), HEADER_BYTES, bodyBytes);
+            out.putInt(CHECKSUM, (int) crc.getValue());
+            out.flip();
+            return out;
+        }
+
+        private int buildDictionary(ActivationBlock block) {
+            int size = Integer.highestOneBit(Math.max(2, block.count) * 2 - 1) << 1;
+            if (table.length < size) {
+                table = new int[size];
+            }
+            int mask = size - 1;
+            Arrays.fill(table, 0, size, -1);
+            int dictSize = 0;
+            for (int i = 0; i < block.count; i++) {
+                long high = block.idHigh[i];
+                long low = block.idLow[i];
+                int slot = hash(high, low) & mask;
+                while (table[slot] != -1 && (dictHigh[table[slot]] != high || dictLow[table[slot]] != low)) {
+                    slot = (slot + 1) & mask;
+                }
+                if (table[slot] == -1) {
+                    dictHigh[dictSize] = high;
+                    dictLow[dictSize] = low;
+                    table[slot] = dictSize++;
+                }
+                codes[i] = table[slot];
+            }
+            return dictSize;
+        }
+    }
+
+    /**
+     * One block decoded back into columns, with sensors as dictionary indexes. Reused from block
+     * to block by one query task, so only the first count records and dictSize dictionary entries
+     * belong to the current block; decoding checks every code is below dictSize, and a block that
+     * fails to decode leaves both at 0 rather than the previous block's.
+     */
+    static final class Decoded {
+        final long[] times = new long[MAX_RECORDS];
+        final int[] codes = new int[MAX_RECORDS];
+        final boolean[] states = new boolean[MAX_RECORDS];
+        final long[] dictHigh = new long[MAX_RECORDS];
+        final long[] dictLow = new long[MAX_RECORDS];
+        int count;
+        int dictSize;
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * @param start Position of the block's header
+         * @return whether the block's body matches its checksum
+         */
+        boolean verify(ByteBuffer blocks, int start) {
+            return checksumMatches(blocks, start, crc);
+        }
+
+        /**
+         * Decodes the block whose header starts at the buffer's position.
+         * @throws IOException if the block is not a valid encoding
+         */
+        void decode(ByteBuffer in) throws IOException {
+            count = 0;
+            dictSize = 0;
+            int start = in.position();
+            int records = in.getInt(start + 4);
+            if (records < 1 || records > MAX_RECORDS) {
+                throw new IOException("Corrupt activation block: " + records + " records");
+            }
+            in.position(start + headerBytes(in.getInt(start)));
+
+            int entries = getVarint(in);
+            if (entries < 1 || entries > records) {
+                throw new IOException("Corrupt activation block: " + entries + " sensors for " + records + " records");
+            }
+            for (int d = 0; d < entries; d++) {
+                dictHigh[d] = in.getLong();
+                dictLow[d] = in.getLong();
+            }
+
+            long time = in.getLong();
+            times[0] = time;
+            long delta = 0;
+            for (int i = 1; i < records; i++) {
+                delta += unzigzag(getVarlong(in));
+                time += delta;
+                times[i] = time;
+            }
+
+            for (int i = 0; i < records; i++) {
+                int code = getVarint(in);
+                if (code < 0 || code >= entries) {
+                    throw new IOException("Corrupt activation block: sensor " + code + " of " + entries);
+                }
+                codes[i] = code;
+            }
+
+            boolean state = in.get() != 0;
+            int runs = getVarint(in);
+            int i = 0;
+            for (int r = 0; r < runs; r++) {
+                int length = getVarint(in);
+                if (length < 1 || length > records - i) {
+                    throw new IOException("Corrupt activation block: run of " + length + " at record " + i);
+                }
+                Arrays.fill(states, i, i + length, state);
+                i += length;
+                state = !state;
+            }
+            if (i != records) {
+                throw new IOException("Corrupt activation block: runs cover " + i + " of " + records + " records");
+            }
+            count = records;
+            dictSize = entries;
+        }
+    }
+
+    private static int hash(long high, long low) {
+        long h = (high ^ low) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static void putVarlong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    static long getVarlong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
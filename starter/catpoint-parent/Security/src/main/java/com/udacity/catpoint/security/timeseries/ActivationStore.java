@@ -0,0 +1,361 @@
+package com.udacity.catpoint.security.timeseries;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded columnar store of every sensor activation and deactivation, kept for months.
+ * <p>
+ * Each UTC day is a {@link Segment} file of {@link ActivationBlock}s, so old days can be archived
+ * or deleted as plain files. Recording fills the columns of the current block, which costs a few
+ * stores; full blocks, and every ten seconds the partial one, are encoded and appended by a
+ * background writer. A record is queryable once its block has been written. A block holds about
+ * 1.6 MB of columns, so at most {@value #MAX_PENDING_BLOCKS} wait for the writer: beyond that,
+ * recording waits for the disk to catch up rather than queueing blocks without limit.
+ * <p>
+ * Queries read segments through memory mappings and run as a fork-join task per segment, each
+ * skipping blocks outside the range by their headers, decoding the rest into reused columns and
+ * combining its result with its neighbours' in time order. Blocks that fail their checksum are
+ * logged and skipped.
+ */
+public class ActivationStore implements AutoCloseable {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long FLUSH_SECONDS = 10;
+    static final int MAX_PENDING_BLOCKS = 4;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final ThreadLocal<ActivationBlock.Decoded> DECODED = ThreadLocal.withInitial(ActivationBlock.Decoded::new);
+
+    private final Logger log = LoggerFactory.getLogger(ActivationStore.class);
+
+    private final Path directory;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "activation-store-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    //seals the partial block on a thread of its own, since sealing may wait for the writer
+    private final ScheduledExecutorService sealer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "activation-store-sealer");
+        t.setDaemon(true);
+        return t;
+    });
+    //blocks handed to the writer and not yet written
+    private final Semaphore pendingBlocks = new Semaphore(MAX_PENDING_BLOCKS);
+    //only used on the writer thread
+    private final ActivationBlock.Encoder encoder = new ActivationBlock.Encoder();
+    private final ConcurrentLinkedQueue<ActivationBlock> spareBlocks = new ConcurrentLinkedQueue<>();
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    private ActivationBlock current = new ActivationBlock();
+
+    public ActivationStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    long day = LocalDate.parse(name.substring(0, name.length() - SEGMENT_SUFFIX.length())).toEpochDay();
+                    segments.put(day, Segment.open(directory, day));
+                } catch (DateTimeParseException e) {
+                    log.warn("Skipping {}, not a segment name", file);
+                }
+            }
+        }
+        sealer.scheduleWithFixedDelay(this::sealCurrent, FLUSH_SECONDS, FLUSH_SECONDS, TimeUnit.SECONDS);
+        log.info("Activation store in {}: {} days on disk", directory, segments.size());
+    }
+
+    /**
+     * @param time Milliseconds since the epoch
+     */
+    public synchronized void record(UUID sensorId, long time, boolean active) {
+        long day = Math.floorDiv(time, DAY_MILLIS);
+        if (current.count > 0 && (current.day != day || current.isFull())) {
+            seal();
+        }
+        if (current.count == 0) {
+            current.day = day;
+        }
+        current.add(time, sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits(), active);
+    }
+
+    private synchronized void sealCurrent() {
+        seal();
+    }
+
+    /**
+     * Hands the current block to the writer, first waiting for it if it already has
+     * MAX_PENDING_BLOCKS to write. Called with the lock held, so blocks reach the writer in the
+     * order they were filled.
+     */
+    private void seal() {
+        if (current.count == 0) {
+            return;
+        }
+        pendingBlocks.acquireUninterruptibly();
+        ActivationBlock sealed = current;
+        ActivationBlock spare = spareBlocks.poll();
+        current = spare != null ? spare : new ActivationBlock();
+        writer.execute(() -> write(sealed));
+    }
+
+    private void write(ActivationBlock block) {
+        try {
+            Segment segment = segments.get(block.day);
+            if (segment == null) {
+                segment = Segment.open(directory, block.day);
+                segments.put(block.day, segment);
+            }
+            segment.append(encoder.encode(block));
+        } catch (IOException e) {
+            log.error("Unable to store {} activations", block.count, e);
+        } finally {
+            block.count = 0;
+            spareBlocks.offer(block);
+            pendingBlocks.release();
+        }
+    }
+
+    /**
+     * Writes everything recorded so far and waits for it, so it shows up in queries.
+     */
+    public void flush() throws IOException {
+        Future<?> written;
+        synchronized (this) {
+            seal();
+            written = writer.submit(() -> { });
+        }
+        try {
+            written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while flushing activations");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * @return bytes on disk across all segments
+     */
+    public long getSize() {
+        long size = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @param from Start of the range in epoch milliseconds, inclusive
+     * @param to End of the range in epoch milliseconds, exclusive
+     * @return every activation in the range, oldest first
+     */
+    public List<Activation> between(long from, long to) throws IOException {
+        return query(from, to, new SegmentQuery<List<Activation>>() {
+            @Override
+            public List<Activation> scan(Segment segment) throws IOException {
+                List<Activation> found = new ArrayList<>();
+                forEachBlock(segment, from, to, decoded -> {
+                    UUID[] ids = new UUID[decoded.dictSize];
+                    for (int i = 0; i < decoded.count; i++) {
+                        long time = decoded.times[i];
+                        if (time >= from && time < to) {
+                            int code = decoded.codes[i];
+                            if (ids[code] == null) {
+                                ids[code] = new UUID(decoded.dictHigh[code], decoded.dictLow[code]);
+                            }
+                            found.add(new Activation(ids[code], time, decoded.states[i]));
+                        }
+                    }
+                });
+                return found;
+            }
+
+            @Override
+            public List<Activation> combine(List<Activation> earlier, List<Activation> later) {
+                earlier.addAll(later);
+                return earlier;
+            }
+        }, new ArrayList<>());
+    }
+
+    /**
+     * @param from Start of the range in epoch milliseconds, inclusive
+     * @param to End of the range in epoch milliseconds, exclusive
+     * @return what each sensor that changed in the range did, by sensor id
+     */
+    public Map<UUID, SensorActivity> perSensor(long from, long to) throws IOException {
+        return query(from, to, new SegmentQuery<Map<UUID, SensorActivity>>() {
+            @Override
+            public Map<UUID, SensorActivity> scan(Segment segment) throws IOException {
+                Map<UUID, SensorActivity> activity = new HashMap<>();
+                forEachBlock(segment, from, to, decoded -> {
+                    SensorActivity[] byCode = new SensorActivity[decoded.dictSize];
+                    for (int i = 0; i < decoded.count; i++) {
+                        long time = decoded.times[i];
+                        if (time >= from && time < to) {
+                            int code = decoded.codes[i];
+                            if (byCode[code] == null) {
+                                byCode[code] = activity.computeIfAbsent(
+                                        new UUID(decoded.dictHigh[code], decoded.dictLow[code]), SensorActivity::new);
+                            }
+                            byCode[code].add(time, decoded.states[i]);
+                        }
+                    }
+                });
+                return activity;
+            }
+
+            @Override
+            public Map<UUID, SensorActivity> combine(Map<UUID, SensorActivity> earlier, Map<UUID, SensorActivity> later) {
+                for (SensorActivity activity : later.values()) {
+                    SensorActivity before = earlier.putIfAbsent(activity.getSensorId(), activity);
+                    if (before != null) {
+                        before.merge(activity);
+                    }
+                }
+                return earlier;
+            }
+        }, Collections.emptyMap());
+    }
+
+    private <T> T query(long from, long to, SegmentQuery<T> query, T empty) throws IOException {
+        if (from >= to) {
+            return empty;
+        }
+        List<Segment> covered = new ArrayList<>(segments.subMap(
+                Math.floorDiv(from, DAY_MILLIS), true, Math.floorDiv(to - 1, DAY_MILLIS), true).values());
+        if (covered.isEmpty()) {
+            return empty;
+        }
+        try {
+            return pool.invoke(new SegmentTask<>(covered, 0, covered.size(), query));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Decodes each block of the segment that may hold records in the range.
+     */
+    private void forEachBlock(Segment segment, long from, long to, BlockVisitor visitor) throws IOException {
+        ByteBuffer blocks = segment.blocks();
+        ActivationBlock.Decoded decoded = DECODED.get();
+        int start = 0;
+        while (start < blocks.limit()) {
+            long min = blocks.getLong(start + ActivationBlock.MIN_TIME);
+            long max = blocks.getLong(start + ActivationBlock.MAX_TIME);
+            int end = start + ActivationBlock.headerBytes(blocks.getInt(start)) + blocks.getInt(start + ActivationBlock.BODY_BYTES);
+            if (max >= from && min < to) {
+                if (decoded.verify(blocks, start)) {
+                    blocks.position(start);
+                    decoded.decode(blocks);
+                    visitor.visit(decoded);
+                } else {
+                    log.error("Skipping the activation block at {} of {}, it fails its checksum", start, segment.file);
+                }
+            }
+            start = end;
+        }
+    }
+
+    @Override
+    public void close() {
+        sealer.shutdownNow();
+        synchronized (this) {
+            seal();
+        }
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Activation store writer did not finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Segment segment : segments.values()) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.warn("Unable to close {}", segment.file, e);
+            }
+        }
+    }
+
+    private interface BlockVisitor {
+        void visit(ActivationBlock.Decoded decoded);
+    }
+
+    /**
+     * A query as a scan of one segment and a way to combine the results of consecutive segments.
+     */
+    private interface SegmentQuery<T> {
+        T scan(Segment segment) throws IOException;
+
+        T combine(T earlier, T later);
+    }
+
+    /**
+     * Splits the segments in halves until each task has one, scanning the earlier half on a
+     * forked task while this one scans the later half.
+     */
+    private static final class SegmentTask<T> extends RecursiveTask<T> {
+        private final List<Segment> segments;
+        private final int from;
+        private final int to;
+        private final SegmentQuery<T> query;
+
+        SegmentTask(List<Segment> segments, int from, int to, SegmentQuery<T> query) {
+            this.segments = segments;
+            this.from = from;
+            this.to = to;
+            this.query = query;
+        }
+
+        @Override
+        protected T compute() {
+            if (to - from == 1) {
+                try {
+                    return query.scan(segments.get(from));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int middle = (from + to) >>> 1;
+            SegmentTask<T> earlier = new SegmentTask<>(segments, from, middle, query);
+            earlier.fork();
+            T later = new SegmentTask<>(segments, middle, to, query).compute();
+            return query.combine(earlier.join(), later);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.udacity.catpoint.security.timeseries;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * SecurityRepository decorator that archives every sensor activation and deactivation the
+ * SecurityService writes in an {@link ActivationStore}. Only actual changes are archived, the
+ * same way {@link com.udacity.catpoint.security.history.RecordingSecurityRepository} records them.
+ * <p>
+ * Like the service, it is meant to be called from one thread at a time.
+ */
+public class ArchivingSecurityRepository implements SecurityRepository {
+
+    private final SecurityRepository delegate;
+    private final ActivationStore store;
+    //the last archived state of each sensor, since sensors are updated after they have changed
+    private final Map<UUID, Boolean> lastActive = new HashMap<>();
+
+    public ArchivingSecurityRepository(SecurityRepository delegate, ActivationStore store) {
+        this.delegate = delegate;
+        this.store = store;
+        for (Sensor sensor : delegate.getSensors()) {
+            lastActive.put(sensor.getSensorId(), sensor.getActive());
+        }
+    }
+
+    public ActivationStore getStore() {
+        return store;
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        delegate.addSensor(sensor);
+        lastActive.put(sensor.getSensorId(), sensor.getActive());
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        delegate.removeSensor(sensor);
+        lastActive.remove(sensor.getSensorId());
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        delegate.updateSensor(sensor);
+        boolean active = sensor.getActive();
+        Boolean previous = lastActive.put(sensor.getSensorId(), active);
+        if (previous == null || previous != active) {
+            store.record(sensor.getSensorId(), System.currentTimeMillis(), active);
+        }
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        delegate.setAlarmStatus(alarmStatus);
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        delegate.setArmingStatus(armingStatus);
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return delegate.getSensors();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return delegate.getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return delegate.getArmingStatus();
+    }
+}
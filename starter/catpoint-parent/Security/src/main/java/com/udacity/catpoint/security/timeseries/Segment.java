@@ -0,0 +1,133 @@
+package com.udacity.catpoint.security.timeseries;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.zip.CRC32;
+
+/**
+ * The activations of one UTC day: a file of {@link ActivationBlock}s, appended to by the store's
+ * writer and read through a memory mapping. Only whole blocks are ever visible to readers: the
+ * committed length is raised after a block has been written, and a block torn by a crash is cut
+ * off when the segment is opened again. Opening checks the checksum of every block: a last block
+ * that fails it was torn and is cut off; an earlier one was damaged later, so it is kept for the
+ * blocks after it and queries skip it.
+ */
+final class Segment {
+
+    private static final Logger log = LoggerFactory.getLogger(Segment.class);
+
+    final long day;
+    final Path file;
+    private FileChannel channel;
+    private volatile long committed;
+    private volatile MappedByteBuffer mapped;
+
+    private Segment(long day, Path file, FileChannel channel, long committed) {
+        this.day = day;
+        this.file = file;
+        this.channel = channel;
+        this.committed = committed;
+    }
+
+    static String fileName(long day) {
+        return LocalDate.ofEpochDay(day) + ".seg";
+    }
+
+    /**
+     * Opens or creates the segment of a day, checking the blocks already in it.
+     */
+    static Segment open(Path directory, long day) throws IOException {
+        Path file = directory.resolve(fileName(day));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer block = ByteBuffer.allocate(ActivationBlock.HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        while (position + ActivationBlock.HEADER_BYTES_V1 <= size) {
+            block.clear().limit(ActivationBlock.HEADER_BYTES_V1);
+            readFully(channel, block, position);
+            int headerBytes = ActivationBlock.headerBytes(block.getInt(0));
+            int bodyBytes = block.getInt(ActivationBlock.BODY_BYTES);
+            long end = position + headerBytes + bodyBytes;
+            if (headerBytes < 0 || bodyBytes < 0 || end > size) {
+                break;
+            }
+            if (block.capacity() < end - position) {
+                block = ByteBuffer.allocate((int) (end - position));
+            }
+            block.clear().limit((int) (end - position));
+            readFully(channel, block, position);
+            if (!ActivationBlock.checksumMatches(block, 0, crc)) {
+                if (end == size) {
+                    break;
+                }
+                log.error("Activation block at {} of {} fails its checksum, queries will skip it", position, file);
+            }
+            position = end;
+        }
+        if (position < size) {
+            log.warn("Cutting {} bytes of a torn block off {}", size - position, file);
+            channel.truncate(position);
+        }
+        return new Segment(day, file, channel, position);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of segment");
+            }
+        }
+    }
+
+    /**
+     * Appends a block. Only called from the store's writer.
+     */
+    void append(ByteBuffer block) throws IOException {
+        long position = committed;
+        while (block.hasRemaining()) {
+            position += channel.write(block, position);
+        }
+        committed = position;
+    }
+
+    long size() {
+        return committed;
+    }
+
+    /**
+     * @return the committed blocks, as a buffer of their own positioned at the first
+     */
+    ByteBuffer blocks() throws IOException {
+        long size = committed;
+        MappedByteBuffer current = mapped;
+        if (current == null || current.capacity() < size) {
+            synchronized (this) {
+                current = mapped;
+                if (current == null || current.capacity() < size) {
+                    if (size > Integer.MAX_VALUE) {
+                        throw new IOException("Segment too large to map: " + file);
+                    }
+                    current = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    mapped = current;
+                }
+            }
+        }
+        ByteBuffer view = current.duplicate();
+        view.limit((int) size);
+        return view;
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,94 @@
+package com.udacity.catpoint.security.timeseries;
+
+import java.util.UUID;
+
+/**
+ * What one sensor did in a time range, as aggregated by {@link ActivationStore#perSensor(long, long)}.
+ * Active time is only counted between changes inside the range: the state the sensor was in
+ * before its first change in the range is not known.
+ */
+public class SensorActivity {
+
+    private final UUID sensorId;
+    private long activations;
+    private long deactivations;
+    private long activeMillis;
+    private long firstTime = Long.MIN_VALUE;
+    private long lastTime;
+    private boolean lastActive;
+
+    SensorActivity(UUID sensorId) {
+        this.sensorId = sensorId;
+    }
+
+    void add(long time, boolean active) {
+        if (firstTime == Long.MIN_VALUE) {
+            firstTime = time;
+        } else if (lastActive) {
+            activeMillis += time - lastTime;
+        }
+        if (active) {
+            activations++;
+        } else {
+            deactivations++;
+        }
+        lastTime = time;
+        lastActive = active;
+    }
+
+    /**
+     * Adds the activity of the same sensor in a later part of the range.
+     */
+    void merge(SensorActivity later) {
+        if (later.firstTime == Long.MIN_VALUE) {
+            return;
+        }
+        if (firstTime == Long.MIN_VALUE) {
+            firstTime = later.firstTime;
+        } else if (lastActive) {
+            activeMillis += later.firstTime - lastTime;
+        }
+        activations += later.activations;
+        deactivations += later.deactivations;
+        activeMillis += later.activeMillis;
+        lastTime = later.lastTime;
+        lastActive = later.lastActive;
+    }
+
+    public UUID getSensorId() {
+        return sensorId;
+    }
+
+    public long getActivations() {
+        return activations;
+    }
+
+    public long getDeactivations() {
+        return deactivations;
+    }
+
+    public long getActiveMillis() {
+        return activeMillis;
+    }
+
+    /**
+     * @return time of the sensor's first change in the range, in milliseconds since the epoch
+     */
+    public long getFirstTime() {
+        return firstTime;
+    }
+
+    /**
+     * @return time of the sensor's last change in the range, in milliseconds since the epoch
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * @return the sensor's state after its last change in the range
+     */
+    public boolean isLastActive() {
+        return lastActive;
+    }
+}
@@ -4,10 +4,24 @@ module com.udacity.catpoint.security {
     requires com.google.common;
     requires com.google.gson;
     requires java.prefs;
+    requires java.management;
+    requires jdk.jfr;
+    requires jdk.httpserver;
+    requires org.slf4j;
     requires com.udacity.catpoint.image;
 
     exports com.udacity.catpoint.security.service;
     exports com.udacity.catpoint.security.data;
     exports com.udacity.catpoint.security.application;
+    exports com.udacity.catpoint.security.metrics;
+    exports com.udacity.catpoint.security.ingest;
+    exports com.udacity.catpoint.security.replication;
+    exports com.udacity.catpoint.security.cluster;
+    exports com.udacity.catpoint.security.history;
+    exports com.udacity.catpoint.security.rules;
+    exports com.udacity.catpoint.security.liveness;
+    exports com.udacity.catpoint.security.activity;
+    exports com.udacity.catpoint.security.timeseries;
     opens com.udacity.catpoint.security.data to com.google.gson;
+    opens com.udacity.catpoint.security.api to com.google.gson;
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+package com.udacity.catpoint.security.activity;
+
+import com.udacity.catpoint.image.FakeImageService;
+import com.udacity.catpoint.security.application.ServiceDispatcher;
+import com.udacity.catpoint.security.data.InMemorySecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ActivityAggregatorTest {
+
+    private SecurityService securityService;
+    private ActivityAggregator aggregator;
+    //taken just after the aggregator was created, so second n of a test falls in bucket n
+    private long start;
+
+    @BeforeEach
+    void init() {
+        securityService = new SecurityService(new InMemorySecurityRepository(), new FakeImageService());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        aggregator.close();
+    }
+
+    private void aggregator(long holdMillis) {
+        aggregator = new ActivityAggregator(securityService, new ServiceDispatcher(), holdMillis);
+        start = System.nanoTime();
+    }
+
+    private long at(double seconds) {
+        return start + (long) (seconds * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private Sensor sensor(String name, SensorType type) {
+        Sensor sensor = new Sensor(name, type);
+        securityService.addSensor(sensor);
+        return sensor;
+    }
+
+    /**
+     * Activates and then deactivates the sensor at each of the given seconds.
+     */
+    private void toggle(Sensor sensor, double... seconds) {
+        for (double second : seconds) {
+            aggregator.report(sensor, true, at(second));
+            aggregator.report(sensor, false, at(second + 0.5));
+        }
+    }
+
+    @Test
+    @DisplayName("Sliding windows count the activations of the last seconds, up to a minute per sensor")
+    void getActivations_sensor_slidingWindow() {
+        aggregator(0);
+        Sensor door = sensor("Door", SensorType.DOOR);
+        toggle(door, 0, 1, 2, 10);
+        //repeating the state the sensor already has is not an activation
+        aggregator.report(door, false, at(10.7));
+
+        assertEquals(1, aggregator.getActivations(door, 5000, at(10)));
+        assertEquals(2, aggregator.getActivations(door, 10_000, at(11)));
+        assertEquals(4, aggregator.getActivations(door, 60_000, at(10)));
+        assertEquals(1, aggregator.getActivations(door, 60_000, at(62)));
+        assertEquals(0, aggregator.getActivations(door, 60_000, at(75)));
+        assertEquals(0, aggregator.getActivations(sensor("Window", SensorType.WINDOW), 60_000, at(10)));
+    }
+
+    @Test
+    @DisplayName("Type windows add up every sensor of the type and reach back an hour")
+    void getActivations_type_slidingWindow() {
+        aggregator(0);
+        Sensor door = sensor("Door", SensorType.DOOR);
+        Sensor backDoor = sensor("Back door", SensorType.DOOR);
+        Sensor window = sensor("Window", SensorType.WINDOW);
+        toggle(door, 0, 100);
+        toggle(backDoor, 100, 200);
+        toggle(window, 200);
+
+        assertEquals(4, aggregator.getActivations(SensorType.DOOR, TimeUnit.HOURS.toMillis(1), at(200)));
+        assertEquals(2, aggregator.getActivations(SensorType.DOOR, 10_000, at(100)));
+        assertEquals(1, aggregator.getActivations(SensorType.WINDOW, 1000, at(200)));
+        assertEquals(0, aggregator.getActivations(SensorType.DOOR, TimeUnit.HOURS.toMillis(1), at(5000)));
+    }
+
+    @Test
+    @DisplayName("Tumbling windows are aligned to the start and leave out the window in progress")
+    void getWindowCounts_type_completedWindowsOldestFirst() {
+        aggregator(0);
+        Sensor door = sensor("Door", SensorType.DOOR);
+        toggle(door, 1, 5, 12, 25, 31);
+
+        assertArrayEquals(new int[]{2, 1, 1}, aggregator.getWindowCounts(SensorType.DOOR, 10_000, 3, at(31)));
+        assertArrayEquals(new int[]{0, 0, 2, 1, 1}, aggregator.getWindowCounts(SensorType.DOOR, 10_000, 5, at(39)));
+        assertArrayEquals(new int[]{1, 1, 1}, aggregator.getWindowCounts(SensorType.DOOR, 10_000, 3, at(40)));
+        assertArrayEquals(new int[]{0, 0}, aggregator.getWindowCounts(SensorType.MOTION, 10_000, 2, at(40)));
+    }
+
+    @Test
+    @DisplayName("A motion sensor is only deactivated once it has been quiet for the hold time")
+    void report_motionRetriggers_heldUntilQuiet() {
+        aggregator(5000);
+        Sensor motion = sensor("Hall", SensorType.MOTION);
+
+        assertTrue(aggregator.report(motion, true, at(0)));
+        assertFalse(aggregator.report(motion, false, at(1)));
+        assertTrue(motion.getActive());
+        //a retrigger cancels the hold taken at 1 s
+        assertFalse(aggregator.report(motion, true, at(2)));
+        assertFalse(aggregator.report(motion, false, at(3)));
+
+        aggregator.flush(at(6.5));
+        assertTrue(motion.getActive(), "the cancelled hold must not deactivate");
+        aggregator.flush(at(7.9));
+        assertTrue(motion.getActive());
+        aggregator.flush(at(8));
+        assertFalse(motion.getActive());
+
+        assertEquals(4, aggregator.getReceived());
+        assertEquals(2, aggregator.getForwarded());
+        assertEquals(2, aggregator.getActivations(motion, 60_000, at(8)));
+    }
+
+    @Test
+    @DisplayName("Other sensor types, and motion without a hold time, pass every change straight through")
+    void report_noHold_passedThrough() {
+        aggregator(5000);
+        Sensor door = sensor("Door", SensorType.DOOR);
+        assertTrue(aggregator.report(door, true, at(0)));
+        assertTrue(aggregator.report(door, false, at(0.1)));
+        assertFalse(door.getActive());
+        aggregator.close();
+
+        aggregator(0);
+        Sensor motion = sensor("Hall", SensorType.MOTION);
+        assertTrue(aggregator.report(motion, true, at(0)));
+        assertTrue(aggregator.report(motion, false, at(0.1)));
+        assertFalse(motion.getActive());
+        assertEquals(0, aggregator.getAbsorbed());
+    }
+
+    @Test
+    @DisplayName("A held sensor that was removed from the system is not deactivated")
+    void flush_removedSensor_dropped() {
+        aggregator(1000);
+        Sensor motion = sensor("Hall", SensorType.MOTION);
+        aggregator.report(motion, true, at(0));
+        aggregator.report(motion, false, at(0.5));
+        securityService.removeSensor(motion);
+
+        aggregator.flush(at(2));
+
+        assertTrue(motion.getActive());
+        assertEquals(1, aggregator.getForwarded());
+    }
+}
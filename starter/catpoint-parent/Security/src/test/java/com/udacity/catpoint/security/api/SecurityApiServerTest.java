@@ -0,0 +1,233 @@
+package com.udacity.catpoint.security.api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.udacity.catpoint.security.application.ServiceDispatcher;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.history.AlarmHistory;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecurityApiServerTest {
+
+    private final Gson gson = new Gson();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final InMemorySecurityRepository repository = new InMemorySecurityRepository();
+    private SecurityService securityService;
+    private AlarmHistory history;
+    private SecurityApiServer server;
+    private Sensor door;
+
+    @BeforeEach
+    void start() throws IOException {
+        securityService = new SecurityService(repository, (image, confidence) -> image.getRGB(0, 0) == 0xFFFFFFFF);
+        door = new Sensor("Door", SensorType.DOOR);
+        securityService.addSensor(door);
+        history = new AlarmHistory(64, null);
+        server = new SecurityApiServer(securityService, new ServiceDispatcher(), history, 0, 2);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        server.close();
+        history.close();
+    }
+
+    private HttpResponse<String> request(String method, String path, byte[] body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> request(String method, String path, String json) throws IOException, InterruptedException {
+        return request(method, path, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return request("GET", path, (byte[]) null);
+    }
+
+    private JsonObject json(HttpResponse<String> response) {
+        return gson.fromJson(response.body(), JsonObject.class);
+    }
+
+    private void assertStatus(int status, HttpResponse<String> response) {
+        assertEquals(status, response.statusCode(), response.body());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+    }
+
+    private void assertMethodNotAllowed(String method, String path, String allowed) throws IOException, InterruptedException {
+        HttpResponse<String> response = request(method, path, "{}");
+        assertStatus(405, response);
+        assertEquals(allowed, response.headers().firstValue("Allow").orElse(null), method + " " + path);
+    }
+
+    /**
+     * Sends only the headers of a request announcing a body of the given length.
+     * @return the status code of the response
+     */
+    private int statusForAnnouncedLength(String method, String path, long length) throws IOException {
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write((method + " " + path + " HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            String statusLine = new String(in.readNBytes("HTTP/1.1 200".length()), StandardCharsets.US_ASCII);
+            return Integer.parseInt(statusLine.substring("HTTP/1.1 ".length()));
+        }
+    }
+
+    private static byte[] png(int rgb) throws IOException {
+        BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, rgb);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", encoded);
+        return encoded.toByteArray();
+    }
+
+    @Test
+    @DisplayName("GET /api/state answers the alarm and arming status and the sensor count, other methods 405")
+    void state_get_statusAndCount() throws Exception {
+        HttpResponse<String> response = get("/api/state");
+
+        assertStatus(200, response);
+        JsonObject state = json(response);
+        assertEquals("NO_ALARM", state.get("alarmStatus").getAsString());
+        assertEquals("DISARMED", state.get("armingStatus").getAsString());
+        assertEquals(1, state.get("sensors").getAsInt());
+        assertMethodNotAllowed("POST", "/api/state", "GET");
+    }
+
+    @Test
+    @DisplayName("GET /api/sensors lists every sensor, other methods 405")
+    void sensors_get_everySensor() throws Exception {
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        window.setActive(true);
+        securityService.addSensor(window);
+
+        HttpResponse<String> response = get("/api/sensors");
+
+        assertStatus(200, response);
+        JsonArray sensors = gson.fromJson(response.body(), JsonArray.class);
+        assertEquals(2, sensors.size());
+        JsonObject first = sensors.get(0).getAsJsonObject();
+        assertEquals(door.getSensorId().toString(), first.get("id").getAsString());
+        assertEquals("Door", first.get("name").getAsString());
+        assertEquals("DOOR", first.get("type").getAsString());
+        assertFalse(first.get("active").getAsBoolean());
+        assertTrue(sensors.get(1).getAsJsonObject().get("active").getAsBoolean());
+        assertMethodNotAllowed("POST", "/api/sensors", "GET");
+    }
+
+    @Test
+    @DisplayName("PUT /api/sensors/[id] changes activation, unknown sensors are 404 and bad requests 400")
+    void sensors_put_changesActivation() throws Exception {
+        HttpResponse<String> response = request("PUT", "/api/sensors/" + door.getSensorId(), "{\"active\": true}");
+
+        assertStatus(200, response);
+        assertTrue(json(response).get("active").getAsBoolean());
+        assertTrue(door.getActive());
+
+        assertStatus(404, request("PUT", "/api/sensors/" + UUID.randomUUID(), "{\"active\": true}"));
+        assertStatus(400, request("PUT", "/api/sensors/not-a-sensor-id", "{\"active\": true}"));
+        assertStatus(400, request("PUT", "/api/sensors/" + door.getSensorId(), "{}"));
+        assertStatus(400, request("PUT", "/api/sensors/" + door.getSensorId(), "{\"active\": "));
+        assertMethodNotAllowed("GET", "/api/sensors/" + door.getSensorId(), "PUT");
+        assertTrue(door.getActive());
+    }
+
+    @Test
+    @DisplayName("PUT /api/arming changes the arming status, bad JSON or statuses are 400 and big bodies 413")
+    void arming_put_changesArmingStatus() throws Exception {
+        HttpResponse<String> response = request("PUT", "/api/arming", "{\"armingStatus\": \"ARMED_AWAY\"}");
+
+        assertStatus(200, response);
+        assertEquals("ARMED_AWAY", json(response).get("armingStatus").getAsString());
+        assertEquals(ArmingStatus.ARMED_AWAY, securityService.getArmingStatus());
+
+        assertStatus(400, request("PUT", "/api/arming", "{\"armingStatus\": \"ON\"}"));
+        assertStatus(400, request("PUT", "/api/arming", "{\"armingStatus\": "));
+        assertStatus(400, request("PUT", "/api/arming", "[1, 2]"));
+        assertStatus(400, request("PUT", "/api/arming", "{}"));
+        assertStatus(400, request("PUT", "/api/arming", ""));
+        assertEquals(413, statusForAnnouncedLength("PUT", "/api/arming", 64 * 1024 + 1));
+        assertMethodNotAllowed("GET", "/api/arming", "PUT");
+        assertEquals(ArmingStatus.ARMED_AWAY, securityService.getArmingStatus());
+    }
+
+    @Test
+    @DisplayName("POST /api/images scans the image for a cat and answers the new state")
+    void images_post_classified() throws Exception {
+        request("PUT", "/api/arming", "{\"armingStatus\": \"ARMED_HOME\"}");
+
+        HttpResponse<String> response = request("POST", "/api/images", png(0xFFFFFF));
+
+        assertStatus(200, response);
+        assertEquals("ALARM", json(response).get("alarmStatus").getAsString());
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        assertMethodNotAllowed("GET", "/api/images", "POST");
+    }
+
+    @Test
+    @DisplayName("POST /api/images answers 415 for bodies that are not images or do not decode, and 413 over 8 MB")
+    void images_postNotAnImage_unsupported() throws Exception {
+        byte[] png = png(0);
+
+        assertStatus(415, request("POST", "/api/images", "not an image"));
+        //a PNG cut off in its header chunk makes ImageIO throw rather than answer null
+        assertStatus(415, request("POST", "/api/images", Arrays.copyOf(png, 20)));
+        assertStatus(415, request("POST", "/api/images", Arrays.copyOf(png, png.length / 2)));
+        assertEquals(413, statusForAnnouncedLength("POST", "/api/images", 8 * 1024 * 1024 + 1));
+        //the server is still answering
+        assertStatus(200, request("POST", "/api/images", png));
+    }
+
+    @Test
+    @DisplayName("GET /api/history answers recorded transitions in the range, bad ranges are 400")
+    void history_get_transitionsInRange() throws Exception {
+        history.recordArmingStatus(ArmingStatus.ARMED_HOME);
+        history.recordAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        HttpResponse<String> response = get("/api/history?from=0&to=" + (System.currentTimeMillis() + 1000));
+
+        assertStatus(200, response);
+        JsonObject reply = json(response);
+        assertFalse(reply.get("truncated").getAsBoolean());
+        JsonArray entries = reply.getAsJsonArray("entries");
+        assertEquals(2, entries.size());
+        assertEquals("ARMING_STATUS", entries.get(0).getAsJsonObject().get("kind").getAsString());
+        assertEquals("ALARM_STATUS", entries.get(1).getAsJsonObject().get("kind").getAsString());
+
+        assertStatus(200, get("/api/history?from=0&sensor=" + door.getSensorId()));
+        assertEquals(0, json(get("/api/history?from=0&sensor=" + door.getSensorId())).getAsJsonArray("entries").size());
+        assertStatus(400, get("/api/history?from=yesterday"));
+        assertStatus(400, get("/api/history?sensor=door"));
+        assertMethodNotAllowed("POST", "/api/history", "GET");
+    }
+}
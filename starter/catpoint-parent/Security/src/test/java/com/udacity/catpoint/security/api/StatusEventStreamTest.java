@@ -0,0 +1,188 @@
+package com.udacity.catpoint.security.api;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatusEventStreamTest {
+
+    private static final String HEADERS = "HTTP/1.1 200 OK\r\n"
+            + "Content-Type: text/event-stream\r\n"
+            + "Cache-Control: no-cache\r\n"
+            + "Connection: keep-alive\r\n"
+            + "\r\n"
+            + "retry: 1000\n\n";
+
+    private StatusEventStream stream;
+    private final List<Socket> sockets = new ArrayList<>();
+
+    @BeforeEach
+    void start() throws IOException {
+        stream = new StatusEventStream(0, 8);
+        stream.start();
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        stream.close();
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting until " + what);
+            Thread.sleep(5);
+        }
+    }
+
+    private Socket connect() throws IOException {
+        return connect(new Socket());
+    }
+
+    private Socket connect(Socket socket) throws IOException {
+        sockets.add(socket);
+        socket.connect(new InetSocketAddress("localhost", stream.getPort()));
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static void send(Socket socket, String text) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(text.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * Reads exactly as many bytes as the expected text has and returns them.
+     */
+    private static String read(Socket socket, String expected) throws IOException {
+        byte[] bytes = socket.getInputStream().readNBytes(expected.getBytes(StandardCharsets.UTF_8).length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Socket subscribe() throws IOException, InterruptedException {
+        int subscribers = stream.getSubscriberCount();
+        Socket socket = connect();
+        send(socket, "GET /api/events HTTP/1.1\r\nHost: localhost\r\nAccept: text/event-stream\r\n\r\n");
+        assertEquals(HEADERS, read(socket, HEADERS));
+        await(() -> stream.getSubscriberCount() == subscribers + 1, "the subscriber is registered");
+        return socket;
+    }
+
+    @Test
+    @DisplayName("A request that arrives in pieces is answered with the stream headers, then events in order")
+    void subscribe_requestInPieces_streamsEvents() throws Exception {
+        Socket socket = connect();
+        send(socket, "GET /api/events?since=0 HTTP/1.1\r\nHost: local");
+        Thread.sleep(50);
+        assertEquals(0, stream.getSubscriberCount());
+        send(socket, "host\r\n\r\n");
+        assertEquals(HEADERS, read(socket, HEADERS));
+        await(() -> stream.getSubscriberCount() == 1, "the subscriber is registered");
+
+        stream.notify(AlarmStatus.PENDING_ALARM);
+        stream.catDetected(true);
+        stream.sensorStatusChanged();
+
+        String expected = "id: 1\nevent: alarm\ndata: {\"alarmStatus\":\"PENDING_ALARM\"}\n\n"
+                + "id: 2\nevent: catDetected\ndata: {\"catDetected\":true}\n\n"
+                + "id: 3\nevent: sensors\ndata: {}\n\n";
+        assertEquals(expected, read(socket, expected));
+    }
+
+    @Test
+    @DisplayName("Any other path gets a 404 and the connection is closed")
+    void subscribe_otherPath_notFound() throws Exception {
+        Socket socket = connect();
+        send(socket, "GET /api/sensors HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+        String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+
+        assertEquals("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\nConnection: close\r\n\r\n", response);
+        assertEquals(0, stream.getSubscriberCount());
+        stream.notify(AlarmStatus.ALARM);
+        assertEquals(0, stream.getSlowConsumersDropped());
+    }
+
+    @Test
+    @DisplayName("Every subscriber gets the same event, encoded once with one id")
+    void publish_manySubscribers_sameBytes() throws Exception {
+        List<Socket> subscribers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            subscribers.add(subscribe());
+        }
+        Sensor sensor = new Sensor("Door", SensorType.DOOR);
+
+        stream.sensorLivenessChanged(sensor, false);
+
+        String expected = "id: 1\nevent: liveness\ndata: {\"sensorId\":\"" + sensor.getSensorId() + "\",\"online\":false}\n\n";
+        for (Socket socket : subscribers) {
+            assertEquals(expected, read(socket, expected));
+        }
+    }
+
+    @Test
+    @DisplayName("A subscriber that stops reading is disconnected and counted, the others keep streaming")
+    void publish_subscriberNotReading_dropped() throws Exception {
+        Socket reading = subscribe();
+        Socket slow = new Socket();
+        //a small window, so the slow subscriber's socket fills up soon
+        slow.setReceiveBufferSize(4096);
+        connect(slow);
+        send(slow, "GET /api/events HTTP/1.1\r\n\r\n");
+        await(() -> stream.getSubscriberCount() == 2, "both subscribers are registered");
+        AtomicLong received = new AtomicLong();
+        Thread reader = new Thread(() -> {
+            byte[] buffer = new byte[8192];
+            try {
+                for (int read = reading.getInputStream().read(buffer); read >= 0; read = reading.getInputStream().read(buffer)) {
+                    received.addAndGet(read);
+                }
+            } catch (IOException e) {
+                //closed at the end of the test
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+
+        long sent = 0;
+        for (int id = 1; id <= 1_000_000 && stream.getSlowConsumersDropped() == 0; id++) {
+            stream.catDetected(true);
+            sent += ("id: " + id + "\nevent: catDetected\ndata: {\"catDetected\":true}\n\n").length();
+            if (id % 4 == 0) {
+                //publish in bursts the reading subscriber's queue holds, as the service would
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (received.get() < sent) {
+                    assertTrue(System.nanoTime() < deadline, "the reading subscriber has event " + id);
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        assertEquals(1, stream.getSlowConsumersDropped());
+        await(() -> stream.getSubscriberCount() == 1, "the slow subscriber is removed");
+        //a key dropped while it was selected must not stop the selector thread
+        Thread.sleep(100);
+        long before = received.get();
+        stream.notify(AlarmStatus.ALARM);
+        await(() -> received.get() > before, "the reading subscriber gets the next event");
+        assertEquals(1, stream.getSlowConsumersDropped());
+    }
+}
@@ -0,0 +1,87 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.metrics.LatencyHistogram;
+import org.junit.jupiter.api.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CameraViewTest {
+
+    private static final int FRAMES = 90;
+
+    private final LatencyHistogram displayLatency = new LatencyHistogram("camera.display");
+
+    /**
+     * A 1080p frame in the layout ImageIO decodes JPEGs into, with some detail to scale.
+     */
+    private static BufferedImage frame(int seed) {
+        BufferedImage frame = new BufferedImage(1920, 1080, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = frame.createGraphics();
+        for (int x = 0; x < 1920; x += 40) {
+            g.setColor(new Color((x * 7 + seed * 31) & 0xFFFFFF));
+            g.fillRect(x, 0, 40, 1080);
+        }
+        g.dispose();
+        return frame;
+    }
+
+    /**
+     * Paints the view the way the EDT would, until the given number of frames has been shown.
+     */
+    private void paintUntilShown(CameraView view, Graphics screen, long frames) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (displayLatency.getCount() < frames) {
+            assertTrue(System.nanoTime() < deadline, "frame " + frames + " was never shown");
+            view.paintComponent(screen);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    @DisplayName("1080p frames are scaled and shown at 30 fps or more, each display latency recorded")
+    void setFrame_1080pFrames_atLeast30Fps() throws InterruptedException {
+        CameraView view = new CameraView(300, 225, displayLatency);
+        BufferedImage[] frames = {frame(1), frame(2)};
+        Graphics2D screen = new BufferedImage(300, 225, BufferedImage.TYPE_INT_RGB).createGraphics();
+        //let the JIT and the halving buffers settle first
+        for (int i = 0; i < 10; i++) {
+            view.setFrame(frames[i % 2]);
+            paintUntilShown(view, screen, i + 1);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            view.setFrame(frames[i % 2]);
+            paintUntilShown(view, screen, 10 + i + 1);
+        }
+        double fps = FRAMES / ((System.nanoTime() - start) / 1e9);
+
+        assertEquals(10 + FRAMES, displayLatency.getCount());
+        assertTrue(fps >= 30, "shown " + fps + " frames per second");
+        assertTrue(displayLatency.getP50Micros() < 33_000, "median display latency " + displayLatency.getP50Micros() + " us");
+    }
+
+    @Test
+    @DisplayName("Frames that arrive while one is being scaled replace each other, and only the shown one is recorded")
+    void setFrame_burst_onlyNewestShown() throws InterruptedException {
+        CameraView view = new CameraView(300, 225, displayLatency);
+        Graphics2D screen = new BufferedImage(300, 225, BufferedImage.TYPE_INT_RGB).createGraphics();
+        BufferedImage[] frames = {frame(1), frame(2), frame(3), frame(4), frame(5)};
+        for (BufferedImage frame : frames) {
+            view.setFrame(frame);
+        }
+        paintUntilShown(view, screen, 1);
+        //give the scaler time to show anything else it still had
+        Thread.sleep(200);
+        view.paintComponent(screen);
+
+        long shown = displayLatency.getCount();
+        assertTrue(shown < frames.length, "shown " + shown);
+        view.paintComponent(screen);
+        assertEquals(shown, displayLatency.getCount(), "a repaint of the same frame is not recorded again");
+    }
+}
@@ -0,0 +1,43 @@
+package com.udacity.catpoint.security.application;
+
+import org.junit.jupiter.api.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistoryPanelTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 2);
+    private static final ZoneId ZONE = ZoneOffset.UTC;
+
+    private static long millis(String dateTime) {
+        return LocalDateTime.parse(dateTime).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    @Test
+    @DisplayName("Times of day mean today")
+    void parseRange_timesOfDay_today() {
+        assertArrayEquals(new long[]{millis("2024-03-02T02:00"), millis("2024-03-02T02:05")},
+                HistoryPanel.parseRange("02:00", " 02:05 ", TODAY, ZONE));
+    }
+
+    @Test
+    @DisplayName("A range of times of day across midnight starts yesterday")
+    void parseRange_acrossMidnight_startsYesterday() {
+        assertArrayEquals(new long[]{millis("2024-03-01T23:00"), millis("2024-03-02T01:00")},
+                HistoryPanel.parseRange("23:00", "01:00", TODAY, ZONE));
+    }
+
+    @Test
+    @DisplayName("Dates can be given, with a space or a T before the time")
+    void parseRange_dates_used() {
+        assertArrayEquals(new long[]{millis("2024-02-20T22:00"), millis("2024-03-02T01:30:15")},
+                HistoryPanel.parseRange("2024-02-20 22:00", "2024-03-02T01:30:15", TODAY, ZONE));
+        assertThrows(DateTimeParseException.class, () -> HistoryPanel.parseRange("yesterday", "01:00", TODAY, ZONE));
+    }
+}
@@ -0,0 +1,46 @@
+package com.udacity.catpoint.security.application;
+
+import org.junit.jupiter.api.*;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StartupTimelineTest {
+
+    @BeforeEach
+    void init() {
+        StartupTimeline.clear();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        StartupTimeline.clear();
+    }
+
+    @Test
+    @DisplayName("Every row lines up with the declared columns whatever order the stages finish in")
+    void row_stagesOutOfOrder_matchDeclaredColumns() {
+        StartupTimeline.mark("interactive");
+        StartupTimeline.mark("imagePanelReady");
+        StartupTimeline.mark("main");
+
+        String[] header = StartupTimeline.header().split(",", -1);
+        String[] row = StartupTimeline.row(Instant.EPOCH).split(",", -1);
+
+        assertEquals(header.length, row.length);
+        assertEquals("timestamp", header[0]);
+        assertEquals(Instant.EPOCH.toString(), row[0]);
+        for (int i = 1; i < header.length; i++) {
+            boolean marked = header[i].equals("interactive") || header[i].equals("imagePanelReady") || header[i].equals("main");
+            assertEquals(marked, !row[i].isEmpty(), header[i]);
+        }
+    }
+
+    @Test
+    @DisplayName("The header is the same on every run")
+    void header_fixed() {
+        assertEquals("timestamp,main,frameShown,firstPaint,repositoryLoaded,servicesReady,displayPanelReady,"
+                + "imagePanelReady,sensorPanelReady,controlPanelReady,interactive", StartupTimeline.header());
+    }
+}
@@ -0,0 +1,113 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.image.FakeImageService;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.*;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SwingStatusBridgeTest {
+
+    private final SwingStatusBridge bridge = new SwingStatusBridge(
+            new SecurityService(new InMemorySecurityRepository(), new FakeImageService()), 1000);
+    private final Map<Sensor, Boolean> liveness = new LinkedHashMap<>();
+    private int livenessCalls;
+    private int reloads;
+
+    @BeforeEach
+    void init() {
+        bridge.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+                reloads++;
+            }
+
+            @Override
+            public void sensorLivenessChanged(Sensor sensor, boolean online) {
+                livenessCalls++;
+                liveness.put(sensor, online);
+            }
+        });
+    }
+
+    /**
+     * Runs the updates while the EDT is held up, so they all wait for the same frame, then waits
+     * for that frame to be applied.
+     */
+    private void inOneFrame(Runnable updates) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        SwingUtilities.invokeLater(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        updates.run();
+        release.countDown();
+        long frames = bridge.getFramesApplied();
+        while (bridge.getFramesApplied() == frames) {
+            Thread.sleep(1);
+        }
+        SwingUtilities.invokeAndWait(() -> { });
+    }
+
+    private static List<Sensor> sensors(int count) {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            sensors.add(new Sensor("Sensor " + i, SensorType.DOOR));
+        }
+        return sensors;
+    }
+
+    @Test
+    @DisplayName("Liveness flapping within a frame reaches the panels once per sensor, with its latest state")
+    void sensorLivenessChanged_flapping_coalescedPerSensor() throws Exception {
+        List<Sensor> sensors = sensors(3);
+
+        inOneFrame(() -> {
+            for (int i = 0; i < 10; i++) {
+                for (Sensor sensor : sensors) {
+                    bridge.sensorLivenessChanged(sensor, i % 2 == 1);
+                }
+            }
+            bridge.sensorLivenessChanged(sensors.get(0), false);
+        });
+
+        assertEquals(3, livenessCalls);
+        assertEquals(false, liveness.get(sensors.get(0)));
+        assertEquals(true, liveness.get(sensors.get(1)));
+        assertEquals(true, liveness.get(sensors.get(2)));
+        assertEquals(0, reloads, "the sensor table is not reloaded for liveness");
+    }
+
+    @Test
+    @DisplayName("More liveness changes in a frame than are worth a row each become a single reload")
+    void sensorLivenessChanged_storm_oneReload() throws Exception {
+        List<Sensor> sensors = sensors(SwingStatusBridge.MAX_LIVENESS_CHANGES_PER_FRAME + 1);
+
+        inOneFrame(() -> sensors.forEach(sensor -> bridge.sensorLivenessChanged(sensor, false)));
+
+        assertEquals(1, reloads);
+        assertEquals(0, livenessCalls);
+    }
+}
@@ -0,0 +1,63 @@
+package com.udacity.catpoint.security.cluster;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClusterProtocolTest {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    private ClusterMessage read() throws IOException {
+        return ClusterProtocol.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    @DisplayName("A transfer arrives with the premises' full state")
+    void read_transfer_roundTrips() throws IOException {
+        Sensor sensor = new Sensor("Porch", SensorType.MOTION);
+        sensor.setActive(true);
+        ClusterProtocol.writeTransfer(out, 3, "premises-1", AlarmStatus.PENDING_ALARM, ArmingStatus.ARMED_AWAY, List.of(sensor));
+
+        ClusterMessage message = read();
+
+        assertEquals(ClusterProtocol.TRANSFER, message.type);
+        assertEquals(3, message.epoch);
+        assertEquals("premises-1", message.premisesId);
+        assertEquals(AlarmStatus.PENDING_ALARM, message.alarmStatus);
+        assertEquals(ArmingStatus.ARMED_AWAY, message.armingStatus);
+        Sensor received = message.sensors.get(0);
+        assertEquals(sensor.getSensorId(), received.getSensorId());
+        assertEquals("Porch", received.getName());
+        assertEquals(SensorType.MOTION, received.getSensorType());
+        assertTrue(received.getActive());
+    }
+
+    @Test
+    @DisplayName("Lengths and counts over the limits are rejected before anything is allocated")
+    void read_oversizedLength_throws() throws IOException {
+        out.writeByte(ClusterProtocol.IMAGE);
+        out.writeInt(0);
+        out.writeUTF("premises-1");
+        out.writeInt(Integer.MAX_VALUE);
+        assertThrows(IOException.class, this::read);
+
+        bytes.reset();
+        out.writeByte(ClusterProtocol.MEMBERSHIP);
+        out.writeInt(2);
+        out.writeInt(-1);
+        assertThrows(IOException.class, this::read);
+    }
+}
@@ -0,0 +1,98 @@
+package com.udacity.catpoint.security.cluster;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashRingTest {
+
+    private static final int PREMISES = 100_000;
+    private static final int VIRTUAL_NODES = 128;
+
+    private static List<String> members(int count) {
+        List<String> members = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            members.add("localhost:" + (7100 + i));
+        }
+        return members;
+    }
+
+    private static Map<String, String> owners(HashRing ring) {
+        Map<String, String> owners = new HashMap<>();
+        for (int i = 0; i < PREMISES; i++) {
+            owners.put("premises-" + i, ring.ownerOf("premises-" + i));
+        }
+        return owners;
+    }
+
+    @Test
+    @DisplayName("Premises spread evenly over the members")
+    void ownerOf_manyPremises_evenSpread() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String owner : owners(new HashRing(members(5), VIRTUAL_NODES)).values()) {
+            counts.merge(owner, 1, Integer::sum);
+        }
+
+        assertEquals(5, counts.size());
+        int mean = PREMISES / 5;
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            assertTrue(Math.abs(count.getValue() - mean) < mean / 4, count.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Every member builds the same ring, whatever order it lists the members in")
+    void ownerOf_membersInOtherOrder_sameOwners() {
+        List<String> reversed = members(4);
+        Collections.reverse(reversed);
+
+        assertEquals(owners(new HashRing(members(4), VIRTUAL_NODES)), owners(new HashRing(reversed, VIRTUAL_NODES)));
+    }
+
+    @Test
+    @DisplayName("A joining member only takes premises, about its share, and nothing else moves")
+    void ownerOf_memberJoins_onlyNewMemberGains() {
+        Map<String, String> before = owners(new HashRing(members(4), VIRTUAL_NODES));
+        Map<String, String> after = owners(new HashRing(members(5), VIRTUAL_NODES));
+        String joined = members(5).get(4);
+
+        int moved = 0;
+        for (Map.Entry<String, String> owner : before.entrySet()) {
+            String now = after.get(owner.getKey());
+            if (!now.equals(owner.getValue())) {
+                assertEquals(joined, now, owner.getKey());
+                moved++;
+            }
+        }
+        assertTrue(Math.abs(moved - PREMISES / 5) < PREMISES / 20, "moved " + moved);
+    }
+
+    @Test
+    @DisplayName("When a member leaves only its premises move")
+    void ownerOf_memberLeaves_onlyItsPremisesMove() {
+        List<String> remaining = members(5);
+        String left = remaining.remove(2);
+        Map<String, String> before = owners(new HashRing(members(5), VIRTUAL_NODES));
+        Map<String, String> after = owners(new HashRing(remaining, VIRTUAL_NODES));
+
+        for (Map.Entry<String, String> owner : before.entrySet()) {
+            if (owner.getValue().equals(left)) {
+                assertNotEquals(left, after.get(owner.getKey()));
+            } else {
+                assertEquals(owner.getValue(), after.get(owner.getKey()), owner.getKey());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("A ring without members is rejected")
+    void constructor_noMembers_throws() {
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(List.of(), VIRTUAL_NODES));
+    }
+}
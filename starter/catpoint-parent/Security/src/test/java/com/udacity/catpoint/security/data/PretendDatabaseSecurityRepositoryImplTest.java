@@ -0,0 +1,89 @@
+package com.udacity.catpoint.security.data;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PretendDatabaseSecurityRepositoryImplTest {
+
+    //more than fit in one preference value as a JSON array
+    private static final int MANY_SENSORS = 3 * Preferences.MAX_VALUE_LENGTH / 90;
+
+    private Preferences prefs;
+
+    @BeforeEach
+    void init() {
+        prefs = Preferences.userRoot().node("catpoint-test-" + UUID.randomUUID());
+    }
+
+    @AfterEach
+    void cleanUp() throws BackingStoreException {
+        prefs.removeNode();
+    }
+
+    @Test
+    @DisplayName("Hundreds of sensors are stored and load back unchanged")
+    void addSensor_manySensors_loadedBack() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs);
+        for (int i = 0; i < MANY_SENSORS; i++) {
+            Sensor sensor = new Sensor("Sensor with a fairly long descriptive name " + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 2 == 0);
+            repository.addSensor(sensor);
+        }
+
+        Set<Sensor> loaded = new PretendDatabaseSecurityRepositoryImpl(prefs).getSensors();
+
+        assertEquals(MANY_SENSORS, loaded.size());
+        assertEquals(repository.getSensors(), loaded);
+        for (Sensor sensor : loaded) {
+            Sensor original = repository.getSensors().stream().filter(sensor::equals).findFirst().orElseThrow();
+            assertEquals(original.getName(), sensor.getName());
+            assertEquals(original.getActive(), sensor.getActive());
+            assertEquals(original.getSensorType(), sensor.getSensorType());
+        }
+    }
+
+    @Test
+    @DisplayName("Updates and removals are stored")
+    void updateAndRemove_loadedBack() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs);
+        Sensor kept = new Sensor("Door", SensorType.DOOR);
+        Sensor removed = new Sensor("Window", SensorType.WINDOW);
+        repository.addSensor(kept);
+        repository.addSensor(removed);
+        kept.setActive(true);
+        repository.updateSensor(kept);
+        repository.removeSensor(removed);
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        PretendDatabaseSecurityRepositoryImpl loaded = new PretendDatabaseSecurityRepositoryImpl(prefs);
+
+        assertEquals(Set.of(kept), loaded.getSensors());
+        assertTrue(loaded.getSensors().iterator().next().getActive());
+        assertEquals(ArmingStatus.ARMED_AWAY, loaded.getArmingStatus());
+        assertEquals(AlarmStatus.PENDING_ALARM, loaded.getAlarmStatus());
+    }
+
+    @Test
+    @DisplayName("Sensors stored as one JSON array are moved to one preference each")
+    void constructor_legacyArray_migrated() throws BackingStoreException {
+        Set<Sensor> legacy = new TreeSet<>(List.of(new Sensor("Door", SensorType.DOOR), new Sensor("Hall", SensorType.MOTION)));
+        prefs.put("SENSORS", new Gson().toJson(legacy));
+
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs);
+
+        assertEquals(legacy, repository.getSensors());
+        assertNull(prefs.get("SENSORS", null));
+        assertEquals(2, prefs.node("sensors").keys().length);
+        assertEquals(legacy, new PretendDatabaseSecurityRepositoryImpl(prefs).getSensors());
+    }
+}
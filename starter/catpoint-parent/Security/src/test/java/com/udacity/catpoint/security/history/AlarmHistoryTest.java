@@ -0,0 +1,150 @@
+package com.udacity.catpoint.security.history;
+
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AlarmHistoryTest {
+
+    private static final UUID FRONT_DOOR = UUID.randomUUID();
+    private static final UUID WINDOW = UUID.randomUUID();
+
+    private Path directory;
+
+    @BeforeEach
+    void init() throws IOException {
+        directory = Files.createTempDirectory("alarm-history");
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private static void recordSensor(AlarmHistory history, long time, UUID sensor) {
+        history.record(time, HistoryEntry.Kind.SENSOR_ACTIVE, 1, sensor.getMostSignificantBits(), sensor.getLeastSignificantBits());
+    }
+
+    private static void assertTimes(List<HistoryEntry> entries, long first, int count) {
+        assertEquals(count, entries.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(first + i, entries.get(i).getTime());
+        }
+    }
+
+    @Test
+    @DisplayName("Without a directory the ring keeps the newest records in order as it wraps around")
+    void between_ringWrappedAround_newestInOrder() throws IOException {
+        AlarmHistory history = new AlarmHistory(64, null);
+        for (int i = 0; i < 200; i++) {
+            recordSensor(history, 1000 + i, FRONT_DOOR);
+        }
+
+        //full rings drop their oldest quarter, so 200 records leave 144 to 199
+        assertTimes(history.between(0, Long.MAX_VALUE), 1144, 56);
+        assertTimes(history.between(1180, 1190), 1180, 10);
+        assertEquals(200, history.getRecorded());
+    }
+
+    @Test
+    @DisplayName("Ranges include their start and exclude their end, also among equal times")
+    void between_rangeBoundaries_fromInclusiveToExclusive() throws IOException {
+        AlarmHistory history = new AlarmHistory(64, null);
+        for (int i = 0; i < 30; i++) {
+            recordSensor(history, 100 + i / 3, FRONT_DOOR);
+        }
+
+        assertEquals(3, history.between(105, 106).size());
+        assertEquals(6, history.between(104, 106).size());
+        assertTrue(history.between(106, 106).isEmpty());
+        assertTrue(history.between(200, 300).isEmpty());
+        assertTrue(history.between(0, 100).isEmpty());
+    }
+
+    @Test
+    @DisplayName("A clock stepping backwards doesn't unsort the records")
+    void record_clockStepsBack_keepsOrder() throws IOException {
+        AlarmHistory history = new AlarmHistory(64, null);
+        recordSensor(history, 500, FRONT_DOOR);
+        recordSensor(history, 400, WINDOW);
+
+        List<HistoryEntry> entries = history.between(500, 501);
+
+        assertEquals(2, entries.size());
+        assertEquals(WINDOW, entries.get(1).getSensorId());
+    }
+
+    @Test
+    @DisplayName("A chunk reads back the records it was written with")
+    void chunk_writtenAndOpened_roundTrips() throws IOException {
+        HistoryChunk.Columns columns = new HistoryChunk.Columns(1000);
+        for (int i = 0; i < 1000; i++) {
+            UUID sensor = i % 2 == 0 ? FRONT_DOOR : WINDOW;
+            columns.times[i] = 1_700_000_000_000L + i * 37L;
+            columns.kinds[i] = (byte) (i % 5);
+            columns.values[i] = (byte) (i % 3);
+            columns.sensorHigh[i] = sensor.getMostSignificantBits();
+            columns.sensorLow[i] = sensor.getLeastSignificantBits();
+        }
+        HistoryChunk written = new HistoryChunk(directory.resolve("history-test.chunk"), columns);
+        written.write();
+
+        HistoryChunk opened = HistoryChunk.open(written.file);
+        HistoryChunk.Columns loaded = opened.load();
+
+        assertEquals(columns.times[0], opened.firstTime);
+        assertEquals(columns.times[999], opened.lastTime);
+        assertEquals(1000, opened.count);
+        assertArrayEquals(columns.times, loaded.times);
+        assertArrayEquals(columns.kinds, loaded.kinds);
+        assertArrayEquals(columns.values, loaded.values);
+        assertArrayEquals(columns.sensorHigh, loaded.sensorHigh);
+        assertArrayEquals(columns.sensorLow, loaded.sensorLow);
+        assertTrue(opened.mayContain(WINDOW.getMostSignificantBits(), WINDOW.getLeastSignificantBits()));
+        UUID other = UUID.randomUUID();
+        assertFalse(opened.mayContain(other.getMostSignificantBits(), other.getLeastSignificantBits()));
+    }
+
+    @Test
+    @DisplayName("Records spilled to disk are found again after a restart, per sensor too")
+    void between_afterRestart_readsChunks() throws IOException {
+        AlarmHistory history = new AlarmHistory(64, directory);
+        for (int i = 0; i < 300; i++) {
+            recordSensor(history, 2000 + i, i < 100 ? WINDOW : FRONT_DOOR);
+        }
+        history.close();
+
+        AlarmHistory reopened = new AlarmHistory(64, directory);
+
+        assertTrue(reopened.getChunkCount() > 1);
+        assertTimes(reopened.between(0, Long.MAX_VALUE), 2000, 300);
+        assertTimes(reopened.between(2095, 2105), 2095, 10);
+        assertTimes(reopened.forSensor(WINDOW, 0, Long.MAX_VALUE), 2000, 100);
+        assertTimes(reopened.forSensor(FRONT_DOOR, 2290, 3000), 2290, 10);
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("A limited query returns the oldest records of the range, across chunks and ring")
+    void between_limit_oldestFirst() throws IOException {
+        AlarmHistory history = new AlarmHistory(64, directory);
+        for (int i = 0; i < 100; i++) {
+            recordSensor(history, 3000 + i, FRONT_DOOR);
+        }
+
+        assertTimes(history.between(3010, 4000, 5), 3010, 5);
+        assertTimes(history.between(3010, 4000, 80), 3010, 80);
+        assertTimes(history.forSensor(FRONT_DOOR, 3000, 4000, 1000), 3000, 100);
+        history.close();
+    }
+}
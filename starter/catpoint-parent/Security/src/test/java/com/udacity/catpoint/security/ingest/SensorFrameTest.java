@@ -0,0 +1,100 @@
+package com.udacity.catpoint.security.ingest;
+
+import org.junit.jupiter.api.*;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorFrameTest {
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(SensorFrame.MAX_FRAME_BYTES);
+
+    private static SensorBatch batch(int count) {
+        SensorBatch batch = new SensorBatch();
+        batch.setHubId(7);
+        batch.setSession(1_700_000_000_000L);
+        batch.setSequence(42);
+        for (int i = 0; i < count; i++) {
+            batch.add(i * 31L, -i, i % 3 == 0);
+        }
+        return batch;
+    }
+
+    private SensorBatch decode() throws MalformedFrameException {
+        SensorBatch decoded = new SensorBatch();
+        int messageBytes = SensorFrame.decodeHeader(buffer, decoded);
+        assertEquals(messageBytes, buffer.remaining());
+        SensorFrame.decodeMessages(buffer, decoded);
+        return decoded;
+    }
+
+    @Test
+    @DisplayName("A full frame decodes to the batch it was encoded from")
+    void encode_fullBatch_roundTrips() throws MalformedFrameException {
+        SensorBatch batch = batch(SensorFrame.MAX_MESSAGES);
+        SensorFrame.encode(buffer, batch);
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+
+        SensorBatch decoded = decode();
+
+        assertEquals(7, decoded.getHubId());
+        assertEquals(1_700_000_000_000L, decoded.getSession());
+        assertEquals(42, decoded.getSequence());
+        assertEquals(SensorFrame.MAX_MESSAGES, decoded.getCount());
+        for (int i = 0; i < decoded.getCount(); i++) {
+            assertEquals(batch.idHigh[i], decoded.idHigh[i]);
+            assertEquals(batch.idLow[i], decoded.idLow[i]);
+            assertEquals(batch.states[i], decoded.states[i]);
+        }
+    }
+
+    @Test
+    @DisplayName("An empty frame is just a header")
+    void encode_emptyBatch_headerOnly() throws MalformedFrameException {
+        SensorFrame.encode(buffer, batch(0));
+        assertEquals(SensorFrame.HEADER_BYTES, buffer.position());
+        buffer.flip();
+
+        assertEquals(0, decode().getCount());
+    }
+
+    @Test
+    @DisplayName("A batch holds no more messages than a frame can carry")
+    void add_fullBatch_refused() {
+        SensorBatch batch = batch(SensorFrame.MAX_MESSAGES);
+
+        assertFalse(batch.add(1, 1, true));
+        assertEquals(SensorFrame.MAX_MESSAGES, batch.getCount());
+    }
+
+    @Test
+    @DisplayName("Headers with a bad magic, another version or too many messages are rejected")
+    void decodeHeader_invalidHeader_throws() {
+        SensorFrame.encode(buffer, batch(1));
+
+        buffer.putShort(0, (short) 0x1234);
+        assertThrows(MalformedFrameException.class, () -> SensorFrame.decodeHeader(buffer.duplicate().flip(), new SensorBatch()));
+        buffer.putShort(0, SensorFrame.MAGIC);
+
+        buffer.put(2, (byte) 1);
+        assertThrows(MalformedFrameException.class, () -> SensorFrame.decodeHeader(buffer.duplicate().flip(), new SensorBatch()));
+        buffer.put(2, SensorFrame.VERSION);
+
+        buffer.putShort(SensorFrame.HEADER_BYTES - 2, (short) (SensorFrame.MAX_MESSAGES + 1));
+        assertThrows(MalformedFrameException.class, () -> SensorFrame.decodeHeader(buffer.duplicate().flip(), new SensorBatch()));
+    }
+
+    @Test
+    @DisplayName("A message with a state other than active or inactive is rejected")
+    void decodeMessages_unknownState_throws() throws MalformedFrameException {
+        SensorFrame.encode(buffer, batch(1));
+        buffer.put(SensorFrame.HEADER_BYTES + SensorFrame.MESSAGE_BYTES - 1, (byte) 5);
+        buffer.flip();
+        SensorBatch decoded = new SensorBatch();
+        SensorFrame.decodeHeader(buffer, decoded);
+
+        assertThrows(MalformedFrameException.class, () -> SensorFrame.decodeMessages(buffer, decoded));
+    }
+}
@@ -0,0 +1,62 @@
+package com.udacity.catpoint.security.ingest;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorIndexTest {
+
+    private final SensorIndex index = new SensorIndex();
+
+    private static List<Sensor> sensors(int count) {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            sensors.add(new Sensor("Sensor " + i, SensorType.DOOR));
+        }
+        return sensors;
+    }
+
+    private Sensor get(UUID id) {
+        return index.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    @Test
+    @DisplayName("Every sensor is found by its id after a rebuild")
+    void get_afterRebuild_findsEverySensor() {
+        List<Sensor> sensors = sensors(500);
+        index.rebuild(sensors);
+
+        assertEquals(500, index.size());
+        for (Sensor sensor : sensors) {
+            assertSame(sensor, get(sensor.getSensorId()));
+        }
+    }
+
+    @Test
+    @DisplayName("An unknown id finds nothing, also in an empty index")
+    void get_unknownId_null() {
+        assertNull(get(UUID.randomUUID()));
+        index.rebuild(sensors(3));
+
+        assertNull(get(UUID.randomUUID()));
+    }
+
+    @Test
+    @DisplayName("A rebuild replaces the previous sensors")
+    void rebuild_replacesSensors() {
+        List<Sensor> before = sensors(10);
+        List<Sensor> after = sensors(2);
+        index.rebuild(before);
+        index.rebuild(after);
+
+        assertEquals(2, index.size());
+        assertNull(get(before.get(0).getSensorId()));
+        assertSame(after.get(1), get(after.get(1).getSensorId()));
+    }
+}
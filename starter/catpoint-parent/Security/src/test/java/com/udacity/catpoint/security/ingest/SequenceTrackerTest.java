@@ -0,0 +1,65 @@
+package com.udacity.catpoint.security.ingest;
+
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SequenceTrackerTest {
+
+    private final SequenceTracker tracker = new SequenceTracker();
+
+    @Test
+    @DisplayName("Increasing sequences are accepted, a repeated one is a duplicate")
+    void accept_duplicate_rejected() {
+        assertTrue(tracker.accept(1, 100, 1));
+        assertTrue(tracker.accept(1, 100, 2));
+        assertFalse(tracker.accept(1, 100, 2));
+    }
+
+    @Test
+    @DisplayName("A frame overtaken by a newer one is dropped, gaps are allowed")
+    void accept_reordered_rejected() {
+        assertTrue(tracker.accept(1, 100, 5));
+        assertFalse(tracker.accept(1, 100, 4));
+        assertTrue(tracker.accept(1, 100, 9));
+    }
+
+    @Test
+    @DisplayName("Hubs are tracked separately")
+    void accept_otherHub_independent() {
+        assertTrue(tracker.accept(1, 100, 5));
+        assertTrue(tracker.accept(2, 100, 1));
+        assertEquals(2, tracker.hubCount());
+    }
+
+    @Test
+    @DisplayName("A hub that restarts with a new session starts its sequence over")
+    void accept_newSession_resetsSequence() {
+        assertTrue(tracker.accept(1, 100, 5000));
+        assertTrue(tracker.accept(1, 200, 1));
+        assertTrue(tracker.accept(1, 200, 2));
+        assertFalse(tracker.accept(1, 200, 2));
+    }
+
+    @Test
+    @DisplayName("Late frames from before a restart are dropped")
+    void accept_earlierSession_rejected() {
+        assertTrue(tracker.accept(1, 200, 1));
+        assertFalse(tracker.accept(1, 100, 5000));
+        assertTrue(tracker.accept(1, 200, 2));
+    }
+
+    @Test
+    @DisplayName("Growing the table keeps every hub's position")
+    void accept_manyHubs_keepsState() {
+        for (long hub = 0; hub < 1000; hub++) {
+            assertTrue(tracker.accept(hub, hub, 10));
+        }
+
+        assertEquals(1000, tracker.hubCount());
+        for (long hub = 0; hub < 1000; hub++) {
+            assertFalse(tracker.accept(hub, hub, 10), "hub " + hub);
+            assertTrue(tracker.accept(hub, hub, 11), "hub " + hub);
+        }
+    }
+}
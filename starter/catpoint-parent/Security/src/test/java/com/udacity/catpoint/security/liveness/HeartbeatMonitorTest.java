@@ -0,0 +1,147 @@
+package com.udacity.catpoint.security.liveness;
+
+import com.udacity.catpoint.image.FakeImageService;
+import com.udacity.catpoint.security.application.ServiceDispatcher;
+import com.udacity.catpoint.security.data.InMemorySecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HeartbeatMonitorTest {
+
+    private SecurityService securityService;
+    private HeartbeatMonitor monitor;
+
+    @BeforeEach
+    void init() {
+        securityService = new SecurityService(new InMemorySecurityRepository(), new FakeImageService());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        monitor.close();
+    }
+
+    private void monitor(long timeoutMillis, long tickMillis) {
+        monitor = new HeartbeatMonitor(securityService, new ServiceDispatcher(), timeoutMillis, tickMillis);
+    }
+
+    private Sensor sensor(String name) {
+        Sensor sensor = new Sensor(name, SensorType.DOOR);
+        securityService.addSensor(sensor);
+        return sensor;
+    }
+
+    @Test
+    @DisplayName("A silent sensor goes offline on the tick its timeout runs out, not before")
+    void tick_silentSensor_offlineAtDeadline() {
+        monitor(5000, 1000);
+        Sensor sensor = sensor("Door");
+        monitor.heartbeat(sensor, 0);
+
+        monitor.tick(4);
+        assertFalse(sensor.isOffline());
+        monitor.tick(5);
+        assertTrue(sensor.isOffline());
+        assertEquals(1, monitor.getOfflineCount());
+    }
+
+    @Test
+    @DisplayName("A sensor that keeps reporting stays online over many laps of the wheel")
+    void tick_reportingSensor_staysOnline() {
+        monitor(3000, 1000);
+        Sensor reporting = sensor("Reporting");
+        Sensor silent = sensor("Silent");
+        monitor.heartbeat(silent, 0);
+
+        for (long tick = 0; tick < 50; tick++) {
+            monitor.heartbeat(reporting, tick);
+            monitor.tick(tick);
+            assertFalse(reporting.isOffline(), "tick " + tick);
+        }
+        assertTrue(silent.isOffline());
+        assertEquals(1, monitor.getOfflineCount());
+    }
+
+    @Test
+    @DisplayName("An offline sensor comes back online on its next heartbeat and can time out again")
+    void heartbeat_offlineSensor_backOnline() {
+        monitor(2000, 1000);
+        Sensor sensor = sensor("Door");
+        monitor.heartbeat(sensor, 0);
+        monitor.tick(2);
+        assertTrue(sensor.isOffline());
+
+        monitor.heartbeat(sensor, 7);
+        monitor.tick(7);
+        assertFalse(sensor.isOffline());
+        assertEquals(0, monitor.getOfflineCount());
+
+        monitor.tick(9);
+        assertTrue(sensor.isOffline());
+    }
+
+    @Test
+    @DisplayName("A timeout longer than the wheel waits out every lap")
+    void tick_timeoutBeyondWheel_offlineAtDeadline() {
+        //10 000 ticks on a wheel of at most 4096 buckets
+        monitor(10_000, 1);
+        Sensor sensor = sensor("Door");
+        monitor.heartbeat(sensor, 0);
+
+        monitor.tick(9_999);
+        assertFalse(sensor.isOffline());
+        monitor.tick(10_000);
+        assertTrue(sensor.isOffline());
+    }
+
+    @Test
+    @DisplayName("The index finds sensors after growing and after others were forgotten")
+    void forget_manySensors_remainingStillFound() {
+        monitor(2000, 1000);
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.WINDOW);
+            securityService.addSensor(sensor);
+            sensors.add(sensor);
+            monitor.heartbeat(sensor, 0);
+        }
+        for (int i = 0; i < sensors.size(); i += 2) {
+            monitor.forget(sensors.get(i));
+        }
+        assertEquals(2500, monitor.getMonitoredCount());
+
+        //heartbeats of the remaining sensors must find their slots rather than add new ones
+        for (int i = 1; i < sensors.size(); i += 2) {
+            monitor.heartbeat(sensors.get(i), 1);
+        }
+        assertEquals(2500, monitor.getMonitoredCount());
+
+        monitor.tick(3);
+        assertEquals(2500, monitor.getOfflineCount());
+        for (int i = 0; i < sensors.size(); i++) {
+            assertEquals(i % 2 == 1, sensors.get(i).isOffline(), sensors.get(i).getName());
+        }
+    }
+
+    @Test
+    @DisplayName("A sensor removed from the system is forgotten when it times out")
+    void tick_removedSensor_forgotten() {
+        monitor(1000, 1000);
+        Sensor sensor = sensor("Door");
+        monitor.heartbeat(sensor, 0);
+        securityService.removeSensor(sensor);
+
+        monitor.tick(1);
+
+        assertFalse(sensor.isOffline());
+        assertEquals(0, monitor.getMonitoredCount());
+        assertEquals(0, monitor.getOfflineCount());
+    }
+}
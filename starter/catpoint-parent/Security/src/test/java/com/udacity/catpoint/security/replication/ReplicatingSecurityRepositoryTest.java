@@ -0,0 +1,171 @@
+package com.udacity.catpoint.security.replication;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepository;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.*;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static com.udacity.catpoint.security.replication.ReplicationProtocol.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicatingSecurityRepositoryTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final InMemorySecurityRepository delegate = new InMemorySecurityRepository();
+    private Path fenceDirectory;
+    private ReplicatingSecurityRepository primary;
+
+    @BeforeEach
+    void startPrimary() throws IOException {
+        fenceDirectory = Files.createTempDirectory("fence");
+        primary = new ReplicatingSecurityRepository(delegate, 0, fenceDirectory);
+        primary.start();
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        executor.shutdownNow();
+        primary.close();
+        try (Stream<Path> files = Files.walk(fenceDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting until " + what);
+            Thread.sleep(5);
+        }
+    }
+
+    private Future<Long> startStandby(StandbyReplica standby) throws InterruptedException {
+        Future<Long> lost = executor.submit(standby::replicateUntilPrimaryLost);
+        await(() -> primary.getAcknowledgedSequence() >= 1, "the standby has the snapshot");
+        return lost;
+    }
+
+    private StandbyReplica standby() {
+        return new StandbyReplica(new InetSocketAddress("localhost", primary.getPort()), 5000);
+    }
+
+    @Test
+    @DisplayName("A standby that connects late gets the state so far, then every write, and takes over when the primary closes")
+    void writes_standbyConnected_replicated() throws Exception {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        primary.addSensor(door);
+        primary.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        StandbyReplica standby = standby();
+        Future<Long> lost = startStandby(standby);
+
+        primary.addSensor(window);
+        door.setActive(true);
+        primary.updateSensor(door);
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        primary.addSensor(motion);
+        primary.removeSensor(window);
+        primary.setAlarmStatus(AlarmStatus.ALARM);
+        await(() -> primary.getAcknowledgedSequence() == primary.getSequence(), "every write is acknowledged");
+        primary.close();
+        lost.get(5, TimeUnit.SECONDS);
+
+        SecurityRepository replica = standby.getRepository();
+        assertEquals(List.copyOf(delegate.getSensors()), List.copyOf(replica.getSensors()));
+        assertTrue(replica.getSensors().stream().filter(door::equals).findFirst().orElseThrow().getActive());
+        assertEquals(AlarmStatus.ALARM, replica.getAlarmStatus());
+        assertEquals(ArmingStatus.ARMED_AWAY, replica.getArmingStatus());
+        assertEquals(primary.getSequence(), standby.getAppliedSequence());
+        assertEquals(0, primary.getResyncs());
+    }
+
+    @Test
+    @DisplayName("A standby too slow to keep up gets a snapshot of the latest state in place of the backlog")
+    void reserve_standbyNotReading_resyncsWithSnapshot() throws Exception {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        primary.addSensor(door);
+        try (Socket slowStandby = new Socket()) {
+            slowStandby.setReceiveBufferSize(4096);
+            slowStandby.connect(new InetSocketAddress("localhost", primary.getPort()));
+            await(primary::isStandbyConnected, "the standby is connected");
+
+            //the standby reads nothing, so the socket and then the buffer fill up
+            for (int i = 0; i < 1_000_000 && primary.getResyncs() == 0; i++) {
+                door.setActive(!door.getActive());
+                primary.updateSensor(door);
+            }
+            assertEquals(1, primary.getResyncs());
+            long last = primary.getSequence();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(slowStandby.getInputStream()));
+            int snapshots = 0;
+            long previous = 0;
+            while (true) {
+                byte type = in.readByte();
+                long sequence = in.readLong();
+                assertTrue(sequence >= previous, "sequence " + sequence + " after " + previous);
+                previous = sequence;
+                if (type == UPDATE_SENSOR) {
+                    readSensor(in);
+                    continue;
+                }
+                assertEquals(SNAPSHOT, type);
+                snapshots++;
+                in.readUnsignedByte();
+                in.readUnsignedByte();
+                assertEquals(1, in.readInt());
+                Sensor sensor = readSensor(in);
+                if (snapshots == 2) {
+                    assertEquals(last, sequence, "the snapshot includes the write that did not fit");
+                    assertEquals(door.getActive(), sensor.getActive());
+                    break;
+                }
+            }
+            //and nothing but heartbeats follow it
+            assertEquals(HEARTBEAT, in.readByte());
+            assertEquals(last, in.readLong());
+        }
+    }
+
+    @Test
+    @DisplayName("A primary whose epoch was taken refuses writes and lets its standby go")
+    void checkFence_newerEpochAcquired_writesRefused() throws Exception {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        primary.addSensor(door);
+        StandbyReplica standby = standby();
+        Future<Long> lost = startStandby(standby);
+        assertFalse(primary.isFenced());
+
+        try (FencingToken takeover = FencingToken.open(fenceDirectory, primary.getPort())) {
+            assertEquals(primary.getEpoch() + 1, takeover.acquire());
+
+            assertTrue(primary.isFenced());
+            assertThrows(IllegalStateException.class, () -> primary.addSensor(new Sensor("Window", SensorType.WINDOW)));
+            assertThrows(IllegalStateException.class, () -> primary.setAlarmStatus(AlarmStatus.ALARM));
+            assertEquals(List.of(door), List.copyOf(delegate.getSensors()));
+            assertEquals(AlarmStatus.NO_ALARM, delegate.getAlarmStatus());
+
+            lost.get(5, TimeUnit.SECONDS);
+            assertEquals(List.of(door), List.copyOf(standby.getRepository().getSensors()));
+        }
+    }
+}
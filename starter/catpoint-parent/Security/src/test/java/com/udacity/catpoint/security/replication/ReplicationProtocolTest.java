@@ -0,0 +1,69 @@
+package com.udacity.catpoint.security.replication;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicationProtocolTest {
+
+    private static Sensor decode(ByteBuffer buffer) throws IOException {
+        return ReplicationProtocol.readSensor(new DataInputStream(new ByteArrayInputStream(buffer.array(), 0, buffer.position())));
+    }
+
+    private static ByteBuffer encode(Sensor sensor) {
+        ByteBuffer buffer = ByteBuffer.allocate(ReplicationProtocol.sensorBytes(sensor));
+        ReplicationProtocol.putSensor(buffer, sensor);
+        assertFalse(buffer.hasRemaining(), "sensorBytes is the encoded size");
+        return buffer;
+    }
+
+    @Test
+    @DisplayName("A sensor arrives with its id, name, type, and active and offline flags")
+    void readSensor_encodedSensor_roundTrips() throws IOException {
+        for (SensorType type : SensorType.values()) {
+            for (int flags = 0; flags < 4; flags++) {
+                Sensor sensor = new Sensor("K\u00fcche \uD83D\uDC08 " + type, type);
+                sensor.setActive((flags & ReplicationProtocol.ACTIVE) != 0);
+                sensor.setOffline((flags & ReplicationProtocol.OFFLINE) != 0);
+
+                Sensor decoded = decode(encode(sensor));
+
+                assertEquals(sensor.getSensorId(), decoded.getSensorId());
+                assertEquals(sensor.getName(), decoded.getName());
+                assertEquals(type, decoded.getSensorType());
+                assertEquals(sensor.getActive(), decoded.getActive());
+                assertEquals(sensor.isOffline(), decoded.isOffline());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Empty and longest names round trip, a longer one is refused before anything is written")
+    void putSensor_nameLengths_longestAllowed() throws IOException {
+        assertEquals("", decode(encode(new Sensor("", SensorType.DOOR))).getName());
+        String longest = "n".repeat(0xFFFF);
+        assertEquals(longest, decode(encode(new Sensor(longest, SensorType.DOOR))).getName());
+
+        ByteBuffer buffer = ByteBuffer.allocate(200_000);
+        assertThrows(IllegalArgumentException.class, () -> ReplicationProtocol.putSensor(buffer, new Sensor(longest + "n", SensorType.DOOR)));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    @DisplayName("A sensor id is two longs, the same as at the start of a sensor")
+    void putSensorId_sensor_readBack() throws IOException {
+        Sensor sensor = new Sensor("Door", SensorType.DOOR);
+        ByteBuffer buffer = ByteBuffer.allocate(ReplicationProtocol.SENSOR_ID_BYTES);
+        ReplicationProtocol.putSensorId(buffer, sensor);
+
+        assertEquals(sensor.getSensorId(), ReplicationProtocol.readSensorId(new DataInputStream(new ByteArrayInputStream(buffer.array()))));
+        assertEquals(buffer.getLong(0), encode(sensor).getLong(0));
+    }
+}
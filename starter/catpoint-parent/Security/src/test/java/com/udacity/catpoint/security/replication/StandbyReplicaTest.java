@@ -0,0 +1,181 @@
+package com.udacity.catpoint.security.replication;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.udacity.catpoint.security.replication.ReplicationProtocol.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives a standby from a primary that writes the replication stream by hand.
+ */
+public class StandbyReplicaTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private ServerSocket primary;
+    private Socket connection;
+    private DataOutputStream out;
+    private DataInputStream acks;
+    private StandbyReplica standby;
+    private Future<Long> lost;
+
+    @BeforeEach
+    void connect() throws IOException {
+        primary = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        standby = new StandbyReplica(new InetSocketAddress(InetAddress.getLoopbackAddress(), primary.getLocalPort()), 5000);
+        lost = executor.submit(standby::replicateUntilPrimaryLost);
+        connection = primary.accept();
+        connection.setSoTimeout(5000);
+        out = new DataOutputStream(connection.getOutputStream());
+        acks = new DataInputStream(connection.getInputStream());
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        executor.shutdownNow();
+        connection.close();
+        primary.close();
+    }
+
+    private static Sensor sensor(String name, SensorType type, Sensor sameIdAs) {
+        Sensor sensor = new Sensor(name, type);
+        if (sameIdAs != null) {
+            sensor.setSensorId(sameIdAs.getSensorId());
+        }
+        return sensor;
+    }
+
+    private void snapshot(long sequence, AlarmStatus alarm, ArmingStatus arming, Sensor... sensors) throws IOException {
+        out.writeByte(SNAPSHOT);
+        out.writeLong(sequence);
+        out.writeByte(alarm.ordinal());
+        out.writeByte(arming.ordinal());
+        out.writeInt(sensors.length);
+        for (Sensor sensor : sensors) {
+            writeSensor(sensor);
+        }
+    }
+
+    private void sensorRecord(byte type, long sequence, Sensor sensor) throws IOException {
+        out.writeByte(type);
+        out.writeLong(sequence);
+        writeSensor(sensor);
+    }
+
+    private void remove(long sequence, Sensor sensor) throws IOException {
+        ByteBuffer id = ByteBuffer.allocate(SENSOR_ID_BYTES);
+        putSensorId(id, sensor);
+        out.writeByte(REMOVE_SENSOR);
+        out.writeLong(sequence);
+        out.write(id.array());
+    }
+
+    private void writeSensor(Sensor sensor) throws IOException {
+        ByteBuffer encoded = ByteBuffer.allocate(sensorBytes(sensor));
+        putSensor(encoded, sensor);
+        out.write(encoded.array());
+    }
+
+    /**
+     * Waits for the standby to acknowledge the given sequence.
+     */
+    private void awaitAck(long sequence) throws IOException {
+        out.flush();
+        long acknowledged;
+        do {
+            acknowledged = acks.readLong();
+        } while (acknowledged < sequence);
+        assertEquals(sequence, acknowledged);
+    }
+
+    /**
+     * Drops the connection the way a dead primary would and waits for the standby to give up on it.
+     */
+    private SecurityRepository losePrimary() throws Exception {
+        connection.close();
+        lost.get(5, TimeUnit.SECONDS);
+        return standby.getRepository();
+    }
+
+    @Test
+    @DisplayName("A second snapshot replaces the sensors and statuses of the first")
+    void apply_secondSnapshot_replacesState() throws Exception {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        snapshot(1, AlarmStatus.ALARM, ArmingStatus.ARMED_HOME, door, window);
+        awaitAck(1);
+        snapshot(2, AlarmStatus.NO_ALARM, ArmingStatus.ARMED_AWAY, motion);
+        awaitAck(2);
+
+        SecurityRepository repository = losePrimary();
+
+        assertEquals(List.of(motion), List.copyOf(repository.getSensors()));
+        assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+        assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus());
+        assertEquals(2, standby.getAppliedSequence());
+    }
+
+    @Test
+    @DisplayName("A renamed or retyped sensor is moved to its new place, so it can still be removed")
+    void apply_updateChangingNameOrType_resorted() throws Exception {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        snapshot(1, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, door, motion);
+        Sensor renamed = sensor("Zone 9", SensorType.DOOR, door);
+        renamed.setActive(true);
+        sensorRecord(UPDATE_SENSOR, 2, renamed);
+        sensorRecord(UPDATE_SENSOR, 3, sensor("Motion", SensorType.WINDOW, motion));
+        awaitAck(3);
+
+        Sensor[] sensors = standby.getRepository().getSensors().toArray(new Sensor[0]);
+        assertEquals(2, sensors.length);
+        assertEquals("Motion", sensors[0].getName());
+        assertEquals(SensorType.WINDOW, sensors[0].getSensorType());
+        assertEquals("Zone 9", sensors[1].getName());
+        assertTrue(sensors[1].getActive());
+
+        remove(4, door);
+        remove(5, motion);
+        awaitAck(5);
+        assertTrue(losePrimary().getSensors().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Removing a sensor the standby never saw is ignored and later records still apply")
+    void apply_removeUnknownSensor_ignored() throws Exception {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        snapshot(1, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, door);
+        remove(2, new Sensor("Never added", SensorType.WINDOW));
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        sensorRecord(ADD_SENSOR, 3, window);
+        out.writeByte(ALARM_STATUS);
+        out.writeLong(4);
+        out.writeByte(AlarmStatus.PENDING_ALARM.ordinal());
+        awaitAck(4);
+
+        SecurityRepository repository = losePrimary();
+
+        assertEquals(List.of(door, window), List.copyOf(repository.getSensors()));
+        assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+        assertEquals(4, standby.getAppliedSequence());
+    }
+}
@@ -0,0 +1,149 @@
+package com.udacity.catpoint.security.rules;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompiledRulesTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void init() throws IOException {
+        dir = Files.createTempDirectory("rules-test");
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * The alarm decisions as SecurityService made them before the rules engine.
+     */
+    private static AlarmStatus handWritten(Trigger trigger, ArmingStatus arming, AlarmStatus alarm, boolean cat, int activeSensors) {
+        switch (trigger) {
+            case SENSOR_ACTIVATED:
+                if (arming == ArmingStatus.DISARMED) {
+                    return null;
+                }
+                switch (alarm) {
+                    case NO_ALARM:
+                        return AlarmStatus.PENDING_ALARM;
+                    case PENDING_ALARM:
+                        return AlarmStatus.ALARM;
+                    default:
+                        return null;
+                }
+            case SENSOR_DEACTIVATED:
+                return alarm == AlarmStatus.PENDING_ALARM ? AlarmStatus.NO_ALARM : null;
+            case CAT_DETECTED:
+                return arming == ArmingStatus.ARMED_HOME ? AlarmStatus.ALARM : null;
+            case CAT_CLEARED:
+                return activeSensors == 0 ? AlarmStatus.NO_ALARM : null;
+            default:
+                if (arming == ArmingStatus.DISARMED) {
+                    return AlarmStatus.NO_ALARM;
+                }
+                return cat && arming == ArmingStatus.ARMED_HOME ? AlarmStatus.ALARM : null;
+        }
+    }
+
+    @Test
+    @DisplayName("The default rules decide every combination of inputs like the hand-written checks did")
+    void decide_defaultRules_matchHandWrittenEverywhere() {
+        CompiledRules rules = CompiledRules.defaults();
+        int cases = 0;
+        for (Trigger trigger : Trigger.values()) {
+            for (ArmingStatus arming : ArmingStatus.values()) {
+                for (AlarmStatus alarm : AlarmStatus.values()) {
+                    for (boolean cat : new boolean[]{false, true}) {
+                        for (SensorType sensorType : SensorType.values()) {
+                            for (int active = 0; active < 5; active++) {
+                                assertEquals(handWritten(trigger, arming, alarm, cat, active),
+                                        rules.decide(trigger, arming, alarm, cat, sensorType, active),
+                                        trigger + " " + arming + " " + alarm + " cat=" + cat + " " + sensorType + " active=" + active);
+                                cases++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        assertEquals(1350, cases);
+    }
+
+    @Test
+    @DisplayName("The default rules only read the inputs each trigger needs")
+    void usesInput_defaultRules_onlyWhatTheTriggerTests() {
+        CompiledRules rules = CompiledRules.defaults();
+
+        assertTrue(rules.usesInput(Trigger.SENSOR_ACTIVATED, CompiledRules.ALARM));
+        assertFalse(rules.usesInput(Trigger.SENSOR_ACTIVATED, CompiledRules.ACTIVE_SENSORS));
+        assertTrue(rules.usesInput(Trigger.CAT_CLEARED, CompiledRules.ACTIVE_SENSORS));
+        assertFalse(rules.usesInput(Trigger.CAT_CLEARED, CompiledRules.ARMING));
+        assertEquals(1, rules.getActiveSensorsLimit());
+    }
+
+    @Test
+    @DisplayName("A null status only matches != conditions")
+    void decide_nullStatus_matchesOnlyNotEqual() throws IOException {
+        CompiledRules rules = CompiledRules.compile(
+                "on sensorActivated if arming == DISARMED then NO_ALARM\n"
+                        + "on sensorActivated if arming != ARMED_AWAY then ALARM", "test");
+
+        assertEquals(AlarmStatus.ALARM, rules.decide(Trigger.SENSOR_ACTIVATED, null, null, false, null, 0));
+    }
+
+    @Test
+    @DisplayName("The first matching rule decides, and keep leaves the alarm alone")
+    void decide_severalMatches_firstWins() throws IOException {
+        CompiledRules rules = CompiledRules.compile(
+                "on sensorActivated if sensorType == WINDOW then keep\n"
+                        + "on sensorActivated then ALARM", "test");
+
+        assertNull(rules.decide(Trigger.SENSOR_ACTIVATED, ArmingStatus.ARMED_AWAY, AlarmStatus.NO_ALARM, false, SensorType.WINDOW, 0));
+        assertEquals(AlarmStatus.ALARM, rules.decide(Trigger.SENSOR_ACTIVATED, ArmingStatus.ARMED_AWAY, AlarmStatus.NO_ALARM, false, SensorType.DOOR, 0));
+        assertNull(rules.decide(Trigger.SENSOR_DEACTIVATED, ArmingStatus.ARMED_AWAY, AlarmStatus.NO_ALARM, false, SensorType.DOOR, 0));
+    }
+
+    @Test
+    @DisplayName("Active sensor counts are told apart at the counts the rules mention")
+    void decide_countConditions_grouped() throws IOException {
+        CompiledRules rules = CompiledRules.compile(
+                "on catCleared if activeSensors < 2 then NO_ALARM\n"
+                        + "on catCleared if activeSensors > 3 then ALARM", "test");
+
+        AlarmStatus[] expected = {AlarmStatus.NO_ALARM, AlarmStatus.NO_ALARM, null, null, AlarmStatus.ALARM, AlarmStatus.ALARM, AlarmStatus.ALARM};
+        for (int active = 0; active < expected.length; active++) {
+            assertEquals(expected[active], rules.decide(Trigger.CAT_CLEARED, null, null, false, null, active), "active=" + active);
+        }
+        assertEquals(4, rules.getActiveSensorsLimit());
+    }
+
+    @Test
+    @DisplayName("Reloading a file that doesn't parse keeps the rules in use")
+    void reload_invalidFile_keepsCurrentRules() throws IOException {
+        Path file = dir.resolve("alarm.rules");
+        Files.writeString(file, "on catDetected then ALARM\n");
+        AlarmRules alarmRules = AlarmRules.defaults();
+
+        CompiledRules loaded = alarmRules.reload(file);
+        Files.writeString(file, "on catDetected then\n");
+
+        assertThrows(InvalidRulesException.class, () -> alarmRules.reload(file));
+        assertSame(loaded, alarmRules.current());
+        assertEquals(1, loaded.getRuleCount());
+    }
+}
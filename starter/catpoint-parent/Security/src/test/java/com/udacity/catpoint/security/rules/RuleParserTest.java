@@ -0,0 +1,62 @@
+package com.udacity.catpoint.security.rules;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RuleParserTest {
+
+    private static List<Rule> parse(String rules) throws IOException {
+        return RuleParser.parse(new StringReader(rules), "test.rules");
+    }
+
+    private static String error(String rules) {
+        return assertThrows(InvalidRulesException.class, () -> parse(rules)).getMessage();
+    }
+
+    @Test
+    @DisplayName("Comments and blank lines are skipped")
+    void parse_commentsAndBlanks_skipped() throws IOException {
+        List<Rule> rules = parse("# header\n\n   \non catDetected if arming == ARMED_HOME then ALARM # trailing\non catCleared then keep\n");
+
+        assertEquals(2, rules.size());
+        assertEquals(Trigger.CAT_DETECTED, rules.get(0).trigger);
+        assertEquals(1, rules.get(0).conditions.size());
+        assertEquals(AlarmStatus.ALARM, rules.get(0).action);
+        assertTrue(rules.get(1).conditions.isEmpty());
+        assertNull(rules.get(1).action);
+    }
+
+    @Test
+    @DisplayName("Errors name the source and the line, counting comments")
+    void parse_malformedRule_namesLine() {
+        assertEquals("test.rules:3: expected on [trigger] [if [conditions]] then [alarm status|keep]",
+                error("# one\non catDetected then ALARM\nwhen catDetected then ALARM\n"));
+        assertEquals("test.rules:1: expected [input] [operator] [value], not arming is ARMED_HOME",
+                error("on catDetected if arming is ARMED_HOME then ALARM"));
+    }
+
+    @Test
+    @DisplayName("Unknown triggers, inputs, constants and actions are rejected")
+    void parse_unknownNames_rejected() {
+        assertEquals("test.rules:1: unknown trigger doorOpened", error("on doorOpened then ALARM"));
+        assertEquals("test.rules:1: unknown input temperature", error("on catDetected if temperature == 1 then ALARM"));
+        assertTrue(error("on catDetected if arming == ARMED then ALARM").contains("ARMED"));
+        assertTrue(error("on catDetected then SIREN").contains("SIREN"));
+    }
+
+    @Test
+    @DisplayName("Only activeSensors can be ordered, and cat is true or false")
+    void parse_badComparisons_rejected() {
+        assertEquals("test.rules:1: alarm can only be compared with == or !=", error("on catDetected if alarm < ALARM then ALARM"));
+        assertEquals("test.rules:1: cat is true or false, not yes", error("on armingChanged if cat == yes then ALARM"));
+        assertTrue(error("on catCleared if activeSensors > many then NO_ALARM").startsWith("test.rules:1:"));
+        assertTrue(error("on catCleared if activeSensors > 99999999999 then NO_ALARM").startsWith("test.rules:1:"));
+        assertTrue(error("on catCleared if activeSensors => 1 then NO_ALARM").startsWith("test.rules:1:"));
+    }
+}
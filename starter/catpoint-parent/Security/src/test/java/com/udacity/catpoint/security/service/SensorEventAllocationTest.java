@@ -0,0 +1,83 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.FakeImageService;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.*;
+import org.junit.jupiter.api.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards the allocation-free sensor event path. Once the JIT has compiled it, toggling a sensor
+ * must not allocate, so a regression such as a boxed flag or a lambda shows up as a failure here
+ * instead of as GC pressure in production.
+ */
+public class SensorEventAllocationTest {
+
+    private static final int EVENTS_PER_ROUND = 100_000;
+    private static final int MAX_ROUNDS = 30;
+
+    @Test
+    @DisplayName("A warmed up sensor toggle allocates zero bytes")
+    void changeSensorActivationStatus_afterWarmup_allocatesNothing() throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Method allocatedBytes = currentThreadAllocatedBytes();
+        Assumptions.assumeTrue(allocatedBytes != null, "JVM does not count allocated bytes per thread");
+
+        SecurityService securityService = new SecurityService(new InMemorySecurityRepository(), new FakeImageService());
+        securityService.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+        });
+        Sensor[] sensors = new Sensor[8];
+        for (int i = 0; i < sensors.length; i++) {
+            sensors[i] = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            securityService.addSensor(sensors[i]);
+        }
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        //keep going until the JIT has finished with the path; the first rounds run interpreted code
+        long bytesPerEvent = Long.MAX_VALUE;
+        for (int round = 0; round < MAX_ROUNDS && bytesPerEvent > 0; round++) {
+            long before = (long) allocatedBytes.invoke(threads);
+            toggleSensors(securityService, sensors);
+            long after = (long) allocatedBytes.invoke(threads);
+            //the reflective calls box their results, so allow less than one byte per event in total
+            bytesPerEvent = (after - before) / EVENTS_PER_ROUND;
+        }
+        assertEquals(0, bytesPerEvent, "bytes allocated per sensor event");
+    }
+
+    /**
+     * Activates and then deactivates each sensor in turn, so the alarm keeps moving between
+     * no alarm and pending alarm and the listeners are notified on every event.
+     */
+    private static void toggleSensors(SecurityService securityService, Sensor[] sensors) {
+        for (int i = 0; i < EVENTS_PER_ROUND; i++) {
+            Sensor sensor = sensors[(i >> 1) % sensors.length];
+            securityService.changeSensorActivationStatus(sensor, (i & 1) == 0);
+        }
+    }
+
+    //com.sun.management isn't readable from this module at compile time, so look the method up reflectively
+    private static Method currentThreadAllocatedBytes() {
+        try {
+            return Class.forName("com.sun.management.ThreadMXBean").getMethod("getCurrentThreadAllocatedBytes");
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.udacity.catpoint.security.timeseries;
+
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ActivationBlockTest {
+
+    private final ActivationBlock.Encoder encoder = new ActivationBlock.Encoder();
+    private final ActivationBlock.Decoded decoded = new ActivationBlock.Decoded();
+
+    private static ActivationBlock block(long[] times, UUID[] ids, boolean[] states) {
+        ActivationBlock block = new ActivationBlock();
+        for (int i = 0; i < times.length; i++) {
+            block.add(times[i], ids[i].getMostSignificantBits(), ids[i].getLeastSignificantBits(), states[i]);
+        }
+        return block;
+    }
+
+    /**
+     * @return a copy of the encoded block, since the encoder reuses its buffer
+     */
+    private ByteBuffer encode(ActivationBlock block) {
+        ByteBuffer encoded = encoder.encode(block);
+        ByteBuffer copy = ByteBuffer.allocate(encoded.remaining());
+        copy.put(encoded).flip();
+        return copy;
+    }
+
+    private void assertRoundTrips(ActivationBlock block) throws IOException {
+        ByteBuffer encoded = encode(block);
+        assertTrue(decoded.verify(encoded, 0));
+        decoded.decode(encoded);
+
+        assertEquals(block.count, decoded.count);
+        for (int i = 0; i < block.count; i++) {
+            assertEquals(block.times[i], decoded.times[i], "time " + i);
+            assertEquals(block.idHigh[i], decoded.dictHigh[decoded.codes[i]], "sensor " + i);
+            assertEquals(block.idLow[i], decoded.dictLow[decoded.codes[i]], "sensor " + i);
+            assertEquals(block.states[i], decoded.states[i], "state " + i);
+        }
+    }
+
+    private static UUID[] sensors(int count, int records, Random random) {
+        UUID[] distinct = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            distinct[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        UUID[] ids = new UUID[records];
+        for (int i = 0; i < records; i++) {
+            ids[i] = distinct[i < count ? i : random.nextInt(count)];
+        }
+        return ids;
+    }
+
+    @Test
+    @DisplayName("Varints take a byte per seven bits and read back, negative ones at full length")
+    void varint_edgeValues_roundTrip() {
+        int[] ints = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        int[] intLengths = {1, 1, 1, 2, 2, 3, 5, 5, 5};
+        long[] longs = {0, 127, 128, Integer.MAX_VALUE + 1L, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        int[] longLengths = {1, 1, 2, 5, 9, 10, 10};
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+
+        for (int i = 0; i < ints.length; i++) {
+            buffer.clear();
+            ActivationBlock.putVarint(buffer, ints[i]);
+            assertEquals(intLengths[i], buffer.position(), "length of " + ints[i]);
+            buffer.flip();
+            assertEquals(ints[i], ActivationBlock.getVarint(buffer));
+        }
+        for (int i = 0; i < longs.length; i++) {
+            buffer.clear();
+            ActivationBlock.putVarlong(buffer, longs[i]);
+            assertEquals(longLengths[i], buffer.position(), "length of " + longs[i]);
+            buffer.flip();
+            assertEquals(longs[i], ActivationBlock.getVarlong(buffer));
+        }
+    }
+
+    @Test
+    @DisplayName("Zigzag maps small magnitudes of either sign to small numbers and back")
+    void zigzag_signedValues_smallAndReversible() {
+        assertEquals(0, ActivationBlock.zigzag(0));
+        assertEquals(1, ActivationBlock.zigzag(-1));
+        assertEquals(2, ActivationBlock.zigzag(1));
+        assertEquals(3, ActivationBlock.zigzag(-2));
+        assertEquals(-1, ActivationBlock.zigzag(Long.MIN_VALUE));
+        assertEquals(-2, ActivationBlock.zigzag(Long.MAX_VALUE));
+        for (long value : new long[]{0, 1, -1, 63, -64, 1L << 40, -(1L << 40), Long.MAX_VALUE, Long.MIN_VALUE}) {
+            assertEquals(value, ActivationBlock.unzigzag(ActivationBlock.zigzag(value)));
+        }
+    }
+
+    @Test
+    @DisplayName("Steady timestamps cost a byte each, and one sensor and state add almost nothing")
+    void encode_steadyTimes_oneBytePerRecord() throws IOException {
+        int records = 1000;
+        long[] times = new long[records];
+        UUID[] ids = new UUID[records];
+        boolean[] states = new boolean[records];
+        for (int i = 0; i < records; i++) {
+            times[i] = 1_700_000_000_000L + i * 1000L;
+            ids[i] = new UUID(1, 2);
+        }
+        ActivationBlock block = block(times, ids, states);
+
+        ByteBuffer encoded = encode(block);
+
+        //dictionary size and entry, first time, the first delta in two bytes, then a byte per
+        //delta-of-delta and per code, state, run count, run
+        assertEquals(1 + 16 + 8 + 2 + (records - 2) + records + 1 + 1 + 2, encoded.getInt(ActivationBlock.BODY_BYTES));
+        assertEquals(1_700_000_000_000L, encoded.getLong(ActivationBlock.MIN_TIME));
+        assertEquals(1_700_000_000_000L + 999_000L, encoded.getLong(ActivationBlock.MAX_TIME));
+        assertRoundTrips(block);
+    }
+
+    @Test
+    @DisplayName("Irregular, repeated and backwards timestamps come back exactly")
+    void encode_irregularTimes_roundTrip() throws IOException {
+        long[] times = {1_700_000_000_000L, 1_700_000_000_000L, 1_700_000_000_001L, 1_699_000_000_000L,
+                1_800_000_000_000L, 0, Long.MAX_VALUE / 4, 5};
+        Random random = new Random(1);
+        UUID[] ids = sensors(3, times.length, random);
+        boolean[] states = {true, false, true, true, false, false, true, false};
+
+        assertRoundTrips(block(times, ids, states));
+    }
+
+    @Test
+    @DisplayName("A block with more sensors than a one byte index holds keeps each record's sensor")
+    void encode_manySensors_dictionaryRoundTrips() throws IOException {
+        Random random = new Random(2);
+        int records = 20_000;
+        long[] times = new long[records];
+        boolean[] states = new boolean[records];
+        for (int i = 1; i < records; i++) {
+            times[i] = times[i - 1] + random.nextInt(5000);
+            states[i] = random.nextBoolean();
+        }
+        ActivationBlock block = block(times, sensors(300, records, random), states);
+
+        assertRoundTrips(block);
+        assertEquals(300, decoded.dictSize);
+    }
+
+    @Test
+    @DisplayName("States come back from runs of any length, down to a single record")
+    void encode_stateRuns_roundTrip() throws IOException {
+        Random random = new Random(3);
+        UUID[] one = {new UUID(0, 1)};
+        assertRoundTrips(block(new long[]{42}, one, new boolean[]{true}));
+
+        int records = ActivationBlock.MAX_RECORDS;
+        long[] times = new long[records];
+        boolean[] alternating = new boolean[records];
+        boolean[] allActive = new boolean[records];
+        boolean[] bursts = new boolean[records];
+        for (int i = 0; i < records; i++) {
+            times[i] = i;
+            alternating[i] = i % 2 == 0;
+            allActive[i] = true;
+            bursts[i] = (i / (1 + random.nextInt(300))) % 2 == 0;
+        }
+        UUID[] ids = sensors(50, records, random);
+        assertRoundTrips(block(times, ids, alternating));
+        assertRoundTrips(block(times, ids, allActive));
+        assertRoundTrips(block(times, ids, bursts));
+    }
+
+    @Test
+    @DisplayName("A changed body byte fails the checksum")
+    void verify_damagedBody_fails() {
+        ByteBuffer encoded = encode(block(new long[]{1, 2, 3}, sensors(2, 3, new Random(4)), new boolean[]{true, false, true}));
+        assertTrue(decoded.verify(encoded, 0));
+
+        int last = encoded.limit() - 1;
+        encoded.put(last, (byte) (encoded.get(last) ^ 1));
+
+        assertFalse(decoded.verify(encoded, 0));
+    }
+
+    @Test
+    @DisplayName("A block that does not decode leaves no records or sensors of the previous block behind")
+    void decode_codeOutsideDictionary_throwsAndClears() throws IOException {
+        assertRoundTrips(block(new long[]{1, 2}, sensors(2, 2, new Random(5)), new boolean[]{true, false}));
+        //four steady records of two sensors: their codes follow the dictionary, first time and delta-of-deltas
+        ByteBuffer encoded = encode(block(new long[]{10, 20, 30, 40}, sensors(2, 4, new Random(6)), new boolean[4]));
+        int firstCode = ActivationBlock.HEADER_BYTES + 1 + 2 * 16 + 8 + 3;
+        assertEquals(0, encoded.get(firstCode));
+        encoded.put(firstCode, (byte) 2);
+
+        assertThrows(IOException.class, () -> decoded.decode(encoded));
+        assertEquals(0, decoded.count);
+        assertEquals(0, decoded.dictSize);
+    }
+
+    @Test
+    @DisplayName("Blocks written before checksums were added still decode")
+    void decode_versionOneBlock_decodes() throws IOException {
+        ActivationBlock block = block(new long[]{5, 6, 9}, sensors(2, 3, new Random(7)), new boolean[]{true, true, false});
+        ByteBuffer encoded = encode(block);
+        int bodyBytes = encoded.getInt(ActivationBlock.BODY_BYTES);
+        ByteBuffer v1 = ByteBuffer.allocate(ActivationBlock.HEADER_BYTES_V1 + bodyBytes);
+        v1.putInt(ActivationBlock.MAGIC_V1).putInt(3).putLong(5).putLong(9).putInt(bodyBytes);
+        v1.put(encoded.position(ActivationBlock.HEADER_BYTES)).flip();
+
+        assertEquals(ActivationBlock.HEADER_BYTES_V1, ActivationBlock.headerBytes(v1.getInt(0)));
+        assertTrue(ActivationBlock.checksumMatches(v1, 0, new CRC32()));
+        decoded.decode(v1);
+        assertEquals(3, decoded.count);
+        assertEquals(9, decoded.times[2]);
+        assertFalse(decoded.states[2]);
+    }
+}
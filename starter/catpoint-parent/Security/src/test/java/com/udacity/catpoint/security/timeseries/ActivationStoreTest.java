@@ -0,0 +1,175 @@
+package com.udacity.catpoint.security.timeseries;
+
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ActivationStoreTest {
+
+    private static final long DAY_MILLIS = 86_400_000L;
+    private static final long FIRST_DAY = 19_000;
+    private static final long START = FIRST_DAY * DAY_MILLIS;
+
+    private Path dir;
+    private ActivationStore store;
+
+    @BeforeEach
+    void init() throws IOException {
+        dir = Files.createTempDirectory("activation-store-test");
+        store = new ActivationStore(dir);
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * What one sensor did in a range, worked out from the plain list of activations.
+     */
+    private static long[] expectedActivity(List<Activation> inRange, UUID sensor) {
+        long activations = 0;
+        long deactivations = 0;
+        long activeMillis = 0;
+        Activation previous = null;
+        for (Activation activation : inRange) {
+            if (!activation.getSensorId().equals(sensor)) {
+                continue;
+            }
+            if (previous != null && previous.isActive()) {
+                activeMillis += activation.getTime() - previous.getTime();
+            }
+            if (activation.isActive()) {
+                activations++;
+            } else {
+                deactivations++;
+            }
+            previous = activation;
+        }
+        return new long[]{activations, deactivations, activeMillis};
+    }
+
+    private static List<Activation> inRange(List<Activation> all, long from, long to) {
+        List<Activation> found = new ArrayList<>();
+        for (Activation activation : all) {
+            if (activation.getTime() >= from && activation.getTime() < to) {
+                found.add(activation);
+            }
+        }
+        return found;
+    }
+
+    private void assertMatches(List<Activation> reference, long from, long to) throws IOException {
+        List<Activation> expected = inRange(reference, from, to);
+        List<Activation> actual = store.between(from, to);
+        assertEquals(expected.size(), actual.size(), "records in " + from + ".." + to);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString(), "record " + i);
+        }
+
+        Map<UUID, SensorActivity> perSensor = store.perSensor(from, to);
+        Map<UUID, Boolean> seen = new HashMap<>();
+        for (Activation activation : expected) {
+            seen.put(activation.getSensorId(), true);
+        }
+        assertEquals(seen.keySet(), perSensor.keySet());
+        for (UUID sensor : seen.keySet()) {
+            long[] activity = expectedActivity(expected, sensor);
+            SensorActivity stored = perSensor.get(sensor);
+            assertEquals(activity[0], stored.getActivations(), "activations of " + sensor);
+            assertEquals(activity[1], stored.getDeactivations(), "deactivations of " + sensor);
+            assertEquals(activity[2], stored.getActiveMillis(), "active time of " + sensor);
+        }
+    }
+
+    @Test
+    @DisplayName("Range scans and per-sensor aggregates match a plain list of the same records")
+    void queries_randomRecords_matchReference() throws IOException {
+        Random random = new Random(42);
+        UUID[] sensors = new UUID[60];
+        for (int i = 0; i < sensors.length; i++) {
+            sensors[i] = UUID.randomUUID();
+        }
+        //more blocks than may wait for the writer, spread over three days
+        List<Activation> reference = new ArrayList<>();
+        long time = START;
+        for (int i = 0; i < 400_000; i++) {
+            time += random.nextInt(1300);
+            Activation activation = new Activation(sensors[random.nextInt(sensors.length)], time, random.nextBoolean());
+            reference.add(activation);
+            store.record(activation.getSensorId(), activation.getTime(), activation.isActive());
+        }
+        store.flush();
+        long end = time + 1;
+
+        assertMatches(reference, START, end);
+        //across midnight, within a day, and a few random ranges
+        assertMatches(reference, START + DAY_MILLIS - 3_600_000, START + DAY_MILLIS + 3_600_000);
+        assertMatches(reference, START + DAY_MILLIS + 1000, START + DAY_MILLIS + 900_000);
+        for (int i = 0; i < 5; i++) {
+            long from = START + (long) (random.nextDouble() * (end - START));
+            assertMatches(reference, from, from + (long) (random.nextDouble() * (end - from)) + 1);
+        }
+        assertTrue(store.between(end, end + DAY_MILLIS).isEmpty());
+    }
+
+    @Test
+    @DisplayName("A sensor active over midnight is credited with the time on both days")
+    void perSensor_activeOverMidnight_timeOnBothDays() throws IOException {
+        UUID sensor = UUID.randomUUID();
+        store.record(sensor, START + DAY_MILLIS - 60_000, true);
+        store.record(sensor, START + DAY_MILLIS + 60_000, false);
+        store.flush();
+
+        SensorActivity activity = store.perSensor(START, START + 2 * DAY_MILLIS).get(sensor);
+
+        assertEquals(120_000, activity.getActiveMillis());
+        assertEquals(1, activity.getActivations());
+        assertEquals(1, activity.getDeactivations());
+        assertEquals(2, Files.list(dir).count(), "one segment per day");
+    }
+
+    @Test
+    @DisplayName("A block damaged on disk is skipped and the blocks after it still answer")
+    void between_damagedBlock_skipped() throws IOException {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        for (int i = 0; i < 10; i++) {
+            store.record(first, START + i, true);
+        }
+        store.flush();
+        for (int i = 10; i < 20; i++) {
+            store.record(second, START + i, false);
+        }
+        store.close();
+        try (FileChannel channel = FileChannel.open(dir.resolve(Segment.fileName(FIRST_DAY)), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x55}), ActivationBlock.HEADER_BYTES + 2);
+        }
+
+        store = new ActivationStore(dir);
+        List<Activation> found = store.between(START, START + DAY_MILLIS);
+
+        assertEquals(10, found.size());
+        for (Activation activation : found) {
+            assertEquals(second, activation.getSensorId());
+        }
+    }
+}
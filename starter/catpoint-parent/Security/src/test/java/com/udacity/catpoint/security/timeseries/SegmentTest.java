@@ -0,0 +1,131 @@
+package com.udacity.catpoint.security.timeseries;
+
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentTest {
+
+    private static final long DAY = 19_000;
+
+    private final ActivationBlock.Encoder encoder = new ActivationBlock.Encoder();
+    private Path dir;
+
+    @BeforeEach
+    void init() throws IOException {
+        dir = Files.createTempDirectory("segment-test");
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private ByteBuffer encode(int records, long firstTime) {
+        ActivationBlock block = new ActivationBlock();
+        for (int i = 0; i < records; i++) {
+            block.add(firstTime + i * 1000L, 7, i % 5, i % 2 == 0);
+        }
+        return encoder.encode(block);
+    }
+
+    /**
+     * Writes two whole blocks.
+     * @return the segment's length
+     */
+    private long writeTwoBlocks() throws IOException {
+        Segment segment = Segment.open(dir, DAY);
+        segment.append(encode(100, 0));
+        segment.append(encode(50, 200_000));
+        long size = segment.size();
+        segment.close();
+        return size;
+    }
+
+    private void appendRaw(ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve(Segment.fileName(DAY)), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(bytes);
+        }
+    }
+
+    private void flipByte(long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve(Segment.fileName(DAY)), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, position);
+            one.put(0, (byte) (one.get(0) ^ 0x10)).rewind();
+            channel.write(one, position);
+        }
+    }
+
+    private long reopenedSize() throws IOException {
+        Segment segment = Segment.open(dir, DAY);
+        long size = segment.size();
+        segment.close();
+        assertEquals(size, Files.size(dir.resolve(Segment.fileName(DAY))), "the file is cut to the whole blocks");
+        return size;
+    }
+
+    @Test
+    @DisplayName("Whole blocks survive reopening")
+    void open_wholeBlocks_kept() throws IOException {
+        long size = writeTwoBlocks();
+
+        assertEquals(size, reopenedSize());
+    }
+
+    @Test
+    @DisplayName("A block cut short by a crash is cut off")
+    void open_partialLastBlock_truncated() throws IOException {
+        long size = writeTwoBlocks();
+        ByteBuffer third = encode(80, 400_000);
+        third.limit(third.limit() / 2);
+        appendRaw(third);
+
+        assertEquals(size, reopenedSize());
+    }
+
+    @Test
+    @DisplayName("A last block of the right length whose body never reached the disk fails its checksum and is cut off")
+    void open_zeroedLastBlock_truncated() throws IOException {
+        long size = writeTwoBlocks();
+        ByteBuffer third = encode(80, 400_000);
+        ByteBuffer torn = ByteBuffer.allocate(third.remaining());
+        torn.put(third.slice().limit(ActivationBlock.HEADER_BYTES)).position(0);
+        appendRaw(torn);
+
+        assertEquals(size, reopenedSize());
+    }
+
+    @Test
+    @DisplayName("Bytes too few for a header, or not a block, are cut off")
+    void open_garbageTail_truncated() throws IOException {
+        long size = writeTwoBlocks();
+        appendRaw(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        assertEquals(size, reopenedSize());
+
+        ByteBuffer garbage = ByteBuffer.allocate(64);
+        garbage.putInt(0, 0xCAFEBABE);
+        appendRaw(garbage);
+        assertEquals(size, reopenedSize());
+    }
+
+    @Test
+    @DisplayName("A damaged block before others is kept, so the blocks after it stay readable")
+    void open_damagedEarlierBlock_kept() throws IOException {
+        long size = writeTwoBlocks();
+        flipByte(ActivationBlock.HEADER_BYTES + 3);
+
+        assertEquals(size, reopenedSize());
+    }
+}
@@ -0,0 +1,67 @@
+package com.udacity.catpoint.security.timeseries;
+
+import org.junit.jupiter.api.*;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorActivityTest {
+
+    private static final UUID SENSOR = new UUID(1, 2);
+    private static final long MIDNIGHT = 86_400_000L;
+
+    @Test
+    @DisplayName("Active time is only counted between changes")
+    void add_changes_activeTimeBetweenThem() {
+        SensorActivity activity = new SensorActivity(SENSOR);
+        activity.add(1000, false);
+        activity.add(2000, true);
+        activity.add(2500, true);
+        activity.add(4000, false);
+
+        assertEquals(2, activity.getActivations());
+        assertEquals(2, activity.getDeactivations());
+        assertEquals(2000, activity.getActiveMillis());
+        assertEquals(1000, activity.getFirstTime());
+        assertEquals(4000, activity.getLastTime());
+        assertFalse(activity.isLastActive());
+    }
+
+    @Test
+    @DisplayName("A sensor active across midnight counts the time on both sides once merged")
+    void merge_activeAcrossDays_countsTimeOverMidnight() {
+        SensorActivity before = new SensorActivity(SENSOR);
+        before.add(MIDNIGHT - 60_000, true);
+        SensorActivity after = new SensorActivity(SENSOR);
+        after.add(MIDNIGHT + 60_000, false);
+        after.add(MIDNIGHT + 70_000, true);
+
+        before.merge(after);
+
+        assertEquals(2, before.getActivations());
+        assertEquals(1, before.getDeactivations());
+        assertEquals(120_000, before.getActiveMillis());
+        assertEquals(MIDNIGHT - 60_000, before.getFirstTime());
+        assertEquals(MIDNIGHT + 70_000, before.getLastTime());
+        assertTrue(before.isLastActive());
+    }
+
+    @Test
+    @DisplayName("Merging with activity that has no changes, either way round, keeps the other")
+    void merge_emptySide_keepsOther() {
+        SensorActivity active = new SensorActivity(SENSOR);
+        active.add(MIDNIGHT, true);
+        active.add(MIDNIGHT + 500, false);
+
+        active.merge(new SensorActivity(SENSOR));
+        assertEquals(500, active.getActiveMillis());
+        assertEquals(MIDNIGHT + 500, active.getLastTime());
+
+        SensorActivity empty = new SensorActivity(SENSOR);
+        empty.merge(active);
+        assertEquals(1, empty.getActivations());
+        assertEquals(500, empty.getActiveMillis());
+        assertEquals(MIDNIGHT, empty.getFirstTime());
+    }
+}
@@ -0,0 +1,127 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.timeseries.Activation;
+import com.udacity.catpoint.security.timeseries.ActivationStore;
+import com.udacity.catpoint.security.timeseries.SensorActivity;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the ActivationStore: the cost of recording an activation, of recording plus encoding
+ * and writing it, and the latency of range scans and per-sensor aggregates over a store filled
+ * with a month of activations from 200 sensors.
+ * <p>
+ *      java -jar benchmarks/target/benchmarks.jar ActivationStoreBenchmark -p recordsPerDay=1000000
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ActivationStoreBenchmark {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int DAYS = 30;
+    private static final int SENSORS = 200;
+    private static final int BATCH = 65536;
+
+    @Param({"100000", "1000000"})
+    public int recordsPerDay;
+
+    private final UUID[] sensorIds = new UUID[SENSORS];
+    private final boolean[] active = new boolean[SENSORS];
+    private final Random random = new Random(42);
+    private Path directory;
+    private ActivationStore filled;
+    private ActivationStore ingest;
+    private long start;
+    private long ingestTime;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        for (int i = 0; i < SENSORS; i++) {
+            sensorIds[i] = UUID.randomUUID();
+        }
+        directory = Files.createTempDirectory("activation-store");
+        start = Math.floorDiv(System.currentTimeMillis(), DAY_MILLIS) * DAY_MILLIS - DAYS * DAY_MILLIS;
+        filled = new ActivationStore(directory.resolve("filled"));
+        long step = DAY_MILLIS / recordsPerDay;
+        long time = start;
+        for (long i = 0; i < (long) DAYS * recordsPerDay; i++) {
+            time += step;
+            recordRandom(filled, time);
+        }
+        filled.flush();
+        ingest = new ActivationStore(directory.resolve("ingest"));
+        ingestTime = start;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        filled.close();
+        ingest.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private void recordRandom(ActivationStore store, long time) {
+        int sensor = random.nextInt(SENSORS);
+        active[sensor] = !active[sensor];
+        store.record(sensorIds[sensor], time, active[sensor]);
+    }
+
+    /**
+     * The part of ingest that runs on the service thread.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void record() {
+        for (int i = 0; i < BATCH; i++) {
+            ingestTime += 10;
+            recordRandom(ingest, ingestTime);
+        }
+    }
+
+    /**
+     * Ingest including encoding and appending to the segment, one block per invocation.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void recordAndWrite() throws IOException {
+        record();
+        ingest.flush();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Activation> scanHour() throws IOException {
+        long from = start + DAYS / 2 * DAY_MILLIS + TimeUnit.HOURS.toMillis(13);
+        return filled.between(from, from + TimeUnit.HOURS.toMillis(1));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<UUID, SensorActivity> perSensorDay() throws IOException {
+        long from = start + DAYS / 2 * DAY_MILLIS;
+        return filled.perSensor(from, from + DAY_MILLIS);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<UUID, SensorActivity> perSensorMonth() throws IOException {
+        return filled.perSensor(start, start + DAYS * DAY_MILLIS);
+    }
+}
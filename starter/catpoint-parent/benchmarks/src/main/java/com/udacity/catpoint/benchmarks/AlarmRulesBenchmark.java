@@ -0,0 +1,99 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.rules.CompiledRules;
+import com.udacity.catpoint.security.rules.Trigger;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares deciding with the compiled default rules to the hand-written checks they replaced,
+ * over the same random mix of triggers and states. Both should cost a few nanoseconds; if the
+ * compiled table is noticeably slower, the rules engine has a regression.
+ * <p>
+ *      java -jar benchmarks/target/benchmarks.jar AlarmRulesBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AlarmRulesBenchmark {
+
+    private static final int INPUTS = 1024;
+
+    private final Trigger[] triggers = new Trigger[INPUTS];
+    private final ArmingStatus[] armingStatuses = new ArmingStatus[INPUTS];
+    private final AlarmStatus[] alarmStatuses = new AlarmStatus[INPUTS];
+    private final boolean[] cats = new boolean[INPUTS];
+    private final SensorType[] sensorTypes = new SensorType[INPUTS];
+    private final int[] activeSensors = new int[INPUTS];
+    private CompiledRules rules;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rules = CompiledRules.defaults();
+        Random random = new Random(42);
+        for (int i = 0; i < INPUTS; i++) {
+            triggers[i] = Trigger.values()[random.nextInt(Trigger.values().length)];
+            armingStatuses[i] = ArmingStatus.values()[random.nextInt(ArmingStatus.values().length)];
+            alarmStatuses[i] = AlarmStatus.values()[random.nextInt(AlarmStatus.values().length)];
+            cats[i] = random.nextBoolean();
+            sensorTypes[i] = SensorType.values()[random.nextInt(SensorType.values().length)];
+            activeSensors[i] = random.nextInt(3);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void handWritten(Blackhole blackhole) {
+        for (int i = 0; i < INPUTS; i++) {
+            blackhole.consume(handWritten(triggers[i], armingStatuses[i], alarmStatuses[i], cats[i], activeSensors[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void compiled(Blackhole blackhole) {
+        for (int i = 0; i < INPUTS; i++) {
+            blackhole.consume(rules.decide(triggers[i], armingStatuses[i], alarmStatuses[i], cats[i], sensorTypes[i], activeSensors[i]));
+        }
+    }
+
+    /**
+     * The alarm decisions as SecurityService made them before the rules engine.
+     */
+    static AlarmStatus handWritten(Trigger trigger, ArmingStatus arming, AlarmStatus alarm, boolean cat, int activeSensors) {
+        switch (trigger) {
+            case SENSOR_ACTIVATED:
+                if (arming == ArmingStatus.DISARMED) {
+                    return null;
+                }
+                switch (alarm) {
+                    case NO_ALARM:
+                        return AlarmStatus.PENDING_ALARM;
+                    case PENDING_ALARM:
+                        return AlarmStatus.ALARM;
+                    default:
+                        return null;
+                }
+            case SENSOR_DEACTIVATED:
+                return alarm == AlarmStatus.PENDING_ALARM ? AlarmStatus.NO_ALARM : null;
+            case CAT_DETECTED:
+                return arming == ArmingStatus.ARMED_HOME ? AlarmStatus.ALARM : null;
+            case CAT_CLEARED:
+                return activeSensors == 0 ? AlarmStatus.NO_ALARM : null;
+            default:
+                if (arming == ArmingStatus.DISARMED) {
+                    return AlarmStatus.NO_ALARM;
+                }
+                return cat && arming == ArmingStatus.ARMED_HOME ? AlarmStatus.ALARM : null;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.image.AwsImageService;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.rekognition.model.Image;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the jpg encoding AwsImageService does before every DetectLabels call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageEncodeBenchmark {
+
+    @Param({"640x480", "1920x1080"})
+    public String resolution;
+
+    private BufferedImage image;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] size = resolution.split("x");
+        image = new BufferedImage(Integer.parseInt(size[0]), Integer.parseInt(size[1]), BufferedImage.TYPE_3BYTE_BGR);
+        //a gradient compresses like a real frame, a blank image would flatter the encoder
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.ORANGE, image.getWidth(), image.getHeight(), Color.DARK_GRAY));
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.dispose();
+    }
+
+    @Benchmark
+    public Image encode() throws IOException {
+        return AwsImageService.toAwsImage(image);
+    }
+}
@@ -0,0 +1,106 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * Measures PretendDatabaseSecurityRepositoryImpl and the Gson serialization it does on every write.
+ * <p>
+ * Each trial gets a throwaway Preferences node of its own, removed afterwards, so the
+ * application's stored state is never touched.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    private static final Type SENSOR_SET_TYPE = new TypeToken<Set<Sensor>>() {}.getType();
+
+    //filling the node is one Preferences write per sensor, which is what bounds the largest count
+    @Param({"4", "100", "1000"})
+    public int sensorCount;
+
+    private final Gson gson = new Gson();
+
+    private Preferences prefs;
+
+    private PretendDatabaseSecurityRepositoryImpl repository;
+    private List<Sensor> sensors;
+    private Set<Sensor> sensorSet;
+    private String sensorJson;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        prefs = Preferences.userRoot().node("catpoint-benchmark-" + UUID.randomUUID());
+        repository = new PretendDatabaseSecurityRepositoryImpl(prefs);
+        sensors = new ArrayList<>(sensorCount);
+        for (int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            sensors.add(sensor);
+            repository.addSensor(sensor);
+        }
+        sensorSet = new TreeSet<>(sensors);
+        sensorJson = gson.toJson(sensorSet);
+    }
+
+    @TearDown(Level.Trial)
+    public void removePreferences() throws BackingStoreException {
+        prefs.removeNode();
+        prefs.flush();
+    }
+
+    /**
+     * Adds and then removes a sensor, so the set stays the same size across invocations.
+     */
+    @Benchmark
+    public int addSensor() {
+        Sensor sensor = new Sensor("Added", SensorType.DOOR);
+        repository.addSensor(sensor);
+        repository.removeSensor(sensor);
+        return repository.getSensors().size();
+    }
+
+    @Benchmark
+    public int updateSensor() {
+        Sensor sensor = sensors.get(next);
+        next = (next + 1) % sensors.size();
+        sensor.setActive(!sensor.getActive());
+        repository.updateSensor(sensor);
+        return repository.getSensors().size();
+    }
+
+    /**
+     * Startup cost: reading and deserializing all state from Preferences.
+     */
+    @Benchmark
+    public PretendDatabaseSecurityRepositoryImpl load() {
+        return new PretendDatabaseSecurityRepositoryImpl(prefs);
+    }
+
+    /**
+     * What every write used to serialize when all sensors were stored as one value.
+     */
+    @Benchmark
+    public String gsonSerializeSensors() {
+        return gson.toJson(sensorSet);
+    }
+
+    @Benchmark
+    public Set<Sensor> gsonDeserializeSensors() {
+        return gson.fromJson(sensorJson, SENSOR_SET_TYPE);
+    }
+}
@@ -0,0 +1,78 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.image.FakeImageService;
+import com.udacity.catpoint.security.data.*;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the SecurityService entry points against an in-memory repository, so the numbers
+ * reflect the alarm logic and repository data structures rather than Preferences I/O.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecurityServiceBenchmark {
+
+    @Param({"4", "1000", "100000"})
+    public int sensorCount;
+
+    private SecurityService securityService;
+    private List<Sensor> sensors;
+    private BufferedImage image;
+    private int next;
+    private boolean active;
+    private boolean armed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        securityService = new SecurityService(new InMemorySecurityRepository(), new FakeImageService());
+        sensors = new ArrayList<>(sensorCount);
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, types[i % types.length]);
+            sensors.add(sensor);
+            securityService.addSensor(sensor);
+        }
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Toggles sensors round robin, so the alarm moves between its states as it would in use.
+     */
+    @Benchmark
+    public AlarmStatus changeSensorActivationStatus() {
+        Sensor sensor = sensors.get(next);
+        if (++next == sensors.size()) {
+            next = 0;
+            active = !active;
+        }
+        securityService.changeSensorActivationStatus(sensor, !active);
+        return securityService.getAlarmStatus();
+    }
+
+    /**
+     * Alternates between armed (which resets every sensor) and disarmed.
+     */
+    @Benchmark
+    public ArmingStatus setArmingStatus() {
+        armed = !armed;
+        securityService.setArmingStatus(armed ? ArmingStatus.ARMED_HOME : ArmingStatus.DISARMED);
+        return securityService.getArmingStatus();
+    }
+
+    @Benchmark
+    public AlarmStatus processImage() {
+        securityService.processImage(image);
+        return securityService.getAlarmStatus();
+    }
+}
@@ -0,0 +1,269 @@
+package com.udacity.catpoint.loadgen;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.udacity.catpoint.image.FakeImageService;
+import com.udacity.catpoint.security.api.SecurityApiServer;
+import com.udacity.catpoint.security.application.ServiceDispatcher;
+import com.udacity.catpoint.security.data.InMemorySecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.metrics.LatencyHistogram;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmark client for the {@link SecurityApiServer}. Each connection is a persistent HTTP/1.1
+ * connection driven closed-loop, sending its next request as soon as the previous response has
+ * been read, and the client reports throughput and latency percentiles.
+ * <p>
+ * Without -Dapiclient.port it starts an API server of its own on an in-memory repository, so
+ *      java -cp loadgen/target/loadgen.jar com.udacity.catpoint.loadgen.ApiLoadClient
+ * measures the whole stack on localhost. Other settings:
+ * <ul>
+ *     <li>apiclient.connections: concurrent connections (64)</li>
+ *     <li>apiclient.seconds, apiclient.warmup.seconds: measured and discarded run time (10, 3)</li>
+ *     <li>apiclient.requests: request kinds each connection cycles through, from state, sensors
+ *     and toggle (state,state,state,toggle)</li>
+ *     <li>apiclient.sensors: sensors of the embedded server (20)</li>
+ * </ul>
+ * The client is written against raw sockets rather than java.net.http so that it is not the bottleneck.
+ */
+public class ApiLoadClient {
+
+    public static void main(String[] args) throws Exception {
+        Properties props = new Properties(System.getProperties());
+        int connections = Integer.parseInt(props.getProperty("apiclient.connections", "64"));
+        long seconds = Long.parseLong(props.getProperty("apiclient.seconds", "10"));
+        long warmupSeconds = Long.parseLong(props.getProperty("apiclient.warmup.seconds", "3"));
+        String[] kinds = props.getProperty("apiclient.requests", "state,state,state,toggle").split(",");
+
+        SecurityApiServer embedded = null;
+        int port;
+        if (props.getProperty("apiclient.port") != null) {
+            port = Integer.parseInt(props.getProperty("apiclient.port"));
+        } else {
+            embedded = startEmbeddedServer(Integer.parseInt(props.getProperty("apiclient.sensors", "20")));
+            port = embedded.getPort();
+        }
+
+        try {
+            List<String> sensorIds = fetchSensorIds(port);
+            List<byte[][]> requests = new ArrayList<>();
+            for (String kind : kinds) {
+                requests.add(buildRequests(kind.trim(), sensorIds));
+            }
+
+            LatencyHistogram latency = new LatencyHistogram("api");
+            LongAdder errors = new LongAdder();
+            long start = System.nanoTime();
+            long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            long deadline = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+
+            ExecutorService clients = Executors.newFixedThreadPool(connections);
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                int offset = i;
+                running.add(clients.submit(() -> {
+                    runConnection(port, requests, offset, measureFrom, deadline, latency, errors);
+                    return null;
+                }));
+            }
+            for (Future<?> connection : running) {
+                connection.get();
+            }
+            clients.shutdown();
+
+            LatencyHistogram.Snapshot result = latency.snapshot();
+            System.out.printf(Locale.ROOT, "%d connections, requests %s, %d s%n", connections, String.join(",", kinds), seconds);
+            System.out.printf(Locale.ROOT, "%10s %9s %9s %9s %9s %9s %7s%n", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+            System.out.printf(Locale.ROOT, "%10.1f %9.3f %9.3f %9.3f %9.3f %9.3f %7d%n", result.getCount() / (double) seconds,
+                    millis(result.getPercentile(50)), millis(result.getPercentile(90)), millis(result.getPercentile(99)),
+                    millis(result.getPercentile(99.9)), millis(result.getMax()), errors.sum());
+        } finally {
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+    }
+
+    private static SecurityApiServer startEmbeddedServer(int sensorCount) throws IOException {
+        SecurityService securityService = new SecurityService(new InMemorySecurityRepository(), new FakeImageService());
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            securityService.addSensor(new Sensor("Sensor " + i, types[i % types.length]));
+        }
+        SecurityApiServer server = new SecurityApiServer(securityService, new ServiceDispatcher(), 0,
+                Runtime.getRuntime().availableProcessors());
+        server.start();
+        return server;
+    }
+
+    /**
+     * Sends requests over one connection until the deadline, recording those after the warmup.
+     * Each pass over the request kinds sends the next variant of each, starting from the
+     * connection's own offset.
+     */
+    private static void runConnection(int port, List<byte[][]> requests, int offset, long measureFrom, long deadline,
+                                      LatencyHistogram latency, LongAdder errors) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setTcpNoDelay(true);
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            byte[] body = new byte[64 * 1024];
+            for (int i = 0; ; i++) {
+                long sent = System.nanoTime();
+                if (sent >= deadline) {
+                    return;
+                }
+                byte[][] variants = requests.get(i % requests.size());
+                out.write(variants[(offset + i / requests.size()) % variants.length]);
+                out.flush();
+                int status = readResponse(in, body);
+                if (sent >= measureFrom) {
+                    latency.recordSince(sent);
+                    if (status < 200 || status >= 300) {
+                        errors.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one response with a Content-Length body.
+     * @return the status code
+     */
+    private static int readResponse(InputStream in, byte[] buffer) throws IOException {
+        String statusLine = readLine(in);
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        int contentLength = readContentLength(in);
+        for (int remaining = contentLength; remaining > 0; ) {
+            int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new EOFException("Connection closed mid-response");
+            }
+            remaining -= read;
+        }
+        return status;
+    }
+
+    /**
+     * Reads the headers up to the blank line that ends them.
+     * @return the Content-Length, 0 when absent
+     */
+    private static int readContentLength(InputStream in) throws IOException {
+        int contentLength = 0;
+        for (String header = readLine(in); !header.isEmpty(); header = readLine(in)) {
+            if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                contentLength = Integer.parseInt(header.substring(15).trim());
+            }
+        }
+        return contentLength;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c < 0) {
+                throw new EOFException("Connection closed mid-response");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * @return the variants of one request kind, which a connection sends in turn
+     */
+    private static byte[][] buildRequests(String kind, List<String> sensorIds) {
+        switch (kind) {
+            case "state":
+                return new byte[][]{request("GET", "/api/state", null)};
+            case "sensors":
+                return new byte[][]{request("GET", "/api/sensors", null)};
+            case "toggle":
+                if (sensorIds.isEmpty()) {
+                    throw new IllegalArgumentException("toggle requests need at least one sensor");
+                }
+                //an activation and a deactivation of every sensor, so toggles go round all sensors
+                //and the alarm keeps changing state
+                byte[][] toggles = new byte[sensorIds.size() * 2][];
+                for (int i = 0; i < sensorIds.size(); i++) {
+                    String path = "/api/sensors/" + sensorIds.get(i);
+                    toggles[2 * i] = request("PUT", path, "{\"active\":true}");
+                    toggles[2 * i + 1] = request("PUT", path, "{\"active\":false}");
+                }
+                return toggles;
+            default:
+                throw new IllegalArgumentException("Unknown request kind " + kind);
+        }
+    }
+
+    private static byte[] request(String method, String path, String json) {
+        StringBuilder request = new StringBuilder()
+                .append(method).append(' ').append(path).append(" HTTP/1.1\r\n")
+                .append("Host: localhost\r\n");
+        byte[] body = json == null ? new byte[0] : json.getBytes(StandardCharsets.UTF_8);
+        if (json != null) {
+            request.append("Content-Type: application/json\r\n");
+        }
+        request.append("Content-Length: ").append(body.length).append("\r\n\r\n");
+        byte[] head = request.toString().getBytes(StandardCharsets.US_ASCII);
+        byte[] bytes = new byte[head.length + body.length];
+        System.arraycopy(head, 0, bytes, 0, head.length);
+        System.arraycopy(body, 0, bytes, head.length, body.length);
+        return bytes;
+    }
+
+    static List<String> fetchSensorIds(int port) throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (JsonElement sensor : JsonParser.parseString(get(port, "/api/sensors")).getAsJsonArray()) {
+            ids.add(sensor.getAsJsonObject().get("id").getAsString());
+        }
+        return ids;
+    }
+
+    /**
+     * Sends one GET over a connection of its own.
+     * @return the response body
+     * @throws IOException if the request fails or the status is not 200
+     */
+    static String get(int port, String path) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(request("GET", path, null));
+            out.flush();
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            String statusLine = readLine(in);
+            byte[] body = in.readNBytes(readContentLength(in));
+            if (!statusLine.contains(" 200 ")) {
+                throw new IOException("GET " + path + " failed: " + statusLine);
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static double millis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,88 @@
+package com.udacity.catpoint.loadgen;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Produces the gaps between consecutive events of one stream. Implementations may keep state,
+ * so every stream gets its own instance.
+ */
+public interface ArrivalProcess {
+
+    /**
+     * @return nanoseconds until the next event
+     */
+    long nextGapNanos(Random random);
+
+    /**
+     * Creates the arrival process for one stream from loadgen.pattern (poisson or bursty),
+     * loadgen.burst.size and loadgen.burst.gap.ms.
+     * @param ratePerSecond average events per second of the stream
+     */
+    static ArrivalProcess fromProperties(Properties props, double ratePerSecond) {
+        String pattern = props.getProperty("loadgen.pattern", "poisson");
+        switch (pattern) {
+            case "poisson":
+                return new PoissonArrivals(ratePerSecond);
+            case "bursty":
+                int burstSize = Integer.parseInt(props.getProperty("loadgen.burst.size", "20"));
+                long burstGapNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(props.getProperty("loadgen.burst.gap.ms", "1")));
+                return new BurstyArrivals(ratePerSecond, burstSize, burstGapNanos);
+            default:
+                throw new IllegalArgumentException("Unknown arrival pattern " + pattern);
+        }
+    }
+
+    /**
+     * Independent events: exponentially distributed gaps.
+     */
+    class PoissonArrivals implements ArrivalProcess {
+        private final double meanGapNanos;
+
+        public PoissonArrivals(double ratePerSecond) {
+            this.meanGapNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        }
+
+        @Override
+        public long nextGapNanos(Random random) {
+            return (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+        }
+    }
+
+    /**
+     * Events arrive in bursts, such as a door and several motion sensors tripping together.
+     * Bursts start as a Poisson process and events within a burst are a fixed gap apart. The time
+     * from one burst's first event to the next's is the gaps inside the burst plus the Poisson gap,
+     * so the Poisson mean is what is left of burstSize / rate once the in-burst gaps are taken off;
+     * that keeps the long-run average at the requested rate.
+     */
+    class BurstyArrivals implements ArrivalProcess {
+        private final PoissonArrivals bursts;
+        private final int burstSize;
+        private final long burstGapNanos;
+        private int remainingInBurst;
+
+        public BurstyArrivals(double ratePerSecond, int burstSize, long burstGapNanos) {
+            double cycleNanos = burstSize * (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+            double betweenBurstsNanos = cycleNanos - (double) (burstSize - 1) * burstGapNanos;
+            if (betweenBurstsNanos <= 0) {
+                throw new IllegalArgumentException(String.format(
+                        "Bursts of %d events %d ns apart cannot average %.3f per second", burstSize, burstGapNanos, ratePerSecond));
+            }
+            this.bursts = new PoissonArrivals(TimeUnit.SECONDS.toNanos(1) / betweenBurstsNanos);
+            this.burstSize = burstSize;
+            this.burstGapNanos = burstGapNanos;
+        }
+
+        @Override
+        public long nextGapNanos(Random random) {
+            if (remainingInBurst > 0) {
+                remainingInBurst--;
+                return burstGapNanos;
+            }
+            remainingInBurst = burstSize - 1;
+            return bursts.nextGapNanos(random);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.udacity.catpoint.loadgen;
+
+import com.udacity.catpoint.security.cluster.ClusterClient;
+import com.udacity.catpoint.security.cluster.ClusterNode;
+import com.udacity.catpoint.security.cluster.HashRing;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how sensor event throughput scales with the size of a {@link ClusterNode} cluster, each
+ * node in a JVM of its own on localhost:
+ *      java -cp loadgen/target/loadgen.jar com.udacity.catpoint.loadgen.ClusterBenchmark
+ * For each cluster size, client threads send sensor events for random premises as fast as the
+ * nodes take them, and throughput counts events applied by their owners until all sent events
+ * are in. After the largest size, a node is added and then one removed while the clients keep
+ * sending, and every premises and sensor must still be on exactly one node afterwards.
+ * <ul>
+ *     <li>cluster.nodes: cluster sizes to measure (1,2,4)</li>
+ *     <li>cluster.premises, cluster.sensors: premises, and sensors per premises (1000, 8)</li>
+ *     <li>cluster.clients: client threads (4)</li>
+ *     <li>cluster.seconds: measured run time per size (10)</li>
+ *     <li>cluster.routing: any sends each event to the client's node, which forwards it to the
+ *     owner; smart sends it to the owner directly (any)</li>
+ *     <li>cluster.basePort: first node port (7100)</li>
+ *     <li>cluster.virtualNodes: ring positions per node (128)</li>
+ *     <li>cluster.rebalance: run the membership change check (true)</li>
+ * </ul>
+ * Throughput can only scale while there are spare cores for the extra nodes.
+ */
+public class ClusterBenchmark {
+
+    private final int premisesCount;
+    private final int sensorsPerPremises;
+    private final int clients;
+    private final boolean smart;
+    private final int virtualNodes;
+    private final String[] premisesIds;
+    private final long[] sensorHigh;
+    private final long[] sensorLow;
+    private final SensorType[] sensorTypes;
+    private final List<Process> processes = new ArrayList<>();
+
+    ClusterBenchmark(Properties props) {
+        this.premisesCount = Integer.parseInt(props.getProperty("cluster.premises", "1000"));
+        this.sensorsPerPremises = Integer.parseInt(props.getProperty("cluster.sensors", "8"));
+        this.clients = Integer.parseInt(props.getProperty("cluster.clients", "4"));
+        this.smart = "smart".equalsIgnoreCase(props.getProperty("cluster.routing", "any"));
+        this.virtualNodes = Integer.parseInt(props.getProperty("cluster.virtualNodes", "128"));
+        this.premisesIds = new String[premisesCount];
+        int sensors = premisesCount * sensorsPerPremises;
+        this.sensorHigh = new long[sensors];
+        this.sensorLow = new long[sensors];
+        this.sensorTypes = new SensorType[sensors];
+        Random random = new Random(42);
+        for (int p = 0; p < premisesCount; p++) {
+            premisesIds[p] = "premises-" + p;
+        }
+        for (int s = 0; s < sensors; s++) {
+            sensorHigh[s] = random.nextLong();
+            sensorLow[s] = random.nextLong();
+            sensorTypes[s] = SensorType.values()[s % SensorType.values().length];
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties props = new Properties(System.getProperties());
+        String[] sizes = props.getProperty("cluster.nodes", "1,2,4").split(",");
+        long seconds = Long.parseLong(props.getProperty("cluster.seconds", "10"));
+        int basePort = Integer.parseInt(props.getProperty("cluster.basePort", "7100"));
+        boolean rebalance = Boolean.parseBoolean(props.getProperty("cluster.rebalance", "true"));
+
+        ClusterBenchmark benchmark = new ClusterBenchmark(props);
+        System.out.printf(Locale.ROOT, "%d premises x %d sensors, %d clients, %s routing, %d s per size%n",
+                benchmark.premisesCount, benchmark.sensorsPerPremises, benchmark.clients, benchmark.smart ? "smart" : "any", seconds);
+        System.out.printf(Locale.ROOT, "%6s %12s %8s %11s%n", "nodes", "events/s", "speedup", "forwarded");
+        double baseline = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            int size = Integer.parseInt(sizes[i].trim());
+            List<String> members = new ArrayList<>();
+            for (int n = 0; n < size; n++) {
+                members.add("localhost:" + (basePort + n));
+            }
+            try {
+                benchmark.startNodes(members, members);
+                benchmark.populate(members);
+                long before = benchmark.totalApplied(members);
+                long forwardedBefore = benchmark.totalForwarded(members);
+                long start = System.nanoTime();
+                long sent = benchmark.sendFor(members, TimeUnit.SECONDS.toNanos(seconds), null);
+                benchmark.awaitApplied(members, before + sent);
+                double eventsPerSecond = sent / ((System.nanoTime() - start) / 1e9);
+                if (baseline == 0) {
+                    baseline = eventsPerSecond;
+                }
+                double forwardedShare = (benchmark.totalForwarded(members) - forwardedBefore) / (double) sent;
+                System.out.printf(Locale.ROOT, "%6d %12.0f %8.2f %10.1f%%%n", size, eventsPerSecond, eventsPerSecond / baseline,
+                        100 * forwardedShare);
+                if (rebalance && i == sizes.length - 1) {
+                    benchmark.rebalance(members, "localhost:" + (basePort + size), seconds);
+                }
+            } finally {
+                benchmark.stopNodes();
+            }
+        }
+    }
+
+    /**
+     * Adds a member and removes another while clients keep sending, then checks that all state
+     * ended up on exactly one member and no event was lost.
+     */
+    private void rebalance(List<String> members, String joining, long seconds) throws Exception {
+        List<String> all = new ArrayList<>(members);
+        all.add(joining);
+        startNodes(List.of(joining), members);
+        long before = totalApplied(all);
+
+        List<String> grown = new ArrayList<>(all);
+        List<String> shrunk = new ArrayList<>(all);
+        shrunk.remove(0);
+        long[] moveMillis = new long[2];
+        long sent = sendFor(members, TimeUnit.SECONDS.toNanos(seconds), () -> {
+            moveMillis[0] = changeMembership(2, members, grown);
+            moveMillis[1] = changeMembership(3, grown, shrunk);
+        });
+        awaitApplied(all, before + sent);
+
+        int premises = 0;
+        int sensors = 0;
+        for (String member : shrunk) {
+            try (ClusterClient client = new ClusterClient(member)) {
+                ClusterClient.NodeStats stats = client.stats();
+                premises += stats.getPremises();
+                sensors += stats.getSensors();
+            }
+        }
+        System.out.printf(Locale.ROOT, "%nadded %s, then removed %s under load%n", joining, members.get(0));
+        System.out.printf(Locale.ROOT, "%12s %12s %10s %10s %10s%n", "join ms", "leave ms", "premises", "sensors", "lost");
+        System.out.printf(Locale.ROOT, "%12d %12d %10s %10s %10d%n", moveMillis[0], moveMillis[1],
+                premises + "/" + premisesCount, sensors + "/" + sensorHigh.length, before + sent - totalApplied(all));
+    }
+
+    /**
+     * Announces a new membership to every old and new member and waits until none of them is
+     * waiting for premises any more.
+     * @return milliseconds until the move was complete
+     */
+    private long changeMembership(int epoch, List<String> previous, List<String> next) {
+        long start = System.nanoTime();
+        List<String> involved = new ArrayList<>(previous);
+        for (String member : next) {
+            if (!involved.contains(member)) {
+                involved.add(member);
+            }
+        }
+        try {
+            for (String member : involved) {
+                try (ClusterClient client = new ClusterClient(member)) {
+                    client.membership(epoch, previous, next);
+                }
+            }
+            for (String member : next) {
+                try (ClusterClient client = new ClusterClient(member)) {
+                    while (client.stats().isRebalancing()) {
+                        Thread.sleep(1);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Membership change failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Sends one event for every sensor, so every premises and sensor exists, and waits until all are applied.
+     */
+    private void populate(List<String> members) throws Exception {
+        long before = totalApplied(members);
+        try (ClusterClient client = new ClusterClient(members.get(0))) {
+            for (int s = 0; s < sensorHigh.length; s++) {
+                client.sensor(premisesIds[s / sensorsPerPremises], sensorHigh[s], sensorLow[s], sensorTypes[s], false);
+            }
+        }
+        awaitApplied(members, before + sensorHigh.length);
+    }
+
+    /**
+     * Sends events from every client thread for the given time.
+     * @param meanwhile Run on this thread while the clients are sending, may be null
+     * @return events sent
+     */
+    private long sendFor(List<String> members, long nanos, Runnable meanwhile) throws Exception {
+        LongAdder sent = new LongAdder();
+        long deadline = System.nanoTime() + nanos;
+        ExecutorService threads = Executors.newFixedThreadPool(clients);
+        List<Future<?>> running = new ArrayList<>();
+        Random seeds = new Random();
+        for (int c = 0; c < clients; c++) {
+            String home = members.get(c % members.size());
+            long seed = seeds.nextLong();
+            running.add(threads.submit(() -> {
+                send(members, home, seed, deadline, sent);
+                return null;
+            }));
+        }
+        if (meanwhile != null) {
+            meanwhile.run();
+        }
+        for (Future<?> client : running) {
+            client.get();
+        }
+        threads.shutdown();
+        return sent.sum();
+    }
+
+    private void send(List<String> members, String home, long seed, long deadline, LongAdder sent) throws IOException {
+        Random random = new Random(seed);
+        HashRing ring = new HashRing(members, virtualNodes);
+        Map<String, ClusterClient> connections = new HashMap<>();
+        boolean[] active = new boolean[sensorHigh.length];
+        try {
+            long count = 0;
+            while ((count & 1023) != 0 || System.nanoTime() < deadline) {
+                int s = random.nextInt(sensorHigh.length);
+                String premisesId = premisesIds[s / sensorsPerPremises];
+                String target = smart ? ring.ownerOf(premisesId) : home;
+                ClusterClient client = connections.get(target);
+                if (client == null) {
+                    client = new ClusterClient(target);
+                    connections.put(target, client);
+                }
+                active[s] = !active[s];
+                client.sensor(premisesId, sensorHigh[s], sensorLow[s], sensorTypes[s], active[s]);
+                count++;
+            }
+            sent.add(count);
+        } finally {
+            for (ClusterClient client : connections.values()) {
+                client.close();
+            }
+        }
+    }
+
+    private void awaitApplied(List<String> members, long expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        long applied;
+        while ((applied = totalApplied(members)) < expected) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Only " + applied + " of " + expected + " events were applied");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private long totalApplied(List<String> members) throws IOException {
+        long applied = 0;
+        for (String member : members) {
+            try (ClusterClient client = new ClusterClient(member)) {
+                applied += client.stats().getApplied();
+            }
+        }
+        return applied;
+    }
+
+    private long totalForwarded(List<String> members) throws IOException {
+        long forwarded = 0;
+        for (String member : members) {
+            try (ClusterClient client = new ClusterClient(member)) {
+                forwarded += client.stats().getForwarded();
+            }
+        }
+        return forwarded;
+    }
+
+    private void startNodes(List<String> nodes, List<String> members) throws Exception {
+        for (String node : nodes) {
+            processes.add(new ProcessBuilder(
+                    Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    "-Dcatpoint.cluster.listen=" + node,
+                    "-Dcatpoint.cluster.members=" + String.join(",", members),
+                    "-Dcatpoint.cluster.virtualNodes=" + virtualNodes,
+                    ClusterNode.class.getName())
+                    .inheritIO()
+                    .start());
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        for (String node : nodes) {
+            int port = Integer.parseInt(node.substring(node.lastIndexOf(':') + 1));
+            while (true) {
+                try (Socket probe = new Socket("localhost", port)) {
+                    break;
+                } catch (IOException e) {
+                    if (System.nanoTime() > deadline) {
+                        throw new IllegalStateException(node + " did not start", e);
+                    }
+                    Thread.sleep(20);
+                }
+            }
+        }
+    }
+
+    private void stopNodes() throws InterruptedException {
+        for (Process process : processes) {
+            process.destroy();
+        }
+        for (Process process : processes) {
+            process.waitFor();
+        }
+        processes.clear();
+    }
+}
@@ -0,0 +1,177 @@
+package com.udacity.catpoint.loadgen;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.udacity.catpoint.image.FakeImageService;
+import com.udacity.catpoint.security.application.StandbyNode;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.metrics.LatencyHistogram;
+import com.udacity.catpoint.security.replication.ReplicatingSecurityRepository;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures replication lag and failover time between a primary and a {@link StandbyNode} running
+ * in a separate JVM:
+ * <ol>
+ *     <li>runs a primary in this JVM on a {@link ReplicatingSecurityRepository} and starts the standby</li>
+ *     <li>toggles sensors open-loop at a fixed rate and reports how long writes took to be acknowledged</li>
+ *     <li>stops replicating, which the standby can't tell apart from the primary dying, and reports how
+ *     long it took until the standby's API answered, and whether its state matched the primary's</li>
+ * </ol>
+ * Settings: failover.sensors (100), failover.rate in sensor events per second (5000),
+ * failover.seconds (10), failover.timeoutMillis, the standby's heartbeat timeout (3000).
+ */
+public class FailoverBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Properties props = new Properties(System.getProperties());
+        int sensorCount = Integer.parseInt(props.getProperty("failover.sensors", "100"));
+        int rate = Integer.parseInt(props.getProperty("failover.rate", "5000"));
+        long seconds = Long.parseLong(props.getProperty("failover.seconds", "10"));
+        String timeoutMillis = props.getProperty("failover.timeoutMillis", "3000");
+
+        ReplicatingSecurityRepository primary = new ReplicatingSecurityRepository(new InMemorySecurityRepository(), 0);
+        primary.start();
+        SecurityService securityService = new SecurityService(primary, new FakeImageService());
+        List<Sensor> sensors = new ArrayList<>();
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, types[i % types.length]);
+            securityService.addSensor(sensor);
+            sensors.add(sensor);
+        }
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        int apiPort = freePort();
+        Process standby = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                "-Dcatpoint.standby.primary=localhost:" + primary.getPort(),
+                "-Dcatpoint.standby.timeoutMillis=" + timeoutMillis,
+                "-Dcatpoint.api.port=" + apiPort,
+                StandbyNode.class.getName())
+                .inheritIO()
+                .start();
+        try {
+            if (!awaitCaughtUp(primary, TimeUnit.SECONDS.toNanos(30))) {
+                throw new IllegalStateException("Standby did not connect");
+            }
+
+            //open loop: each event has an intended start time, so a slow write delays the next ones
+            LatencyHistogram.Snapshot before = primary.getLag().snapshot();
+            long period = TimeUnit.SECONDS.toNanos(1) / rate;
+            long start = System.nanoTime();
+            long events = seconds * rate;
+            for (long i = 0; i < events; i++) {
+                long intended = start + i * period;
+                for (long wait = intended - System.nanoTime(); wait > 0; wait = intended - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+                Sensor sensor = sensors.get((int) (i % sensors.size()));
+                securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+            }
+            double achieved = events / ((System.nanoTime() - start) / 1e9);
+            LatencyHistogram.Snapshot lag = primary.getLag().snapshot().minus(before);
+
+            System.out.printf(Locale.ROOT, "%d sensors, %d events/s for %d s%n", sensorCount, rate, seconds);
+            System.out.printf(Locale.ROOT, "%10s %10s %10s %10s %10s %10s %10s %8s%n",
+                    "events/s", "acks", "lag p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "resyncs");
+            System.out.printf(Locale.ROOT, "%10.0f %10d %10.1f %10.1f %10.1f %10.1f %10.1f %8d%n", achieved, lag.getCount(),
+                    micros(lag.getPercentile(50)), micros(lag.getPercentile(90)), micros(lag.getPercentile(99)),
+                    micros(lag.getPercentile(99.9)), micros(lag.getMax()), primary.getResyncs());
+
+            boolean caughtUp = awaitCaughtUp(primary, TimeUnit.SECONDS.toNanos(5));
+            long unacknowledged = primary.getSequence() - primary.getAcknowledgedSequence();
+            Map<String, Boolean> expected = new HashMap<>();
+            for (Sensor sensor : sensors) {
+                expected.put(sensor.getSensorId().toString(), sensor.getActive());
+            }
+            String expectedAlarm = securityService.getAlarmStatus().toString();
+
+            //load the client's classes now rather than while timing; nothing listens there yet
+            try {
+                ApiLoadClient.get(apiPort, "/api/state");
+            } catch (IOException e) {
+                //expected
+            }
+            long lostAt = System.nanoTime();
+            primary.close();
+            String state = awaitApi(apiPort, TimeUnit.SECONDS.toNanos(30));
+            long failoverNanos = System.nanoTime() - lostAt;
+
+            int mismatches = 0;
+            for (JsonElement element : JsonParser.parseString(ApiLoadClient.get(apiPort, "/api/sensors")).getAsJsonArray()) {
+                JsonObject sensor = element.getAsJsonObject();
+                Boolean active = expected.remove(sensor.get("id").getAsString());
+                if (active == null || active != sensor.get("active").getAsBoolean()) {
+                    mismatches++;
+                }
+            }
+            mismatches += expected.size();
+            String standbyAlarm = JsonParser.parseString(state).getAsJsonObject().get("alarmStatus").getAsString();
+
+            System.out.printf(Locale.ROOT, "%12s %16s %18s %12s%n", "failover ms", "unacked at loss", "sensor mismatches", "alarm");
+            System.out.printf(Locale.ROOT, "%12.1f %16s %18d %12s%n", failoverNanos / 1e6,
+                    caughtUp ? String.valueOf(unacknowledged) : unacknowledged + " (timed out)", mismatches,
+                    standbyAlarm.equals(expectedAlarm) ? "matches" : standbyAlarm + " != " + expectedAlarm);
+        } finally {
+            standby.destroy();
+            primary.close();
+        }
+    }
+
+    private static boolean awaitCaughtUp(ReplicatingSecurityRepository primary, long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (!primary.isStandbyConnected() || primary.getAcknowledgedSequence() < primary.getSequence()) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * Polls the standby's API until it answers.
+     * @return the body of GET /api/state
+     */
+    private static String awaitApi(int port, long timeoutNanos) throws IOException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (true) {
+            try {
+                return ApiLoadClient.get(port, "/api/state");
+            } catch (IOException e) {
+                if (System.nanoTime() >= deadline) {
+                    throw e;
+                }
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static double micros(double nanos) {
+        return nanos / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+}
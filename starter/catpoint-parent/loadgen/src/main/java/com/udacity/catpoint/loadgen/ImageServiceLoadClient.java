@@ -0,0 +1,161 @@
+package com.udacity.catpoint.loadgen;
+
+import com.udacity.catpoint.image.AwsAsyncImageService;
+import com.udacity.catpoint.image.AwsImageService;
+import com.udacity.catpoint.image.RekognitionStandInServer;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Measures {@link AwsImageService} throughput and tail latency at increasing concurrency levels
+ * against a local {@link RekognitionStandInServer}, or against any endpoint given by aws.endpoint.
+ * <p>
+ * Run with system properties to override the defaults, for example
+ * -Dloadtest.concurrency=1,8,32 -Dloadtest.seconds=20 -Dstandin.latency.median.ms=120
+ * <p>
+ *      java -cp loadgen/target/loadgen.jar com.udacity.catpoint.loadgen.ImageServiceLoadClient
+ * <p>
+ * The SDK's retries are off unless -Daws.maxRetries says otherwise, so throttles and server errors
+ * count as errors instead of hiding in the latency; against the stand-in they are also reported
+ * as the stand-in counted them.
+ * <p>
+ * With -Dloadtest.mode=async the calls go through {@link AwsAsyncImageService} instead, so the
+ * effect of its concurrency limit and hedging on the tail can be compared against the blocking client.
+ */
+public class ImageServiceLoadClient {
+
+    public static void main(String[] args) throws Exception {
+        Properties props = new Properties(System.getProperties());
+        int[] concurrencyLevels = Arrays.stream(props.getProperty("loadtest.concurrency", "1,4,16,64").split(","))
+                .mapToInt(level -> Integer.parseInt(level.trim()))
+                .toArray();
+        long seconds = Long.parseLong(props.getProperty("loadtest.seconds", "10"));
+        int imageSize = Integer.parseInt(props.getProperty("loadtest.image.size", "640"));
+
+        RekognitionStandInServer standIn = null;
+        if (props.getProperty("aws.endpoint") == null) {
+            standIn = new RekognitionStandInServer(props);
+            standIn.start();
+            props.setProperty("aws.endpoint", standIn.getEndpoint());
+        }
+        setDefault(props, "aws.id", "standin");
+        setDefault(props, "aws.secret", "standin");
+        setDefault(props, "aws.region", "us-east-2");
+        setDefault(props, "aws.maxRetries", "0");
+
+        boolean async = "async".equals(props.getProperty("loadtest.mode"));
+        AwsAsyncImageService asyncService = async ? new AwsAsyncImageService(props) : null;
+        Predicate<BufferedImage> imageService;
+        if (async) {
+            imageService = i -> asyncService.detectCat(i, 50.0f).join();
+        } else {
+            AwsImageService syncService = new AwsImageService(props);
+            imageService = i -> syncService.imageContainsCat(i, 50.0f);
+        }
+        BufferedImage image = new BufferedImage(imageSize, imageSize * 3 / 4, BufferedImage.TYPE_INT_RGB);
+
+        System.out.printf("%11s %10s %9s %9s %9s %9s %9s %7s%n",
+                "concurrency", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+        try {
+            for (int concurrency : concurrencyLevels) {
+                Result result = run(imageService, image, concurrency, TimeUnit.SECONDS.toNanos(seconds));
+                System.out.printf("%11d %10.1f %9.1f %9.1f %9.1f %9.1f %9.1f %7d%n", concurrency,
+                        result.throughput(), result.percentileMillis(50), result.percentileMillis(90),
+                        result.percentileMillis(99), result.percentileMillis(99.9),
+                        result.percentileMillis(100), result.errors);
+            }
+            if (async) {
+                System.out.printf("hedges sent %d, won %d%n", asyncService.getHedgesSent(), asyncService.getHedgesWon());
+            }
+            if (standIn != null) {
+                System.out.printf("stand-in requests %d, throttled %d, failed %d%n",
+                        standIn.getRequestCount(), standIn.getThrottledCount(), standIn.getFailedCount());
+            }
+        } finally {
+            if (asyncService != null) {
+                asyncService.close();
+            }
+            if (standIn != null) {
+                standIn.close();
+            }
+        }
+    }
+
+    /**
+     * Sets a property unless it is already given, as a system property or otherwise. putIfAbsent
+     * would not see the system properties, which are only the defaults of props.
+     */
+    private static void setDefault(Properties props, String key, String value) {
+        if (props.getProperty(key) == null) {
+            props.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Runs closed-loop clients for the given duration, each issuing the next request as soon as
+     * the previous one returns.
+     */
+    private static Result run(Predicate<BufferedImage> imageService, BufferedImage image, int concurrency, long durationNanos)
+            throws InterruptedException {
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        ConcurrentLinkedQueue<long[]> latencies = new ConcurrentLinkedQueue<>();
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+
+        for (int i = 0; i < concurrency; i++) {
+            clients.execute(() -> {
+                long[] samples = new long[1024];
+                int count = 0;
+                while (System.nanoTime() < end) {
+                    long begin = System.nanoTime();
+                    try {
+                        imageService.test(image);
+                    } catch (RuntimeException e) {
+                        errors.incrementAndGet();
+                        continue;
+                    }
+                    if (count == samples.length) {
+                        samples = Arrays.copyOf(samples, count * 2);
+                    }
+                    samples[count++] = System.nanoTime() - begin;
+                }
+                latencies.add(Arrays.copyOf(samples, count));
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(durationNanos + TimeUnit.MINUTES.toNanos(1), TimeUnit.NANOSECONDS);
+
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Result(all, errors.get(), System.nanoTime() - start);
+    }
+
+    private static class Result {
+        private final long[] sortedLatencies;
+        private final long errors;
+        private final long elapsedNanos;
+
+        Result(long[] sortedLatencies, long errors, long elapsedNanos) {
+            this.sortedLatencies = sortedLatencies;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        double throughput() {
+            return sortedLatencies.length / (elapsedNanos / 1e9);
+        }
+
+        double percentileMillis(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))] / 1e6;
+        }
+    }
+}
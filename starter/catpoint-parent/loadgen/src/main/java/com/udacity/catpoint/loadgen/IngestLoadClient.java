@@ -0,0 +1,236 @@
+package com.udacity.catpoint.loadgen;
+
+import com.udacity.catpoint.image.FakeImageService;
+import com.udacity.catpoint.security.application.ServiceDispatcher;
+import com.udacity.catpoint.security.data.InMemorySecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.ingest.SensorBatch;
+import com.udacity.catpoint.security.ingest.SensorFrame;
+import com.udacity.catpoint.security.ingest.SensorIngestServer;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load client for the {@link SensorIngestServer}. Each simulated hub pushes frames of sensor
+ * states as fast as the server takes them and the client reports messages per second.
+ * <p>
+ * Without -Dingestclient.port it starts an ingest server of its own on an in-memory repository, so
+ *      java -cp loadgen/target/loadgen.jar com.udacity.catpoint.loadgen.IngestLoadClient
+ * measures the whole path on localhost and also prints the server's counters. Other settings:
+ * <ul>
+ *     <li>ingestclient.transport: tcp or udp (tcp)</li>
+ *     <li>ingestclient.hubs: hubs sending at once, one connection each (4)</li>
+ *     <li>ingestclient.batch: messages per frame (256)</li>
+ *     <li>ingestclient.seconds, ingestclient.warmup.seconds: measured and discarded run time (10, 2)</li>
+ *     <li>ingestclient.resendEvery: resend every nth frame unchanged, to exercise duplicate rejection (0, off)</li>
+ *     <li>ingestclient.sensors: sensors of the embedded server (1000)</li>
+ *     <li>ingestclient.api.port: API port of a remote server to fetch sensor ids from; without it
+ *     a remote server is sent random ids</li>
+ * </ul>
+ * UDP is not throttled, so the server's counters show how many datagrams were lost.
+ */
+public class IngestLoadClient {
+
+    public static void main(String[] args) throws Exception {
+        Properties props = new Properties(System.getProperties());
+        boolean udp = "udp".equalsIgnoreCase(props.getProperty("ingestclient.transport", "tcp"));
+        int hubs = Integer.parseInt(props.getProperty("ingestclient.hubs", "4"));
+        int batchSize = Integer.parseInt(props.getProperty("ingestclient.batch", "256"));
+        long seconds = Long.parseLong(props.getProperty("ingestclient.seconds", "10"));
+        long warmupSeconds = Long.parseLong(props.getProperty("ingestclient.warmup.seconds", "2"));
+        int resendEvery = Integer.parseInt(props.getProperty("ingestclient.resendEvery", "0"));
+        if (batchSize < 1 || batchSize > SensorFrame.MAX_MESSAGES) {
+            throw new IllegalArgumentException("ingestclient.batch must be between 1 and " + SensorFrame.MAX_MESSAGES);
+        }
+
+        SensorIngestServer embedded = null;
+        int port;
+        List<UUID> sensorIds = new ArrayList<>();
+        if (props.getProperty("ingestclient.port") != null) {
+            port = Integer.parseInt(props.getProperty("ingestclient.port"));
+            if (props.getProperty("ingestclient.api.port") != null) {
+                for (String id : ApiLoadClient.fetchSensorIds(Integer.parseInt(props.getProperty("ingestclient.api.port")))) {
+                    sensorIds.add(UUID.fromString(id));
+                }
+            } else {
+                for (int i = 0; i < 1000; i++) {
+                    sensorIds.add(UUID.randomUUID());
+                }
+            }
+        } else {
+            embedded = startEmbeddedServer(Integer.parseInt(props.getProperty("ingestclient.sensors", "1000")), sensorIds);
+            port = embedded.getPort();
+        }
+        if (sensorIds.isEmpty()) {
+            throw new IllegalStateException("No sensors to send states for");
+        }
+
+        try {
+            LongAdder sent = new LongAdder();
+            long start = System.nanoTime();
+            long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            long deadline = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+            Random seeds = new Random();
+
+            ExecutorService clients = Executors.newFixedThreadPool(hubs);
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < hubs; i++) {
+                Hub hub = new Hub(seeds.nextLong(), sensorIds, batchSize, resendEvery);
+                running.add(clients.submit(() -> {
+                    if (udp) {
+                        hub.sendDatagrams(port, measureFrom, deadline, sent);
+                    } else {
+                        hub.sendStream(port, measureFrom, deadline, sent);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> hub : running) {
+                hub.get();
+            }
+            clients.shutdown();
+
+            System.out.printf(Locale.ROOT, "%s, %d hubs, %d messages per frame, %d s%n", udp ? "udp" : "tcp", hubs, batchSize, seconds);
+            System.out.printf(Locale.ROOT, "%12s%n", "sent msg/s");
+            System.out.printf(Locale.ROOT, "%12.0f%n", sent.sum() / (double) seconds);
+            if (embedded != null) {
+                //let the last frames drain before reading the counters
+                Thread.sleep(200);
+                System.out.printf(Locale.ROOT, "%12s %12s %12s %12s %12s%n", "received", "frames ok", "rejected", "malformed", "changed");
+                System.out.printf(Locale.ROOT, "%12d %12d %12d %12d %12d%n", embedded.getMessagesReceived(), embedded.getFramesAccepted(),
+                        embedded.getFramesRejected(), embedded.getFramesMalformed(), embedded.getSensorsChanged());
+            }
+        } finally {
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+    }
+
+    private static SensorIngestServer startEmbeddedServer(int sensorCount, List<UUID> sensorIds) throws IOException {
+        SecurityService securityService = new SecurityService(new InMemorySecurityRepository(), new FakeImageService());
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, types[i % types.length]);
+            securityService.addSensor(sensor);
+            sensorIds.add(sensor.getSensorId());
+        }
+        SensorIngestServer server = new SensorIngestServer(securityService, new ServiceDispatcher(), 0);
+        server.start();
+        return server;
+    }
+
+    /**
+     * One simulated hub. It walks through all sensors a frame at a time and flips a sensor's
+     * state every time it comes round, so most messages change something on the server.
+     */
+    private static class Hub {
+        private final long hubId;
+        private final long session = System.currentTimeMillis();
+        private final long[] idHigh;
+        private final long[] idLow;
+        private final boolean[] active;
+        private final int batchSize;
+        private final int resendEvery;
+        private final SensorBatch batch = new SensorBatch();
+        private final ByteBuffer buffer = ByteBuffer.allocate(SensorFrame.MAX_FRAME_BYTES);
+        private int nextSensor;
+        private long sequence = 0;
+        //starts out true so there is never an attempt to resend before the first frame
+        private boolean resending = true;
+
+        Hub(long seed, List<UUID> sensorIds, int batchSize, int resendEvery) {
+            Random random = new Random(seed);
+            this.hubId = random.nextLong();
+            this.idHigh = new long[sensorIds.size()];
+            this.idLow = new long[sensorIds.size()];
+            this.active = new boolean[sensorIds.size()];
+            for (int i = 0; i < sensorIds.size(); i++) {
+                idHigh[i] = sensorIds.get(i).getMostSignificantBits();
+                idLow[i] = sensorIds.get(i).getLeastSignificantBits();
+            }
+            this.batchSize = batchSize;
+            this.resendEvery = resendEvery;
+            this.nextSensor = random.nextInt(sensorIds.size());
+        }
+
+        void sendStream(int port, long measureFrom, long deadline, LongAdder sent) throws IOException {
+            try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", port))) {
+                while (true) {
+                    long now = System.nanoTime();
+                    if (now >= deadline) {
+                        return;
+                    }
+                    int messages = nextFrame();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    if (now >= measureFrom) {
+                        sent.add(messages);
+                    }
+                }
+            }
+        }
+
+        void sendDatagrams(int port, long measureFrom, long deadline, LongAdder sent) throws IOException {
+            try (DatagramChannel channel = DatagramChannel.open()) {
+                channel.connect(new InetSocketAddress("localhost", port));
+                while (true) {
+                    long now = System.nanoTime();
+                    if (now >= deadline) {
+                        return;
+                    }
+                    int messages = nextFrame();
+                    channel.write(buffer);
+                    if (now >= measureFrom) {
+                        sent.add(messages);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Encodes the next frame into the buffer, or rewinds the last one to send it again.
+         * @return the number of new messages in the buffer
+         */
+        private int nextFrame() {
+            if (resendEvery > 0 && !resending && sequence % resendEvery == 0) {
+                resending = true;
+                buffer.rewind();
+                return 0;
+            }
+            resending = false;
+            batch.clear();
+            batch.setHubId(hubId);
+            batch.setSession(session);
+            batch.setSequence(++sequence);
+            for (int i = 0; i < batchSize; i++) {
+                int sensor = nextSensor;
+                nextSensor = (nextSensor + 1) % idHigh.length;
+                active[sensor] = !active[sensor];
+                batch.add(idHigh[sensor], idLow[sensor], active[sensor]);
+            }
+            buffer.clear();
+            SensorFrame.encode(buffer, batch);
+            buffer.flip();
+            return batch.getCount();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.udacity.catpoint.loadgen;
+
+import com.udacity.catpoint.image.ImageService;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delays every call to another ImageService by a log-normally distributed latency, so a fast fake
+ * backend behaves like a remote one.
+ */
+public class LatencyInjectingImageService implements ImageService {
+
+    private final ImageService delegate;
+    private final double medianNanos;
+    private final double sigma;
+
+    /**
+     * @param medianMillis median injected latency, 0 for none
+     * @param sigma spread of the log-normal distribution; 0 makes every call take the median
+     */
+    public LatencyInjectingImageService(ImageService delegate, double medianMillis, double sigma) {
+        this.delegate = delegate;
+        this.medianNanos = medianMillis * TimeUnit.MILLISECONDS.toNanos(1);
+        this.sigma = sigma;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (medianNanos > 0) {
+            Random random = ThreadLocalRandom.current();
+            long delay = (long) (medianNanos * Math.exp(sigma * random.nextGaussian()));
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return delegate.imageContainsCat(image, confidenceThreshhold);
+    }
+}
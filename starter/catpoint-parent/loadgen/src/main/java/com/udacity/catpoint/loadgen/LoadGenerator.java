@@ -0,0 +1,193 @@
+package com.udacity.catpoint.loadgen;
+
+import com.udacity.catpoint.image.FakeImageService;
+import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.security.data.InMemorySecurityRepository;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.metrics.LatencyHistogram;
+import com.udacity.catpoint.security.metrics.Metrics;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Soak test that drives many independent premises, each with its own SecurityService, with
+ * sensor activations, arming changes and camera images, and reports throughput, latency, heap and
+ * GC over time. Use it to qualify a new repository or threading implementation under sustained
+ * load before rolling it out.
+ * <p>
+ * The load is open-loop: every event has an intended start time drawn from its stream's arrival
+ * process, and latency is measured from that time rather than from when a thread got around to
+ * it. A system that falls behind therefore shows the queueing delay instead of quietly slowing
+ * the generator down.
+ * <p>
+ * Configure with system properties, for example
+ *      java -Dloadgen.premises=1000 -Dloadgen.seconds=14400 -Dloadgen.pattern=bursty -jar loadgen/target/loadgen.jar
+ * <ul>
+ *     <li>loadgen.premises, loadgen.sensors: premises and sensors per premises (100, 10)</li>
+ *     <li>loadgen.sensor.rate, loadgen.arming.rate, loadgen.image.rate: events per second per premises (5, 0.05, 1)</li>
+ *     <li>loadgen.pattern: poisson or bursty, see {@link ArrivalProcess}</li>
+ *     <li>loadgen.image.latency.median.ms, loadgen.image.latency.sigma: injected image service latency (50, 0.5)</li>
+ *     <li>loadgen.repository: SecurityRepository class with a no-argument constructor (InMemorySecurityRepository)</li>
+ *     <li>loadgen.threads: worker threads (32)</li>
+ *     <li>loadgen.seconds, loadgen.report.seconds: run time and report interval (3600, 10)</li>
+ *     <li>loadgen.csv: file to append the interval reports to</li>
+ * </ul>
+ * The services are instrumented, so their internal latencies can be watched over JMX while the test runs.
+ */
+public class LoadGenerator {
+
+    private final ScheduledExecutorService workers;
+    private volatile boolean stopping = false;
+
+    private LoadGenerator(int threads) {
+        workers = Executors.newScheduledThreadPool(threads, r -> {
+            Thread t = new Thread(r, "loadgen-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties props = new Properties(System.getProperties());
+        int premisesCount = Integer.parseInt(props.getProperty("loadgen.premises", "100"));
+        int sensorsPerPremises = Integer.parseInt(props.getProperty("loadgen.sensors", "10"));
+        double sensorRate = Double.parseDouble(props.getProperty("loadgen.sensor.rate", "5"));
+        double armingRate = Double.parseDouble(props.getProperty("loadgen.arming.rate", "0.05"));
+        double imageRate = Double.parseDouble(props.getProperty("loadgen.image.rate", "1"));
+        double imageLatencyMillis = Double.parseDouble(props.getProperty("loadgen.image.latency.median.ms", "50"));
+        double imageLatencySigma = Double.parseDouble(props.getProperty("loadgen.image.latency.sigma", "0.5"));
+        String repositoryClass = props.getProperty("loadgen.repository", InMemorySecurityRepository.class.getName());
+        int threads = Integer.parseInt(props.getProperty("loadgen.threads", "32"));
+        long seconds = Long.parseLong(props.getProperty("loadgen.seconds", "3600"));
+        long reportSeconds = Long.parseLong(props.getProperty("loadgen.report.seconds", "10"));
+        String csv = props.getProperty("loadgen.csv");
+
+        Metrics metrics = new Metrics();
+        ImageService imageService = new LatencyInjectingImageService(new FakeImageService(), imageLatencyMillis, imageLatencySigma);
+        BufferedImage cameraImage = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+
+        System.out.printf("%d premises x %d sensors, %s arrivals, %s repository, %d threads, %d s%n", premisesCount,
+                sensorsPerPremises, props.getProperty("loadgen.pattern", "poisson"), repositoryClass, threads, seconds);
+        List<Premises> premises = new ArrayList<>(premisesCount);
+        for (int i = 0; i < premisesCount; i++) {
+            premises.add(new Premises(i, sensorsPerPremises, newRepository(repositoryClass), imageService, metrics, cameraImage));
+        }
+
+        LoadGenerator generator = new LoadGenerator(threads);
+        List<LatencyHistogram> histograms = new ArrayList<>();
+        List<LongAdder> errors = new ArrayList<>();
+        Operation[] operations = {
+                new Operation("sensorEvent", sensorRate, (p, random) -> p.toggleRandomSensor(random)),
+                new Operation("armingChange", armingRate, (p, random) -> p.changeArmingStatus(random)),
+                new Operation("processImage", imageRate, (p, random) -> p.submitImage())
+        };
+        for (Operation operation : operations) {
+            if (operation.ratePerSecond <= 0) {
+                continue;
+            }
+            LatencyHistogram latency = metrics.histogram("loadgen." + operation.name);
+            LongAdder failures = new LongAdder();
+            histograms.add(latency);
+            errors.add(failures);
+            //seeded per operation so runs are repeatable; consecutive seeds would give correlated streams
+            Random seeds = new Random(operation.name.hashCode());
+            for (Premises p : premises) {
+                generator.new Stream(p, operation, ArrivalProcess.fromProperties(props, operation.ratePerSecond),
+                        latency, failures, new Random(seeds.nextLong())).start();
+            }
+        }
+
+        SoakReport report = new SoakReport(histograms, errors, csv == null ? null : Paths.get(csv), System.out);
+        report.printHeader();
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(report::sample, reportSeconds, reportSeconds, TimeUnit.SECONDS);
+
+        TimeUnit.SECONDS.sleep(seconds);
+        generator.stopping = true;
+        reporter.shutdown();
+        generator.workers.shutdownNow();
+        report.printSummary();
+    }
+
+    private static SecurityRepository newRepository(String className) throws ReflectiveOperationException {
+        return Class.forName(className).asSubclass(SecurityRepository.class).getDeclaredConstructor().newInstance();
+    }
+
+    private interface Action {
+        void run(Premises premises, Random random);
+    }
+
+    private static class Operation {
+        private final String name;
+        private final double ratePerSecond;
+        private final Action action;
+
+        private Operation(String name, double ratePerSecond, Action action) {
+            this.name = name;
+            this.ratePerSecond = ratePerSecond;
+            this.action = action;
+        }
+    }
+
+    /**
+     * One event stream of one premises. Each run performs the event that was due, records its
+     * latency from the intended start and schedules the next one.
+     */
+    private class Stream implements Runnable {
+        private final Premises premises;
+        private final Operation operation;
+        private final ArrivalProcess arrivals;
+        private final LatencyHistogram latency;
+        private final LongAdder failures;
+        private final Random random;
+        private long intendedStartNanos;
+
+        private Stream(Premises premises, Operation operation, ArrivalProcess arrivals,
+                       LatencyHistogram latency, LongAdder failures, Random random) {
+            this.premises = premises;
+            this.operation = operation;
+            this.arrivals = arrivals;
+            this.latency = latency;
+            this.failures = failures;
+            this.random = random;
+        }
+
+        private void start() {
+            intendedStartNanos = System.nanoTime();
+            scheduleNext();
+        }
+
+        @Override
+        public void run() {
+            if (stopping) {
+                return;
+            }
+            try {
+                operation.action.run(premises, random);
+            } catch (RuntimeException e) {
+                failures.increment();
+            }
+            latency.recordSince(intendedStartNanos);
+            scheduleNext();
+        }
+
+        private void scheduleNext() {
+            intendedStartNanos += arrivals.nextGapNanos(random);
+            try {
+                workers.schedule(this, intendedStartNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                //shutting down
+            }
+        }
+    }
+}
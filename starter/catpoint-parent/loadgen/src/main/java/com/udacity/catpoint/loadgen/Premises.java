@@ -0,0 +1,59 @@
+package com.udacity.catpoint.loadgen;
+
+import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.metrics.InstrumentedSecurityService;
+import com.udacity.catpoint.security.metrics.Metrics;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * One simulated home: its own repository and SecurityService with a fixed set of sensors.
+ * SecurityService is not thread safe, so every operation on a premises is serialized on it,
+ * the same way the GUI serializes calls through its dispatcher. Images are classified before
+ * taking the lock, so a slow image service doesn't hold up the premises' sensor events.
+ */
+class Premises {
+
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+
+    private final SecurityService securityService;
+    private final Sensor[] sensors;
+    private final BufferedImage cameraImage;
+
+    Premises(int id, int sensorCount, SecurityRepository repository, ImageService imageService,
+             Metrics metrics, BufferedImage cameraImage) {
+        this.securityService = new InstrumentedSecurityService(repository, imageService, metrics);
+        this.cameraImage = cameraImage;
+        this.sensors = new Sensor[sensorCount];
+        for (int i = 0; i < sensorCount; i++) {
+            sensors[i] = new Sensor("premises-" + id + "-sensor-" + i, SENSOR_TYPES[i % SENSOR_TYPES.length]);
+            securityService.addSensor(sensors[i]);
+        }
+    }
+
+    synchronized void toggleRandomSensor(Random random) {
+        if (sensors.length == 0) {
+            return;
+        }
+        Sensor sensor = sensors[random.nextInt(sensors.length)];
+        securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+    }
+
+    synchronized void changeArmingStatus(Random random) {
+        securityService.setArmingStatus(ARMING_STATUSES[random.nextInt(ARMING_STATUSES.length)]);
+    }
+
+    void submitImage() {
+        boolean cat = securityService.classifyImage(cameraImage);
+        synchronized (this) {
+            securityService.applyCatVerdict(cat);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.udacity.catpoint.loadgen;
+
+import com.udacity.catpoint.security.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prints one line per reporting interval with the throughput and latency of every operation
+ * plus heap and GC figures, and optionally appends the same figures to a CSV file.
+ * <p>
+ * Heap after GC is the live heap the last collection left behind; a steady upward trend over
+ * hours is the leak signal that plain heap usage hides behind the collection sawtooth.
+ */
+class SoakReport {
+
+    private static final String CSV_HEADER = "elapsedSeconds,operation,opsPerSecond,p50Millis,p99Millis,p999Millis,maxMillis,errors,heapUsedMb,heapAfterGcMb,gcCount,gcMillis";
+
+    private final List<LatencyHistogram> histograms;
+    private final List<LongAdder> errors;
+    private final Path csvFile;
+    private final PrintStream out;
+    private final long startNanos = System.nanoTime();
+
+    private LatencyHistogram.Snapshot[] previous;
+    private long[] previousErrors;
+    private long previousNanos = startNanos;
+    private long previousGcCount;
+    private long previousGcMillis;
+    private double firstHeapAfterGcMb = -1;
+
+    /**
+     * @param histograms one latency histogram per operation, named after the operation
+     * @param errors failure count per operation, in the same order
+     * @param csvFile file to append CSV rows to, may be null
+     */
+    SoakReport(List<LatencyHistogram> histograms, List<LongAdder> errors, Path csvFile, PrintStream out) {
+        this.histograms = histograms;
+        this.errors = errors;
+        this.csvFile = csvFile;
+        this.out = out;
+        this.previous = new LatencyHistogram.Snapshot[histograms.size()];
+        this.previousErrors = new long[histograms.size()];
+        for (int i = 0; i < histograms.size(); i++) {
+            previous[i] = histograms.get(i).snapshot();
+        }
+    }
+
+    void printHeader() {
+        out.printf("%8s %-14s %10s %9s %9s %9s %9s %7s %9s %9s %6s %8s%n", "elapsed", "operation", "ops/s",
+                "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors", "heap MB", "live MB", "gc", "gc ms");
+    }
+
+    /**
+     * Reports everything since the previous call.
+     */
+    synchronized void sample() {
+        long now = System.nanoTime();
+        double intervalSeconds = (now - previousNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        long elapsedSeconds = TimeUnit.NANOSECONDS.toSeconds(now - startNanos);
+        previousNanos = now;
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        double heapUsedMb = megabytes(heap.getUsed());
+        double heapAfterGcMb = megabytes(heapAfterLastGc());
+        if (firstHeapAfterGcMb < 0 && heapAfterGcMb > 0) {
+            firstHeapAfterGcMb = heapAfterGcMb;
+        }
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcMillis += Math.max(0, gc.getCollectionTime());
+        }
+        long intervalGcCount = gcCount - previousGcCount;
+        long intervalGcMillis = gcMillis - previousGcMillis;
+        previousGcCount = gcCount;
+        previousGcMillis = gcMillis;
+
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < histograms.size(); i++) {
+            LatencyHistogram histogram = histograms.get(i);
+            LatencyHistogram.Snapshot total = histogram.snapshot();
+            LatencyHistogram.Snapshot interval = total.minus(previous[i]);
+            previous[i] = total;
+            long errorTotal = errors.get(i).sum();
+            long intervalErrors = errorTotal - previousErrors[i];
+            previousErrors[i] = errorTotal;
+
+            double opsPerSecond = interval.getCount() / intervalSeconds;
+            out.printf("%8d %-14s %10.1f %9.2f %9.2f %9.2f %9.2f %7d %9.1f %9.1f %6d %8d%n", elapsedSeconds,
+                    histogram.getName(), opsPerSecond, millis(interval.getPercentile(50)),
+                    millis(interval.getPercentile(99)), millis(interval.getPercentile(99.9)),
+                    millis(interval.getMax()), intervalErrors, heapUsedMb, heapAfterGcMb, intervalGcCount, intervalGcMillis);
+            csv.append(elapsedSeconds).append(',').append(histogram.getName())
+                    .append(',').append(opsPerSecond)
+                    .append(',').append(millis(interval.getPercentile(50)))
+                    .append(',').append(millis(interval.getPercentile(99)))
+                    .append(',').append(millis(interval.getPercentile(99.9)))
+                    .append(',').append(millis(interval.getMax()))
+                    .append(',').append(intervalErrors)
+                    .append(',').append(heapUsedMb)
+                    .append(',').append(heapAfterGcMb)
+                    .append(',').append(intervalGcCount)
+                    .append(',').append(intervalGcMillis)
+                    .append(System.lineSeparator());
+        }
+        writeCsv(csv);
+    }
+
+    /**
+     * Prints whole-run percentiles and the live heap growth since the first collection.
+     */
+    synchronized void printSummary() {
+        double seconds = (System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        out.printf("%nWhole run, %.0f s:%n", seconds);
+        for (int i = 0; i < histograms.size(); i++) {
+            LatencyHistogram.Snapshot total = histograms.get(i).snapshot();
+            out.printf("%-14s %10.1f ops/s  p50 %.2f ms  p99 %.2f ms  p99.9 %.2f ms  max %.2f ms  errors %d%n",
+                    histograms.get(i).getName(), total.getCount() / seconds, millis(total.getPercentile(50)),
+                    millis(total.getPercentile(99)), millis(total.getPercentile(99.9)), millis(total.getMax()),
+                    errors.get(i).sum());
+        }
+        if (firstHeapAfterGcMb > 0) {
+            out.printf("live heap after GC: %.1f MB at first collection, %.1f MB now%n",
+                    firstHeapAfterGcMb, megabytes(heapAfterLastGc()));
+        }
+    }
+
+    private void writeCsv(StringBuilder rows) {
+        if (csvFile == null) {
+            return;
+        }
+        try {
+            if (!Files.exists(csvFile)) {
+                rows.insert(0, CSV_HEADER + System.lineSeparator());
+            }
+            Files.write(csvFile, rows.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            out.println("Unable to write " + csvFile + ": " + e);
+        }
+    }
+
+    private static long heapAfterLastGc() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage afterGc = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && afterGc != null) {
+                used += afterGc.getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static double megabytes(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    private static double millis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}